@@ -0,0 +1,122 @@
+package com.spud.rpic.benchmark;
+
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 基准测试共用的请求与响应样本：单个字符串参数的小请求，以及返回对象列表的大响应
+ */
+public final class BenchmarkPayloads {
+
+	private BenchmarkPayloads() {
+	}
+
+	public static RpcRequest smallRequest() {
+		return RpcRequest.builder()
+			.requestId("1")
+			.interfaceName(EchoService.class.getName())
+			.interfaceClass(EchoService.class)
+			.methodName("echo")
+			.parameterTypes(new Class<?>[]{String.class})
+			.parameters(new Object[]{"hello rpic"})
+			.version("1.0.0")
+			.timeout(3000)
+			.build();
+	}
+
+	public static RpcResponse smallResponse() {
+		return RpcResponse.builder()
+			.requestId("1")
+			.result("hello rpic")
+			.error(false)
+			.build();
+	}
+
+	public static RpcResponse largeResponse(int items) {
+		return RpcResponse.builder()
+			.requestId("1")
+			.result(items(items))
+			.error(false)
+			.build();
+	}
+
+	/**
+	 * 与{@link #largeResponse}内容相同的生成消息，供只能编码生成消息的protobuf使用
+	 */
+	public static RpcResponse largeMessageResponse(int items) {
+		ListValue.Builder list = ListValue.newBuilder();
+		for (Item item : items(items)) {
+			list.addValues(Value.newBuilder().setStructValue(Struct.newBuilder()
+				.putFields("id", Value.newBuilder().setNumberValue(item.getId()).build())
+				.putFields("name", Value.newBuilder().setStringValue(item.getName()).build())
+				.putFields("price", Value.newBuilder().setNumberValue(item.getPrice()).build())
+				.putFields("available", Value.newBuilder().setBoolValue(item.isAvailable()).build())));
+		}
+		return RpcResponse.builder()
+			.requestId("1")
+			.result(list.build())
+			.error(false)
+			.build();
+	}
+
+	public static ArrayList<Item> items(int count) {
+		ArrayList<Item> items = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			items.add(new Item(i, "item-" + i, i * 1.5D, i % 2 == 0));
+		}
+		return items;
+	}
+
+	/**
+	 * 列表响应中的元素
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Item implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private long id;
+
+		private String name;
+
+		private double price;
+
+		private boolean available;
+	}
+
+	/**
+	 * 回环调用使用的服务接口
+	 */
+	public interface EchoService {
+
+		String echo(String message);
+
+		List<Item> list(int count);
+	}
+
+	public static class EchoServiceImpl implements EchoService {
+
+		private final List<Item> cached = items(1000);
+
+		@Override
+		public String echo(String message) {
+			return message;
+		}
+
+		@Override
+		public List<Item> list(int count) {
+			return new ArrayList<>(cached.subList(0, Math.min(count, cached.size())));
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.spud.rpic.benchmark;
+
+import com.spud.rpic.cluster.EndpointStatsRegistry;
+import com.spud.rpic.cluster.LoadBalancer;
+import com.spud.rpic.cluster.LoadBalancerFactory;
+import com.spud.rpic.model.ServiceURL;
+import com.spud.rpic.property.RpcClientProperties;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 负载均衡选择开销，多线程共享同一个负载均衡器以体现计数器与统计数据上的竞争
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class LoadBalancerBenchmark {
+
+	@Param({"random", "roundRobin", "weightedRandom", "weightedRoundRobin", "p2c_ewma"})
+	public String type;
+
+	@Param({"16"})
+	public int endpoints;
+
+	private LoadBalancer loadBalancer;
+
+	private List<ServiceURL> urls;
+
+	@Setup
+	public void setUp() {
+		loadBalancer = new LoadBalancerFactory(new EndpointStatsRegistry(new RpcClientProperties()))
+			.getLoadBalancer(type);
+		List<ServiceURL> list = new ArrayList<>(endpoints);
+		for (int i = 0; i < endpoints; i++) {
+			list.add(new ServiceURL("10.0.0." + (i + 1), 9000, BenchmarkPayloads.EchoService.class.getName(),
+				"rpic", null, "1.0.0", 1 + i % 4, Collections.emptyMap()));
+		}
+		urls = Collections.unmodifiableList(list);
+	}
+
+	@Benchmark
+	public ServiceURL select() {
+		return loadBalancer.select(urls);
+	}
+}
@@ -0,0 +1,60 @@
+package com.spud.rpic.benchmark;
+
+import com.spud.rpic.model.ServiceMetadata;
+import com.spud.rpic.model.ServiceURL;
+import com.spud.rpic.registry.Registry;
+import com.spud.rpic.registry.ServiceChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 进程内注册中心，代替真实注册中心为回环调用提供服务地址
+ */
+public class LoopbackRegistry extends Registry {
+
+	private final Map<String, List<ServiceURL>> services = new ConcurrentHashMap<>();
+
+	public LoopbackRegistry() {
+		super(300, 60);
+	}
+
+	@Override
+	public void register(ServiceMetadata serviceMetadata) {
+		services.computeIfAbsent(serviceMetadata.getServiceId(), k -> new CopyOnWriteArrayList<>())
+			.add(serviceMetadata.convertToServiceURL());
+	}
+
+	@Override
+	public void register(List<ServiceMetadata> serviceMetadata) {
+		serviceMetadata.forEach(this::register);
+	}
+
+	@Override
+	protected List<ServiceURL> doDiscover(ServiceMetadata metadata) {
+		List<ServiceURL> urls = services.get(metadata.getServiceId());
+		return urls != null ? new ArrayList<>(urls) : Collections.emptyList();
+	}
+
+	@Override
+	public void subscribe(ServiceMetadata serviceMetadata, ServiceChangeListener listener) {
+		// 地址在基准测试期间不变，无需通知
+	}
+
+	@Override
+	public void subscribe(List<ServiceMetadata> serviceMetadata, ServiceChangeListener listener) {
+	}
+
+	@Override
+	public void unregister(ServiceMetadata metadata) {
+		services.remove(metadata.getServiceId());
+	}
+
+	@Override
+	public void destroy() {
+		services.clear();
+	}
+}
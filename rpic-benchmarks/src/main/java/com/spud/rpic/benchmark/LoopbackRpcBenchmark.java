@@ -0,0 +1,194 @@
+package com.spud.rpic.benchmark;
+
+import com.spud.rpic.benchmark.BenchmarkPayloads.EchoService;
+import com.spud.rpic.benchmark.BenchmarkPayloads.EchoServiceImpl;
+import com.spud.rpic.cluster.EndpointStatsRegistry;
+import com.spud.rpic.cluster.LoadBalancer;
+import com.spud.rpic.cluster.LoadBalancerFactory;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.io.compress.CompressorFactory;
+import com.spud.rpic.io.netty.CompressionCodec;
+import com.spud.rpic.io.netty.client.ConnectionPool;
+import com.spud.rpic.io.netty.client.NettyNetClient;
+import com.spud.rpic.io.netty.client.RpcClientHandler;
+import com.spud.rpic.io.netty.client.RpcClientInitializer;
+import com.spud.rpic.io.netty.server.NettyNetServer;
+import com.spud.rpic.io.netty.server.RpcServerExecutor;
+import com.spud.rpic.io.netty.server.RpcServerHandler;
+import com.spud.rpic.io.netty.server.RpcServerInitializer;
+import com.spud.rpic.io.netty.server.invocation.DefaultServerInvocation;
+import com.spud.rpic.io.netty.server.invocation.ServiceInvokerRegistry;
+import com.spud.rpic.io.serializer.Serializer;
+import com.spud.rpic.io.serializer.SerializerFactory;
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.model.ServiceMetadata;
+import com.spud.rpic.model.ServiceURL;
+import com.spud.rpic.property.RpcProperties;
+import com.spud.rpic.util.EnvelopeRecycling;
+import com.spud.rpic.util.MethodIds;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 本机回环的完整调用：NettyNetClient经连接池向同进程内的NettyNetServer发起请求，
+ * 服务地址由{@link LoopbackRegistry}发现并经负载均衡选择。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LoopbackRpcBenchmark {
+
+	private static final String VERSION = "1.0.0";
+
+	private static final int TIMEOUT = 3000;
+
+	@Param({"kryo", "compiled", "hessian", "json"})
+	public String serializer;
+
+	@Param({"none", "lz4"})
+	public String compressType;
+
+	@Param({"false", "true"})
+	public boolean recycleEnvelopes;
+
+	private NettyNetServer server;
+
+	private RpcServerExecutor serverExecutor;
+
+	private ConnectionPool connectionPool;
+
+	private NettyNetClient client;
+
+	private LoopbackRegistry registry;
+
+	private LoadBalancer loadBalancer;
+
+	private ServiceMetadata consumerMetadata;
+
+	private RpcRequest echoRequest;
+
+	private RpcRequest listRequest;
+
+	@Setup
+	public void setUp() throws Exception {
+		RpcProperties properties = new RpcProperties();
+		properties.setSerializeType(serializer);
+		properties.setCompressType(compressType);
+		properties.getServer().setPort(freePort());
+		EnvelopeRecycling.setEnabled(recycleEnvelopes);
+
+		SerializerFactory serializerFactory = new SerializerFactory();
+		String serviceKey = RpcRequest.buildServiceKey(null, EchoService.class.getName(), VERSION);
+		serializerFactory.registerService(serviceKey, EchoService.class);
+		Serializer defaultSerializer = serializerFactory.getSerializer(serializer);
+		RpcMetricsRecorder metricsRecorder = RpcMetricsRecorder.create(null, null);
+		CompressorFactory compressorFactory = new CompressorFactory();
+		CompressionCodec compressionCodec = new CompressionCodec(compressorFactory, compressType,
+			properties.getCompressThreshold());
+
+		ServiceInvokerRegistry invokerRegistry = new ServiceInvokerRegistry();
+		invokerRegistry.register(serviceKey, EchoService.class, new EchoServiceImpl());
+		serverExecutor = new RpcServerExecutor(properties.getServer());
+		RpcServerHandler serverHandler = new RpcServerHandler(defaultSerializer, serializerFactory,
+			new DefaultServerInvocation(properties.getServer(), invokerRegistry), metricsRecorder,
+			serverExecutor);
+		server = new NettyNetServer(properties,
+			new RpcServerInitializer(serverHandler, false, compressionCodec));
+		server.afterPropertiesSet();
+
+		registry = new LoopbackRegistry();
+		registry.register(ServiceMetadata.builder()
+			.interfaceName(EchoService.class.getName())
+			.version(VERSION)
+			.host("127.0.0.1")
+			.port(properties.getServer().getPort())
+			.weight(1)
+			.parameters(Collections.singletonMap(MethodIds.PARAMETER_KEY,
+				MethodIds.format(invokerRegistry.getAdvertisedMethodIds(serviceKey))))
+			.build());
+		consumerMetadata = ServiceMetadata.builder()
+			.interfaceName(EchoService.class.getName())
+			.version(VERSION)
+			.build();
+		loadBalancer = new LoadBalancerFactory(new EndpointStatsRegistry(properties.getClient()))
+			.getLoadBalancer(properties.getClient().getLoadbalance());
+
+		RpcClientHandler clientHandler = new RpcClientHandler(defaultSerializer, serializerFactory);
+		connectionPool = new ConnectionPool(properties.getClient(),
+			new RpcClientInitializer(clientHandler, false, compressionCodec), metricsRecorder);
+		client = new NettyNetClient(connectionPool, clientHandler, metricsRecorder);
+
+		echoRequest = request("echo", new Class<?>[]{String.class}, new Object[]{"hello rpic"});
+		listRequest = request("list", new Class<?>[]{int.class}, new Object[]{1000});
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		client.close();
+		connectionPool.close();
+		server.destroy();
+		serverExecutor.destroy();
+		registry.destroy();
+		EnvelopeRecycling.setEnabled(false);
+	}
+
+	@Benchmark
+	public Object echo() throws Exception {
+		return call(echoRequest);
+	}
+
+	@Benchmark
+	public Object listResponse() throws Exception {
+		return call(listRequest);
+	}
+
+	private Object call(RpcRequest request) throws Exception {
+		List<ServiceURL> urls = registry.discover(consumerMetadata);
+		RpcResponse response = client.send(loadBalancer.select(urls), request, TIMEOUT);
+		if (Boolean.TRUE.equals(response.getError())) {
+			throw new IllegalStateException(response.getErrorMsg());
+		}
+		return response.getResult();
+	}
+
+	private static RpcRequest request(String methodName, Class<?>[] parameterTypes,
+		Object[] parameters) throws NoSuchMethodException {
+		return RpcRequest.builder()
+			.interfaceName(EchoService.class.getName())
+			.interfaceClass(EchoService.class)
+			.methodName(methodName)
+			.parameterTypes(parameterTypes)
+			.methodId(MethodIds.of(RpcRequest.buildServiceKey(null, EchoService.class.getName(),
+				VERSION), EchoService.class.getMethod(methodName, parameterTypes)))
+			.parameters(parameters)
+			.version(VERSION)
+			.build();
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.spud.rpic.benchmark;
+
+import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.netty.ProtocolDecoder;
+import com.spud.rpic.io.netty.ProtocolEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 协议编解码吞吐：在EmbeddedChannel上分别测量编码与编码后再解码的完整往返
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolCodecBenchmark {
+
+	@Param({"128", "4096", "65536"})
+	public int bodySize;
+
+	private byte[] body;
+
+	private EmbeddedChannel channel;
+
+	private long requestId;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		body = new byte[bodySize];
+		ThreadLocalRandom.current().nextBytes(body);
+		channel = new EmbeddedChannel(new ProtocolEncoder(), new ProtocolDecoder());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		channel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public int encode() {
+		channel.writeOutbound(ProtocolMsg.fromBytes(++requestId, body, (byte) 4));
+		ByteBuf frame = channel.readOutbound();
+		int length = frame.readableBytes();
+		frame.release();
+		return length;
+	}
+
+	@Benchmark
+	public long encodeDecode() {
+		channel.writeOutbound(ProtocolMsg.fromBytes(++requestId, body, (byte) 4));
+		channel.writeInbound((Object) channel.readOutbound());
+		ProtocolMsg decoded = channel.readInbound();
+		long id = decoded.getRequestId();
+		decoded.release();
+		return id;
+	}
+}
@@ -0,0 +1,86 @@
+package com.spud.rpic.benchmark;
+
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.io.serializer.Serializer;
+import com.spud.rpic.io.serializer.SerializerFactory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 各序列化实现在典型请求与响应上的序列化/反序列化开销。
+ * <p>
+ * protobuf的参数与返回值只支持生成的消息类型与标量，无法编码对象列表，其大响应改用内容相同的生成消息，
+ * 见{@link BenchmarkPayloads#largeMessageResponse}。
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+	@Param({"kryo", "compiled", "hessian", "json", "protobuf"})
+	public String serializer;
+
+	/**
+	 * 大响应中的列表元素个数
+	 */
+	@Param({"1000"})
+	public int items;
+
+	private Serializer instance;
+
+	private RpcRequest request;
+
+	private RpcResponse largeResponse;
+
+	private byte[] requestBytes;
+
+	private byte[] largeResponseBytes;
+
+	@Setup
+	public void setUp() {
+		SerializerFactory serializerFactory = new SerializerFactory();
+		// 与运行时一致，在启动阶段登记服务接口
+		serializerFactory.registerService(RpcRequest.buildServiceKey(null,
+			BenchmarkPayloads.EchoService.class.getName(), "1.0.0"), BenchmarkPayloads.EchoService.class);
+		instance = serializerFactory.getSerializer(serializer);
+		request = BenchmarkPayloads.smallRequest();
+		largeResponse = "protobuf".equals(serializer) ? BenchmarkPayloads.largeMessageResponse(items)
+			: BenchmarkPayloads.largeResponse(items);
+		requestBytes = instance.serialize(request);
+		largeResponseBytes = instance.serialize(largeResponse);
+	}
+
+	@Benchmark
+	public byte[] serializeRequest() {
+		return instance.serialize(request);
+	}
+
+	@Benchmark
+	public RpcRequest deserializeRequest() {
+		return instance.deserialize(requestBytes, RpcRequest.class);
+	}
+
+	@Benchmark
+	public byte[] serializeLargeResponse() {
+		return instance.serialize(largeResponse);
+	}
+
+	@Benchmark
+	public RpcResponse deserializeLargeResponse() {
+		return instance.deserialize(largeResponseBytes, RpcResponse.class);
+	}
+}
@@ -39,4 +39,13 @@ public @interface RpcReference {
 
 	// 集群容错策略
 	String cluster() default "failover";
+
+	// 序列化类型，默认为空字符串表示按服务节点公布的类型自动协商
+	String serializer() default "";
+
+	// 对冲请求延迟（毫秒）：负数关闭，0按首选节点的EWMA延迟自适应，正数为固定延迟；只应对幂等方法开启
+	long hedgeDelayMs() default -1;
+
+	// 允许对冲的幂等方法名，为空表示引用的全部方法
+	String[] hedgeMethods() default {};
 }
\ No newline at end of file
@@ -62,6 +62,40 @@ public class CircuitBreakerManager implements MeterBinder {
 		return breaker.getState() != CircuitBreaker.State.OPEN;
 	}
 
+	public boolean isCallPermitted(Endpoint endpoint) {
+		CircuitBreaker breaker = endpoint.getCircuitBreaker();
+		return breaker == null || breaker.getState() != CircuitBreaker.State.OPEN;
+	}
+
+	public boolean tryAcquirePermission(Endpoint endpoint) {
+		CircuitBreaker breaker = endpoint.getCircuitBreaker();
+		return breaker == null || breaker.tryAcquirePermission();
+	}
+
+	/**
+	 * 归还已申请但未产生结果的许可，例如被取消的对冲请求
+	 */
+	public void releasePermission(Endpoint endpoint) {
+		CircuitBreaker breaker = endpoint.getCircuitBreaker();
+		if (breaker != null) {
+			breaker.releasePermission();
+		}
+	}
+
+	public void onSuccess(Endpoint endpoint, long latencyMs) {
+		CircuitBreaker breaker = endpoint.getCircuitBreaker();
+		if (breaker != null) {
+			breaker.onSuccess(Math.max(0, latencyMs), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public void onError(Endpoint endpoint, Throwable throwable, long latencyMs) {
+		CircuitBreaker breaker = endpoint.getCircuitBreaker();
+		if (breaker != null) {
+			breaker.onError(Math.max(0, latencyMs), TimeUnit.MILLISECONDS, throwable);
+		}
+	}
+
 	public boolean tryAcquirePermission(String endpoint) {
 		if (!isEnabled()) {
 			return true;
@@ -120,6 +154,13 @@ public class CircuitBreakerManager implements MeterBinder {
 		getBreaker(endpoint).reset();
 	}
 
+	/**
+	 * 端点句柄创建时取一次熔断器，未启用时返回null
+	 */
+	CircuitBreaker breakerFor(String endpoint) {
+		return isEnabled() ? getBreaker(endpoint) : null;
+	}
+
 	private CircuitBreaker getBreaker(String endpoint) {
 		Objects.requireNonNull(endpoint, "endpoint");
 		String key = properties.isPerEndpoint() ? endpoint : "global";
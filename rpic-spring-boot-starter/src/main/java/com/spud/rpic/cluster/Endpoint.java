@@ -0,0 +1,54 @@
+package com.spud.rpic.cluster;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import java.net.InetSocketAddress;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 客户端侧的服务节点句柄。
+ * <p>
+ * 同一地址只创建一次，发现结果变化时绑定到新的{@link com.spud.rpic.model.ServiceURL}上，
+ * 持有解析后的地址、统计条目、熔断器以及传输层的连接池条目，调用路径上直接取用而不再逐次查表。
+ */
+@Getter
+public final class Endpoint {
+
+	/**
+	 * host:port
+	 */
+	private final String address;
+
+	/**
+	 * 创建时解析一次的远程地址
+	 */
+	private final InetSocketAddress socketAddress;
+
+	@Getter(AccessLevel.PACKAGE)
+	private final EndpointStatsRegistry.Stats stats;
+
+	/**
+	 * 熔断器，未启用时为null
+	 */
+	@Getter(AccessLevel.PACKAGE)
+	private final CircuitBreaker circuitBreaker;
+
+	/**
+	 * 传输层为该节点缓存的连接池条目，由连接池自行维护
+	 */
+	@Setter
+	private volatile Object transportAttachment;
+
+	Endpoint(String host, int port, EndpointStatsRegistry.Stats stats, CircuitBreaker circuitBreaker) {
+		this.address = host + ":" + port;
+		this.socketAddress = new InetSocketAddress(host, port);
+		this.stats = stats;
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	@Override
+	public String toString() {
+		return address;
+	}
+}
@@ -0,0 +1,50 @@
+package com.spud.rpic.cluster;
+
+import com.spud.rpic.model.ServiceURL;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按地址维护端点句柄，并把句柄绑定到发现结果中的ServiceURL上。
+ * <p>
+ * 发现结果不变时ServiceURL实例被缓存复用，绑定只在结果变化后的首次调用发生一次；
+ * 同一地址在多次发现之间共用一个句柄，统计与熔断状态因此得以延续。
+ */
+public class EndpointDirectory {
+
+	private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+	private final EndpointStatsRegistry endpointStatsRegistry;
+
+	private final CircuitBreakerManager circuitBreakerManager;
+
+	public EndpointDirectory(EndpointStatsRegistry endpointStatsRegistry,
+		CircuitBreakerManager circuitBreakerManager) {
+		this.endpointStatsRegistry = endpointStatsRegistry;
+		this.circuitBreakerManager = circuitBreakerManager;
+	}
+
+	/**
+	 * 获取ServiceURL对应的端点句柄，未绑定时创建或复用同地址的句柄并绑定
+	 */
+	public Endpoint resolve(ServiceURL url) {
+		Endpoint endpoint = url.endpoint();
+		if (endpoint == null) {
+			endpoint = endpoints.computeIfAbsent(url.getAddress(),
+				address -> new Endpoint(url.getHost(), url.getPort(),
+					endpointStatsRegistry.statsFor(address), circuitBreakerManager.breakerFor(address)));
+			url.bindEndpoint(endpoint);
+		}
+		return endpoint;
+	}
+
+	/**
+	 * 为一批发现结果绑定句柄
+	 */
+	public void resolveAll(List<ServiceURL> urls) {
+		for (ServiceURL url : urls) {
+			resolve(url);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.spud.rpic.cluster;
 
+import com.spud.rpic.model.ServiceURL;
 import com.spud.rpic.property.RpcClientProperties;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -22,28 +23,73 @@ public class EndpointStatsRegistry {
 	}
 
 	public void onSuccess(String endpoint, long latencyMs) {
-		Stats stats = statsMap.computeIfAbsent(endpoint, key -> new Stats());
-		stats.recordSuccess(latencyMs);
+		statsFor(endpoint).recordSuccess(latencyMs);
+	}
+
+	public void onSuccess(Endpoint endpoint, long latencyMs) {
+		endpoint.getStats().recordSuccess(latencyMs);
 	}
 
 	public void onFailure(String endpoint, long latencyMs, Throwable cause) {
-		Stats stats = statsMap.computeIfAbsent(endpoint, key -> new Stats());
+		recordFailure(statsFor(endpoint), latencyMs);
+	}
+
+	public void onFailure(Endpoint endpoint, long latencyMs, Throwable cause) {
+		recordFailure(endpoint.getStats(), latencyMs);
+	}
+
+	public boolean isEjected(String endpoint, long now) {
+		return isEjected(statsMap.get(endpoint), now);
+	}
+
+	public boolean isEjected(Endpoint endpoint, long now) {
+		return isEjected(endpoint.getStats(), now);
+	}
+
+	/**
+	 * 已绑定句柄的地址直接读取句柄上的统计条目
+	 */
+	public boolean isEjected(ServiceURL url, long now) {
+		Endpoint endpoint = url.endpoint();
+		return endpoint != null ? isEjected(endpoint, now) : isEjected(url.getAddress(), now);
+	}
+
+	public double getLatencyScore(String endpoint) {
+		return latencyScore(statsMap.get(endpoint));
+	}
+
+	public double getLatencyScore(Endpoint endpoint) {
+		return latencyScore(endpoint.getStats());
+	}
+
+	public double getLatencyScore(ServiceURL url) {
+		Endpoint endpoint = url.endpoint();
+		return endpoint != null ? latencyScore(endpoint.getStats()) : getLatencyScore(url.getAddress());
+	}
+
+	/**
+	 * 获取或创建端点的统计条目，端点句柄创建时与字符串接口共用同一条目
+	 */
+	Stats statsFor(String endpoint) {
+		Stats stats = statsMap.get(endpoint);
+		return stats != null ? stats : statsMap.computeIfAbsent(endpoint, key -> new Stats());
+	}
+
+	private void recordFailure(Stats stats, long latencyMs) {
 		stats.recordFailure(latencyMs);
 		if (properties.isEnabled()) {
 			stats.maybeEject(properties);
 		}
 	}
 
-	public boolean isEjected(String endpoint, long now) {
+	private boolean isEjected(Stats stats, long now) {
 		if (!properties.isEnabled()) {
 			return false;
 		}
-		Stats stats = statsMap.get(endpoint);
 		return stats != null && stats.isEjected(now, properties.getProbeIntervalMs());
 	}
 
-	public double getLatencyScore(String endpoint) {
-		Stats stats = statsMap.get(endpoint);
+	private double latencyScore(Stats stats) {
 		return stats != null ? stats.getEwmaLatency() : Double.NaN;
 	}
 
@@ -63,7 +109,7 @@ public class EndpointStatsRegistry {
 		return stats != null ? stats.getFailureCount() : 0;
 	}
 
-	private static final class Stats {
+	static final class Stats {
 
 		private final Object ewmaLock = new Object();
 		private double ewmaLatency;
@@ -28,7 +28,7 @@ public class P2cEwmaLoadBalancer implements LoadBalancer {
 		long now = System.currentTimeMillis();
 		List<ServiceURL> candidates = new ArrayList<>(urls.size());
 		for (ServiceURL url : urls) {
-			if (!endpointStatsRegistry.isEjected(url.getAddress(), now)) {
+			if (!endpointStatsRegistry.isEjected(url, now)) {
 				candidates.add(url);
 			}
 		}
@@ -93,7 +93,7 @@ public class P2cEwmaLoadBalancer implements LoadBalancer {
 	 * 分数越低表示服务质量越好
 	 */
 	private double calculateScore(ServiceURL url) {
-		double ewma = endpointStatsRegistry.getLatencyScore(url.getAddress());
+		double ewma = endpointStatsRegistry.getLatencyScore(url);
 		if (!Double.isNaN(ewma) && ewma > 0) {
 			return ewma;
 		}
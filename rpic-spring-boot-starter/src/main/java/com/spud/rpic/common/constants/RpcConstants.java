@@ -14,9 +14,14 @@ public class RpcConstants {
 	public static final byte PROTOCOL_MAGIC_NUMBER = 0X35;
 
 	/**
-	 * 协议版本号
+	 * 协议版本号，v2在消息头中携带标志位与64位请求ID
 	 */
-	public static final byte PROTOCOL_VERSION = 1;
+	public static final byte PROTOCOL_VERSION = 2;
+
+	/**
+	 * 旧版协议版本号，消息头不含请求ID，仍可被解码与响应
+	 */
+	public static final byte PROTOCOL_VERSION_V1 = 1;
 
 	/**
 	 * 请求消息类型 (1) 必须与MessageType.REQUEST一致
@@ -38,21 +43,79 @@ public class RpcConstants {
 	 */
 	public static final byte TYPE_ERROR = 0x4;
 
+	/**
+	 * 批量请求消息类型，消息体由多条请求依次拼接，格式见BatchFrames
+	 */
+	public static final byte TYPE_BATCH_REQUEST = 0x5;
+
+	/**
+	 * 批量响应消息类型，批量请求中同时完成的各请求响应合并写回
+	 */
+	public static final byte TYPE_BATCH_RESPONSE = 0x6;
+
+	/**
+	 * 流数据块，消息体为结果是元素列表的响应，请求ID即流ID。服务端发出的流以一条普通响应结束；
+	 * 客户端发出的流以结果为空的数据块结束，错误数据块表示发送方失败
+	 */
+	public static final byte TYPE_STREAM_CHUNK = 0x7;
+
+	/**
+	 * 流授信，接收方每消费一个数据块向发送方授予一个额度，消息体为4字节额度，非正数表示取消
+	 */
+	public static final byte TYPE_STREAM_CREDIT = 0x8;
+
+	/**
+	 * 带流式参数的请求，消息体与普通请求相同（流式参数位置为空），参数元素随后以同一请求ID的数据块发送
+	 */
+	public static final byte TYPE_STREAM_REQUEST = 0x9;
+
+	/**
+	 * 流的初始额度（数据块数），接收方最多缓存这么多个未消费的数据块
+	 */
+	public static final int STREAM_INITIAL_CREDIT = 4;
+
+	/**
+	 * 流式响应每个数据块默认包含的元素数
+	 */
+	public static final int DEFAULT_STREAM_CHUNK_SIZE = 64;
+
 	/**
 	 * 默认序列化器编码
 	 */
 	public static final byte DEFAULT_SERIALIZER = SerializerType.KRYO.getCode();
 
 	/**
-	 * 消息头长度：1(魔数) + 1(版本号) + 1(消息类型) + 1(序列化类型) + 4(内容长度)。
+	 * 消息头长度：1(魔数) + 1(版本号) + 1(消息类型) + 1(序列化类型) + 1(标志位) + 8(请求ID) + 4(内容长度)。
 	 */
-	public static final int HEADER_LENGTH = 1 + 1 + 1 + 1 + 4;
+	public static final int HEADER_LENGTH = 1 + 1 + 1 + 1 + 1 + 8 + 4;
+
+	/**
+	 * v1消息头长度：1(魔数) + 1(版本号) + 1(消息类型) + 1(序列化类型) + 4(内容长度)。
+	 */
+	public static final int HEADER_LENGTH_V1 = 1 + 1 + 1 + 1 + 4;
 
 	/**
 	 * 最大片段长度，默认 8MB。
 	 */
 	public static final int MAX_FRAME_LENGTH = 8 * 1024 * 1024;
 
+	/**
+	 * 标志位低4位：消息体的压缩类型编码，0表示未压缩。
+	 */
+	public static final int FLAG_COMPRESS_MASK = 0x0F;
+
+	/**
+	 * 标志位高4位：请求方可接受的响应压缩类型编码，响应原样回传。
+	 */
+	public static final int FLAG_ACCEPT_COMPRESS_MASK = 0xF0;
+
+	public static final int FLAG_ACCEPT_COMPRESS_SHIFT = 4;
+
+	/**
+	 * 解压后消息体的最大长度，默认 64MB，防止压缩炸弹。
+	 */
+	public static final int MAX_DECOMPRESSED_LENGTH = 64 * 1024 * 1024;
+
 	/**
 	 * 默认超时时间，3秒。
 	 */
@@ -0,0 +1,55 @@
+package com.spud.rpic.common.domain;
+
+import io.netty.util.Recycler;
+
+/**
+ * 对象池中的请求。请求由调用方独占，调用结束（包括全部重试）后调用{@link #recycle()}归还，
+ * 归还时清空请求的全部字段，不再持有参数等业务对象。
+ */
+public final class RecyclableRequest {
+
+	private static final Recycler<RecyclableRequest> RECYCLER = new Recycler<RecyclableRequest>() {
+		@Override
+		protected RecyclableRequest newObject(Handle<RecyclableRequest> handle) {
+			return new RecyclableRequest(handle);
+		}
+	};
+
+	private final Recycler.Handle<RecyclableRequest> handle;
+
+	private final RpcRequest request = new RpcRequest();
+
+	private RecyclableRequest(Recycler.Handle<RecyclableRequest> handle) {
+		this.handle = handle;
+	}
+
+	public static RecyclableRequest obtain() {
+		return RECYCLER.get();
+	}
+
+	public RpcRequest request() {
+		return request;
+	}
+
+	public void recycle() {
+		request.setRequestId(null);
+		request.setInterfaceName(null);
+		request.setInterfaceClass(null);
+		request.setMethodName(null);
+		request.setServiceKey(null);
+		request.setVersion(null);
+		request.setGroup(null);
+		request.setParameterTypes(null);
+		request.setMethodId(null);
+		request.setParameters(null);
+		request.setOneWay(false);
+		request.setTimeout(0);
+		request.setDeadlineAtMillis(null);
+		request.setAttempt(null);
+		request.setPreferredSerializer(null);
+		request.setHedgeDelayMs(null);
+		request.setStream(false);
+		request.setParameterStream(null);
+		handle.recycle(this);
+	}
+}
@@ -1,6 +1,7 @@
 package com.spud.rpic.common.domain;
 
 import java.io.Serializable;
+import java.util.Iterator;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -19,7 +20,7 @@ public class RpcRequest implements Serializable {
 	private static final long serialVersionUID = 1L;
 
 	/**
-	 * 请求ID
+	 * 请求ID，仅v1协议用于关联响应；v2协议的请求ID由消息头携带，此字段为空
 	 */
 	private String requestId;
 
@@ -54,6 +55,11 @@ public class RpcRequest implements Serializable {
 	 */
 	private Class<?>[] parameterTypes;
 
+	/**
+	 * 紧凑方法编号，见MethodIds；紧凑请求只携带该编号而不携带接口、方法名与参数类型
+	 */
+	private Integer methodId;
+
 	/**
 	 * 参数数组
 	 */
@@ -79,6 +85,80 @@ public class RpcRequest implements Serializable {
 	 */
 	private Integer attempt;
 
+	/**
+	 * 调用方为该引用指定的序列化类型，为空时按节点公布的类型协商；只在本端选择编码时使用，不写出
+	 */
+	private transient String preferredSerializer;
+
+	/**
+	 * 对冲延迟（毫秒），0表示按节点延迟自适应，为空表示不对冲；只在本端调度时使用，不写出
+	 */
+	private transient Long hedgeDelayMs;
+
+	/**
+	 * 方法是否声明为流式返回（Iterator或RpcStream），响应以数据块逐批到达；只在本端使用，不写出
+	 */
+	private transient boolean stream;
+
+	/**
+	 * 流式参数的元素：客户端为调用方传入的迭代器，服务端为接收中的流；只在本端使用，不写出
+	 */
+	private transient Iterator<?> parameterStream;
+
+	/**
+	 * 是否为仅携带方法编号的紧凑请求
+	 */
+	public boolean isCompact() {
+		return methodId != null && interfaceClass == null && interfaceName == null;
+	}
+
+	/**
+	 * 生成发送给已公布该方法编号节点的紧凑请求，原请求保持不变以便重试到其他节点
+	 */
+	public RpcRequest toCompactRequest() {
+		return compactInto(new RpcRequest());
+	}
+
+	/**
+	 * 将紧凑请求的字段写入compact并返回，compact的其余字段应为空
+	 */
+	public RpcRequest compactInto(RpcRequest compact) {
+		compact.setMethodId(methodId);
+		compact.setParameters(parameters);
+		compact.setOneWay(oneWay);
+		compact.setTimeout(timeout);
+		compact.setDeadlineAtMillis(deadlineAtMillis);
+		compact.setAttempt(attempt);
+		compact.setPreferredSerializer(preferredSerializer);
+		return compact;
+	}
+
+	/**
+	 * 复制一份可独立设置尝试信息的请求，参数数组共享；对冲时并发在途的请求各用一份
+	 */
+	public RpcRequest copy() {
+		RpcRequest copy = new RpcRequest();
+		copy.setRequestId(requestId);
+		copy.setInterfaceName(interfaceName);
+		copy.setInterfaceClass(interfaceClass);
+		copy.setMethodName(methodName);
+		copy.setServiceKey(serviceKey);
+		copy.setVersion(version);
+		copy.setGroup(group);
+		copy.setParameterTypes(parameterTypes);
+		copy.setMethodId(methodId);
+		copy.setParameters(parameters);
+		copy.setOneWay(oneWay);
+		copy.setTimeout(timeout);
+		copy.setDeadlineAtMillis(deadlineAtMillis);
+		copy.setAttempt(attempt);
+		copy.setPreferredSerializer(preferredSerializer);
+		copy.setHedgeDelayMs(hedgeDelayMs);
+		copy.setStream(stream);
+		copy.setParameterStream(parameterStream);
+		return copy;
+	}
+
 	/**
 	 * 获取服务标识
 	 */
@@ -86,6 +166,14 @@ public class RpcRequest implements Serializable {
 		if (serviceKey != null) {
 			return serviceKey;
 		}
+		serviceKey = buildServiceKey(group, interfaceName, version);
+		return serviceKey;
+	}
+
+	/**
+	 * 按分组、接口名与版本构建服务标识，格式为group/interfaceName:version
+	 */
+	public static String buildServiceKey(String group, String interfaceName, String version) {
 		StringBuilder buf = new StringBuilder();
 		if (group != null && !group.isEmpty()) {
 			buf.append(group).append("/");
@@ -94,8 +182,7 @@ public class RpcRequest implements Serializable {
 		if (version != null && !version.isEmpty()) {
 			buf.append(":").append(version);
 		}
-		serviceKey = buf.toString();
-		return serviceKey;
+		return buf.toString();
 	}
 
 	/**
@@ -0,0 +1,20 @@
+package com.spud.rpic.common.domain;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * 流式调用的结果。
+ * <p>
+ * 服务方法返回{@link Iterator}（或本接口）时，服务端按数据块逐批发送元素，客户端边接收边消费，
+ * 两端内存占用只与数据块大小相关而不随结果总量增长。客户端消费一个数据块才向服务端授予一个新额度，
+ * 消费变慢时服务端随之暂停。未读完即放弃时应调用{@link #close()}，以通知服务端停止发送。
+ */
+public interface RpcStream<T> extends Iterator<T>, Closeable {
+
+	/**
+	 * 取消流，已缓存的数据块被丢弃，服务端停止发送并关闭数据源
+	 */
+	@Override
+	void close();
+}
@@ -0,0 +1,17 @@
+package com.spud.rpic.common.exception;
+
+/**
+ * 消息体压缩或解压失败
+ */
+public class CompressException extends RpcException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CompressException(String message) {
+		super(400, message);
+	}
+
+	public CompressException(String message, Throwable cause) {
+		super(400, message, cause);
+	}
+}
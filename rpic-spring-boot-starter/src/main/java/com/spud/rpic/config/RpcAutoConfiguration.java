@@ -1,5 +1,7 @@
 package com.spud.rpic.config;
 
+import com.spud.rpic.io.compress.CompressorFactory;
+import com.spud.rpic.io.netty.CompressionCodec;
 import com.spud.rpic.io.serializer.Serializer;
 import com.spud.rpic.io.serializer.SerializerFactory;
 import com.spud.rpic.metrics.RpcMetricsRecorder;
@@ -7,6 +9,7 @@ import com.spud.rpic.property.RpcProperties;
 import com.spud.rpic.registry.NacosRegistry;
 import com.spud.rpic.registry.Registry;
 import com.spud.rpic.registry.ZookeeperRegistry;
+import com.spud.rpic.util.EnvelopeRecycling;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -22,6 +25,10 @@ import org.springframework.context.annotation.Configuration;
 @EnableConfigurationProperties(RpcProperties.class)
 public class RpcAutoConfiguration {
 
+	public RpcAutoConfiguration(RpcProperties rpcProperties) {
+		EnvelopeRecycling.setEnabled(rpcProperties.isRecycleEnvelopes());
+	}
+
 	@Bean
 	@ConditionalOnMissingBean
 	public SerializerFactory serializerFactory() {
@@ -34,6 +41,20 @@ public class RpcAutoConfiguration {
 		return serializerFactory().getSerializer(rpcProperties.getSerializeType());
 	}
 
+	@Bean
+	@ConditionalOnMissingBean
+	public CompressorFactory compressorFactory() {
+		return new CompressorFactory();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public CompressionCodec compressionCodec(CompressorFactory compressorFactory,
+		RpcProperties rpcProperties) {
+		return new CompressionCodec(compressorFactory, rpcProperties.getCompressType(),
+			rpcProperties.getCompressThreshold());
+	}
+
 	@Bean
 	@ConditionalOnMissingBean
 	public RpcMetricsRecorder rpcMetricsRecorder(ObjectProvider<MeterRegistry> meterRegistryProvider,
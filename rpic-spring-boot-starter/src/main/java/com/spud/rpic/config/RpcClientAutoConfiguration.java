@@ -7,6 +7,7 @@ import com.spud.rpic.cluster.LoadBalancer;
 import com.spud.rpic.cluster.LoadBalancerFactory;
 import com.spud.rpic.config.bean.RpcReferenceAnnotationProcessor;
 import com.spud.rpic.config.bean.ServiceStarter;
+import com.spud.rpic.io.netty.CompressionCodec;
 import com.spud.rpic.io.netty.client.ConnectionPool;
 import com.spud.rpic.io.netty.client.NettyNetClient;
 import com.spud.rpic.io.netty.client.RpcClientHandler;
@@ -39,9 +40,10 @@ public class RpcClientAutoConfiguration implements DisposableBean {
 	@Bean
 	@ConditionalOnMissingBean
 	@ConditionalOnBean(RpcClientHandler.class)
-	public RpcClientInitializer rpcClientInitializer(RpcClientHandler rpcClientHandler) {
+	public RpcClientInitializer rpcClientInitializer(RpcClientHandler rpcClientHandler,
+		CompressionCodec compressionCodec) {
 		boolean debugMode = Boolean.getBoolean("rpc.debug");
-		return new RpcClientInitializer(rpcClientHandler, debugMode);
+		return new RpcClientInitializer(rpcClientHandler, debugMode, compressionCodec);
 	}
 
 	@Bean
@@ -55,9 +57,10 @@ public class RpcClientAutoConfiguration implements DisposableBean {
 	@Bean
 	@ConditionalOnMissingBean
 	@ConditionalOnBean({ConnectionPool.class, RpcClientHandler.class})
-	public NettyNetClient rpcClient(ConnectionPool connectionPool,
+	public NettyNetClient rpcClient(RpcProperties properties, ConnectionPool connectionPool,
 		RpcClientHandler rpcClientHandler, RpcMetricsRecorder metricsRecorder) {
-		return new NettyNetClient(connectionPool, rpcClientHandler, metricsRecorder);
+		return new NettyNetClient(connectionPool, rpcClientHandler, metricsRecorder,
+			properties.getClient().getStreamSenderThreads());
 	}
 
 	@Bean
@@ -90,9 +93,9 @@ public class RpcClientAutoConfiguration implements DisposableBean {
 	public ClientInvocation clientInvocation(Registry registry, LoadBalancer loadBalancer,
 		NettyNetClient nettyNetClient, RpcProperties properties,
 		CircuitBreakerManager circuitBreakerManager,
-		EndpointStatsRegistry endpointStatsRegistry) {
+		EndpointStatsRegistry endpointStatsRegistry, RpcMetricsRecorder metricsRecorder) {
 		return new DefaultClientInvocation(registry, loadBalancer, nettyNetClient,
-			properties.getClient(), circuitBreakerManager, endpointStatsRegistry);
+			properties.getClient(), circuitBreakerManager, endpointStatsRegistry, metricsRecorder);
 	}
 
 	@Bean
@@ -103,8 +106,9 @@ public class RpcClientAutoConfiguration implements DisposableBean {
 
 	@Bean
 	@ConditionalOnMissingBean
-	public RpcReferenceAnnotationProcessor referenceInjector(ProxyFactory factory) {
-		return new RpcReferenceAnnotationProcessor(factory);
+	public RpcReferenceAnnotationProcessor referenceInjector(ProxyFactory factory,
+		SerializerFactory serializerFactory) {
+		return new RpcReferenceAnnotationProcessor(factory, serializerFactory);
 	}
 
 	@Bean
@@ -118,11 +122,7 @@ public class RpcClientAutoConfiguration implements DisposableBean {
 	@Bean
 	@ConditionalOnMissingBean
 	public SerializerFactory serializerFactory(RpcProperties properties) {
-		String whitelist = properties.getClient().getHessianWhitelist();
-		if (whitelist != null && !whitelist.isEmpty()) {
-			System.setProperty("rpic.hessian.whitelist", whitelist);
-		}
-		return new SerializerFactory();
+		return new SerializerFactory(properties.getClient().getHessianWhitelist());
 	}
 
 	@Override
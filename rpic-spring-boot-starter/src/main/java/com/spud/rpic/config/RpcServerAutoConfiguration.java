@@ -1,10 +1,14 @@
 package com.spud.rpic.config;
 
 import com.spud.rpic.config.bean.ServiceStarter;
+import com.spud.rpic.io.netty.CompressionCodec;
+import com.spud.rpic.io.netty.MessageSizePredictor;
 import com.spud.rpic.io.netty.server.NettyNetServer;
+import com.spud.rpic.io.netty.server.RpcServerExecutor;
 import com.spud.rpic.io.netty.server.RpcServerHandler;
 import com.spud.rpic.io.netty.server.RpcServerInitializer;
 import com.spud.rpic.io.netty.server.invocation.DefaultServerInvocation;
+import com.spud.rpic.io.netty.server.invocation.ServiceInvokerRegistry;
 import com.spud.rpic.io.serializer.Serializer;
 import com.spud.rpic.io.serializer.SerializerFactory;
 import com.spud.rpic.metrics.RpcMetricsRecorder;
@@ -40,8 +44,21 @@ public class RpcServerAutoConfiguration implements DisposableBean {
 
 	@Bean
 	@ConditionalOnMissingBean
-	public DefaultServerInvocation defaultServerInvocation(RpcProperties properties) {
-		return new DefaultServerInvocation(properties.getServer());
+	public ServiceInvokerRegistry serviceInvokerRegistry() {
+		return new ServiceInvokerRegistry();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public DefaultServerInvocation defaultServerInvocation(RpcProperties properties,
+		ServiceInvokerRegistry serviceInvokerRegistry) {
+		return new DefaultServerInvocation(properties.getServer(), serviceInvokerRegistry);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public RpcServerExecutor rpcServerExecutor(RpcProperties properties) {
+		return new RpcServerExecutor(properties.getServer());
 	}
 
 	@Bean
@@ -49,17 +66,24 @@ public class RpcServerAutoConfiguration implements DisposableBean {
 	public RpcServerHandler rpcServerHandler(Serializer serializer,
 		SerializerFactory serializerFactory,
 		DefaultServerInvocation defaultServerInvocation,
-		RpcMetricsRecorder metricsRecorder) {
+		RpcMetricsRecorder metricsRecorder,
+		RpcServerExecutor rpcServerExecutor, RpcProperties properties) {
 		return new RpcServerHandler(serializer, serializerFactory, defaultServerInvocation,
-			metricsRecorder);
+			metricsRecorder, rpcServerExecutor,
+			new MessageSizePredictor(metricsRecorder, "server"),
+			properties.getServer().getStreamChunkSize());
 	}
 
 	@Bean
 	@ConditionalOnMissingBean
-	public RpcServerInitializer rpcServerInitializer(RpcServerHandler rpcServerHandler) {
+	public RpcServerInitializer rpcServerInitializer(RpcServerHandler rpcServerHandler,
+		CompressionCodec compressionCodec, RpcProperties properties) {
 		// 启用调试模式
 		boolean debugMode = Boolean.getBoolean("rpc.debug");
-		return new RpcServerInitializer(rpcServerHandler, debugMode);
+		int flushConsolidationLimit = properties.getServer().isFlushConsolidation()
+			? properties.getServer().getFlushConsolidationLimit() : 0;
+		return new RpcServerInitializer(rpcServerHandler, debugMode, compressionCodec,
+			flushConsolidationLimit);
 	}
 
 	@Bean
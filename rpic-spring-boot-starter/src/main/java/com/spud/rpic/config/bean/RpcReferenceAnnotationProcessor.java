@@ -1,6 +1,8 @@
 package com.spud.rpic.config.bean;
 
 import com.spud.rpic.annotation.RpcReference;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.io.serializer.SerializerFactory;
 import com.spud.rpic.proxy.ProxyFactory;
 import java.lang.reflect.Field;
 import lombok.extern.slf4j.Slf4j;
@@ -16,8 +18,16 @@ public class RpcReferenceAnnotationProcessor implements BeanPostProcessor {
 
 	private final ProxyFactory proxyFactory;
 
+	private final SerializerFactory serializerFactory;
+
 	public RpcReferenceAnnotationProcessor(ProxyFactory proxyFactory) {
+		this(proxyFactory, null);
+	}
+
+	public RpcReferenceAnnotationProcessor(ProxyFactory proxyFactory,
+		SerializerFactory serializerFactory) {
 		this.proxyFactory = proxyFactory;
+		this.serializerFactory = serializerFactory;
 	}
 
 	@Override
@@ -33,6 +43,11 @@ public class RpcReferenceAnnotationProcessor implements BeanPostProcessor {
 
 	private void processRpcReferenceField(Object bean, Field field, RpcReference reference) {
 		Class<?> interfaceType = field.getType();
+		if (serializerFactory != null) {
+			// 在代理可用之前登记服务接口，保证首个请求即使用与服务端一致的类型编号与方法签名
+			serializerFactory.registerService(RpcRequest.buildServiceKey(reference.group(),
+				interfaceType.getName(), reference.version()), interfaceType);
+		}
 		try {
 			Object proxy = proxyFactory.createProxy(interfaceType, reference);
 			field.setAccessible(true);
@@ -6,17 +6,26 @@ import static com.spud.rpic.util.CommonUtils.buildServiceMetadata;
 
 import com.spud.rpic.annotation.RpcReference;
 import com.spud.rpic.annotation.RpcService;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.io.compress.CompressorFactory;
 import com.spud.rpic.io.netty.server.NettyNetServer;
+import com.spud.rpic.io.netty.server.invocation.ServiceInvokerRegistry;
+import com.spud.rpic.io.serializer.SerializerFactory;
 import com.spud.rpic.model.ServiceMetadata;
 import com.spud.rpic.property.RpcProperties;
 import com.spud.rpic.registry.DefaultServiceChangeListener;
 import com.spud.rpic.registry.Registry;
+import com.spud.rpic.util.CodecNegotiation;
+import com.spud.rpic.util.MethodIds;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
@@ -68,6 +77,10 @@ public class ServiceStarter implements ApplicationListener<ContextRefreshedEvent
 				// 判断角色，决定启动哪些组件
 				if (ROLE_SERVER.equals(role)) {
 					log.info("Starting RPC server with role: {}", role);
+					// 启动前构建服务调用器表，避免请求路径上查找Bean与反射
+					registerInvokers(context);
+					// 与客户端登记相同接口的类型，使序列化类型编号一致
+					registerSerializerTypes(context);
 					// 服务端需要启动Netty服务器
 					startNettyServer(context);
 					// 服务端需要注册服务
@@ -102,9 +115,18 @@ public class ServiceStarter implements ApplicationListener<ContextRefreshedEvent
 				// 添加服务器地址信息
 				String host = InetAddress.getLocalHost().getHostAddress();
 				int port = rpcProperties.getServer().getPort();
+				ServiceInvokerRegistry invokerRegistry = context
+					.getBeanProvider(ServiceInvokerRegistry.class).getIfAvailable();
+				Map<String, String> codecs = advertisedCodecs(context);
 				providers.forEach(metadata -> {
 					metadata.setHost(host);
 					metadata.setPort(port);
+					// 公布可按紧凑编号调用的方法，客户端据此发送紧凑请求
+					if (invokerRegistry != null) {
+						advertiseMethodIds(metadata, invokerRegistry);
+					}
+					// 公布可接受的序列化与压缩类型，客户端按节点协商
+					advertiseCodecs(metadata, codecs);
 					// 设置协议信息，确保不为空
 					if (metadata.getProtocol() == null || metadata.getProtocol().isEmpty()) {
 						metadata.setProtocol("rpic");
@@ -120,6 +142,96 @@ public class ServiceStarter implements ApplicationListener<ContextRefreshedEvent
 		}
 	}
 
+	private void registerInvokers(ApplicationContext context) {
+		ServiceInvokerRegistry invokerRegistry = context.getBeanProvider(ServiceInvokerRegistry.class)
+			.getIfAvailable();
+		if (invokerRegistry == null) {
+			log.warn("ServiceInvokerRegistry bean not found, service methods will be resolved on first call");
+			return;
+		}
+		Map<String, Object> serviceBeans = context.getBeansWithAnnotation(RpcService.class);
+		serviceBeans.forEach((beanName, bean) -> {
+			RpcService annotation = bean.getClass().getAnnotation(RpcService.class);
+			if (annotation != null) {
+				ServiceMetadata metadata = buildServiceMetadata(annotation, bean);
+				String serviceKey = RpcRequest.buildServiceKey(metadata.getGroup(),
+					metadata.getInterfaceName(), metadata.getVersion());
+				invokerRegistry.register(serviceKey, metadata.getInterfaceClass(), bean);
+			}
+		});
+		log.info("Built {} method invokers for {} RPC services", invokerRegistry.size(),
+			serviceBeans.size());
+	}
+
+	private void registerSerializerTypes(ApplicationContext context) {
+		SerializerFactory serializerFactory = context.getBeanProvider(SerializerFactory.class)
+			.getIfAvailable();
+		if (serializerFactory == null) {
+			return;
+		}
+		context.getBeansWithAnnotation(RpcService.class).forEach((beanName, bean) -> {
+			RpcService annotation = bean.getClass().getAnnotation(RpcService.class);
+			if (annotation != null) {
+				ServiceMetadata metadata = buildServiceMetadata(annotation, bean);
+				serializerFactory.registerService(RpcRequest.buildServiceKey(metadata.getGroup(),
+					metadata.getInterfaceName(), metadata.getVersion()), metadata.getInterfaceClass());
+			}
+		});
+	}
+
+	private void advertiseMethodIds(ServiceMetadata metadata,
+		ServiceInvokerRegistry invokerRegistry) {
+		String serviceKey = RpcRequest.buildServiceKey(metadata.getGroup(),
+			metadata.getInterfaceName(), metadata.getVersion());
+		List<Integer> methodIds = invokerRegistry.getAdvertisedMethodIds(serviceKey);
+		if (methodIds.isEmpty()) {
+			return;
+		}
+		Map<String, String> parameters = metadata.getParameters() != null
+			? new HashMap<>(metadata.getParameters()) : new HashMap<>();
+		parameters.put(MethodIds.PARAMETER_KEY, MethodIds.format(methodIds));
+		metadata.setParameters(parameters);
+	}
+
+	private Map<String, String> advertisedCodecs(ApplicationContext context) {
+		Map<String, String> codecs = new HashMap<>();
+		SerializerFactory serializerFactory = context.getBeanProvider(SerializerFactory.class)
+			.getIfAvailable();
+		if (serializerFactory != null) {
+			Set<String> serializers = new LinkedHashSet<>();
+			serializers.add(rpcProperties.getSerializeType().toLowerCase());
+			rpcProperties.getServer().getSerializers()
+				.forEach(type -> serializers.add(type.toLowerCase()));
+			serializers.removeIf(type -> {
+				if (serializerFactory.hasSerializer(type)) {
+					return false;
+				}
+				log.warn("Serializer {} is not available, skip advertising it", type);
+				return true;
+			});
+			if (!serializers.isEmpty()) {
+				codecs.put(CodecNegotiation.SERIALIZERS_KEY, CodecNegotiation.format(serializers));
+			}
+		}
+		CompressorFactory compressorFactory = context.getBeanProvider(CompressorFactory.class)
+			.getIfAvailable();
+		if (compressorFactory != null) {
+			codecs.put(CodecNegotiation.COMPRESSORS_KEY,
+				CodecNegotiation.format(compressorFactory.getTypes()));
+		}
+		return codecs;
+	}
+
+	private void advertiseCodecs(ServiceMetadata metadata, Map<String, String> codecs) {
+		if (codecs.isEmpty()) {
+			return;
+		}
+		Map<String, String> parameters = metadata.getParameters() != null
+			? new HashMap<>(metadata.getParameters()) : new HashMap<>();
+		parameters.putAll(codecs);
+		metadata.setParameters(parameters);
+	}
+
 	private void subscribeServices(ApplicationContext context) {
 		try {
 			List<ServiceMetadata> consumers = new ArrayList<>();
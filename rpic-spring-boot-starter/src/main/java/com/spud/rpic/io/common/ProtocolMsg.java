@@ -1,17 +1,37 @@
 package com.spud.rpic.io.common;
 
 import com.spud.rpic.common.constants.RpcConstants;
-import lombok.AllArgsConstructor;
+import com.spud.rpic.util.EnvelopeRecycling;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.Recycler;
+import io.netty.util.ReferenceCounted;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 
 /**
  * 基础协议消息，包含头部和消息内容。
+ * <p>
+ * 消息体既可以由byte[]承载，也可以由ByteBuf承载。ByteBuf承载时消息持有该缓冲区的一个引用，
+ * 随消息一同释放，从而让解码出的帧切片与序列化器直接写入的池化缓冲区无需额外复制。
+ * <p>
+ * 开启信封回收时由{@link #newInstance}创建的消息取自对象池，消息体最后一次释放后归还，
+ * 此后不应再访问该消息。
  */
 @Data
-@AllArgsConstructor
 @ToString
-public class ProtocolMsg {
+public class ProtocolMsg implements ReferenceCounted {
+
+	private static final Recycler<ProtocolMsg> RECYCLER = new Recycler<ProtocolMsg>() {
+		@Override
+		protected ProtocolMsg newObject(Handle<ProtocolMsg> handle) {
+			return new ProtocolMsg(handle);
+		}
+	};
 
 	/**
 	 * 魔数，用于快速校验。
@@ -33,43 +53,233 @@ public class ProtocolMsg {
 	 */
 	private byte serializerType;
 
+	/**
+	 * 标志位，v1协议恒为0。
+	 */
+	private byte flags;
+
+	/**
+	 * 请求ID，由客户端按连接无关的递增序列生成，响应原样回传；v1协议恒为0。
+	 */
+	private long requestId;
+
 	/**
 	 * 消息体长度。
 	 */
 	private int contentLength;
 
 	/**
-	 * 消息体内容。
+	 * 消息体内容，消息体由ByteBuf承载时为null。
 	 */
 	private byte[] content;
 
 	/**
-	 * 消息头长度：1(魔数) + 1(版本号) + 1(消息类型) + 1(序列化类型) + 4(内容长度)。
+	 * 由ByteBuf承载的消息体，消息释放时一并释放。
+	 */
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	private ByteBuf body;
+
+	/**
+	 * 对象池句柄，直接创建的消息为null
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	private final Recycler.Handle<ProtocolMsg> handle;
+
+	public ProtocolMsg(byte magicNumber, byte version, byte type, byte serializerType, byte flags,
+		long requestId, int contentLength, byte[] content, ByteBuf body) {
+		this.handle = null;
+		set(magicNumber, version, type, serializerType, flags, requestId, contentLength, content, body);
+	}
+
+	private ProtocolMsg(Recycler.Handle<ProtocolMsg> handle) {
+		this.handle = handle;
+	}
+
+	/**
+	 * 创建消息，开启信封回收且消息体由ByteBuf承载时取自对象池
 	 */
+	public static ProtocolMsg newInstance(byte magicNumber, byte version, byte type,
+		byte serializerType, byte flags, long requestId, int contentLength, byte[] content,
+		ByteBuf body) {
+		if (body == null || !EnvelopeRecycling.isEnabled()) {
+			return new ProtocolMsg(magicNumber, version, type, serializerType, flags, requestId,
+				contentLength, content, body);
+		}
+		ProtocolMsg msg = RECYCLER.get();
+		msg.set(magicNumber, version, type, serializerType, flags, requestId, contentLength, content,
+			body);
+		return msg;
+	}
+
+	private void set(byte magicNumber, byte version, byte type, byte serializerType, byte flags,
+		long requestId, int contentLength, byte[] content, ByteBuf body) {
+		this.magicNumber = magicNumber;
+		this.version = version;
+		this.type = type;
+		this.serializerType = serializerType;
+		this.flags = flags;
+		this.requestId = requestId;
+		this.contentLength = contentLength;
+		this.content = content;
+		this.body = body;
+	}
 
-	public static ProtocolMsg fromBytes(byte[] bytes, byte type, byte serializerType) {
+	public static ProtocolMsg fromBytes(long requestId, byte[] bytes, byte type,
+		byte serializerType) {
 		return new ProtocolMsg(RpcConstants.PROTOCOL_MAGIC_NUMBER, RpcConstants.PROTOCOL_VERSION,
-			type, serializerType, bytes.length, bytes);
+			type, serializerType, (byte) 0, requestId, bytes.length, bytes, null);
 	}
 
-	public static ProtocolMsg fromBytes(byte[] bytes, byte serializerType) {
-		return fromBytes(bytes, RpcConstants.TYPE_REQUEST, serializerType);
+	public static ProtocolMsg fromBytes(long requestId, byte[] bytes, byte serializerType) {
+		return fromBytes(requestId, bytes, RpcConstants.TYPE_REQUEST, serializerType);
 	}
 
-	public static ProtocolMsg fromBytes(byte[] bytes) {
-		return fromBytes(bytes, RpcConstants.DEFAULT_SERIALIZER);
+	public static ProtocolMsg fromBytes(long requestId, byte[] bytes) {
+		return fromBytes(requestId, bytes, RpcConstants.DEFAULT_SERIALIZER);
 	}
 
-	public static ProtocolMsg responseFromBytes(byte[] bytes, byte serializerType) {
-		return fromBytes(bytes, RpcConstants.TYPE_RESPONSE, serializerType);
+	/**
+	 * 以ByteBuf作为消息体创建请求，消息接管body的引用
+	 */
+	public static ProtocolMsg fromBuf(long requestId, ByteBuf body, byte serializerType) {
+		return newInstance(RpcConstants.PROTOCOL_MAGIC_NUMBER, RpcConstants.PROTOCOL_VERSION,
+			RpcConstants.TYPE_REQUEST, serializerType, (byte) 0, requestId, body.readableBytes(), null,
+			body);
 	}
 
-	public static ProtocolMsg responseFromBytes(byte[] bytes) {
-		return responseFromBytes(bytes, RpcConstants.DEFAULT_SERIALIZER);
+	/**
+	 * 以ByteBuf作为消息体创建带流式参数的请求，消息接管body的引用
+	 */
+	public static ProtocolMsg streamRequest(long requestId, ByteBuf body, byte serializerType) {
+		return newInstance(RpcConstants.PROTOCOL_MAGIC_NUMBER, RpcConstants.PROTOCOL_VERSION,
+			RpcConstants.TYPE_STREAM_REQUEST, serializerType, (byte) 0, requestId,
+			body.readableBytes(), null, body);
+	}
+
+	/**
+	 * 创建对指定请求的响应，沿用请求的协议版本与请求ID，使旧版客户端仍能解析；
+	 * 请求标志位中的可接受压缩类型一并回传，供压缩层决定响应的压缩方式
+	 */
+	public static ProtocolMsg responseFor(ProtocolMsg request, byte[] bytes, byte serializerType) {
+		return new ProtocolMsg(RpcConstants.PROTOCOL_MAGIC_NUMBER, request.getVersion(),
+			RpcConstants.TYPE_RESPONSE, serializerType, acceptedCompression(request),
+			request.getRequestId(), bytes.length, bytes, null);
+	}
+
+	/**
+	 * 以ByteBuf作为消息体创建对指定请求的响应，消息接管body的引用
+	 */
+	public static ProtocolMsg responseFor(ProtocolMsg request, ByteBuf body, byte serializerType) {
+		return newInstance(RpcConstants.PROTOCOL_MAGIC_NUMBER, request.getVersion(),
+			RpcConstants.TYPE_RESPONSE, serializerType, acceptedCompression(request),
+			request.getRequestId(), body.readableBytes(), null, body);
+	}
+
+	/**
+	 * 创建流式响应的数据块，消息接管body的引用
+	 */
+	public static ProtocolMsg streamChunkFor(ProtocolMsg request, ByteBuf body, byte serializerType) {
+		return newInstance(RpcConstants.PROTOCOL_MAGIC_NUMBER, request.getVersion(),
+			RpcConstants.TYPE_STREAM_CHUNK, serializerType, acceptedCompression(request),
+			request.getRequestId(), body.readableBytes(), null, body);
+	}
+
+	/**
+	 * 创建客户端发出的流数据块，消息接管body的引用
+	 */
+	public static ProtocolMsg streamChunk(long requestId, ByteBuf body, byte serializerType) {
+		return newInstance(RpcConstants.PROTOCOL_MAGIC_NUMBER, RpcConstants.PROTOCOL_VERSION,
+			RpcConstants.TYPE_STREAM_CHUNK, serializerType, (byte) 0, requestId, body.readableBytes(),
+			null, body);
+	}
+
+	/**
+	 * 创建流的授信消息，credits非正数表示取消该流
+	 */
+	public static ProtocolMsg streamCredit(long requestId, int credits) {
+		byte[] bytes = new byte[]{(byte) (credits >>> 24), (byte) (credits >>> 16),
+			(byte) (credits >>> 8), (byte) credits};
+		return new ProtocolMsg(RpcConstants.PROTOCOL_MAGIC_NUMBER, RpcConstants.PROTOCOL_VERSION,
+			RpcConstants.TYPE_STREAM_CREDIT, RpcConstants.DEFAULT_SERIALIZER, (byte) 0, requestId,
+			bytes.length, bytes, null);
+	}
+
+	private static byte acceptedCompression(ProtocolMsg request) {
+		return (byte) (request.getFlags() & RpcConstants.FLAG_ACCEPT_COMPRESS_MASK);
 	}
 
 	public static ProtocolMsg heartBeat() {
 		return new ProtocolMsg(RpcConstants.PROTOCOL_MAGIC_NUMBER, RpcConstants.PROTOCOL_VERSION,
-			RpcConstants.TYPE_HEARTBEAT, RpcConstants.DEFAULT_SERIALIZER, 0, new byte[0]);
+			RpcConstants.TYPE_HEARTBEAT, RpcConstants.DEFAULT_SERIALIZER, (byte) 0, 0L, 0, new byte[0],
+			null);
+	}
+
+	/**
+	 * 消息体的只读视图，不改变消息自身持有缓冲区的读索引；byte[]承载的消息体被包装而不复制
+	 */
+	public ByteBuf contentBuf() {
+		if (body != null) {
+			return body.duplicate();
+		}
+		return content != null ? Unpooled.wrappedBuffer(content) : Unpooled.EMPTY_BUFFER;
+	}
+
+	@Override
+	public int refCnt() {
+		return body != null ? body.refCnt() : 1;
+	}
+
+	@Override
+	public ProtocolMsg retain() {
+		if (body != null) {
+			body.retain();
+		}
+		return this;
+	}
+
+	@Override
+	public ProtocolMsg retain(int increment) {
+		if (body != null) {
+			body.retain(increment);
+		}
+		return this;
+	}
+
+	@Override
+	public ProtocolMsg touch() {
+		if (body != null) {
+			body.touch();
+		}
+		return this;
+	}
+
+	@Override
+	public ProtocolMsg touch(Object hint) {
+		if (body != null) {
+			body.touch(hint);
+		}
+		return this;
+	}
+
+	@Override
+	public boolean release() {
+		return body != null && recycleIfDeallocated(body.release());
+	}
+
+	@Override
+	public boolean release(int decrement) {
+		return body != null && recycleIfDeallocated(body.release(decrement));
+	}
+
+	private boolean recycleIfDeallocated(boolean deallocated) {
+		if (deallocated && handle != null) {
+			set((byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0, 0L, 0, null, null);
+			handle.recycle(this);
+		}
+		return deallocated;
 	}
-}
\ No newline at end of file
+}
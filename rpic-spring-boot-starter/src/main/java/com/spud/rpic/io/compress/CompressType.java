@@ -0,0 +1,43 @@
+package com.spud.rpic.io.compress;
+
+import lombok.Getter;
+
+/**
+ * 压缩类型，编码写入消息头标志位的低4位
+ */
+@Getter
+public enum CompressType {
+	NONE("NONE", (byte) 0),
+	GZIP("GZIP", (byte) 1),
+	LZ4("LZ4", (byte) 2),
+	SNAPPY("SNAPPY", (byte) 3);
+
+	private final String type;
+	private final byte code;
+
+	CompressType(String type, byte code) {
+		this.type = type;
+		this.code = code;
+	}
+
+	public static CompressType fromType(String type) {
+		if (type == null || type.isEmpty()) {
+			return NONE;
+		}
+		for (CompressType compressType : values()) {
+			if (compressType.type.equalsIgnoreCase(type)) {
+				return compressType;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported compress type: " + type);
+	}
+
+	public static CompressType fromCode(byte code) {
+		for (CompressType compressType : values()) {
+			if (compressType.code == code) {
+				return compressType;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported compress code: " + code);
+	}
+}
@@ -0,0 +1,32 @@
+package com.spud.rpic.io.compress;
+
+import com.spud.rpic.common.exception.CompressException;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 消息体压缩器，直接在ByteBuf之间读写
+ */
+public interface Compressor {
+
+	/**
+	 * 压缩in的全部可读字节并写入out
+	 */
+	void compress(ByteBuf in, ByteBuf out) throws CompressException;
+
+	/**
+	 * 解压in的全部可读字节并写入out，解压后长度超过maxLength时失败
+	 */
+	void decompress(ByteBuf in, ByteBuf out, int maxLength) throws CompressException;
+
+	/**
+	 * 获取压缩类型
+	 */
+	String getType();
+
+	/**
+	 * 获取压缩类型编码
+	 */
+	default byte getCode() {
+		return CompressType.fromType(getType()).getCode();
+	}
+}
@@ -0,0 +1,69 @@
+package com.spud.rpic.io.compress;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压缩器工厂，按类型名或消息头中的编码查找压缩器
+ */
+public class CompressorFactory {
+
+	private final Map<String, Compressor> compressorMap = new HashMap<>();
+	private final Map<Byte, Compressor> compressorCodeMap = new HashMap<>();
+
+	public CompressorFactory() {
+		addCompressor(new GzipCompressor());
+		addCompressor(new Lz4Compressor());
+		addCompressor(new SnappyCompressor());
+	}
+
+	public void addCompressor(Compressor compressor) {
+		compressorMap.put(compressor.getType().toUpperCase(), compressor);
+		compressorCodeMap.put(compressor.getCode(), compressor);
+	}
+
+	/**
+	 * 是否支持指定的压缩类型
+	 */
+	public boolean hasCompressor(String type) {
+		return type != null && compressorMap.containsKey(type.toUpperCase());
+	}
+
+	/**
+	 * 支持的压缩类型名，不含NONE
+	 */
+	public List<String> getTypes() {
+		return new ArrayList<>(compressorMap.keySet());
+	}
+
+	/**
+	 * 按类型名查找压缩器，NONE返回null
+	 */
+	public Compressor getCompressor(String type) {
+		if (CompressType.fromType(type) == CompressType.NONE) {
+			return null;
+		}
+		Compressor compressor = compressorMap.get(type.toUpperCase());
+		if (compressor == null) {
+			throw new IllegalArgumentException("Compressor not found for type: " + type);
+		}
+		return compressor;
+	}
+
+	/**
+	 * 按消息头中的编码查找压缩器，不支持时返回null
+	 */
+	public Compressor findCompressor(byte code) {
+		return compressorCodeMap.get(code);
+	}
+
+	public Compressor getCompressor(byte code) {
+		Compressor compressor = compressorCodeMap.get(code);
+		if (compressor == null) {
+			throw new IllegalArgumentException("Compressor not found for code: " + code);
+		}
+		return compressor;
+	}
+}
@@ -0,0 +1,46 @@
+package com.spud.rpic.io.compress;
+
+import com.spud.rpic.common.exception.CompressException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 基于JDK的gzip压缩，压缩率较高但CPU开销最大
+ */
+public class GzipCompressor implements Compressor {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	@Override
+	public void compress(ByteBuf in, ByteBuf out) throws CompressException {
+		try (GZIPOutputStream gzip = new GZIPOutputStream(new ByteBufOutputStream(out), BUFFER_SIZE)) {
+			in.readBytes(gzip, in.readableBytes());
+		} catch (IOException e) {
+			throw new CompressException("Error compressing data", e);
+		}
+	}
+
+	@Override
+	public void decompress(ByteBuf in, ByteBuf out, int maxLength) throws CompressException {
+		int start = out.writerIndex();
+		try (GZIPInputStream gzip = new GZIPInputStream(new ByteBufInputStream(in), BUFFER_SIZE)) {
+			while (out.writeBytes(gzip, BUFFER_SIZE) > 0) {
+				if (out.writerIndex() - start > maxLength) {
+					throw new CompressException(
+						"Decompressed length exceeds limit " + maxLength);
+				}
+			}
+		} catch (IOException e) {
+			throw new CompressException("Error decompressing data", e);
+		}
+	}
+
+	@Override
+	public String getType() {
+		return CompressType.GZIP.getType();
+	}
+}
@@ -0,0 +1,66 @@
+package com.spud.rpic.io.compress;
+
+import com.spud.rpic.common.exception.CompressException;
+import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * LZ4块压缩，格式为4字节原始长度 + LZ4块；压缩与解压速度最快，适合作为默认选择
+ */
+public class Lz4Compressor implements Compressor {
+
+	private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+
+	private final LZ4Compressor compressor = FACTORY.fastCompressor();
+
+	private final LZ4SafeDecompressor decompressor = FACTORY.safeDecompressor();
+
+	@Override
+	public void compress(ByteBuf in, ByteBuf out) throws CompressException {
+		int length = in.readableBytes();
+		int maxCompressedLength = compressor.maxCompressedLength(length);
+		out.writeInt(length);
+		out.ensureWritable(maxCompressedLength);
+		try {
+			ByteBuffer src = in.nioBuffer(in.readerIndex(), length);
+			ByteBuffer dest = out.nioBuffer(out.writerIndex(), maxCompressedLength);
+			int written = compressor.compress(src, 0, length, dest, 0, maxCompressedLength);
+			out.writerIndex(out.writerIndex() + written);
+			in.skipBytes(length);
+		} catch (LZ4Exception e) {
+			throw new CompressException("Error compressing data", e);
+		}
+	}
+
+	@Override
+	public void decompress(ByteBuf in, ByteBuf out, int maxLength) throws CompressException {
+		int length = in.readInt();
+		if (length < 0 || length > maxLength) {
+			throw new CompressException("Invalid decompressed length: " + length);
+		}
+		out.ensureWritable(length);
+		try {
+			int compressedLength = in.readableBytes();
+			ByteBuffer src = in.nioBuffer(in.readerIndex(), compressedLength);
+			ByteBuffer dest = out.nioBuffer(out.writerIndex(), length);
+			int written = decompressor.decompress(src, 0, compressedLength, dest, 0, length);
+			if (written != length) {
+				throw new CompressException(
+					"Decompressed length mismatch, expected " + length + " but was " + written);
+			}
+			out.writerIndex(out.writerIndex() + written);
+			in.skipBytes(compressedLength);
+		} catch (LZ4Exception e) {
+			throw new CompressException("Error decompressing data", e);
+		}
+	}
+
+	@Override
+	public String getType() {
+		return CompressType.LZ4.getType();
+	}
+}
@@ -0,0 +1,52 @@
+package com.spud.rpic.io.compress;
+
+import com.spud.rpic.common.exception.CompressException;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.compression.Snappy;
+
+/**
+ * 基于Netty纯Java实现的Snappy原始格式压缩，无需本地库
+ */
+public class SnappyCompressor implements Compressor {
+
+	@Override
+	public void compress(ByteBuf in, ByteBuf out) throws CompressException {
+		// Snappy实例在编解码时保存状态，每次使用新实例以保证线程安全
+		new Snappy().encode(in, out, in.readableBytes());
+	}
+
+	@Override
+	public void decompress(ByteBuf in, ByteBuf out, int maxLength) throws CompressException {
+		int length = peekUncompressedLength(in);
+		if (length < 0 || length > maxLength) {
+			throw new CompressException("Invalid decompressed length: " + length);
+		}
+		out.ensureWritable(length);
+		try {
+			new Snappy().decode(in, out);
+		} catch (DecoderException e) {
+			throw new CompressException("Error decompressing data", e);
+		}
+	}
+
+	/**
+	 * 读取Snappy前导的varint原始长度，不移动读索引
+	 */
+	private static int peekUncompressedLength(ByteBuf in) {
+		int result = 0;
+		for (int i = 0; i < 5 && in.readerIndex() + i < in.writerIndex(); i++) {
+			int b = in.getUnsignedByte(in.readerIndex() + i);
+			result |= (b & 0x7F) << (7 * i);
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String getType() {
+		return CompressType.SNAPPY.getType();
+	}
+}
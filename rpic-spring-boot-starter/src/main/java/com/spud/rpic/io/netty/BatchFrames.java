@@ -0,0 +1,89 @@
+package com.spud.rpic.io.netty;
+
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.common.exception.RpcException;
+import com.spud.rpic.io.common.ProtocolMsg;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量帧的拼接与拆分。
+ * <p>
+ * 批量帧沿用普通消息头，消息体依次拼接各条消息：8字节请求ID + 1字节序列化类型 + 4字节长度 + 消息体。
+ * 压缩作用于整个批量帧，各条消息的标志位不单独携带。
+ */
+public final class BatchFrames {
+
+	/**
+	 * 每条消息在批量帧中的头部长度
+	 */
+	public static final int ENTRY_HEADER_LENGTH = 8 + 1 + 4;
+
+	private BatchFrames() {
+	}
+
+	/**
+	 * 将多条消息拼接为一个批量帧，各条消息在拼接后释放
+	 */
+	public static ProtocolMsg join(ByteBufAllocator alloc, List<ProtocolMsg> parts, byte type,
+		byte flags) {
+		int length = 0;
+		for (ProtocolMsg part : parts) {
+			length += ENTRY_HEADER_LENGTH + part.getContentLength();
+		}
+		ByteBuf body = alloc.ioBuffer(length);
+		try {
+			for (ProtocolMsg part : parts) {
+				body.writeLong(part.getRequestId());
+				body.writeByte(part.getSerializerType());
+				ByteBuf content = part.contentBuf();
+				body.writeInt(content.readableBytes());
+				body.writeBytes(content);
+			}
+		} catch (RuntimeException e) {
+			body.release();
+			throw e;
+		} finally {
+			for (ProtocolMsg part : parts) {
+				part.release();
+			}
+		}
+		byte serializerType = parts.isEmpty() ? RpcConstants.DEFAULT_SERIALIZER
+			: parts.get(0).getSerializerType();
+		return ProtocolMsg.newInstance(RpcConstants.PROTOCOL_MAGIC_NUMBER,
+			RpcConstants.PROTOCOL_VERSION, type, serializerType, flags, 0L, body.readableBytes(), null,
+			body);
+	}
+
+	/**
+	 * 将批量帧拆分为type类型的单条消息，各消息体为批量帧的切片并各自持有引用，批量帧本身由调用方释放
+	 */
+	public static List<ProtocolMsg> split(ProtocolMsg batch, byte type) {
+		ByteBuf content = batch.contentBuf();
+		List<ProtocolMsg> parts = new ArrayList<>();
+		try {
+			while (content.isReadable()) {
+				if (content.readableBytes() < ENTRY_HEADER_LENGTH) {
+					throw new RpcException("Truncated batch entry header");
+				}
+				long requestId = content.readLong();
+				byte serializerType = content.readByte();
+				int length = content.readInt();
+				if (length < 0 || length > content.readableBytes()) {
+					throw new RpcException("Invalid batch entry length: " + length);
+				}
+				ByteBuf body = content.readRetainedSlice(length);
+				parts.add(ProtocolMsg.newInstance(batch.getMagicNumber(), batch.getVersion(), type,
+					serializerType, (byte) 0, requestId, length, null, body));
+			}
+		} catch (RuntimeException e) {
+			for (ProtocolMsg part : parts) {
+				part.release();
+			}
+			throw e;
+		}
+		return parts;
+	}
+}
@@ -0,0 +1,157 @@
+package com.spud.rpic.io.netty;
+
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.common.exception.CompressException;
+import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.compress.CompressType;
+import com.spud.rpic.io.compress.Compressor;
+import com.spud.rpic.io.compress.CompressorFactory;
+import com.spud.rpic.util.CodecNegotiation;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.util.AttributeKey;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 消息体压缩层，位于协议编解码器与业务处理器之间，按消息逐条协商。
+ * <p>
+ * 标志位低4位标识当前消息体的压缩类型，高4位携带请求方可接受的响应压缩类型：
+ * 请求使用本端配置的压缩类型并在高4位声明同一类型，响应沿用请求声明的类型；
+ * 小于阈值的消息体、心跳与v1协议消息不压缩。
+ * <p>
+ * 连接上设置了对端公布的压缩类型时，请求改用双方协商出的类型，见{@link CodecNegotiation}。
+ */
+@Slf4j
+@Sharable
+public class CompressionCodec extends MessageToMessageCodec<ProtocolMsg, ProtocolMsg> {
+
+	/**
+	 * 对端在注册中心公布的压缩类型参数值，由客户端发送请求前按目标节点设置
+	 */
+	public static final AttributeKey<String> PEER_COMPRESSORS = AttributeKey.valueOf(
+		"rpic.peerCompressors");
+
+	private final CompressorFactory compressorFactory;
+
+	/**
+	 * 本端发送请求时使用的压缩器，为null表示不压缩请求也不要求压缩响应
+	 */
+	private final Compressor requestCompressor;
+
+	private final int threshold;
+
+	/**
+	 * 对端公布的参数值 -> 协商出的请求压缩器，不压缩时为Optional空值
+	 */
+	private final Map<String, Optional<Compressor>> negotiated = new ConcurrentHashMap<>();
+
+	public CompressionCodec(CompressorFactory compressorFactory, String compressType,
+		int threshold) {
+		this.compressorFactory = compressorFactory;
+		this.requestCompressor = compressorFactory.getCompressor(compressType);
+		this.threshold = threshold;
+	}
+
+	@Override
+	protected void encode(ChannelHandlerContext ctx, ProtocolMsg msg, List<Object> out) {
+		if (!isCompressible(msg)) {
+			out.add(msg.retain());
+			return;
+		}
+
+		Compressor compressor;
+		int acceptFlags;
+		if (msg.getType() == RpcConstants.TYPE_REQUEST
+			|| msg.getType() == RpcConstants.TYPE_BATCH_REQUEST
+			|| msg.getType() == RpcConstants.TYPE_STREAM_REQUEST) {
+			compressor = requestCompressor(ctx);
+			acceptFlags = compressor == null ? 0
+				: compressor.getCode() << RpcConstants.FLAG_ACCEPT_COMPRESS_SHIFT;
+		} else {
+			acceptFlags = msg.getFlags() & RpcConstants.FLAG_ACCEPT_COMPRESS_MASK;
+			int code = acceptFlags >>> RpcConstants.FLAG_ACCEPT_COMPRESS_SHIFT;
+			compressor = code == 0 ? null : compressorFactory.findCompressor((byte) code);
+			if (compressor == null && code != 0) {
+				// 请求方声明了本端不支持的类型，响应不压缩发送，高4位随之清空
+				log.debug("Unsupported accepted compression code {} for message {}, sending uncompressed",
+					code, msg.getRequestId());
+				acceptFlags = 0;
+			}
+		}
+
+		if (compressor == null || msg.getContentLength() < threshold) {
+			msg.setFlags((byte) acceptFlags);
+			out.add(msg.retain());
+			return;
+		}
+
+		ByteBuf compressed = ctx.alloc().ioBuffer(msg.getContentLength() / 2);
+		try {
+			compressor.compress(msg.contentBuf(), compressed);
+		} catch (RuntimeException e) {
+			compressed.release();
+			throw e;
+		}
+		log.debug("Compressed message {} with {}: {} -> {} bytes", msg.getRequestId(),
+			compressor.getType(), msg.getContentLength(), compressed.readableBytes());
+		out.add(withBody(msg, (byte) (acceptFlags | compressor.getCode()), compressed));
+	}
+
+	@Override
+	protected void decode(ChannelHandlerContext ctx, ProtocolMsg msg, List<Object> out) {
+		int code = msg.getFlags() & RpcConstants.FLAG_COMPRESS_MASK;
+		if (code == 0 || msg.getVersion() == RpcConstants.PROTOCOL_VERSION_V1) {
+			out.add(msg.retain());
+			return;
+		}
+
+		Compressor compressor = compressorFactory.findCompressor((byte) code);
+		if (compressor == null) {
+			log.warn("Unsupported compression code {} in message {}", code, msg.getRequestId());
+			ctx.fireExceptionCaught(new DecompressException(msg,
+				new CompressException("Unsupported compression code: " + code)));
+			return;
+		}
+		ByteBuf decompressed = ctx.alloc().ioBuffer(msg.getContentLength() * 2);
+		try {
+			compressor.decompress(msg.contentBuf(), decompressed,
+				RpcConstants.MAX_DECOMPRESSED_LENGTH);
+		} catch (RuntimeException e) {
+			decompressed.release();
+			// 只影响这一条消息：交给业务处理器按请求ID回复或失败对应请求，而不是让调用方等到超时
+			log.warn("Failed to decompress message {} with {}", msg.getRequestId(), compressor.getType(), e);
+			ctx.fireExceptionCaught(new DecompressException(msg, e));
+			return;
+		}
+		out.add(withBody(msg, (byte) (msg.getFlags() & ~RpcConstants.FLAG_COMPRESS_MASK),
+			decompressed));
+	}
+
+	private Compressor requestCompressor(ChannelHandlerContext ctx) {
+		String peerCompressors = ctx.channel().attr(PEER_COMPRESSORS).get();
+		if (requestCompressor == null || peerCompressors == null) {
+			return requestCompressor;
+		}
+		return negotiated.computeIfAbsent(peerCompressors, advertised -> {
+			CompressType selected = CodecNegotiation.selectCompressor(advertised,
+				CompressType.fromCode(requestCompressor.getCode()), compressorFactory::hasCompressor);
+			return Optional.ofNullable(compressorFactory.getCompressor(selected.getType()));
+		}).orElse(null);
+	}
+
+	private static boolean isCompressible(ProtocolMsg msg) {
+		return msg.getVersion() != RpcConstants.PROTOCOL_VERSION_V1
+			&& msg.getType() != RpcConstants.TYPE_HEARTBEAT;
+	}
+
+	private static ProtocolMsg withBody(ProtocolMsg msg, byte flags, ByteBuf body) {
+		return ProtocolMsg.newInstance(msg.getMagicNumber(), msg.getVersion(), msg.getType(),
+			msg.getSerializerType(), flags, msg.getRequestId(), body.readableBytes(), null, body);
+	}
+}
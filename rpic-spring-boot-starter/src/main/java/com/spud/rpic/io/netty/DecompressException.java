@@ -0,0 +1,27 @@
+package com.spud.rpic.io.netty;
+
+import com.spud.rpic.common.exception.CompressException;
+import com.spud.rpic.io.common.ProtocolMsg;
+
+/**
+ * 消息体解压失败，携带原消息的消息头，后续处理器据此只失败对应的请求而不必关闭连接
+ */
+public class DecompressException extends CompressException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient ProtocolMsg header;
+
+	public DecompressException(ProtocolMsg msg, Throwable cause) {
+		super("Failed to decompress message " + msg.getRequestId(), cause);
+		this.header = new ProtocolMsg(msg.getMagicNumber(), msg.getVersion(), msg.getType(),
+			msg.getSerializerType(), msg.getFlags(), msg.getRequestId(), 0, new byte[0], null);
+	}
+
+	/**
+	 * 原消息的消息头，不含消息体
+	 */
+	public ProtocolMsg getHeader() {
+		return header;
+	}
+}
@@ -0,0 +1,60 @@
+package com.spud.rpic.io.netty;
+
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.flush.FlushConsolidationHandler;
+
+/**
+ * 合并flush并统计每次实际flush写出的消息数。
+ * <p>
+ * 业务侧仍按消息调用writeAndFlush，由FlushConsolidationHandler在读循环结束时或累计到指定次数后
+ * 才真正flush；I/O线程之外提交的写入也会被合并到同一个延迟flush任务中。本处理器位于其与Head之间，
+ * 只能看到真正下发到Socket的flush。
+ */
+public class FlushBatchHandler extends ChannelOutboundHandlerAdapter {
+
+	private final RpcMetricsRecorder metricsRecorder;
+
+	private final String side;
+
+	// 仅在Channel所属的EventLoop中访问
+	private int pendingWrites;
+
+	public FlushBatchHandler(RpcMetricsRecorder metricsRecorder, String side) {
+		this.metricsRecorder = metricsRecorder;
+		this.side = side;
+	}
+
+	/**
+	 * 在管道最前端加入flush合并，limit为两次实际flush之间最多合并的flush次数，小于等于0表示不启用
+	 */
+	public static void install(ChannelPipeline pipeline, int limit,
+		RpcMetricsRecorder metricsRecorder, String side) {
+		if (limit <= 0) {
+			return;
+		}
+		pipeline.addFirst("flushConsolidation", new FlushConsolidationHandler(limit, true));
+		if (metricsRecorder != null && metricsRecorder.isEnabled()) {
+			pipeline.addFirst("flushBatch", new FlushBatchHandler(metricsRecorder, side));
+		}
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+		throws Exception {
+		pendingWrites++;
+		super.write(ctx, msg, promise);
+	}
+
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception {
+		if (pendingWrites > 0) {
+			metricsRecorder.recordFlushBatch(side, pendingWrites);
+			pendingWrites = 0;
+		}
+		super.flush(ctx);
+	}
+}
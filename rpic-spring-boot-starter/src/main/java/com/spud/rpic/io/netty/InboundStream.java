@@ -0,0 +1,149 @@
+package com.spud.rpic.io.netty;
+
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.domain.RpcStream;
+import com.spud.rpic.common.exception.RpcException;
+import com.spud.rpic.common.exception.TimeoutException;
+import com.spud.rpic.io.common.ProtocolMsg;
+import io.netty.channel.Channel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接收中的流：客户端为流式调用的结果，服务端为流式参数。I/O线程放入数据块，消费方线程逐个取出，
+ * 每取出一个数据块向对端授予一个额度，缓存的数据块数因此不超过初始额度。等待下一个数据块超过超时时间时抛出超时异常。
+ */
+public final class InboundStream<T> implements RpcStream<T> {
+
+	private static final Object END = new Object();
+
+	private final Channel channel;
+	private final long requestId;
+	// 流所属请求的方法编号，数据块据此还原元素的声明类型
+	private final Integer methodId;
+	private volatile int timeout;
+	private final Runnable onClose;
+	// 元素列表、END或失败原因
+	private final BlockingQueue<Object> chunks = new LinkedBlockingQueue<>();
+
+	// 以下字段仅由调用方线程访问
+	private Iterator<?> current = Collections.emptyIterator();
+	private RuntimeException failure;
+	private boolean done;
+
+	public InboundStream(Channel channel, long requestId, Integer methodId, int timeout,
+		Runnable onClose) {
+		this.channel = channel;
+		this.requestId = requestId;
+		this.methodId = methodId;
+		this.timeout = timeout;
+		this.onClose = onClose;
+	}
+
+	/**
+	 * 服务端在解码请求头后按调用超时调整等待时间
+	 */
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	public Channel getChannel() {
+		return channel;
+	}
+
+	public Integer getMethodId() {
+		return methodId;
+	}
+
+	public void onChunk(List<?> elements) {
+		chunks.offer(elements);
+	}
+
+	/**
+	 * 以结束消息结束流：错误消息使流失败；结果非空时作为最后一个数据块，兼容不支持流式的服务端直接返回的集合结果
+	 */
+	public void onEnd(RpcResponse response) {
+		if (Boolean.TRUE.equals(response.getError())) {
+			chunks.offer(new RpcException(response.getErrorMsg()));
+			return;
+		}
+		Object result = response.getResult();
+		if (result instanceof Collection) {
+			chunks.offer(result);
+		} else if (result != null) {
+			chunks.offer(Collections.singletonList(result));
+		}
+		chunks.offer(END);
+	}
+
+	public void fail(Throwable cause) {
+		chunks.offer(cause);
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			if (failure != null) {
+				throw failure;
+			}
+			if (done) {
+				return false;
+			}
+			Object item;
+			try {
+				item = chunks.poll(timeout, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RpcException("Interrupted while waiting for stream chunk", e);
+			}
+			if (item == null) {
+				close();
+				failure = new TimeoutException(
+					"No stream chunk within " + timeout + "ms, requestId: " + requestId);
+			} else if (item == END) {
+				done = true;
+			} else if (item instanceof Throwable) {
+				done = true;
+				onClose.run();
+				failure = item instanceof RpcException ? (RpcException) item
+					: new RpcException("Stream failed: " + ((Throwable) item).getMessage(),
+						(Throwable) item);
+			} else {
+				current = ((Collection<?>) item).iterator();
+				if (channel.isActive()) {
+					channel.writeAndFlush(ProtocolMsg.streamCredit(requestId, 1));
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return (T) current.next();
+	}
+
+	@Override
+	public void close() {
+		if (done) {
+			return;
+		}
+		done = true;
+		current = Collections.emptyIterator();
+		chunks.clear();
+		onClose.run();
+		if (channel.isActive()) {
+			channel.writeAndFlush(ProtocolMsg.streamCredit(requestId, 0));
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.spud.rpic.io.netty;
+
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按服务方法预估消息体大小，用于向连接分配器申请恰好够用的缓冲区。
+ * <p>
+ * 每个方法维护一个与Netty {@code AdaptiveRecvByteBufAllocator}相同思路的档位：
+ * 实际大小超过预估时立即跳到能容纳它的档位并多留几档余量，连续两次明显偏小才降一档，
+ * 大列表接口因此不再反复扩容复制，偶发的小消息也不会让预估来回抖动。
+ */
+public class MessageSizePredictor {
+
+	private static final String UNKNOWN = "unknown";
+
+	private final ConcurrentMap<String, ConcurrentMap<String, SizeEstimate>> estimates =
+		new ConcurrentHashMap<>();
+
+	private final RpcMetricsRecorder metricsRecorder;
+
+	/**
+	 * client或server，作为指标标签
+	 */
+	private final String side;
+
+	public MessageSizePredictor(RpcMetricsRecorder metricsRecorder, String side) {
+		this.metricsRecorder = metricsRecorder;
+		this.side = side;
+	}
+
+	/**
+	 * 获取方法的预估，首次使用时创建并登记指标
+	 */
+	public SizeEstimate estimate(String serviceKey, String methodName) {
+		String service = serviceKey != null ? serviceKey : UNKNOWN;
+		String method = methodName != null ? methodName : UNKNOWN;
+		ConcurrentMap<String, SizeEstimate> methods = estimates.get(service);
+		if (methods == null) {
+			methods = estimates.computeIfAbsent(service, key -> new ConcurrentHashMap<>());
+		}
+		SizeEstimate estimate = methods.get(method);
+		if (estimate != null) {
+			return estimate;
+		}
+		return methods.computeIfAbsent(method, key -> {
+			SizeEstimate created = new SizeEstimate();
+			if (metricsRecorder != null) {
+				metricsRecorder.registerBufferEstimateGauge(side, service, key, created::nextSize);
+			}
+			return created;
+		});
+	}
+
+	/**
+	 * 单个方法的消息体大小预估。多个线程并发记录时不加锁，偶尔丢失一次调整不影响预估
+	 */
+	public static final class SizeEstimate {
+
+		private static final int INITIAL_SIZE = 256;
+
+		/**
+		 * 预估上限，更大的消息仍由缓冲区按需扩容，避免为偶发的超大消息长期预留内存
+		 */
+		private static final int MAX_SIZE = 4 * 1024 * 1024;
+
+		private static final int INDEX_INCREMENT = 2;
+
+		private static final int INDEX_DECREMENT = 1;
+
+		private static final int[] SIZE_TABLE;
+
+		static {
+			List<Integer> sizes = new ArrayList<>();
+			for (int size = 16; size < 512; size += 16) {
+				sizes.add(size);
+			}
+			for (int size = 512; size <= MAX_SIZE; size <<= 1) {
+				sizes.add(size);
+			}
+			SIZE_TABLE = sizes.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		private volatile int index;
+
+		private volatile int nextSize;
+
+		private boolean decreaseNow;
+
+		SizeEstimate() {
+			this.index = indexOf(INITIAL_SIZE);
+			this.nextSize = SIZE_TABLE[index];
+		}
+
+		/**
+		 * 下一条消息的预估大小
+		 */
+		public int nextSize() {
+			return nextSize;
+		}
+
+		/**
+		 * 记录一条消息的实际大小并调整预估
+		 */
+		public void record(int actualSize) {
+			int current = index;
+			if (actualSize <= SIZE_TABLE[Math.max(0, current - INDEX_DECREMENT)]) {
+				if (decreaseNow) {
+					update(Math.max(current - INDEX_DECREMENT, 0));
+				} else {
+					decreaseNow = true;
+				}
+			} else if (actualSize > nextSize) {
+				update(Math.min(Math.max(current + INDEX_INCREMENT, indexOf(actualSize)),
+					SIZE_TABLE.length - 1));
+			}
+		}
+
+		private void update(int newIndex) {
+			index = newIndex;
+			nextSize = SIZE_TABLE[newIndex];
+			decreaseNow = false;
+		}
+
+		/**
+		 * 能容纳size的最小档位，超过上限时返回最后一档
+		 */
+		private static int indexOf(int size) {
+			int low = 0;
+			int high = SIZE_TABLE.length - 1;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (SIZE_TABLE[mid] < size) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+}
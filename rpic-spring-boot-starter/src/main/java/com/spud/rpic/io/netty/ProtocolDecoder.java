@@ -3,6 +3,7 @@ package com.spud.rpic.io.netty;
 import com.spud.rpic.common.constants.RpcConstants;
 import com.spud.rpic.io.common.ProtocolMsg;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import java.util.List;
@@ -24,8 +25,8 @@ public class ProtocolDecoder extends ByteToMessageDecoder {
 				ctx.channel().id().asShortText(), byteBufToHexString(in, Math.min(in.readableBytes(), 50)));
 		}
 
-		// 确保有足够的字节可读
-		if (in.readableBytes() < RpcConstants.HEADER_LENGTH) {
+		// 确保至少有v1消息头的字节可读，v2的完整头部长度在读取版本号后再确认
+		if (in.readableBytes() < RpcConstants.HEADER_LENGTH_V1) {
 			log.debug("Channel[{}] Not enough bytes for header, waiting for more data. Available: {}",
 				ctx.channel().id().asShortText(), in.readableBytes());
 			return;
@@ -54,10 +55,29 @@ public class ProtocolDecoder extends ByteToMessageDecoder {
 			return;
 		}
 
-		// 读取版本和类型
+		// 读取版本，并根据版本确认消息头是否完整
 		byte version = in.readByte();
+		if (version != RpcConstants.PROTOCOL_VERSION && version != RpcConstants.PROTOCOL_VERSION_V1) {
+			log.error("Channel[{}] Unsupported protocol version: {}", ctx.channel().id().asShortText(),
+				version);
+			in.resetReaderIndex();
+			in.skipBytes(1);
+			skipInvalidBytes(ctx, in);
+			return;
+		}
+		boolean v1 = version == RpcConstants.PROTOCOL_VERSION_V1;
+		int headerLength = v1 ? RpcConstants.HEADER_LENGTH_V1 : RpcConstants.HEADER_LENGTH;
+		if (in.readableBytes() < headerLength - 2) {
+			in.resetReaderIndex();
+			log.debug("Channel[{}] Not enough bytes for v{} header, waiting for more data",
+				ctx.channel().id().asShortText(), version);
+			return;
+		}
+
 		byte type = in.readByte();
 		byte serializerType = in.readByte();
+		byte flags = v1 ? 0 : in.readByte();
+		long requestId = v1 ? 0L : in.readLong();
 
 		// 打印类型信息
 		log.debug(
@@ -86,29 +106,21 @@ public class ProtocolDecoder extends ByteToMessageDecoder {
 			return;
 		}
 
-		// 读取内容
-		byte[] content;
-		if (contentLength > 0) {
-			content = new byte[contentLength];
-			in.readBytes(content);
-			log.debug("Channel[{}] Read content bytes, length: {}, first few bytes: {}",
-				ctx.channel().id().asShortText(), contentLength,
-				bytesToHex(content, 0, Math.min(20, content.length)));
-		} else {
-			content = new byte[0];
-			log.debug("Channel[{}] Read empty content (length=0)", ctx.channel().id().asShortText());
-		}
+		// 以保留引用的切片承载消息体，避免复制到byte[]，切片随消息释放
+		ByteBuf body = contentLength > 0 ? in.readRetainedSlice(contentLength) : Unpooled.EMPTY_BUFFER;
+		log.debug("Channel[{}] Read content slice, length: {}", ctx.channel().id().asShortText(),
+			contentLength);
 
 		// 创建消息对象
-		ProtocolMsg protocolMsg = new ProtocolMsg(magicNumber, version, type, serializerType,
-			contentLength, content);
+		ProtocolMsg protocolMsg = ProtocolMsg.newInstance(magicNumber, version, type, serializerType,
+			flags, requestId, contentLength, null, body);
 		log.debug(
-			"Channel[{}] Decoded ProtocolMsg: magic=0x{}, version={}, type={} (hex: 0x{}), contentLength={}",
+			"Channel[{}] Decoded ProtocolMsg: magic=0x{}, version={}, type={} (hex: 0x{}), requestId={}, contentLength={}",
 			ctx.channel().id().asShortText(),
 			Integer.toHexString(magicNumber & 0xFF),
 			version,
 			type, Integer.toHexString(type & 0xFF),
-			contentLength);
+			requestId, contentLength);
 
 		// 验证解码的消息是否符合标准类型常量
 		validateMessageType(ctx, protocolMsg);
@@ -150,7 +162,12 @@ public class ProtocolDecoder extends ByteToMessageDecoder {
 		boolean isValid = type == RpcConstants.TYPE_REQUEST ||
 			type == RpcConstants.TYPE_RESPONSE ||
 			type == RpcConstants.TYPE_HEARTBEAT ||
-			type == RpcConstants.TYPE_ERROR;
+			type == RpcConstants.TYPE_ERROR ||
+			type == RpcConstants.TYPE_BATCH_REQUEST ||
+			type == RpcConstants.TYPE_BATCH_RESPONSE ||
+			type == RpcConstants.TYPE_STREAM_CHUNK ||
+			type == RpcConstants.TYPE_STREAM_CREDIT ||
+			type == RpcConstants.TYPE_STREAM_REQUEST;
 
 		if (!isValid) {
 			log.warn("Channel[{}] Message type {} (hex: 0x{}) is not a standard type constant",
@@ -166,17 +183,6 @@ public class ProtocolDecoder extends ByteToMessageDecoder {
 		}
 	}
 
-	/**
-	 * 将字节数组转换为十六进制字符串
-	 */
-	private String bytesToHex(byte[] bytes, int offset, int length) {
-		StringBuilder sb = new StringBuilder();
-		for (int i = offset; i < offset + length && i < bytes.length; i++) {
-			sb.append(String.format("%02X ", bytes[i] & 0xFF));
-		}
-		return sb.toString();
-	}
-
 	/**
 	 * 将ByteBuf转换为十六进制字符串用于调试
 	 */
@@ -1,9 +1,12 @@
 package com.spud.rpic.io.netty;
 
+import com.spud.rpic.common.constants.RpcConstants;
 import com.spud.rpic.io.common.ProtocolMsg;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -11,28 +14,57 @@ import lombok.extern.slf4j.Slf4j;
  * @date 2025/2/9
  */
 @Slf4j
-public class ProtocolEncoder extends MessageToByteEncoder<ProtocolMsg> {
+public class ProtocolEncoder extends MessageToMessageEncoder<ProtocolMsg> {
+
+	/**
+	 * 小于该长度的ByteBuf消息体直接复制到头部缓冲区，避免为小消息构造组合缓冲区
+	 */
+	private static final int COPY_THRESHOLD = 1024;
 
 	@Override
-	protected void encode(ChannelHandlerContext ctx, ProtocolMsg msg, ByteBuf out) throws Exception {
-		log.debug("Channel[{}] Encoding ProtocolMsg: type={} (hex: 0x{}), contentLength={}",
+	protected void encode(ChannelHandlerContext ctx, ProtocolMsg msg, List<Object> out)
+		throws Exception {
+		log.debug("Channel[{}] Encoding ProtocolMsg: type={} (hex: 0x{}), requestId={}, contentLength={}",
 			ctx.channel().id().asShortText(), msg.getType(),
-			Integer.toHexString(msg.getType() & 0xFF), msg.getContentLength());
+			Integer.toHexString(msg.getType() & 0xFF), msg.getRequestId(), msg.getContentLength());
+
+		ByteBuf body = msg.getBody();
+		boolean inlineBody = body == null || body.readableBytes() < COPY_THRESHOLD;
+		int headerLength = msg.getVersion() == RpcConstants.PROTOCOL_VERSION_V1
+			? RpcConstants.HEADER_LENGTH_V1 : RpcConstants.HEADER_LENGTH;
+		ByteBuf header = ctx.alloc().ioBuffer(headerLength + (inlineBody ? msg.getContentLength() : 0));
 
 		// 写入协议头部
-		out.writeByte(msg.getMagicNumber());
-		out.writeByte(msg.getVersion());
-		out.writeByte(msg.getType());
-		out.writeByte(msg.getSerializerType());
-		out.writeInt(msg.getContentLength());
-
-		// 写入消息体
-		if (msg.getContent() != null && msg.getContentLength() > 0) {
-			out.writeBytes(msg.getContent());
+		header.writeByte(msg.getMagicNumber());
+		header.writeByte(msg.getVersion());
+		header.writeByte(msg.getType());
+		header.writeByte(msg.getSerializerType());
+		if (msg.getVersion() != RpcConstants.PROTOCOL_VERSION_V1) {
+			header.writeByte(msg.getFlags());
+			header.writeLong(msg.getRequestId());
+		}
+		header.writeInt(msg.getContentLength());
+
+		// 写入消息体：byte[]与小消息体直接写入，大消息体与头部组合发送而不复制
+		if (body != null) {
+			if (inlineBody) {
+				header.writeBytes(body, body.readerIndex(), body.readableBytes());
+				out.add(header);
+			} else {
+				CompositeByteBuf frame = ctx.alloc().compositeDirectBuffer(2);
+				// 编码完成后消息会被释放，组合缓冲区需要持有消息体自己的引用
+				frame.addComponents(true, header, body.retainedDuplicate());
+				out.add(frame);
+			}
+		} else {
+			if (msg.getContent() != null && msg.getContentLength() > 0) {
+				header.writeBytes(msg.getContent());
+			}
+			out.add(header);
 		}
 
-		log.debug("Channel[{}] Encoded ProtocolMsg, buffer size: {}, type: {} (hex: 0x{})",
-			ctx.channel().id().asShortText(), out.readableBytes(), msg.getType(),
+		log.debug("Channel[{}] Encoded ProtocolMsg, frame size: {}, type: {} (hex: 0x{})",
+			ctx.channel().id().asShortText(), headerLength + msg.getContentLength(), msg.getType(),
 			Integer.toHexString(msg.getType() & 0xFF));
 	}
-}
\ No newline at end of file
+}
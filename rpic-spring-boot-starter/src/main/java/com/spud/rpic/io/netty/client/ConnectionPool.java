@@ -1,6 +1,8 @@
 package com.spud.rpic.io.netty.client;
 
+import com.spud.rpic.cluster.Endpoint;
 import com.spud.rpic.common.exception.RpcException;
+import com.spud.rpic.io.netty.CompressionCodec;
 import com.spud.rpic.metrics.RpcMetricsRecorder;
 import com.spud.rpic.model.ServiceURL;
 import com.spud.rpic.property.RpcClientProperties;
@@ -8,6 +10,7 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.AdaptiveRecvByteBufAllocator;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.WriteBufferWaterMark;
@@ -20,6 +23,7 @@ import io.netty.channel.pool.ChannelHealthChecker;
 import io.netty.channel.pool.FixedChannelPool;
 import io.netty.channel.pool.SimpleChannelPool;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.Future;
 import java.net.InetSocketAddress;
 import java.util.HashMap;
 import java.util.Map;
@@ -55,8 +59,20 @@ public class ConnectionPool {
 
 	private final boolean debugMode;
 
+	private final CompressionCodec compressionCodec;
+
+	private final int flushConsolidationLimit;
+
 	private final RpcMetricsRecorder metricsRecorder;
 
+	private final boolean multiplexed;
+
+	private final Map<InetSocketAddress, MultiplexedChannelGroup> multiplexedGroups = new ConcurrentHashMap<>();
+
+	private final Map<String, AddressEntry> entries = new ConcurrentHashMap<>();
+
+	private final Bootstrap multiplexedBootstrap;
+
 	public ConnectionPool(RpcClientProperties clientProperties, RpcClientInitializer initializer,
 		RpcMetricsRecorder metricsRecorder) {
 		this.poolProperties = clientProperties.getConnectionPoolProperties();
@@ -67,7 +83,11 @@ public class ConnectionPool {
 		int maxPendingAcquires = poolProperties.getMaxPendingAcquires();
 		this.sharedHandler = initializer.getSharedHandler();
 		this.debugMode = Boolean.getBoolean("rpc.debug");
+		this.compressionCodec = initializer.getCompressionCodec();
+		this.flushConsolidationLimit = clientProperties.isFlushConsolidation()
+			? clientProperties.getFlushConsolidationLimit() : 0;
 		this.metricsRecorder = metricsRecorder;
+		this.multiplexed = poolProperties.isMultiplexed();
 
 		this.epollEnabled = clientProperties.isUseEpoll() && Epoll.isAvailable();
 
@@ -103,6 +123,25 @@ public class ConnectionPool {
 			bootstrap.option(ChannelOption.SO_RCVBUF, clientProperties.getRcvBuf());
 		}
 
+		// 多路复用模式下连接不归还连接池，直接复用池化处理器的管道初始化逻辑
+		// 批量发送只作用于多路复用连接：连接池模式下每个连接同一时刻只承载一个请求，无从合并
+		RpcClientProperties.BatchProperties batch = clientProperties.getBatch();
+		final RpcChannelPoolHandler multiplexedChannelHandler = new RpcChannelPoolHandler(sharedHandler,
+			debugMode, compressionCodec, flushConsolidationLimit, metricsRecorder,
+			batch.isEnabled() ? batch : null);
+		multiplexedBootstrap = bootstrap.clone().handler(new ChannelInitializer<Channel>() {
+			@Override
+			protected void initChannel(Channel ch) {
+				multiplexedChannelHandler.channelCreated(ch);
+			}
+		});
+		if (multiplexed) {
+			log.info("ConnectionPool running in multiplexed mode with {} connection(s) per address",
+				poolProperties.getMultiplexConnectionsPerAddress());
+		} else if (batch.isEnabled()) {
+			log.warn("Request batching is enabled but only takes effect on multiplexed connections");
+		}
+
 		poolMap = new AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool>() {
 			@Override
 			protected FixedChannelPool newPool(InetSocketAddress address) {
@@ -119,7 +158,8 @@ public class ConnectionPool {
 
 				return new FixedChannelPool(
 					newBootstrap,
-					new RpcChannelPoolHandler(sharedHandler, debugMode),
+					new RpcChannelPoolHandler(sharedHandler, debugMode, compressionCodec,
+						flushConsolidationLimit, metricsRecorder),
 					ChannelHealthChecker.ACTIVE,
 					FixedChannelPool.AcquireTimeoutAction.FAIL,
 					acquireTimeout,
@@ -136,93 +176,117 @@ public class ConnectionPool {
 		return poolMap.get(address);
 	}
 
-	public Channel acquireChannel(ServiceURL serviceUrl) throws Exception {
+	/**
+	 * 获取地址条目。已绑定端点句柄时条目缓存在句柄上，否则按host:port查表，均不再逐次创建InetSocketAddress
+	 */
+	private AddressEntry entryOf(ServiceURL serviceUrl) {
+		Endpoint endpoint = serviceUrl.endpoint();
+		if (endpoint == null) {
+			AddressEntry entry = entries.get(serviceUrl.getAddress());
+			return entry != null ? entry : entries.computeIfAbsent(serviceUrl.getAddress(),
+				key -> newEntry(serviceUrl.toInetAddress()));
+		}
+		Object attachment = endpoint.getTransportAttachment();
+		if (attachment instanceof AddressEntry && ((AddressEntry) attachment).owner == this) {
+			return (AddressEntry) attachment;
+		}
+		AddressEntry entry = entries.computeIfAbsent(endpoint.getAddress(),
+			key -> newEntry(endpoint.getSocketAddress()));
+		endpoint.setTransportAttachment(entry);
+		return entry;
+	}
+
+	private AddressEntry newEntry(InetSocketAddress address) {
+		if (multiplexed) {
+			// 计数器由建组时创建，先建组再读取，不依赖实参求值顺序
+			MultiplexedChannelGroup group = getMultiplexedGroup(address);
+			AtomicInteger counter = connectionCounter.get(address);
+			return new AddressEntry(this, address, null, group, counter);
+		}
+		SimpleChannelPool pool = getPool(address);
+		return new AddressEntry(this, address, pool, null,
+			connectionCounter.computeIfAbsent(address, key -> new AtomicInteger()));
+	}
+
+	private void checkServiceUrl(ServiceURL serviceUrl) {
 		if (serviceUrl == null) {
 			throw new RpcException("ServiceURL cannot be null");
 		}
-
 		if (serviceUrl.getHost() == null || serviceUrl.getHost().isEmpty()) {
 			throw new RpcException("Service host cannot be null or empty: " + serviceUrl);
 		}
+	}
+
+	public Channel acquireChannel(ServiceURL serviceUrl) throws Exception {
+		checkServiceUrl(serviceUrl);
 
-		InetSocketAddress address = serviceUrl.toInetAddress();
-		log.debug("Acquiring channel for address: {}", address);
+		AddressEntry entry = entryOf(serviceUrl);
+		log.debug("Acquiring channel for address: {}", entry.address);
 
-		SimpleChannelPool pool = getPool(address);
-		if (pool == null) {
-			recordPoolAcquireFailure(address);
-			throw new RpcException("Failed to get channel pool for address: " + address);
+		if (multiplexed) {
+			return acquireMultiplexedChannel(entry);
 		}
 
+		SimpleChannelPool pool = entry.pool;
 		try {
 			Channel channel = pool.acquire().get(acquireTimeout, TimeUnit.MILLISECONDS);
 
 
 			if (!channel.isActive()) {
 				pool.release(channel);
-				recordPoolAcquireFailure(address);
+				recordPoolAcquireFailure(entry.tag);
 				throw new RpcException("Channel is not active");
 			}
 
 			// 记录连接数（仅在确认 channel 活跃后）
-			AtomicInteger counter = connectionCounter.computeIfAbsent(address, k -> new AtomicInteger(0));
-			counter.incrementAndGet();
+			entry.counter.incrementAndGet();
 
-			recordPoolAcquireSuccess(address);
-			log.debug("Successfully acquired channel for address: {}, channel: {}", address, channel);
+			recordPoolAcquireSuccess(entry.tag);
+			log.debug("Successfully acquired channel for address: {}, channel: {}", entry.address, channel);
 			return channel;
 		} catch (Exception e) {
-			recordPoolAcquireFailure(address);
-			log.error("Failed to acquire channel for address: {}, error: {}", address, e.getMessage());
-			throw new RpcException("Failed to acquire channel for address: " + address, e);
+			recordPoolAcquireFailure(entry.tag);
+			log.error("Failed to acquire channel for address: {}, error: {}", entry.address, e.getMessage());
+			throw new RpcException("Failed to acquire channel for address: " + entry.address, e);
 		}
 	}
 
 	public CompletableFuture<Channel> acquireChannelAsync(ServiceURL serviceUrl) {
 		CompletableFuture<Channel> future = new CompletableFuture<>();
 
-		if (serviceUrl == null) {
-			future.completeExceptionally(new RpcException("ServiceURL cannot be null"));
-			return future;
-		}
-
-		if (serviceUrl.getHost() == null || serviceUrl.getHost().isEmpty()) {
-			future.completeExceptionally(
-				new RpcException("Service host cannot be null or empty: " + serviceUrl));
+		AddressEntry entry;
+		try {
+			checkServiceUrl(serviceUrl);
+			entry = entryOf(serviceUrl);
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
 			return future;
 		}
+		log.debug("Acquiring channel async for address: {}", entry.address);
 
-		InetSocketAddress address = serviceUrl.toInetAddress();
-		log.debug("Acquiring channel async for address: {}", address);
-
-		SimpleChannelPool pool = poolMap.get(address);
-		if (pool == null) {
-			recordPoolAcquireFailure(address);
-			future.completeExceptionally(
-				new RpcException("Failed to get channel pool for address: " + address));
-			return future;
+		if (multiplexed) {
+			return acquireMultiplexedChannelAsync(entry);
 		}
 
+		SimpleChannelPool pool = entry.pool;
 		pool.acquire().addListener(channelFuture -> {
 			if (channelFuture.isSuccess()) {
 				Channel channel = (Channel) channelFuture.getNow();
 				if (channel.isActive()) {
-					AtomicInteger counter = connectionCounter.computeIfAbsent(address,
-						k -> new AtomicInteger(0));
-					counter.incrementAndGet();
-					log.debug("Successfully acquired channel async for address: {}, channel: {}", address,
-						channel);
-					recordPoolAcquireSuccess(address);
+					entry.counter.incrementAndGet();
+					log.debug("Successfully acquired channel async for address: {}, channel: {}",
+						entry.address, channel);
+					recordPoolAcquireSuccess(entry.tag);
 					future.complete(channel);
 				} else {
 					pool.release(channel);
-					recordPoolAcquireFailure(address);
+					recordPoolAcquireFailure(entry.tag);
 					future.completeExceptionally(new RpcException("Channel is not active"));
 				}
 			} else {
 				log.error("Failed to acquire channel async for address: {}, error: {}",
-					address, channelFuture.cause().getMessage());
-				recordPoolAcquireFailure(address);
+					entry.address, channelFuture.cause().getMessage());
+				recordPoolAcquireFailure(entry.tag);
 				future.completeExceptionally(channelFuture.cause());
 			}
 		});
@@ -235,8 +299,13 @@ public class ConnectionPool {
 			return;
 		}
 
-		InetSocketAddress address = serviceUrl.toInetAddress();
-		releaseChannel(address, channel);
+		AddressEntry entry = entryOf(serviceUrl);
+		if (!multiplexed) {
+			entry.pool.release(channel);
+			log.debug("Released channel for address: {}, channel: {}", entry.address, channel);
+		}
+		// 共享连接无需归还，仅维护在途计数
+		entry.counter.decrementAndGet();
 	}
 
 	public void releaseChannel(Channel channel) {
@@ -251,6 +320,14 @@ public class ConnectionPool {
 		if (channel == null) {
 			return;
 		}
+		if (multiplexed) {
+			// 共享连接无需归还，仅维护在途计数
+			AtomicInteger counter = connectionCounter.get(address);
+			if (counter != null) {
+				counter.decrementAndGet();
+			}
+			return;
+		}
 		SimpleChannelPool pool = poolMap.get(address);
 		if (pool != null) {
 			pool.release(channel);
@@ -268,6 +345,9 @@ public class ConnectionPool {
 		poolMap.forEach(entry -> {
 			entry.getValue().close();
 		});
+		multiplexedGroups.values().forEach(MultiplexedChannelGroup::close);
+		multiplexedGroups.clear();
+		entries.clear();
 		group.shutdownGracefully();
 		log.info("Connection pool closed");
 	}
@@ -280,6 +360,67 @@ public class ConnectionPool {
 		return stats;
 	}
 
+	public boolean isMultiplexed() {
+		return multiplexed;
+	}
+
+	private MultiplexedChannelGroup getMultiplexedGroup(InetSocketAddress address) {
+		return multiplexedGroups.computeIfAbsent(address, key -> {
+			log.debug("Creating multiplexed channel group for address: {}", key);
+			AtomicInteger counter = connectionCounter.computeIfAbsent(key, k -> new AtomicInteger());
+			registerGaugeIfNecessary(key, counter);
+			return new MultiplexedChannelGroup(key, multiplexedBootstrap.clone().remoteAddress(key),
+				poolProperties.getMultiplexConnectionsPerAddress());
+		});
+	}
+
+	private Channel acquireMultiplexedChannel(AddressEntry entry) {
+		try {
+			Future<Channel> future = entry.group.acquire();
+			if (!future.isDone() && !future.await(acquireTimeout, TimeUnit.MILLISECONDS)) {
+				throw new RpcException("Timed out connecting to " + entry.address);
+			}
+			if (!future.isSuccess()) {
+				throw new RpcException("Failed to connect to " + entry.address, future.cause());
+			}
+			Channel channel = future.getNow();
+			if (!channel.isActive()) {
+				throw new RpcException("Channel is not active");
+			}
+			entry.counter.incrementAndGet();
+			recordPoolAcquireSuccess(entry.tag);
+			return channel;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			recordPoolAcquireFailure(entry.tag);
+			throw new RpcException("Interrupted while acquiring channel for address: " + entry.address, e);
+		} catch (RpcException e) {
+			recordPoolAcquireFailure(entry.tag);
+			log.error("Failed to acquire multiplexed channel for address: {}, error: {}", entry.address,
+				e.getMessage());
+			throw e;
+		}
+	}
+
+	private CompletableFuture<Channel> acquireMultiplexedChannelAsync(AddressEntry entry) {
+		CompletableFuture<Channel> future = new CompletableFuture<>();
+		entry.group.acquire().addListener((Future<Channel> connectFuture) -> {
+			if (connectFuture.isSuccess() && connectFuture.getNow().isActive()) {
+				entry.counter.incrementAndGet();
+				recordPoolAcquireSuccess(entry.tag);
+				future.complete(connectFuture.getNow());
+			} else {
+				recordPoolAcquireFailure(entry.tag);
+				Throwable cause = connectFuture.cause() != null ? connectFuture.cause()
+					: new RpcException("Channel is not active");
+				log.error("Failed to acquire multiplexed channel async for address: {}, error: {}",
+					entry.address, cause.getMessage());
+				future.completeExceptionally(cause);
+			}
+		});
+		return future;
+	}
+
 	private void registerGaugeIfNecessary(InetSocketAddress address, AtomicInteger counter) {
 		if (metricsRecorder == null || !metricsRecorder.isEnabled()) {
 			return;
@@ -288,21 +429,49 @@ public class ConnectionPool {
 		metricsRecorder.registerActiveConnectionsGauge(endpoint, counter::get);
 	}
 
-	private void recordPoolAcquireSuccess(InetSocketAddress address) {
+	private void recordPoolAcquireSuccess(String endpoint) {
 		if (metricsRecorder == null || !metricsRecorder.isEnabled()) {
 			return;
 		}
-		metricsRecorder.recordPoolAcquire(endpointTag(address), true);
+		metricsRecorder.recordPoolAcquire(endpoint, true);
 	}
 
-	private void recordPoolAcquireFailure(InetSocketAddress address) {
+	private void recordPoolAcquireFailure(String endpoint) {
 		if (metricsRecorder == null || !metricsRecorder.isEnabled()) {
 			return;
 		}
-		metricsRecorder.recordPoolAcquire(endpointTag(address), false);
+		metricsRecorder.recordPoolAcquire(endpoint, false);
 	}
 
-	private String endpointTag(InetSocketAddress address) {
+	private static String endpointTag(InetSocketAddress address) {
 		return address.getHostString() + ":" + address.getPort();
 	}
+
+	/**
+	 * 单个地址的连接来源与在途计数，解析一次后缓存在端点句柄上
+	 */
+	private static final class AddressEntry {
+
+		private final ConnectionPool owner;
+
+		private final InetSocketAddress address;
+
+		private final String tag;
+
+		private final SimpleChannelPool pool;
+
+		private final MultiplexedChannelGroup group;
+
+		private final AtomicInteger counter;
+
+		AddressEntry(ConnectionPool owner, InetSocketAddress address, SimpleChannelPool pool,
+			MultiplexedChannelGroup group, AtomicInteger counter) {
+			this.owner = owner;
+			this.address = address;
+			this.tag = endpointTag(address);
+			this.pool = pool;
+			this.group = group;
+			this.counter = counter;
+		}
+	}
 }
\ No newline at end of file
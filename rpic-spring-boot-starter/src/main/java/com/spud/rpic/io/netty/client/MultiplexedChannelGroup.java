@@ -0,0 +1,106 @@
+package com.spud.rpic.io.netty.client;
+
+import com.spud.rpic.common.exception.RpcException;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 多路复用模式下单个地址的长连接组。
+ * <p>
+ * 每个地址只维护固定数量的连接槽位，请求按轮询方式共享连接而不独占，连接断开后在下一次获取时按需重连。
+ */
+@Slf4j
+class MultiplexedChannelGroup {
+
+	private final InetSocketAddress address;
+
+	private final Bootstrap bootstrap;
+
+	private final AtomicReferenceArray<Promise<Channel>> slots;
+
+	private final AtomicInteger index = new AtomicInteger();
+
+	MultiplexedChannelGroup(InetSocketAddress address, Bootstrap bootstrap, int size) {
+		this.address = address;
+		this.bootstrap = bootstrap;
+		this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+	}
+
+	/**
+	 * 获取一个共享连接，返回的Future可能已完成（连接可用）或正在建立连接。
+	 * 重建槽位时先以占位Promise抢占槽位，只有抢占成功的线程发起连接，其余线程等待同一结果，
+	 * 冷启动并发获取时不会向服务端发起多余的连接。
+	 */
+	Future<Channel> acquire() {
+		int slot = (index.getAndIncrement() & Integer.MAX_VALUE) % slots.length();
+		for (; ; ) {
+			Promise<Channel> current = slots.get(slot);
+			if (current != null && (!current.isDone() || isUsable(current))) {
+				return current;
+			}
+
+			Promise<Channel> claim = bootstrap.config().group().next().newPromise();
+			if (!slots.compareAndSet(slot, current, claim)) {
+				// 其他线程已抢先重建该槽位，复用对方的结果
+				continue;
+			}
+			log.debug("Opening multiplexed connection #{} to {}", slot, address);
+			connect(slot, claim);
+			return claim;
+		}
+	}
+
+	private void connect(int slot, Promise<Channel> claim) {
+		ChannelFuture connecting;
+		try {
+			connecting = bootstrap.connect();
+		} catch (Throwable e) {
+			claim.tryFailure(e);
+			return;
+		}
+		connecting.channel().closeFuture()
+			.addListener(future -> slots.compareAndSet(slot, claim, null));
+		connecting.addListener((ChannelFuture future) -> {
+			if (future.isSuccess()) {
+				if (!claim.trySuccess(future.channel())) {
+					// 组已关闭
+					future.channel().close();
+				}
+			} else {
+				claim.tryFailure(future.cause());
+			}
+		});
+	}
+
+	void close() {
+		for (int i = 0; i < slots.length(); i++) {
+			Promise<Channel> future = slots.getAndSet(i, null);
+			if (future != null && !future.tryFailure(new RpcException("Channel group closed"))
+				&& future.isSuccess()) {
+				future.getNow().close();
+			}
+		}
+	}
+
+	int activeConnections() {
+		int active = 0;
+		for (int i = 0; i < slots.length(); i++) {
+			Promise<Channel> future = slots.get(i);
+			if (future != null && isUsable(future)) {
+				active++;
+			}
+		}
+		return active;
+	}
+
+	private boolean isUsable(Future<Channel> future) {
+		return future.isSuccess() && future.getNow().isActive();
+	}
+}
@@ -1,20 +1,38 @@
 package com.spud.rpic.io.netty.client;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.common.domain.RecyclableRequest;
 import com.spud.rpic.common.domain.RpcRequest;
 import com.spud.rpic.common.domain.RpcResponse;
 import com.spud.rpic.common.exception.RpcException;
 import com.spud.rpic.common.exception.TimeoutException;
 import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.netty.CompressionCodec;
+import com.spud.rpic.io.netty.MessageSizePredictor;
+import com.spud.rpic.io.netty.MessageSizePredictor.SizeEstimate;
 import com.spud.rpic.io.netty.NetClient;
+import com.spud.rpic.io.netty.client.RpcClientHandler.PendingRequest;
+import com.spud.rpic.io.serializer.Serializer;
+import com.spud.rpic.io.serializer.SerializerFactory;
 import com.spud.rpic.metrics.RpcMetricsRecorder;
 import com.spud.rpic.model.ServiceURL;
+import com.spud.rpic.util.CodecNegotiation;
+import com.spud.rpic.util.EnvelopeRecycling;
+import com.spud.rpic.util.MethodIds;
 import io.micrometer.core.instrument.Timer;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.Promise;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
@@ -26,41 +44,71 @@ import org.springframework.beans.factory.InitializingBean;
 @Slf4j
 public class NettyNetClient implements NetClient, InitializingBean, DisposableBean {
 
+	private static final int DEFAULT_STREAM_SENDER_THREADS = 64;
+
+	private static final long STREAM_SENDER_KEEP_ALIVE_SECONDS = 60L;
+
 	private final ConnectionPool connectionPool;
 	private final RpcClientHandler clientHandler;
 	private final RpcMetricsRecorder metricsRecorder;
-	private final ConcurrentMap<String, PendingClientMetric> pendingMetrics = new ConcurrentHashMap<>();
+	// 请求ID序列，在消息头中携带并作为在途请求表的键
+	private final AtomicLong requestIdGenerator = new AtomicLong();
+	// 节点公布的序列化类型参数值 -> 协商出的序列化器
+	private final Map<String, Serializer> negotiatedSerializers = new ConcurrentHashMap<>();
+	// 按方法预估请求体大小，直接申请足够的缓冲区
+	private final MessageSizePredictor sizePredictor;
+	/**
+	 * 发送流式参数的线程：调用方的迭代器可能阻塞，不能占用I/O线程。每个发送中的流占用一个线程，
+	 * 线程数即并发流式参数的上限，超出时调用立即失败；客户端销毁时关闭
+	 */
+	private final ThreadPoolExecutor streamSender;
 
 	public NettyNetClient(ConnectionPool connectionPool, RpcClientHandler clientHandler,
 		RpcMetricsRecorder metricsRecorder) {
+		this(connectionPool, clientHandler, metricsRecorder, DEFAULT_STREAM_SENDER_THREADS);
+	}
+
+	public NettyNetClient(ConnectionPool connectionPool, RpcClientHandler clientHandler,
+		RpcMetricsRecorder metricsRecorder, int streamSenderThreads) {
 		this.connectionPool = connectionPool;
 		this.clientHandler = clientHandler;
 		this.metricsRecorder = metricsRecorder;
+		this.sizePredictor = new MessageSizePredictor(metricsRecorder, "client");
+		this.streamSender = new ThreadPoolExecutor(0, Math.max(1, streamSenderThreads),
+			STREAM_SENDER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(),
+			new ThreadFactoryBuilder().setNameFormat("rpic-stream-sender-%d").setDaemon(true).build(),
+			new ThreadPoolExecutor.AbortPolicy());
 	}
 
 	@Override
 	public RpcResponse send(ServiceURL serviceURL, RpcRequest request, int timeout) throws Exception {
-		log.debug("Sending request to {}, request: {}", serviceURL, request.getRequestId());
+		final long requestId = requestIdGenerator.incrementAndGet();
+		if (log.isDebugEnabled()) {
+			log.debug("Sending request to {}, request: {}", serviceURL, requestId);
+		}
 
 		if (serviceURL == null || serviceURL.getHost() == null || serviceURL.getHost().isEmpty()) {
 			throw new RpcException("Invalid service URL: " + serviceURL);
 		}
 
 		final Timer.Sample sample = metricsRecorder.startClientSample();
-		final String requestId = request.getRequestId();
 		final String endpoint = endpointOf(serviceURL);
 		final String serviceKey = request.getServiceKey();
 		final String methodName = request.getMethodName();
 		final Integer attempt = request.getAttempt();
 		final boolean retried = attempt != null && attempt > 1;
+		// 开启信封回收时请求可能在调用完成后立即被归还重置，完成回调中不得再读取请求
+		final boolean streamResult = request.isStream();
 
 		Channel channel = null;
 		Promise<RpcResponse> promise = null;
+		PendingRequest metric = null;
 
 		try {
 			channel = connectionPool.acquireChannel(serviceURL);
 			if (!channel.isActive()) {
 				connectionPool.releaseChannel(serviceURL, channel);
+				channel = null;
 				RpcException error = new RpcException("Channel is not active");
 				metricsRecorder.recordClient(sample, serviceKey, methodName, endpoint, false, error, 0, -1);
 				throw error;
@@ -68,58 +116,45 @@ public class NettyNetClient implements NetClient, InitializingBean, DisposableBe
 
 			promise = channel.eventLoop().newPromise();
 			final Promise<RpcResponse> requestPromise = promise;
-			clientHandler.addPromise(requestId, requestPromise, channel.eventLoop(), timeout);
+			final PendingRequest pendingRequest = clientHandler.addPromise(requestId, requestPromise,
+				channel, timeout);
+			expectResponse(pendingRequest, request, timeout);
 
-			byte[] requestBytes = clientHandler.getSerializer().serialize(request);
-			byte serializerCode = clientHandler.getSerializer().getCode();
-			PendingClientMetric metric = new PendingClientMetric(sample, serviceKey, methodName, endpoint,
-				requestBytes.length, retried, attempt);
-			pendingMetrics.put(requestId, metric);
+			ProtocolMsg protocolMsg = encodeRequest(channel, requestId, serviceURL, request);
+			pendingRequest.bindMetric(sample, serviceKey, methodName, endpoint,
+				protocolMsg.getContentLength(), retried, attempt);
+			metric = pendingRequest;
 
+			final OutboundStream outbound = openOutboundStream(channel, requestId, serviceURL, request);
 			requestPromise.addListener(promiseFuture -> {
-				PendingClientMetric removed = pendingMetrics.remove(requestId);
 				try {
-					if (removed != null) {
-						RpcResponse response =
-							promiseFuture.isSuccess() ? (RpcResponse) promiseFuture.getNow() : null;
-						Throwable cause = promiseFuture.isSuccess() ? null : promiseFuture.cause();
-						boolean success = promiseFuture.isSuccess() && response != null
-							&& !Boolean.TRUE.equals(response.getError());
-						if (promiseFuture.isSuccess() && response != null && Boolean.TRUE.equals(
-							response.getError())) {
-							cause = new RpcException(response.getErrorMsg());
-							success = false;
-						}
-						int responseBytes = clientHandler.pollResponseSize(requestId);
-						metricsRecorder.recordClient(removed.sample, removed.serviceKey, removed.methodName,
-							removed.endpoint, success, cause, removed.requestBytes, responseBytes,
-							removed.retried, removed.attempt);
-					}
+					recordCompletion(promiseFuture, pendingRequest);
 				} finally {
 					clientHandler.removePromise(requestId);
+					closeOutboundStream(outbound, requestId, streamResult, promiseFuture);
 				}
 			});
 
-			ProtocolMsg protocolMsg = ProtocolMsg.fromBytes(requestBytes, serializerCode);
-
 			channel.writeAndFlush(protocolMsg).addListener(writeFuture -> {
 				if (!writeFuture.isSuccess()) {
 					log.error("Failed to send request: {}", requestId, writeFuture.cause());
 					requestPromise.tryFailure(writeFuture.cause());
 				} else {
-					log.debug("Request sent successfully: {}", requestId);
+					if (log.isDebugEnabled()) {
+						log.debug("Request sent successfully: {}", requestId);
+					}
+					startOutboundStream(outbound, requestPromise);
 				}
 			});
 
 			return requestPromise.get(timeout, TimeUnit.MILLISECONDS);
 		} catch (java.util.concurrent.TimeoutException e) {
-			PendingClientMetric removed = pendingMetrics.remove(requestId);
-			if (removed != null) {
-				metricsRecorder.recordClient(removed.sample, removed.serviceKey, removed.methodName,
-					removed.endpoint, false, e, removed.requestBytes, -1, removed.retried, removed.attempt);
-			} else {
+			if (metric == null) {
 				metricsRecorder.recordClient(sample, serviceKey, methodName, endpoint, false, e, 0, -1,
 					retried, attempt);
+			} else if (metric.markRecorded()) {
+				metricsRecorder.recordClient(metric.sample, metric.serviceKey, metric.methodName,
+					metric.endpoint, false, e, metric.requestBytes, -1, metric.retried, metric.attempt);
 			}
 			throw new TimeoutException("Request timeout after " + timeout + "ms", e);
 		} finally {
@@ -135,15 +170,17 @@ public class NettyNetClient implements NetClient, InitializingBean, DisposableBe
 	@Override
 	public CompletableFuture<RpcResponse> sendAsync(ServiceURL serviceUrl, RpcRequest request,
 		int timeout) {
-		CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+		ResponseFuture future = new ResponseFuture();
 		final Timer.Sample sample = metricsRecorder.startClientSample();
 
-		final String requestId = request.getRequestId();
+		final long requestId = requestIdGenerator.incrementAndGet();
 		final String endpoint = endpointOf(serviceUrl);
 		final String serviceKey = request.getServiceKey();
 		final String methodName = request.getMethodName();
 		final Integer attempt = request.getAttempt();
 		final boolean retried = attempt != null && attempt > 1;
+		// 开启信封回收时请求可能在调用完成后立即被归还重置，完成回调中不得再读取请求
+		final boolean streamResult = request.isStream();
 
 		try {
 			if (serviceUrl == null || serviceUrl.getHost() == null || serviceUrl.getHost().isEmpty()) {
@@ -151,6 +188,10 @@ public class NettyNetClient implements NetClient, InitializingBean, DisposableBe
 			}
 
 			connectionPool.acquireChannelAsync(serviceUrl).thenAccept(channel -> {
+				if (future.isCancelled()) {
+					connectionPool.releaseChannel(serviceUrl, channel);
+					return;
+				}
 				if (!channel.isActive()) {
 					RpcException error = new RpcException("Channel is not active");
 					metricsRecorder.recordClient(sample, serviceKey, methodName, endpoint, false, error, 0,
@@ -162,34 +203,19 @@ public class NettyNetClient implements NetClient, InitializingBean, DisposableBe
 
 				try {
 					Promise<RpcResponse> promise = channel.eventLoop().newPromise();
-					clientHandler.addPromise(requestId, promise, channel.eventLoop(), timeout);
+					PendingRequest pendingRequest = clientHandler.addPromise(requestId, promise, channel,
+						timeout);
+					expectResponse(pendingRequest, request, timeout);
 
-					byte[] requestBytes = clientHandler.getSerializer().serialize(request);
-					byte serializerCode = clientHandler.getSerializer().getCode();
-					PendingClientMetric metric = new PendingClientMetric(sample, serviceKey, methodName,
-						endpoint,
-						requestBytes.length, retried, attempt);
-					pendingMetrics.put(requestId, metric);
+					ProtocolMsg protocolMsg = encodeRequest(channel, requestId, serviceUrl, request);
+					pendingRequest.bindMetric(sample, serviceKey, methodName, endpoint,
+						protocolMsg.getContentLength(), retried, attempt);
+					future.bind(promise);
+					OutboundStream outbound = openOutboundStream(channel, requestId, serviceUrl, request);
 
 					promise.addListener(promiseFuture -> {
-						PendingClientMetric removed = pendingMetrics.remove(requestId);
 						try {
-							if (removed != null) {
-								RpcResponse response =
-									promiseFuture.isSuccess() ? (RpcResponse) promiseFuture.getNow() : null;
-								Throwable cause = promiseFuture.isSuccess() ? null : promiseFuture.cause();
-								boolean success = promiseFuture.isSuccess() && response != null
-									&& !Boolean.TRUE.equals(response.getError());
-								if (promiseFuture.isSuccess() && response != null && Boolean.TRUE.equals(
-									response.getError())) {
-									cause = new RpcException(response.getErrorMsg());
-									success = false;
-								}
-								int responseBytes = clientHandler.pollResponseSize(requestId);
-								metricsRecorder.recordClient(removed.sample, removed.serviceKey, removed.methodName,
-									removed.endpoint, success, cause, removed.requestBytes, responseBytes,
-									removed.retried, removed.attempt);
-							}
+							recordCompletion(promiseFuture, pendingRequest);
 
 							if (promiseFuture.isSuccess()) {
 								future.complete((RpcResponse) promiseFuture.getNow());
@@ -198,32 +224,27 @@ public class NettyNetClient implements NetClient, InitializingBean, DisposableBe
 							}
 						} finally {
 							clientHandler.removePromise(requestId);
+							closeOutboundStream(outbound, requestId, streamResult, promiseFuture);
 							connectionPool.releaseChannel(serviceUrl, channel);
 						}
 					});
 
-					ProtocolMsg protocolMsg = ProtocolMsg.fromBytes(requestBytes, serializerCode);
-
 					channel.writeAndFlush(protocolMsg).addListener(writeFuture -> {
 						if (!writeFuture.isSuccess()) {
 							log.error("Failed to send async request: {}", requestId, writeFuture.cause());
 							promise.tryFailure(writeFuture.cause());
 						} else {
-							log.debug("Async request sent successfully: {}", requestId);
+							if (log.isDebugEnabled()) {
+								log.debug("Async request sent successfully: {}", requestId);
+							}
+							startOutboundStream(outbound, promise);
 						}
 					});
 				} catch (Exception e) {
 					log.error("Error processing async request: {}", requestId, e);
 					clientHandler.removePromise(requestId);
-					PendingClientMetric removed = pendingMetrics.remove(requestId);
-					if (removed != null) {
-						metricsRecorder.recordClient(removed.sample, removed.serviceKey, removed.methodName,
-							removed.endpoint, false, e, removed.requestBytes, -1,
-							removed.retried, removed.attempt);
-					} else {
-						metricsRecorder.recordClient(sample, serviceKey, methodName, endpoint, false, e, 0, -1,
-							retried, attempt);
-					}
+					metricsRecorder.recordClient(sample, serviceKey, methodName, endpoint, false, e, 0, -1,
+						retried, attempt);
 					future.completeExceptionally(e);
 					connectionPool.releaseChannel(serviceUrl, channel);
 				}
@@ -245,6 +266,134 @@ public class NettyNetClient implements NetClient, InitializingBean, DisposableBe
 		return future;
 	}
 
+	/**
+	 * 带流式参数的请求在请求写出前登记发送流，以便服务端的额度到达时能够找到
+	 */
+	private OutboundStream openOutboundStream(Channel channel, long requestId, ServiceURL serviceURL,
+		RpcRequest request) {
+		if (request.getParameterStream() == null) {
+			return null;
+		}
+		return clientHandler.newOutboundStream(channel, requestId, request.getParameterStream(),
+			selectSerializer(serviceURL, request), RpcConstants.DEFAULT_STREAM_CHUNK_SIZE);
+	}
+
+	/**
+	 * 发送线程已满时调用失败；已登记的流随即取消，并在当前线程上执行一次以关闭数据源
+	 */
+	private void startOutboundStream(OutboundStream outbound, Promise<RpcResponse> promise) {
+		if (outbound == null) {
+			return;
+		}
+		try {
+			streamSender.execute(outbound);
+		} catch (RejectedExecutionException e) {
+			log.warn("Too many concurrent parameter streams, limit: {}",
+				streamSender.getMaximumPoolSize());
+			outbound.cancel();
+			outbound.run();
+			promise.tryFailure(new RpcException("Too many concurrent parameter streams", e));
+		}
+	}
+
+	/**
+	 * 调用结束时停止仍在发送的流式参数；双向流的结果以流返回时，参数继续发送直到结果流结束
+	 */
+	private void closeOutboundStream(OutboundStream outbound, long requestId, boolean streamResult,
+		Future<?> promiseFuture) {
+		if (outbound != null && !(promiseFuture.isSuccess() && streamResult)) {
+			clientHandler.cancelOutboundStream(requestId);
+		}
+	}
+
+	/**
+	 * 流式调用的数据块不按方法签名解码，普通调用记录方法编号以还原结果的声明类型
+	 */
+	private static void expectResponse(PendingRequest pendingRequest, RpcRequest request,
+		int timeout) {
+		if (request.isStream()) {
+			pendingRequest.streamTimeout = Math.max(1, timeout);
+		} else {
+			pendingRequest.methodId = request.getMethodId();
+		}
+	}
+
+	/**
+	 * 将请求直接序列化到连接分配器提供的缓冲区中，缓冲区按该方法以往的请求大小预分配，编码器发送后随消息释放；
+	 * 目标节点公布了该方法的紧凑编号时只发送编号与参数；序列化与压缩类型按节点公布的类型协商
+	 */
+	private ProtocolMsg encodeRequest(Channel channel, long requestId, ServiceURL serviceURL,
+		RpcRequest request) {
+		Serializer serializer = selectSerializer(serviceURL, request);
+		channel.attr(CompressionCodec.PEER_COMPRESSORS)
+			.set(CodecNegotiation.advertisedCompressors(serviceURL));
+		boolean compact = MethodIds.isAdvertised(serviceURL, request.getMethodId());
+		// 紧凑请求只在序列化期间使用，开启信封回收时序列化后立即归还
+		RecyclableRequest pooledCompact = compact && EnvelopeRecycling.isEnabled()
+			? RecyclableRequest.obtain() : null;
+		RpcRequest wireRequest = !compact ? request
+			: pooledCompact != null ? request.compactInto(pooledCompact.request())
+				: request.toCompactRequest();
+		SizeEstimate estimate = sizePredictor.estimate(request.getServiceKey(),
+			request.getMethodName());
+		ByteBuf body = channel.alloc().ioBuffer(estimate.nextSize());
+		try {
+			serializer.serialize(wireRequest, body);
+			estimate.record(body.readableBytes());
+			return request.getParameterStream() != null
+				? ProtocolMsg.streamRequest(requestId, body, serializer.getCode())
+				: ProtocolMsg.fromBuf(requestId, body, serializer.getCode());
+		} catch (RuntimeException e) {
+			body.release();
+			throw e;
+		} finally {
+			if (pooledCompact != null) {
+				pooledCompact.recycle();
+			}
+		}
+	}
+
+	/**
+	 * 引用指定了序列化类型时直接使用，否则从节点公布的类型中选择双方都支持的最快类型
+	 */
+	private Serializer selectSerializer(ServiceURL serviceURL, RpcRequest request) {
+		Serializer defaultSerializer = clientHandler.getSerializer();
+		SerializerFactory factory = clientHandler.getSerializerFactory();
+		if (factory == null) {
+			return defaultSerializer;
+		}
+		if (request.getPreferredSerializer() != null) {
+			return factory.getSerializer(request.getPreferredSerializer());
+		}
+		String advertised = CodecNegotiation.advertisedSerializers(serviceURL);
+		if (advertised == null) {
+			return defaultSerializer;
+		}
+		return negotiatedSerializers.computeIfAbsent(advertised, value -> factory.getSerializer(
+			CodecNegotiation.selectSerializer(value, defaultSerializer.getType(),
+				factory::hasSerializer)));
+	}
+
+	/**
+	 * 请求完成时记录客户端指标，同一请求只记录一次
+	 */
+	private void recordCompletion(Future<?> promiseFuture, PendingRequest metric) {
+		if (!metric.markRecorded() || promiseFuture.isCancelled()) {
+			return;
+		}
+		RpcResponse response = promiseFuture.isSuccess() ? (RpcResponse) promiseFuture.getNow() : null;
+		Throwable cause = promiseFuture.isSuccess() ? null : promiseFuture.cause();
+		boolean success = promiseFuture.isSuccess() && response != null
+			&& !Boolean.TRUE.equals(response.getError());
+		if (promiseFuture.isSuccess() && response != null && Boolean.TRUE.equals(response.getError())) {
+			cause = new RpcException(response.getErrorMsg());
+			success = false;
+		}
+		metricsRecorder.recordClient(metric.sample, metric.serviceKey, metric.methodName,
+			metric.endpoint, success, cause, metric.requestBytes, metric.getResponseBytes(),
+			metric.retried, metric.attempt);
+	}
+
 	@Override
 	public void close() {
 		connectionPool.close();
@@ -253,6 +402,8 @@ public class NettyNetClient implements NetClient, InitializingBean, DisposableBe
 	@Override
 	public void destroy() {
 		this.close();
+		// 中断仍在等待额度的发送线程，各流随之关闭数据源
+		streamSender.shutdownNow();
 		clientHandler.close();
 	}
 
@@ -262,29 +413,31 @@ public class NettyNetClient implements NetClient, InitializingBean, DisposableBe
 	}
 
 	private String endpointOf(ServiceURL serviceURL) {
-		return serviceURL.getHost() + ":" + serviceURL.getPort();
+		return serviceURL.getAddress();
 	}
 
-	private static final class PendingClientMetric {
-
-		final Timer.Sample sample;
-		final String serviceKey;
-		final String methodName;
-		final String endpoint;
-		final long requestBytes;
-		final boolean retried;
-		final Integer attempt;
-
-		PendingClientMetric(Timer.Sample sample, String serviceKey, String methodName, String endpoint,
-			long requestBytes,
-			boolean retried, Integer attempt) {
-			this.sample = sample;
-			this.serviceKey = serviceKey != null ? serviceKey : "unknown";
-			this.methodName = methodName != null ? methodName : "unknown";
-			this.endpoint = endpoint != null ? endpoint : "unknown";
-			this.requestBytes = requestBytes;
-			this.retried = retried;
-			this.attempt = attempt;
+	/**
+	 * 异步调用的结果，被取消时（如对冲请求落败）一并取消在途请求，释放连接并移除等待记录
+	 */
+	private static final class ResponseFuture extends CompletableFuture<RpcResponse> {
+
+		private volatile Promise<RpcResponse> promise;
+
+		void bind(Promise<RpcResponse> promise) {
+			this.promise = promise;
+			if (isCancelled()) {
+				promise.cancel(false);
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			Promise<RpcResponse> bound = promise;
+			if (cancelled && bound != null) {
+				bound.cancel(false);
+			}
+			return cancelled;
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.spud.rpic.io.netty.client;
+
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.serializer.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 客户端发送中的流式参数：在独立线程上从调用方的迭代器逐块取出元素写出。额度用尽或连接不可写
+ * （超过写缓冲高水位）时等待，额度到达、连接恢复可写时继续；服务端取消、调用结束或连接断开时停止并关闭数据源。
+ */
+@Slf4j
+final class OutboundStream implements Runnable {
+
+	final Channel channel;
+	private final long requestId;
+	private final Iterator<?> source;
+	private final Serializer serializer;
+	private final int chunkSize;
+	private final Runnable onClose;
+
+	// 以下字段由this保护
+	private int credits = RpcConstants.STREAM_INITIAL_CREDIT;
+	private boolean closed;
+
+	OutboundStream(Channel channel, long requestId, Iterator<?> source, Serializer serializer,
+		int chunkSize, Runnable onClose) {
+		this.channel = channel;
+		this.requestId = requestId;
+		this.source = source;
+		this.serializer = serializer;
+		this.chunkSize = Math.max(1, chunkSize);
+		this.onClose = onClose;
+	}
+
+	synchronized void grant(int amount) {
+		credits += amount;
+		notifyAll();
+	}
+
+	synchronized void cancel() {
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * 连接可写状态变化时唤醒等待中的发送线程
+	 */
+	synchronized void writabilityChanged() {
+		notifyAll();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (awaitSendable()) {
+				List<Object> chunk = new ArrayList<>(chunkSize);
+				while (chunk.size() < chunkSize && source.hasNext()) {
+					chunk.add(source.next());
+				}
+				boolean hasMore = source.hasNext();
+				if (!chunk.isEmpty()) {
+					channel.writeAndFlush(encode(RpcResponse.success(null, chunk)));
+				}
+				if (!hasMore) {
+					// 结果为空的数据块表示发送完毕
+					channel.writeAndFlush(encode(RpcResponse.success(null, null)));
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			log.error("Failed to send stream elements for request: {}", requestId, e);
+			if (channel.isActive()) {
+				channel.writeAndFlush(encode(RpcResponse.error(null, e)));
+			}
+		} finally {
+			onClose.run();
+			if (source instanceof AutoCloseable) {
+				try {
+					((AutoCloseable) source).close();
+				} catch (Exception e) {
+					log.debug("Failed to close stream source for request {}", requestId, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 等待到有额度且连接可写，流已取消或连接已断开时返回false
+	 */
+	private synchronized boolean awaitSendable() throws InterruptedException {
+		while (!closed && (credits <= 0 || !channel.isWritable())) {
+			if (!channel.isActive()) {
+				closed = true;
+				break;
+			}
+			wait();
+		}
+		if (closed) {
+			return false;
+		}
+		credits--;
+		return true;
+	}
+
+	private ProtocolMsg encode(RpcResponse chunk) {
+		ByteBuf body = channel.alloc().ioBuffer();
+		try {
+			serializer.serialize(chunk, body);
+		} catch (RuntimeException e) {
+			body.release();
+			throw e;
+		}
+		return ProtocolMsg.streamChunk(requestId, body, serializer.getCode());
+	}
+}
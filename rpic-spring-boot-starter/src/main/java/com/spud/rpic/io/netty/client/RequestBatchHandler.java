@@ -0,0 +1,149 @@
+package com.spud.rpic.io.netty.client;
+
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.common.exception.RpcException;
+import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.netty.BatchFrames;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 客户端请求批量发送。
+ * <p>
+ * 同一连接上的请求先暂存，累计到上限或窗口到期后合并为一个批量帧写出，小请求因此共用一次帧头、
+ * 压缩与写系统调用；窗口内只有一条请求时按普通请求发送，消息体超过maxBytes的大请求不参与合并、直接发送。收到的批量响应在此拆分为单条响应交给后续处理器。
+ * 只适用于多个请求共享连接的多路复用模式。
+ */
+@Slf4j
+public class RequestBatchHandler extends ChannelDuplexHandler {
+
+	private final int maxRequests;
+
+	private final long windowNanos;
+
+	private final int maxBytes;
+
+	// 以下字段仅在Channel所属的EventLoop中访问
+	private final List<ProtocolMsg> pending = new ArrayList<>();
+
+	private final List<ChannelPromise> pendingPromises = new ArrayList<>();
+
+	private boolean flushScheduled;
+
+	public RequestBatchHandler(int maxRequests, long windowMicros, int maxBytes) {
+		this.maxRequests = Math.max(1, maxRequests);
+		this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, windowMicros));
+		this.maxBytes = Math.max(0, maxBytes);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+		throws Exception {
+		if (!(msg instanceof ProtocolMsg) || !isBatchable((ProtocolMsg) msg)) {
+			ctx.write(msg, promise);
+			return;
+		}
+		pending.add((ProtocolMsg) msg);
+		pendingPromises.add(promise);
+		if (pending.size() >= maxRequests) {
+			writePending(ctx);
+		} else if (!flushScheduled) {
+			flushScheduled = true;
+			ctx.executor().schedule(() -> {
+				flushScheduled = false;
+				writePending(ctx);
+			}, windowNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (!(msg instanceof ProtocolMsg)
+			|| ((ProtocolMsg) msg).getType() != RpcConstants.TYPE_BATCH_RESPONSE) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		ProtocolMsg batch = (ProtocolMsg) msg;
+		List<ProtocolMsg> responses;
+		try {
+			responses = BatchFrames.split(batch, RpcConstants.TYPE_RESPONSE);
+		} finally {
+			batch.release();
+		}
+		for (ProtocolMsg response : responses) {
+			ctx.fireChannelRead(response);
+		}
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		failPending(new RpcException("Channel closed before batched requests were sent"));
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) {
+		failPending(new RpcException("Batch handler removed"));
+	}
+
+	private void writePending(ChannelHandlerContext ctx) {
+		if (pending.isEmpty()) {
+			return;
+		}
+		if (pending.size() == 1) {
+			ProtocolMsg msg = pending.get(0);
+			ChannelPromise promise = pendingPromises.get(0);
+			pending.clear();
+			pendingPromises.clear();
+			ctx.writeAndFlush(msg, promise);
+			return;
+		}
+
+		List<ProtocolMsg> requests = new ArrayList<>(pending);
+		List<ChannelPromise> promises = new ArrayList<>(pendingPromises);
+		pending.clear();
+		pendingPromises.clear();
+		ProtocolMsg batch;
+		try {
+			batch = BatchFrames.join(ctx.alloc(), requests, RpcConstants.TYPE_BATCH_REQUEST, (byte) 0);
+		} catch (RuntimeException e) {
+			for (ChannelPromise promise : promises) {
+				promise.tryFailure(e);
+			}
+			return;
+		}
+		log.debug("Channel[{}] Sending {} requests in one batch frame",
+			ctx.channel().id().asShortText(), requests.size());
+		ctx.writeAndFlush(batch).addListener(future -> {
+			for (ChannelPromise promise : promises) {
+				if (future.isSuccess()) {
+					promise.trySuccess();
+				} else {
+					promise.tryFailure(future.cause());
+				}
+			}
+		});
+	}
+
+	private void failPending(Throwable cause) {
+		for (ProtocolMsg msg : pending) {
+			msg.release();
+		}
+		for (ChannelPromise promise : pendingPromises) {
+			promise.tryFailure(cause);
+		}
+		pending.clear();
+		pendingPromises.clear();
+	}
+
+	private boolean isBatchable(ProtocolMsg msg) {
+		return msg.getType() == RpcConstants.TYPE_REQUEST
+			&& msg.getVersion() != RpcConstants.PROTOCOL_VERSION_V1
+			&& msg.getContentLength() <= maxBytes;
+	}
+}
@@ -1,8 +1,12 @@
 package com.spud.rpic.io.netty.client;
 
+import com.spud.rpic.io.netty.CompressionCodec;
+import com.spud.rpic.io.netty.FlushBatchHandler;
 import com.spud.rpic.io.netty.LoggingChannelHandler;
 import com.spud.rpic.io.netty.ProtocolDecoder;
 import com.spud.rpic.io.netty.ProtocolEncoder;
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.property.RpcClientProperties;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.pool.AbstractChannelPoolHandler;
@@ -26,11 +30,42 @@ public class RpcChannelPoolHandler extends AbstractChannelPoolHandler {
 
 	private final RpcClientHandler sharedHandler;
 	private final boolean debugMode;
+	private final CompressionCodec compressionCodec;
+	private final int flushConsolidationLimit;
+	private final RpcMetricsRecorder metricsRecorder;
+	private final RpcClientProperties.BatchProperties batchProperties;
 	private final AtomicInteger handlerCounter = new AtomicInteger(0);
 
 	public RpcChannelPoolHandler(RpcClientHandler sharedHandler, boolean debugMode) {
+		this(sharedHandler, debugMode, null);
+	}
+
+	public RpcChannelPoolHandler(RpcClientHandler sharedHandler, boolean debugMode,
+		CompressionCodec compressionCodec) {
+		this(sharedHandler, debugMode, compressionCodec, 0, null);
+	}
+
+	/**
+	 * @param flushConsolidationLimit flush合并次数上限，0表示每条消息单独flush
+	 */
+	public RpcChannelPoolHandler(RpcClientHandler sharedHandler, boolean debugMode,
+		CompressionCodec compressionCodec, int flushConsolidationLimit,
+		RpcMetricsRecorder metricsRecorder) {
+		this(sharedHandler, debugMode, compressionCodec, flushConsolidationLimit, metricsRecorder, null);
+	}
+
+	/**
+	 * @param batchProperties 请求批量发送配置，为null时不合并请求
+	 */
+	public RpcChannelPoolHandler(RpcClientHandler sharedHandler, boolean debugMode,
+		CompressionCodec compressionCodec, int flushConsolidationLimit,
+		RpcMetricsRecorder metricsRecorder, RpcClientProperties.BatchProperties batchProperties) {
 		this.sharedHandler = sharedHandler;
 		this.debugMode = debugMode;
+		this.compressionCodec = compressionCodec;
+		this.flushConsolidationLimit = flushConsolidationLimit;
+		this.metricsRecorder = metricsRecorder;
+		this.batchProperties = batchProperties;
 	}
 
 	@Override
@@ -54,6 +89,13 @@ public class RpcChannelPoolHandler extends AbstractChannelPoolHandler {
 		// 添加协议编解码器
 		pipeline.addLast("decoder", new ProtocolDecoder());
 		pipeline.addLast("encoder", new ProtocolEncoder());
+		if (compressionCodec != null) {
+			pipeline.addLast("compression", compressionCodec);
+		}
+		if (batchProperties != null) {
+			pipeline.addLast("batch", new RequestBatchHandler(batchProperties.getMaxRequests(),
+				batchProperties.getWindowMicros(), batchProperties.getMaxBytes()));
+		}
 
 		// 为每个channel创建独立的handler实例，共享状态
 		String handlerName = "handler-" + handlerCounter.incrementAndGet();
@@ -61,6 +103,9 @@ public class RpcChannelPoolHandler extends AbstractChannelPoolHandler {
 			sharedHandler.getSerializerFactory(), sharedHandler);
 		pipeline.addLast(handlerName, channelHandler);
 
+		// 合并flush（位于管道最前端）
+		FlushBatchHandler.install(pipeline, flushConsolidationLimit, metricsRecorder, "client");
+
 		log.debug("Channel created: {}, remote address: {}, handler: {}", ch, remoteAddress,
 			handlerName);
 		ch.attr(LAST_ACCESS_TIME).set(System.nanoTime());
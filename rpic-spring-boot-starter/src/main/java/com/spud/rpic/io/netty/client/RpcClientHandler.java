@@ -5,16 +5,23 @@ import com.spud.rpic.common.domain.RpcResponse;
 import com.spud.rpic.common.exception.RpcException;
 import com.spud.rpic.common.exception.TimeoutException;
 import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.netty.DecompressException;
+import com.spud.rpic.io.netty.InboundStream;
 import com.spud.rpic.io.serializer.Serializer;
 import com.spud.rpic.io.serializer.SerializerFactory;
+import com.spud.rpic.util.ConcurrentLongObjectMap;
+import io.micrometer.core.instrument.Timer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.EventLoop;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.util.concurrent.Promise;
 import io.netty.util.concurrent.ScheduledFuture;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -26,9 +33,12 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 
 	private final Serializer serializer;
 	private final SerializerFactory serializerFactory;
-	// 共享pendingRequests，使所有handler实例都能访问请求记录
-	private final Map<String, PendingRequest> pendingRequests;
-	private final Map<String, Integer> responseSizes;
+	// 共享pendingRequests，使所有handler实例都能访问请求记录，以消息头中的请求ID为键
+	private final ConcurrentLongObjectMap<PendingRequest> pendingRequests;
+	// 已收到首个数据块的流式调用，与pendingRequests一样在各handler实例间共享
+	private final ConcurrentLongObjectMap<InboundStream<?>> streams;
+	// 发送中的流式参数，以请求ID为键
+	private final ConcurrentLongObjectMap<OutboundStream> outboundStreams;
 
 	// 主handler实例，用于代理各channel处理器的请求记录
 	private final RpcClientHandler masterHandler;
@@ -40,8 +50,9 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 	public RpcClientHandler(Serializer serializer, SerializerFactory serializerFactory) {
 		this.serializer = serializer;
 		this.serializerFactory = serializerFactory;
-		this.pendingRequests = new ConcurrentHashMap<>();
-		this.responseSizes = new ConcurrentHashMap<>();
+		this.pendingRequests = new ConcurrentLongObjectMap<>();
+		this.streams = new ConcurrentLongObjectMap<>();
+		this.outboundStreams = new ConcurrentLongObjectMap<>();
 		this.masterHandler = null; // 自身就是主handler
 		log.debug("Created master RpcClientHandler with serializer: {}", serializer.getType());
 	}
@@ -58,7 +69,8 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 		this.serializerFactory = serializerFactory;
 		this.masterHandler = masterHandler;
 		this.pendingRequests = masterHandler.pendingRequests; // 共享pendingRequests，确保所有handler能访问同一个Map
-		this.responseSizes = masterHandler.responseSizes;
+		this.streams = masterHandler.streams;
+		this.outboundStreams = masterHandler.outboundStreams;
 		log.debug("Created channel-specific RpcClientHandler with shared state, serializer: {}",
 			serializer.getType());
 	}
@@ -84,37 +96,168 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 
 	@Override
 	protected void channelRead0(ChannelHandlerContext ctx, ProtocolMsg msg) throws Exception {
-		log.debug("Received message: type={}, length={}", msg.getType(), msg.getContentLength());
+		if (log.isDebugEnabled()) {
+			log.debug("Received message: type={}, length={}", msg.getType(), msg.getContentLength());
+		}
 
 		if (msg.getType() == RpcConstants.TYPE_RESPONSE) {
+			// 根据消息头中的请求ID路由，已超时或未知的响应在反序列化之前直接丢弃
+			long requestId = msg.getRequestId();
+			InboundStream<?> stream = streams.remove(requestId);
+			if (stream != null) {
+				cancelOutboundStream(requestId);
+				stream.onEnd(decodeStreamFrame(msg, stream));
+				return;
+			}
+			PendingRequest pendingRequest = pendingRequests.remove(requestId);
+			if (pendingRequest == null) {
+				log.debug("Discarding response for unknown or expired request: {}", requestId);
+				return;
+			}
+			pendingRequest.cancelTimeout();
+			pendingRequest.responseBytes = msg.getContentLength();
 			try {
 				Serializer activeSerializer = resolveSerializer(msg.getSerializerType());
-				RpcResponse response = activeSerializer.deserialize(msg.getContent(), RpcResponse.class);
-				String requestId = response.getRequestId();
-				responseSizes.put(requestId, msg.getContentLength());
-
-				PendingRequest pendingRequest = pendingRequests.get(requestId);
-				if (pendingRequest != null) {
+				RpcResponse response = activeSerializer.deserializeResponse(msg.contentBuf(),
+					pendingRequest.methodId);
+				if (log.isDebugEnabled()) {
 					log.debug("Found pending request for response: {}", requestId);
-					pendingRequest.promise.setSuccess(response);
-				} else {
-					log.warn("No pending request found for response: {}", requestId);
 				}
+				if (pendingRequest.streamTimeout > 0 && !Boolean.TRUE.equals(response.getError())) {
+					// 没有数据块的流，或不支持流式的服务端一次性返回的结果
+					InboundStream<?> empty = newStream(ctx.channel(), requestId, pendingRequest.methodId,
+						pendingRequest.streamTimeout);
+					empty.onEnd(response);
+					pendingRequest.promise.trySuccess(RpcResponse.success(response.getRequestId(), empty));
+					return;
+				}
+				pendingRequest.promise.trySuccess(response);
 			} catch (Exception e) {
-				log.error("Failed to process response", e);
+				log.error("Failed to process response: {}", requestId, e);
+				pendingRequest.promise.tryFailure(
+					new RpcException("Failed to decode response for request: " + requestId, e));
 			}
+		} else if (msg.getType() == RpcConstants.TYPE_STREAM_CHUNK) {
+			handleStreamChunk(ctx, msg);
+		} else if (msg.getType() == RpcConstants.TYPE_STREAM_CREDIT) {
+			handleStreamCredit(msg);
 		} else {
 			log.warn("Received unexpected message type: {}", msg.getType());
 		}
 	}
 
-	public int pollResponseSize(String requestId) {
-		Integer size = responseSizes.remove(requestId);
-		return size != null ? size : -1;
+	/**
+	 * 首个数据块到达时以流对象完成调用，之后的数据块放入流中；无人等待的数据块通知服务端取消
+	 */
+	private void handleStreamChunk(ChannelHandlerContext ctx, ProtocolMsg msg) {
+		long requestId = msg.getRequestId();
+		InboundStream<?> stream = streams.get(requestId);
+		if (stream == null) {
+			PendingRequest pendingRequest = pendingRequests.remove(requestId);
+			if (pendingRequest == null || pendingRequest.streamTimeout <= 0) {
+				log.debug("Discarding stream chunk for unknown or expired request: {}", requestId);
+				ctx.writeAndFlush(ProtocolMsg.streamCredit(requestId, 0));
+				return;
+			}
+			pendingRequest.cancelTimeout();
+			pendingRequest.responseBytes = msg.getContentLength();
+			stream = newStream(ctx.channel(), requestId, pendingRequest.methodId,
+				pendingRequest.streamTimeout);
+			streams.put(requestId, stream);
+			if (!pendingRequest.promise.trySuccess(RpcResponse.success(null, stream))) {
+				stream.close();
+				return;
+			}
+		}
+		try {
+			RpcResponse chunk = decodeStreamFrame(msg, stream);
+			stream.onChunk((List<?>) chunk.getResult());
+		} catch (Exception e) {
+			log.error("Failed to decode stream chunk: {}", requestId, e);
+			streams.remove(requestId, stream);
+			stream.fail(e);
+			ctx.writeAndFlush(ProtocolMsg.streamCredit(requestId, 0));
+		}
+	}
+
+	/**
+	 * 服务端消费流式参数的数据块后授予额度，非正数额度表示服务端不再接收
+	 */
+	private void handleStreamCredit(ProtocolMsg msg) {
+		ByteBuf content = msg.contentBuf();
+		if (content.readableBytes() < 4) {
+			return;
+		}
+		int credits = content.readInt();
+		OutboundStream stream = credits <= 0 ? outboundStreams.remove(msg.getRequestId())
+			: outboundStreams.get(msg.getRequestId());
+		if (stream == null) {
+			return;
+		}
+		if (credits <= 0) {
+			stream.cancel();
+		} else {
+			stream.grant(credits);
+		}
+	}
+
+	/**
+	 * 注册并返回发送中的流式参数，由调用方在独立线程上运行
+	 */
+	OutboundStream newOutboundStream(Channel channel, long requestId, Iterator<?> source,
+		Serializer serializer, int chunkSize) {
+		OutboundStream[] holder = new OutboundStream[1];
+		holder[0] = new OutboundStream(channel, requestId, source, serializer, chunkSize,
+			() -> outboundStreams.remove(requestId, holder[0]));
+		outboundStreams.put(requestId, holder[0]);
+		return holder[0];
+	}
+
+	/**
+	 * 调用结束时停止仍在发送的流式参数
+	 */
+	void cancelOutboundStream(long requestId) {
+		OutboundStream stream = outboundStreams.remove(requestId);
+		if (stream != null) {
+			stream.cancel();
+		}
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		Channel channel = ctx.channel();
+		for (OutboundStream stream : outboundStreams.valuesIf(
+			(requestId, stream) -> stream.channel == channel)) {
+			stream.writabilityChanged();
+		}
+		super.channelWritabilityChanged(ctx);
+	}
+
+	/**
+	 * 数据块与结束消息按方法签名解码，不携带类型信息的序列化方式可据此还原元素的声明类型
+	 */
+	private RpcResponse decodeStreamFrame(ProtocolMsg msg, InboundStream<?> stream) {
+		return resolveSerializer(msg.getSerializerType()).deserializeResponse(msg.contentBuf(),
+			stream.getMethodId());
+	}
+
+	private InboundStream<?> newStream(Channel channel, long requestId, Integer methodId,
+		int timeout) {
+		InboundStream<?>[] holder = new InboundStream<?>[1];
+		holder[0] = new InboundStream<>(channel, requestId, methodId, timeout, () -> {
+			streams.remove(requestId, holder[0]);
+			// 双向流的结果被放弃时参数也不再发送
+			cancelOutboundStream(requestId);
+		});
+		return holder[0];
 	}
 
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+		if (cause instanceof DecompressException && failDecompressed(ctx,
+			((DecompressException) cause).getHeader(), cause)) {
+			return;
+		}
 		log.error("Channel exception: {}", cause.getMessage());
 		if (masterHandler == null) {
 			failAllPromises(cause);
@@ -122,11 +265,40 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 		ctx.close();
 	}
 
+	/**
+	 * 响应或数据块解压失败时只失败对应的请求或流；批量响应无法得知其中的请求ID，返回false由调用方关闭连接
+	 */
+	private boolean failDecompressed(ChannelHandlerContext ctx, ProtocolMsg header, Throwable cause) {
+		long requestId = header.getRequestId();
+		if (header.getType() != RpcConstants.TYPE_RESPONSE
+			&& header.getType() != RpcConstants.TYPE_STREAM_CHUNK) {
+			return false;
+		}
+		InboundStream<?> stream = streams.remove(requestId);
+		if (stream != null) {
+			stream.fail(cause);
+		}
+		PendingRequest pendingRequest = pendingRequests.remove(requestId);
+		if (pendingRequest != null) {
+			pendingRequest.cancelTimeout();
+			pendingRequest.promise.tryFailure(
+				new RpcException("Failed to decode response for request: " + requestId, cause));
+		}
+		if (header.getType() == RpcConstants.TYPE_STREAM_CHUNK) {
+			ctx.writeAndFlush(ProtocolMsg.streamCredit(requestId, 0));
+		}
+		cancelOutboundStream(requestId);
+		return true;
+	}
+
 	@Override
 	public void channelInactive(ChannelHandlerContext ctx) {
 		log.debug("Channel inactive: {}", ctx.channel());
 		if (masterHandler == null) {
 			failAllPromises(new RpcException("Channel closed"));
+		} else {
+			// 多个请求可能共享同一连接，连接断开时立即失败其上的在途请求，而不是等待超时
+			failPromises(ctx.channel(), new RpcException("Channel closed: " + ctx.channel()));
 		}
 	}
 
@@ -137,25 +309,47 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 	 * @param promise   用于接收响应的Promise
 	 * @param eventLoop 调度超时任务的EventLoop
 	 * @param timeout   超时时间(毫秒)
+	 * @return 在途请求记录
+	 */
+	public PendingRequest addPromise(long requestId, Promise<RpcResponse> promise,
+		EventLoop eventLoop, int timeout) {
+		return addPromise(requestId, promise, eventLoop, null, timeout);
+	}
+
+	/**
+	 * 添加请求Promise并记录请求所在的Channel，Channel断开时该请求会被立即失败
+	 *
+	 * @param requestId 请求ID
+	 * @param promise   用于接收响应的Promise
+	 * @param channel   发送请求的Channel
+	 * @param timeout   超时时间(毫秒)
+	 * @return 在途请求记录
 	 */
-	public void addPromise(String requestId, Promise<RpcResponse> promise, EventLoop eventLoop,
+	public PendingRequest addPromise(long requestId, Promise<RpcResponse> promise, Channel channel,
 		int timeout) {
+		return addPromise(requestId, promise, channel.eventLoop(), channel, timeout);
+	}
+
+	private PendingRequest addPromise(long requestId, Promise<RpcResponse> promise,
+		EventLoop eventLoop, Channel channel, int timeout) {
 		if (eventLoop == null) {
 			log.warn("EventLoop is null, using default timeout");
-			addPromise(requestId, promise, timeout);
-			return;
+			return addPromise(requestId, promise, timeout);
 		}
 
-		ScheduledFuture<?> timeoutFuture = eventLoop.schedule(() -> {
-			if (removePromise(requestId)) {
-				String error = String.format("Request timeout after %dms, requestId: %s", timeout,
+		PendingRequest pendingRequest = new PendingRequest(promise, channel);
+		pendingRequests.put(requestId, pendingRequest);
+		pendingRequest.timeoutFuture = eventLoop.schedule(() -> {
+			if (pendingRequests.remove(requestId, pendingRequest)) {
+				String error = String.format("Request timeout after %dms, requestId: %d", timeout,
 					requestId);
 				promise.tryFailure(new TimeoutException(error));
 			}
 		}, timeout, TimeUnit.MILLISECONDS);
-
-		pendingRequests.put(requestId, new PendingRequest(promise, timeoutFuture));
-		log.debug("Added promise for request: {}, timeout: {}ms", requestId, timeout);
+		if (log.isDebugEnabled()) {
+			log.debug("Added promise for request: {}, timeout: {}ms", requestId, timeout);
+		}
+		return pendingRequest;
 	}
 
 	/**
@@ -164,13 +358,14 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 	 * @param requestId 请求ID
 	 * @param promise   用于接收响应的Promise
 	 * @param timeout   超时时间(毫秒)
+	 * @return 在途请求记录
 	 */
-	public void addPromise(String requestId, Promise<RpcResponse> promise, int timeout) {
+	public PendingRequest addPromise(long requestId, Promise<RpcResponse> promise, int timeout) {
 		EventLoop eventLoop = null;
 		if (context != null) {
 			eventLoop = context.channel().eventLoop();
 		}
-		addPromise(requestId, promise, eventLoop, timeout);
+		return addPromise(requestId, promise, eventLoop, timeout);
 	}
 
 	/**
@@ -179,13 +374,10 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 	 * @param requestId 请求ID
 	 * @return 是否成功移除
 	 */
-	public boolean removePromise(String requestId) {
+	public boolean removePromise(long requestId) {
 		PendingRequest pendingRequest = pendingRequests.remove(requestId);
 		if (pendingRequest != null) {
-			// 安全地取消超时任务
-			if (pendingRequest.timeoutFuture != null) {
-				pendingRequest.timeoutFuture.cancel(false);
-			}
+			pendingRequest.cancelTimeout();
 			return true;
 		}
 		return false;
@@ -201,21 +393,43 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 		}
 
 		log.warn("Failing all pending promises due to: {}", cause.getMessage());
-		// Create a snapshot of keys to avoid concurrent modification issues and remove atomically
-		for (String requestId : pendingRequests.keySet().toArray(new String[0])) {
-			PendingRequest pendingRequest = pendingRequests.remove(requestId);
-			if (pendingRequest == null) continue;
-			if (pendingRequest.timeoutFuture != null) {
-				pendingRequest.timeoutFuture.cancel(false);
-			}
+		List<PendingRequest> removed = pendingRequests.removeIf((requestId, pending) -> true);
+		for (PendingRequest pendingRequest : removed) {
+			pendingRequest.cancelTimeout();
 			pendingRequest.promise.tryFailure(new RpcException("Channel exception: " + cause.getMessage(), cause));
 		}
+		for (InboundStream<?> stream : streams.removeIf((requestId, stream) -> true)) {
+			stream.fail(cause);
+		}
+		for (OutboundStream stream : outboundStreams.removeIf((requestId, stream) -> true)) {
+			stream.cancel();
+		}
 		// pendingRequests should now be empty or contain newly added entries by other threads
 		if (!pendingRequests.isEmpty()) {
 			log.debug("Some pending requests were added while failing promises, remaining count={}", pendingRequests.size());
 		}
 	}
 
+	/**
+	 * 失败指定Channel上的所有在途请求
+	 */
+	private void failPromises(Channel channel, Throwable cause) {
+		List<PendingRequest> removed = pendingRequests.removeIf(
+			(requestId, pending) -> pending.channel == channel);
+		for (PendingRequest pendingRequest : removed) {
+			pendingRequest.cancelTimeout();
+			pendingRequest.promise.tryFailure(cause);
+		}
+		for (InboundStream<?> stream : streams.removeIf(
+			(requestId, stream) -> stream.getChannel() == channel)) {
+			stream.fail(cause);
+		}
+		for (OutboundStream stream : outboundStreams.removeIf(
+			(requestId, stream) -> stream.channel == channel)) {
+			stream.cancel();
+		}
+	}
+
 	public void close() {
 		if (masterHandler == null) {
 			failAllPromises(new RpcException("Handler closed"));
@@ -243,14 +457,75 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 		}
 	}
 
-	private static class PendingRequest {
+	/**
+	 * 在途请求记录，响应到达后记录响应体大小供指标使用
+	 */
+	public static final class PendingRequest {
+
+		private static final AtomicIntegerFieldUpdater<PendingRequest> RECORDED =
+			AtomicIntegerFieldUpdater.newUpdater(PendingRequest.class, "recorded");
 
 		final Promise<RpcResponse> promise;
-		final ScheduledFuture<?> timeoutFuture;
+		final Channel channel;
+		volatile ScheduledFuture<?> timeoutFuture;
+		volatile int responseBytes = -1;
+		/**
+		 * 请求的方法编号，序列化实现据此还原响应结果的声明类型
+		 */
+		volatile Integer methodId;
+		/**
+		 * 流式调用等待每个数据块的超时（毫秒），0表示普通调用
+		 */
+		volatile int streamTimeout;
+
+		// 以下为调用完成时记录的客户端指标，与在途记录合用一个对象，见bindMetric
+		Timer.Sample sample;
+		String serviceKey;
+		String methodName;
+		String endpoint;
+		long requestBytes;
+		boolean retried;
+		Integer attempt;
+		private volatile int recorded;
 
-		PendingRequest(Promise<RpcResponse> promise, ScheduledFuture<?> timeoutFuture) {
+		PendingRequest(Promise<RpcResponse> promise, Channel channel) {
 			this.promise = promise;
-			this.timeoutFuture = timeoutFuture;
+			this.channel = channel;
+		}
+
+		/**
+		 * 请求编码后登记指标维度，须在注册完成监听器之前调用
+		 */
+		void bindMetric(Timer.Sample sample, String serviceKey, String methodName, String endpoint,
+			long requestBytes, boolean retried, Integer attempt) {
+			this.sample = sample;
+			this.serviceKey = serviceKey != null ? serviceKey : "unknown";
+			this.methodName = methodName != null ? methodName : "unknown";
+			this.endpoint = endpoint != null ? endpoint : "unknown";
+			this.requestBytes = requestBytes;
+			this.retried = retried;
+			this.attempt = attempt;
+		}
+
+		/**
+		 * 同一请求的指标只记录一次
+		 */
+		boolean markRecorded() {
+			return RECORDED.compareAndSet(this, 0, 1);
+		}
+
+		/**
+		 * 响应体字节数，尚未收到响应时为-1
+		 */
+		public int getResponseBytes() {
+			return responseBytes;
+		}
+
+		void cancelTimeout() {
+			ScheduledFuture<?> future = this.timeoutFuture;
+			if (future != null) {
+				future.cancel(false);
+			}
 		}
 	}
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.spud.rpic.io.netty.client;
 
+import com.spud.rpic.io.netty.CompressionCodec;
 import com.spud.rpic.io.netty.LoggingChannelHandler;
 import com.spud.rpic.io.netty.ProtocolDecoder;
 import com.spud.rpic.io.netty.ProtocolEncoder;
@@ -18,11 +19,18 @@ public class RpcClientInitializer extends ChannelInitializer<SocketChannel> {
 
 	private final RpcClientHandler sharedHandler;
 	private final boolean debugMode;
+	private final CompressionCodec compressionCodec;
 	private final AtomicInteger handlerCounter = new AtomicInteger(0);
 
 	public RpcClientInitializer(RpcClientHandler sharedHandler, boolean debugMode) {
+		this(sharedHandler, debugMode, null);
+	}
+
+	public RpcClientInitializer(RpcClientHandler sharedHandler, boolean debugMode,
+		CompressionCodec compressionCodec) {
 		this.sharedHandler = sharedHandler;
 		this.debugMode = debugMode;
+		this.compressionCodec = compressionCodec;
 	}
 
 	@Override
@@ -37,6 +45,9 @@ public class RpcClientInitializer extends ChannelInitializer<SocketChannel> {
 		// 添加协议编解码器
 		pipeline.addLast("decoder", new ProtocolDecoder());
 		pipeline.addLast("encoder", new ProtocolEncoder());
+		if (compressionCodec != null) {
+			pipeline.addLast("compression", compressionCodec);
+		}
 
 		// 为每个channel创建独立的handler实例，共享状态
 		String handlerName = "handler-" + handlerCounter.incrementAndGet();
@@ -53,4 +64,11 @@ public class RpcClientInitializer extends ChannelInitializer<SocketChannel> {
 	public RpcClientHandler getSharedHandler() {
 		return sharedHandler;
 	}
+
+	/**
+	 * 获取消息体压缩层，未启用时为null
+	 */
+	public CompressionCodec getCompressionCodec() {
+		return compressionCodec;
+	}
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package com.spud.rpic.io.netty.client.invocation;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.spud.rpic.cluster.CircuitBreakerManager;
+import com.spud.rpic.cluster.Endpoint;
+import com.spud.rpic.cluster.EndpointDirectory;
 import com.spud.rpic.cluster.EndpointStatsRegistry;
 import com.spud.rpic.cluster.LoadBalancer;
 import com.spud.rpic.common.domain.RpcRequest;
@@ -10,17 +13,27 @@ import com.spud.rpic.common.exception.RpcException;
 import com.spud.rpic.common.exception.ServiceNotFoundException;
 import com.spud.rpic.common.exception.TimeoutException;
 import com.spud.rpic.io.netty.NetClient;
+import com.spud.rpic.metrics.RpcMetricsRecorder;
 import com.spud.rpic.model.ServiceMetadata;
 import com.spud.rpic.model.ServiceURL;
 import com.spud.rpic.property.RpcClientProperties;
 import com.spud.rpic.registry.Registry;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import javax.naming.ServiceUnavailableException;
 import lombok.extern.slf4j.Slf4j;
 
@@ -31,6 +44,24 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class DefaultClientInvocation implements ClientInvocation {
 
+	/**
+	 * 重试退避与对冲定时器，所有调用共用；只负责计时，到期后把尝试交给{@link #ATTEMPT_EXECUTOR}
+	 */
+	private static final ScheduledThreadPoolExecutor RETRY_TIMER = newTimer();
+
+	/**
+	 * 执行重试与对冲尝试的线程：尝试中的服务发现与建连可能阻塞，不能占用定时器线程，
+	 * 否则一次缓慢的注册中心查询会推迟进程内所有的重试与对冲
+	 */
+	private static final ExecutorService ATTEMPT_EXECUTOR = Executors.newFixedThreadPool(
+		Math.max(2, Runtime.getRuntime().availableProcessors()),
+		new ThreadFactoryBuilder().setNameFormat("rpic-retry-%d").setDaemon(true).build());
+
+	/**
+	 * 同步调用在截止时间之后额外等待的时间，异步流水线本身会在截止时间完成调用，此等待只防止完成信号丢失时永久阻塞
+	 */
+	private static final long SYNC_WAIT_GRACE_MILLIS = 1000L;
+
 	private final Registry registry;
 
 	private final LoadBalancer loadBalancer;
@@ -43,112 +74,366 @@ public class DefaultClientInvocation implements ClientInvocation {
 
 	private final EndpointStatsRegistry endpointStatsRegistry;
 
+	private final EndpointDirectory endpointDirectory;
+
+	private final RpcMetricsRecorder metricsRecorder;
+
+	private final HedgeBudget hedgeBudget;
+
 	public DefaultClientInvocation(Registry registry, LoadBalancer loadBalancer, NetClient netClient,
 		RpcClientProperties clientProperties,
 		CircuitBreakerManager circuitBreakerManager,
 		EndpointStatsRegistry endpointStatsRegistry) {
+		this(registry, loadBalancer, netClient, clientProperties, circuitBreakerManager,
+			endpointStatsRegistry, null);
+	}
+
+	public DefaultClientInvocation(Registry registry, LoadBalancer loadBalancer, NetClient netClient,
+		RpcClientProperties clientProperties,
+		CircuitBreakerManager circuitBreakerManager,
+		EndpointStatsRegistry endpointStatsRegistry,
+		RpcMetricsRecorder metricsRecorder) {
 		this.registry = registry;
 		this.loadBalancer = loadBalancer;
 		this.netClient = netClient;
 		this.clientProperties = clientProperties;
 		this.circuitBreakerManager = circuitBreakerManager;
 		this.endpointStatsRegistry = endpointStatsRegistry;
+		this.endpointDirectory = new EndpointDirectory(endpointStatsRegistry, circuitBreakerManager);
+		this.metricsRecorder = metricsRecorder != null ? metricsRecorder
+			: RpcMetricsRecorder.create(null, null);
+		this.hedgeBudget = new HedgeBudget(clientProperties.getHedge().getBudgetRatio(),
+			clientProperties.getHedge().getBudgetBurst());
+	}
+
+	private static ScheduledThreadPoolExecutor newTimer() {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+			new ThreadFactoryBuilder().setNameFormat("rpic-retry-timer-%d").setDaemon(true).build());
+		// 首发请求先返回时取消的对冲任务立即移出队列
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+
+	private static ScheduledFuture<?> scheduleAttempt(Runnable attempt, long delayMillis) {
+		return RETRY_TIMER.schedule(() -> ATTEMPT_EXECUTOR.execute(attempt), Math.max(0, delayMillis),
+			TimeUnit.MILLISECONDS);
 	}
 
+	/**
+	 * 同步调用只是在异步流水线上等待结果，重试、截止时间与熔断逻辑完全共用
+	 */
 	@Override
 	public RpcResponse invoke(ServiceMetadata metadata, RpcRequest request, int timeout)
 		throws Exception {
-		RpcClientProperties.RetryProperties retryProps = clientProperties.getRetry();
-		int maxAttempts = Math.max(1, retryProps.isEnabled() ? retryProps.getMaxAttempts() : 1);
 		long overallTimeout = timeout > 0 ? timeout : clientProperties.getTimeout();
-		long deadlineAtMillis = System.currentTimeMillis() + overallTimeout;
+		CompletableFuture<RpcResponse> future = invokeAsync(metadata, request, timeout);
+		try {
+			return future.get(overallTimeout + SYNC_WAIT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (java.util.concurrent.TimeoutException e) {
+			future.cancel(false);
+			throw new TimeoutException("Invocation did not complete within " + overallTimeout + "ms", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw new RpcException("Invocation failed", cause);
+		}
+	}
+
+	@Override
+	public CompletableFuture<RpcResponse> invokeAsync(ServiceMetadata metadata, RpcRequest request,
+		int timeout) {
+		Invocation invocation = new Invocation(metadata, request, timeout);
+		invocation.run();
+		return invocation.future;
+	}
+
+	/**
+	 * 单次调用的状态机：选节点、申请熔断许可、异步发送，失败时按退避在定时器上调度下一次尝试并交给重试线程执行，
+	 * 任何线程都不会因重试而阻塞。开启对冲时，首个请求超过对冲延迟仍未返回则向另一节点再发一份，
+	 * 先返回的结果生效，另一份被取消。状态只在持有本对象监视器时修改
+	 */
+	private final class Invocation {
+
+		private final ServiceMetadata metadata;
+
+		private final RpcRequest request;
+
+		private final RpcClientProperties.RetryProperties retryProps;
+
+		private final int maxAttempts;
+
+		private final long deadlineAtMillis;
+
+		/**
+		 * 对冲延迟，为空表示不对冲
+		 */
+		private final Long hedgeDelayMs;
+
+		private final CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+
+		private Set<String> attemptedEndpoints = Collections.emptySet();
+
+		private int attempt = 1;
+
+		private Throwable lastException;
+
+		/**
+		 * 在途的首发请求与对冲请求
+		 */
+		private Attempt running;
+
+		private Attempt hedging;
+
+		private ScheduledFuture<?> hedgeTimer;
+
+		private boolean hedged;
+
+		/**
+		 * 已有请求成功，其余在途请求随后被取消
+		 */
+		private boolean settled;
+
+		Invocation(ServiceMetadata metadata, RpcRequest request, int timeout) {
+			this.metadata = metadata;
+			this.hedgeDelayMs = request.getHedgeDelayMs();
+			// 对冲的落败请求可能在调用结束后才编码，因此不能再读取调用方（可能被回收）的请求
+			this.request = hedgeDelayMs != null ? request.copy() : request;
+			this.retryProps = clientProperties.getRetry();
+			// 流式参数的元素一经发送无法重放，不重试
+			this.maxAttempts = request.getParameterStream() != null ? 1
+				: Math.max(1, retryProps.isEnabled() ? retryProps.getMaxAttempts() : 1);
+			long overallTimeout = timeout > 0 ? timeout : clientProperties.getTimeout();
+			this.deadlineAtMillis = System.currentTimeMillis() + overallTimeout;
+			if (hedgeDelayMs != null) {
+				hedgeBudget.onRequest();
+			}
+		}
+
+		synchronized void run() {
+			try {
+				while (true) {
+					long remaining = deadlineAtMillis - System.currentTimeMillis();
+					if (remaining <= 0) {
+						fail(new TimeoutException("Request deadline exceeded", lastException));
+						return;
+					}
+
+					ServiceURL selected = selectHealthyInstance(metadata, attemptedEndpoints);
+					if (selected == null) {
+						fail(new ServiceUnavailableException(
+							"No healthy instance available for service: " + metadata.getServiceKey()));
+						return;
+					}
+
+					Endpoint endpoint = endpointDirectory.resolve(selected);
+					if (!circuitBreakerManager.tryAcquirePermission(endpoint)) {
+						markAttempted(endpoint);
+						lastException = new ServiceUnavailableException(
+							"Circuit breaker open for endpoint: " + endpoint);
+						continue;
+					}
+
+					Attempt sent = send(selected, endpoint, remaining, false);
+					if (sent != null && !hedged && hedgeDelayMs != null) {
+						scheduleHedge(sent, remaining);
+					}
+					return;
+				}
+			} catch (Exception e) {
+				fail(e);
+			}
+		}
 
-		Throwable lastException = null;
-		Set<String> attemptedEndpoints = new HashSet<>();
-		int attempt = 1;
+		/**
+		 * 发送一次尝试，同步完成时返回null
+		 */
+		private Attempt send(ServiceURL selected, Endpoint endpoint, long remaining, boolean hedge) {
+			RpcRequest attemptRequest = hedge ? request.copy() : request;
+			int perAttemptTimeout = (int) Math.min(remaining, Integer.MAX_VALUE);
+			attemptRequest.setDeadlineAtMillis(deadlineAtMillis);
+			attemptRequest.setAttempt(attempt);
+			attemptRequest.setTimeout(perAttemptTimeout);
 
-		while (attempt <= maxAttempts) {
+			markAttempted(endpoint);
+			Attempt sent = new Attempt(endpoint, hedge);
+			if (hedge) {
+				hedging = sent;
+			} else {
+				running = sent;
+			}
+			sent.future = netClient.sendAsync(selected, attemptRequest, perAttemptTimeout);
+			sent.future.whenComplete(sent);
+			return sent.future.isDone() ? null : sent;
+		}
+
+		private void scheduleHedge(Attempt primary, long remaining) {
+			long delay = hedgeDelay(primary.endpoint);
+			if (delay < 0 || delay >= remaining) {
+				return;
+			}
+			hedged = true;
+			hedgeTimer = scheduleAttempt(() -> hedge(primary), delay);
+		}
+
+		private long hedgeDelay(Endpoint endpoint) {
+			if (hedgeDelayMs > 0) {
+				return hedgeDelayMs;
+			}
+			double ewma = endpointStatsRegistry.getLatencyScore(endpoint);
+			if (Double.isNaN(ewma) || ewma <= 0) {
+				// 没有延迟数据时无从判断慢请求
+				return -1;
+			}
+			RpcClientProperties.HedgeProperties hedgeProps = clientProperties.getHedge();
+			return Math.max(hedgeProps.getMinDelayMs(), Math.round(ewma * hedgeProps.getEwmaMultiplier()));
+		}
+
+		private synchronized void hedge(Attempt primary) {
+			hedgeTimer = null;
+			if (future.isDone() || running != primary) {
+				return;
+			}
 			long remaining = deadlineAtMillis - System.currentTimeMillis();
 			if (remaining <= 0) {
-				throw new TimeoutException("Request deadline exceeded", lastException);
+				return;
+			}
+			ServiceURL selected;
+			try {
+				selected = selectHealthyInstance(metadata, attemptedEndpoints);
+			} catch (Exception e) {
+				return;
 			}
-
-			ServiceURL selected = selectHealthyInstance(metadata, attemptedEndpoints);
 			if (selected == null) {
-				throw new ServiceUnavailableException(
-					"No healthy instance available for service: " + metadata.getServiceKey());
+				return;
 			}
-
-			String endpoint = selected.getAddress();
+			Endpoint endpoint = endpointDirectory.resolve(selected);
+			// 先申请熔断许可再扣对冲额度，熔断拒绝时额度不被白白消耗；额度不足则归还许可
 			if (!circuitBreakerManager.tryAcquirePermission(endpoint)) {
-				attemptedEndpoints.add(endpoint);
-				lastException = new ServiceUnavailableException(
-					"Circuit breaker open for endpoint: " + endpoint);
-				continue;
+				return;
 			}
+			if (!hedgeBudget.tryAcquire()) {
+				circuitBreakerManager.releasePermission(endpoint);
+				return;
+			}
+			metricsRecorder.recordHedge(request.getServiceKey(), request.getMethodName(), false);
+			send(selected, endpoint, remaining, true);
+		}
 
-			long perAttemptTimeout = Math.min(remaining, Integer.MAX_VALUE);
-			request.setDeadlineAtMillis(deadlineAtMillis);
-			request.setAttempt(attempt);
-			request.setTimeout((int) perAttemptTimeout);
+		private synchronized void onComplete(Attempt completed, RpcResponse response, Throwable error) {
+			if (completed == running) {
+				running = null;
+			} else if (completed == hedging) {
+				hedging = null;
+			}
+			long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - completed.startNanos);
+			Throwable cause = error instanceof CompletionException && error.getCause() != null
+				? error.getCause() : error;
 
-			long startNanos = System.nanoTime();
-			try {
-				RpcResponse response = netClient.send(selected, request, (int) perAttemptTimeout);
-				long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
-				circuitBreakerManager.onSuccess(endpoint, latencyMs);
-				endpointStatsRegistry.onSuccess(endpoint, latencyMs);
-				return response;
-			} catch (Exception ex) {
-				long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
-				circuitBreakerManager.onError(endpoint, ex, latencyMs);
-				endpointStatsRegistry.onFailure(endpoint, latencyMs, ex);
-				attemptedEndpoints.add(endpoint);
-				lastException = ex;
-
-				if (!shouldRetry(ex, retryProps, attempt, maxAttempts)) {
-					if (ex instanceof Exception) {
-						throw ex;
-					}
-					throw new RpcException("Invocation failed", ex);
+			if (settled || future.isDone()) {
+				// 结果已由另一请求决定：被取消的请求归还许可，已返回的照常计入统计
+				if (cause instanceof CancellationException) {
+					circuitBreakerManager.releasePermission(completed.endpoint);
+				} else {
+					record(completed, latencyMs, cause);
 				}
+				return;
+			}
 
-				long backoff = Math.min(computeBackoffMillis(retryProps, attempt),
-					deadlineAtMillis - System.currentTimeMillis());
-				if (backoff > 0) {
-					TimeUnit.MILLISECONDS.sleep(backoff);
+			record(completed, latencyMs, cause);
+			if (cause == null) {
+				if (completed.hedge) {
+					metricsRecorder.recordHedge(request.getServiceKey(), request.getMethodName(), true);
 				}
-				attempt++;
+				// 先取消落败请求再完成调用，落败请求的取消不会被当作失败
+				settled = true;
+				cancelOutstanding();
+				future.complete(response);
+				return;
+			}
+
+			lastException = cause;
+			if (running != null || hedging != null) {
+				// 另一请求仍在途，由它决定结果
+				return;
 			}
+			cancelHedgeTimer();
+
+			if (!shouldRetry(cause, retryProps, attempt, maxAttempts)) {
+				fail(cause);
+				return;
+			}
+
+			long backoff = Math.min(computeBackoffMillis(retryProps, attempt),
+				deadlineAtMillis - System.currentTimeMillis());
+			attempt++;
+			// 退避为0时同样交给重试线程，避免在IO线程上重新选节点与建连
+			scheduleAttempt(this::run, backoff);
 		}
-		if (lastException instanceof Exception) {
-			throw (Exception) lastException;
+
+		private void record(Attempt completed, long latencyMs, Throwable cause) {
+			if (cause == null) {
+				circuitBreakerManager.onSuccess(completed.endpoint, latencyMs);
+				endpointStatsRegistry.onSuccess(completed.endpoint, latencyMs);
+			} else {
+				circuitBreakerManager.onError(completed.endpoint, cause, latencyMs);
+				endpointStatsRegistry.onFailure(completed.endpoint, latencyMs, cause);
+			}
 		}
-		throw new RpcException("Invocation failed", lastException);
-	}
 
-	@Override
-	public CompletableFuture<RpcResponse> invokeAsync(ServiceMetadata metadata, RpcRequest request,
-		int timeout) {
-		CompletableFuture<RpcResponse> future = new CompletableFuture<>();
-		try {
-			ServiceURL selected = selectHealthyInstance(metadata, new HashSet<>());
-			if (selected == null) {
-				future.completeExceptionally(
-					new ServiceUnavailableException("No healthy instance available"));
-				return future;
+		private void cancelOutstanding() {
+			cancelHedgeTimer();
+			if (running != null) {
+				running.future.cancel(false);
 			}
-			long overallTimeout = timeout > 0 ? timeout : clientProperties.getTimeout();
-			long deadlineAtMillis = System.currentTimeMillis() + overallTimeout;
-			request.setDeadlineAtMillis(deadlineAtMillis);
-			request.setAttempt(1);
-			int perAttemptTimeout = (int) Math.min(Integer.MAX_VALUE, overallTimeout);
-			request.setTimeout(perAttemptTimeout);
-			return netClient.sendAsync(selected, request, perAttemptTimeout);
-		} catch (Exception e) {
+			if (hedging != null) {
+				hedging.future.cancel(false);
+			}
+		}
+
+		private void cancelHedgeTimer() {
+			if (hedgeTimer != null) {
+				hedgeTimer.cancel(false);
+				hedgeTimer = null;
+			}
+		}
+
+		private void markAttempted(Endpoint endpoint) {
+			if (attemptedEndpoints.isEmpty()) {
+				attemptedEndpoints = new HashSet<>();
+			}
+			attemptedEndpoints.add(endpoint.getAddress());
+		}
+
+		private void fail(Throwable cause) {
+			cancelHedgeTimer();
 			future.completeExceptionally(
-				new RpcException("Failed to invoke remote service: " + metadata.getServiceId(), e));
-			return future;
+				cause instanceof Exception ? cause : new RpcException("Invocation failed", cause));
+		}
+
+		/**
+		 * 一次在途的发送，完成时回到状态机
+		 */
+		private final class Attempt implements BiConsumer<RpcResponse, Throwable> {
+
+			private final Endpoint endpoint;
+
+			private final boolean hedge;
+
+			private final long startNanos = System.nanoTime();
+
+			private CompletableFuture<RpcResponse> future;
+
+			Attempt(Endpoint endpoint, boolean hedge) {
+				this.endpoint = endpoint;
+				this.hedge = hedge;
+			}
+
+			@Override
+			public void accept(RpcResponse response, Throwable error) {
+				onComplete(this, response, error);
+			}
 		}
 	}
 
@@ -163,8 +448,9 @@ public class DefaultClientInvocation implements ClientInvocation {
 		List<ServiceURL> candidates = new ArrayList<>();
 		long now = System.currentTimeMillis();
 		for (ServiceURL url : instances) {
-			String endpoint = url.getAddress();
-			if (attemptedEndpoints.contains(endpoint)) {
+			// 句柄在发现结果变化后的首次调用时绑定，之后直接读取
+			Endpoint endpoint = endpointDirectory.resolve(url);
+			if (!attemptedEndpoints.isEmpty() && attemptedEndpoints.contains(endpoint.getAddress())) {
 				continue;
 			}
 			if (endpointStatsRegistry.isEjected(endpoint, now)) {
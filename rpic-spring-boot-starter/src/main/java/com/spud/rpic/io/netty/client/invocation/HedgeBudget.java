@@ -0,0 +1,58 @@
+package com.spud.rpic.io.netty.client.invocation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对冲预算：每个开启对冲的请求按比例积累额度，每次对冲消耗一个完整额度，
+ * 对冲请求数因此不会超过请求总数的固定比例，节点整体变慢时也不会成倍放大负载。
+ */
+final class HedgeBudget {
+
+	/**
+	 * 额度以千分之一为单位计数，避免浮点CAS
+	 */
+	private static final long UNIT = 1000L;
+
+	private final AtomicLong tokens;
+
+	private final long deposit;
+
+	private final long capacity;
+
+	HedgeBudget(double ratio, int burst) {
+		this.deposit = Math.round(Math.max(0d, ratio) * UNIT);
+		this.capacity = Math.max(1, burst) * UNIT;
+		// 初始即满额，冷启动阶段同样可以对冲
+		this.tokens = new AtomicLong(capacity);
+	}
+
+	/**
+	 * 记录一个开启对冲的请求
+	 */
+	void onRequest() {
+		if (deposit == 0) {
+			return;
+		}
+		long current;
+		do {
+			current = tokens.get();
+			if (current >= capacity) {
+				return;
+			}
+		} while (!tokens.compareAndSet(current, Math.min(capacity, current + deposit)));
+	}
+
+	/**
+	 * 尝试为一次对冲扣除额度
+	 */
+	boolean tryAcquire() {
+		long current;
+		do {
+			current = tokens.get();
+			if (current < UNIT) {
+				return false;
+			}
+		} while (!tokens.compareAndSet(current, current - UNIT));
+		return true;
+	}
+}
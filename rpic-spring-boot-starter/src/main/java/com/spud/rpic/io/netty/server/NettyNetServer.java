@@ -1,17 +1,24 @@
 package com.spud.rpic.io.netty.server;
 
 import com.spud.rpic.property.RpcProperties;
+import com.spud.rpic.property.RpcServerProperties;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.util.concurrent.Future;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
@@ -24,13 +31,16 @@ import org.springframework.beans.factory.InitializingBean;
 public class NettyNetServer implements InitializingBean, DisposableBean {
 
 	private final int port;
+	private final RpcServerProperties serverProperties;
 	private final RpcServerInitializer initializer;
-	private final NioEventLoopGroup bossGroup;
-	private final NioEventLoopGroup workerGroup;
+	private final ServerTransport transport;
+	private final int acceptors;
+	private final EventLoopGroup bossGroup;
+	private final EventLoopGroup workerGroup;
 	private final AtomicBoolean started = new AtomicBoolean(false);
 	private final AtomicBoolean shuttingDown = new AtomicBoolean(false);
 	private final CountDownLatch startLatch = new CountDownLatch(1);
-	private volatile Channel serverChannel;
+	private final List<Channel> serverChannels = new CopyOnWriteArrayList<>();
 	private static final Object lock = new Object();
 
 	private void ensureShutdownGuardReset() {
@@ -39,10 +49,22 @@ public class NettyNetServer implements InitializingBean, DisposableBean {
 	}
 
 	public NettyNetServer(RpcProperties properties, RpcServerInitializer initializer) {
-		this.port = properties.getServer().getPort();
+		this.serverProperties = properties.getServer();
+		this.port = serverProperties.getPort();
 		this.initializer = initializer;
-		bossGroup = new NioEventLoopGroup(1);
-		workerGroup = new NioEventLoopGroup(properties.getClient().getWorkerThreads());
+		this.transport = ServerTransport.select(serverProperties);
+
+		int bossThreads = Math.max(1, serverProperties.getBossThreads());
+		// SO_REUSEPORT下每个boss线程各自绑定一个acceptor，由内核在它们之间分摊新连接
+		this.acceptors = serverProperties.isReusePort() && transport.supportsReusePort() ? bossThreads : 1;
+		if (serverProperties.isReusePort() && !transport.supportsReusePort()) {
+			log.warn("SO_REUSEPORT is not supported by {} transport, binding a single acceptor",
+				transport.getName());
+		}
+		bossGroup = transport.newGroup(bossThreads, "rpc-server-boss");
+		workerGroup = transport.newGroup(serverProperties.getWorkerThreads(), "rpc-server-worker");
+		log.info("RPC server using {} transport with bossThreads={}, workerThreads={}, acceptors={}",
+			transport.getName(), bossThreads, serverProperties.getWorkerThreads(), acceptors);
 	}
 
 	@Override
@@ -70,35 +92,37 @@ public class NettyNetServer implements InitializingBean, DisposableBean {
 				return;
 			}
 			try {
-				ServerBootstrap bootstrap = new ServerBootstrap();
-				bootstrap.group(bossGroup, workerGroup)
-					.channel(NioServerSocketChannel.class)
-					.option(ChannelOption.SO_BACKLOG, 128)
-					.option(ChannelOption.SO_REUSEADDR, true)
-					.childOption(ChannelOption.SO_KEEPALIVE, true)
-					.childOption(ChannelOption.TCP_NODELAY, true)
-					.childHandler(initializer);
-
-				// 绑定端口
-				ChannelFuture bindFuture = bootstrap.bind(port);
-				bindFuture.addListener((ChannelFutureListener) future -> {
-					if (future.isSuccess()) {
-						serverChannel = future.channel();
-						// 添加服务器关闭的监听器
-						serverChannel.closeFuture().addListener((ChannelFutureListener) closeFuture -> {
-							log.info("RPC server channel closed");
-							shutdown();
-						});
-
-						started.set(true);
-						startLatch.countDown();
-						log.info("RPC server started successfully on port {}", port);
-					} else {
-						log.error("Failed to start RPC server on port {}", port, bindFuture.cause());
-						startLatch.countDown();
-						shutdown();
-					}
-				});
+				ServerBootstrap bootstrap = createBootstrap();
+				AtomicInteger pendingBinds = new AtomicInteger(acceptors);
+				AtomicBoolean bindFailed = new AtomicBoolean(false);
+				for (int i = 0; i < acceptors; i++) {
+					// 绑定端口
+					ChannelFuture bindFuture = bootstrap.bind(port);
+					bindFuture.addListener((ChannelFutureListener) future -> {
+						if (future.isSuccess()) {
+							Channel channel = future.channel();
+							serverChannels.add(channel);
+							// 添加服务器关闭的监听器
+							channel.closeFuture().addListener((ChannelFutureListener) closeFuture -> {
+								log.info("RPC server channel closed");
+								shutdown();
+							});
+						} else if (bindFailed.compareAndSet(false, true)) {
+							log.error("Failed to start RPC server on port {}", port, future.cause());
+						}
+
+						if (pendingBinds.decrementAndGet() == 0) {
+							if (bindFailed.get()) {
+								// 部分acceptor绑定失败时关闭已绑定的channel，与单acceptor绑定失败的行为一致
+								serverChannels.forEach(Channel::close);
+							} else {
+								started.set(true);
+								log.info("RPC server started successfully on port {}", port);
+							}
+							startLatch.countDown();
+						}
+					});
+				}
 			} catch (Exception e) {
 				log.error("Error occurred while starting RPC server", e);
 				startLatch.countDown();
@@ -116,7 +140,7 @@ public class NettyNetServer implements InitializingBean, DisposableBean {
 
 		try {
 			// 关闭服务器channel（非阻塞）
-			if (serverChannel != null) {
+			for (Channel serverChannel : serverChannels) {
 				serverChannel.close().addListener(future -> {
 					if (future.isSuccess()) {
 						log.info("Server channel closed successfully");
@@ -125,6 +149,7 @@ public class NettyNetServer implements InitializingBean, DisposableBean {
 					}
 				});
 			}
+			serverChannels.clear();
 
 			// 优雅关闭线程组
 			Future<?> bossShutdownFuture = bossGroup.shutdownGracefully();
@@ -168,6 +193,35 @@ public class NettyNetServer implements InitializingBean, DisposableBean {
 	}
 
 	public Channel getServerChannel() {
-		return serverChannel;
+		return serverChannels.isEmpty() ? null : serverChannels.get(0);
+	}
+
+	private ServerBootstrap createBootstrap() {
+		ByteBufAllocator allocator = serverProperties.isPooledAllocator()
+			? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
+		ServerBootstrap bootstrap = new ServerBootstrap();
+		bootstrap.group(bossGroup, workerGroup)
+			.channel(transport.getServerChannelClass())
+			.option(ChannelOption.SO_BACKLOG, serverProperties.getSoBacklog())
+			.option(ChannelOption.SO_REUSEADDR, serverProperties.isSoReuseAddr())
+			.option(ChannelOption.ALLOCATOR, allocator)
+			.childOption(ChannelOption.SO_KEEPALIVE, serverProperties.isSoKeepalive())
+			.childOption(ChannelOption.TCP_NODELAY, serverProperties.isTcpNoDelay())
+			.childOption(ChannelOption.ALLOCATOR, allocator)
+			.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+				new WriteBufferWaterMark(serverProperties.getWriteBufferWaterMarkLow(),
+					serverProperties.getWriteBufferWaterMarkHigh()))
+			.childHandler(initializer);
+
+		if (acceptors > 1) {
+			bootstrap.option(transport.getReusePortOption(), true);
+		}
+		if (serverProperties.getSndBuf() != null) {
+			bootstrap.childOption(ChannelOption.SO_SNDBUF, serverProperties.getSndBuf());
+		}
+		if (serverProperties.getRcvBuf() != null) {
+			bootstrap.childOption(ChannelOption.SO_RCVBUF, serverProperties.getRcvBuf());
+		}
+		return bootstrap;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.spud.rpic.io.netty.server;
+
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.exception.RpcException;
+import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.serializer.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 服务端的一个流式响应：按客户端授予的额度从结果迭代器中逐块取出元素写出，额度用尽或连接不可写时暂停，
+ * 新额度到达或连接恢复可写后在业务线程池（未配置时为I/O线程）上继续。迭代器只由持有发送权的线程访问。
+ */
+@Slf4j
+final class ResponseStream implements Runnable {
+
+	private final ChannelHandlerContext ctx;
+	private final ProtocolMsg request;
+	private final Serializer serializer;
+	private final Iterator<?> source;
+	private final int chunkSize;
+	private final Executor executor;
+	private final Runnable onClose;
+
+	// 以下字段由this保护
+	private int credits = RpcConstants.STREAM_INITIAL_CREDIT;
+	private boolean running;
+	private boolean closed;
+
+	/**
+	 * @param request 发起流的请求消息，只使用其消息头，调用方可在构造后释放消息体
+	 */
+	ResponseStream(ChannelHandlerContext ctx, ProtocolMsg request, Serializer serializer,
+		Iterator<?> source, int chunkSize, Executor executor, Runnable onClose) {
+		this.ctx = ctx;
+		this.request = new ProtocolMsg(request.getMagicNumber(), request.getVersion(),
+			request.getType(), request.getSerializerType(), request.getFlags(), request.getRequestId(),
+			0, new byte[0], null);
+		this.serializer = serializer;
+		this.source = source;
+		this.chunkSize = Math.max(1, chunkSize);
+		this.executor = executor;
+		this.onClose = onClose;
+	}
+
+	/**
+	 * 在当前线程上发送初始额度内的数据块
+	 */
+	void start() {
+		synchronized (this) {
+			running = true;
+		}
+		run();
+	}
+
+	/**
+	 * 客户端授予新额度，发送已暂停时重新调度
+	 */
+	void grant(int amount) {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			credits += amount;
+			if (running || credits <= 0) {
+				return;
+			}
+			running = true;
+		}
+		try {
+			executor.execute(this);
+		} catch (RejectedExecutionException e) {
+			synchronized (this) {
+				running = false;
+			}
+			finish(RpcResponse.error(null, new RpcException(503, "Server is overloaded")));
+		}
+	}
+
+	/**
+	 * 连接恢复可写时继续发送
+	 */
+	void resume() {
+		grant(0);
+	}
+
+	/**
+	 * 客户端取消或连接断开：正在发送时由发送线程在当前数据块后关闭数据源，否则立即关闭
+	 */
+	void cancel() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (running) {
+				return;
+			}
+		}
+		closeSource();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				synchronized (this) {
+					if (closed) {
+						running = false;
+						break;
+					}
+					// 额度用尽或写缓冲超过高水位时暂停，由新额度或可写事件恢复
+					if (credits <= 0 || !ctx.channel().isWritable()) {
+						running = false;
+						return;
+					}
+					credits--;
+				}
+				List<Object> chunk = new ArrayList<>(chunkSize);
+				while (chunk.size() < chunkSize && source.hasNext()) {
+					chunk.add(source.next());
+				}
+				boolean hasMore = source.hasNext();
+				if (!chunk.isEmpty()) {
+					ctx.writeAndFlush(encode(RpcConstants.TYPE_STREAM_CHUNK,
+						RpcResponse.success(null, chunk)));
+				}
+				if (!hasMore) {
+					finish(RpcResponse.success(null, null));
+					return;
+				}
+			}
+		} catch (Exception e) {
+			log.error("Server Channel[{}] Stream {} failed", ctx.channel().id().asShortText(),
+				request.getRequestId(), e);
+			finish(RpcResponse.error(null, e));
+			return;
+		}
+		// 发送途中被取消
+		closeSource();
+	}
+
+	/**
+	 * 以一条普通响应结束流
+	 */
+	private void finish(RpcResponse response) {
+		synchronized (this) {
+			closed = true;
+			running = false;
+		}
+		try {
+			ctx.writeAndFlush(encode(RpcConstants.TYPE_RESPONSE, response));
+		} catch (Exception e) {
+			log.error("Server Channel[{}] Failed to end stream {}", ctx.channel().id().asShortText(),
+				request.getRequestId(), e);
+		}
+		closeSource();
+	}
+
+	private ProtocolMsg encode(byte type, RpcResponse response) {
+		ByteBuf body = ctx.alloc().ioBuffer();
+		try {
+			serializer.serialize(response, body);
+		} catch (RuntimeException e) {
+			body.release();
+			throw e;
+		}
+		return type == RpcConstants.TYPE_STREAM_CHUNK
+			? ProtocolMsg.streamChunkFor(request, body, serializer.getCode())
+			: ProtocolMsg.responseFor(request, body, serializer.getCode());
+	}
+
+	private void closeSource() {
+		onClose.run();
+		if (source instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) source).close();
+			} catch (Exception e) {
+				log.debug("Failed to close stream source for request {}", request.getRequestId(), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.spud.rpic.io.netty.server;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spud.rpic.property.RpcServerProperties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * 服务端业务线程池，将服务方法的执行从Netty I/O线程中剥离。
+ * <p>
+ * 默认使用有界的平台线程池（coreThreads/maxThreads/queueSize），队列满时拒绝任务，由调用方立即返回过载响应；
+ * 开启virtualThreads且运行在JDK 21+时改为每个请求一个虚拟线程，并发上限仍由maxConcurrentRequests约束。
+ */
+@Slf4j
+public class RpcServerExecutor implements Executor, DisposableBean {
+
+	private static final long KEEP_ALIVE_SECONDS = 60L;
+
+	private final ExecutorService delegate;
+
+	private final boolean virtual;
+
+	public RpcServerExecutor(RpcServerProperties properties) {
+		ExecutorService virtualExecutor = properties.isVirtualThreads() ? newVirtualExecutor() : null;
+		this.virtual = virtualExecutor != null;
+		this.delegate = virtual ? virtualExecutor : newPlatformExecutor(properties);
+	}
+
+	/**
+	 * 提交业务任务
+	 *
+	 * @throws RejectedExecutionException 队列已满或线程池已关闭
+	 */
+	@Override
+	public void execute(Runnable command) {
+		delegate.execute(command);
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * 当前排队等待执行的任务数，虚拟线程模式下恒为0
+	 */
+	public int getQueueSize() {
+		return delegate instanceof ThreadPoolExecutor
+			? ((ThreadPoolExecutor) delegate).getQueue().size() : 0;
+	}
+
+	@Override
+	public void destroy() throws InterruptedException {
+		delegate.shutdown();
+		if (!delegate.awaitTermination(5, TimeUnit.SECONDS)) {
+			log.warn("RPC server executor did not terminate in time, forcing shutdown");
+			delegate.shutdownNow();
+		}
+	}
+
+	private static ExecutorService newPlatformExecutor(RpcServerProperties properties) {
+		int core = properties.getCoreThreads();
+		int max = Math.max(Math.max(core, properties.getMaxThreads()), 1);
+		BlockingQueue<Runnable> queue = properties.getQueueSize() > 0
+			? new ArrayBlockingQueue<>(properties.getQueueSize()) : new SynchronousQueue<>();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(core, max, KEEP_ALIVE_SECONDS,
+			TimeUnit.SECONDS, queue,
+			new ThreadFactoryBuilder().setNameFormat("rpc-server-biz-%d").setDaemon(true).build(),
+			new ThreadPoolExecutor.AbortPolicy());
+		log.info("RPC server business executor: core={}, max={}, queueSize={}", core, max,
+			properties.getQueueSize());
+		return executor;
+	}
+
+	private static ExecutorService newVirtualExecutor() {
+		try {
+			ExecutorService executor = (ExecutorService) Executors.class
+				.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			log.info("RPC server business executor: virtual thread per task");
+			return executor;
+		} catch (ReflectiveOperationException e) {
+			log.warn("Virtual threads are not available on Java {}, using platform thread pool",
+				System.getProperty("java.version"));
+			return null;
+		}
+	}
+}
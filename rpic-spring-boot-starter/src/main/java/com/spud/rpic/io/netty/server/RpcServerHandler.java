@@ -3,15 +3,31 @@ package com.spud.rpic.io.netty.server;
 import com.spud.rpic.common.constants.RpcConstants;
 import com.spud.rpic.common.domain.RpcRequest;
 import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.exception.RpcException;
 import com.spud.rpic.common.exception.TimeoutException;
 import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.netty.BatchFrames;
+import com.spud.rpic.io.netty.DecompressException;
+import com.spud.rpic.io.netty.InboundStream;
+import com.spud.rpic.io.netty.MessageSizePredictor;
+import com.spud.rpic.io.netty.MessageSizePredictor.SizeEstimate;
 import com.spud.rpic.io.netty.server.invocation.DefaultServerInvocation;
 import com.spud.rpic.io.serializer.Serializer;
 import com.spud.rpic.io.serializer.SerializerFactory;
 import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.util.ConcurrentLongObjectMap;
 import io.micrometer.core.instrument.Timer;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -25,16 +41,49 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 	private final SerializerFactory serializerFactory;
 	private final DefaultServerInvocation defaultServerInvocation;
 	private final RpcMetricsRecorder metricsRecorder;
+	// 业务线程池，为null时在I/O线程上直接执行
+	private final Executor executor;
+	// 按方法预估响应体大小，各连接的Handler共享
+	private final MessageSizePredictor sizePredictor;
+	// 流式响应每个数据块包含的元素数
+	private final int streamChunkSize;
+	// 本连接上进行中的流式响应，以请求ID为键
+	private final ConcurrentLongObjectMap<ResponseStream> streams = new ConcurrentLongObjectMap<>();
+	// 本连接上接收中的流式参数，以请求ID为键
+	private final ConcurrentLongObjectMap<InboundStream<?>> inboundStreams = new ConcurrentLongObjectMap<>();
 
 	/**
 	 * 创建主Handler实例（由Spring管理的单例）
 	 */
 	public RpcServerHandler(Serializer serializer, SerializerFactory serializerFactory,
 		DefaultServerInvocation defaultServerInvocation, RpcMetricsRecorder metricsRecorder) {
+		this(serializer, serializerFactory, defaultServerInvocation, metricsRecorder, null);
+	}
+
+	public RpcServerHandler(Serializer serializer, SerializerFactory serializerFactory,
+		DefaultServerInvocation defaultServerInvocation, RpcMetricsRecorder metricsRecorder,
+		Executor executor) {
+		this(serializer, serializerFactory, defaultServerInvocation, metricsRecorder, executor,
+			new MessageSizePredictor(metricsRecorder, "server"));
+	}
+
+	public RpcServerHandler(Serializer serializer, SerializerFactory serializerFactory,
+		DefaultServerInvocation defaultServerInvocation, RpcMetricsRecorder metricsRecorder,
+		Executor executor, MessageSizePredictor sizePredictor) {
+		this(serializer, serializerFactory, defaultServerInvocation, metricsRecorder, executor,
+			sizePredictor, RpcConstants.DEFAULT_STREAM_CHUNK_SIZE);
+	}
+
+	public RpcServerHandler(Serializer serializer, SerializerFactory serializerFactory,
+		DefaultServerInvocation defaultServerInvocation, RpcMetricsRecorder metricsRecorder,
+		Executor executor, MessageSizePredictor sizePredictor, int streamChunkSize) {
 		this.serializer = serializer;
 		this.serializerFactory = serializerFactory;
 		this.defaultServerInvocation = defaultServerInvocation;
 		this.metricsRecorder = metricsRecorder;
+		this.executor = executor;
+		this.sizePredictor = sizePredictor;
+		this.streamChunkSize = streamChunkSize;
 		log.debug("Created master RpcServerHandler with serializer: {}", serializer.getType());
 	}
 
@@ -59,130 +108,543 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 		super.channelActive(ctx);
 	}
 
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		for (ResponseStream stream : streams.removeIf((requestId, stream) -> true)) {
+			stream.cancel();
+		}
+		RpcException closed = new RpcException("Channel closed: " + ctx.channel());
+		for (InboundStream<?> stream : inboundStreams.removeIf((requestId, stream) -> true)) {
+			stream.fail(closed);
+		}
+		super.channelInactive(ctx);
+	}
+
+	/**
+	 * 连接恢复可写时继续因写缓冲超过高水位而暂停的流式响应
+	 */
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		if (ctx.channel().isWritable()) {
+			for (ResponseStream stream : streams.valuesIf((requestId, stream) -> true)) {
+				stream.resume();
+			}
+		}
+		super.channelWritabilityChanged(ctx);
+	}
+
 	@Override
 	protected void channelRead0(ChannelHandlerContext ctx, ProtocolMsg msg) throws Exception {
-		log.debug(
-			"Server Channel[{}] channelRead0 received message: type={} (hex: 0x{}), contentLength={}, contentStart={}",
-			ctx.channel().id().asShortText(), msg.getType(),
-			Integer.toHexString(msg.getType() & 0xFF), msg.getContentLength(),
-			msg.getContent() != null && msg.getContent().length > 0
-				? bytesToHex(msg.getContent(), 0, Math.min(10, msg.getContent().length)) + "..."
-				: "empty");
+		if (log.isDebugEnabled()) {
+			log.debug(
+				"Server Channel[{}] channelRead0 received message: type={} (hex: 0x{}), requestId={}, contentLength={}",
+				ctx.channel().id().asShortText(), msg.getType(),
+				Integer.toHexString(msg.getType() & 0xFF), msg.getRequestId(), msg.getContentLength());
+		}
 
 		if (msg.getType() == RpcConstants.TYPE_REQUEST) {
-			log.debug("Server Channel[{}] Received REQUEST message, time: {}",
-				ctx.channel().id().asShortText(), System.currentTimeMillis());
+			if (log.isDebugEnabled()) {
+				log.debug("Server Channel[{}] Received REQUEST message, time: {}",
+					ctx.channel().id().asShortText(), System.currentTimeMillis());
+			}
 
 			Timer.Sample sample = metricsRecorder.startServerSample();
-			byte[] requestBytes = msg.getContent();
-			int requestBytesLength = msg.getContentLength();
-			String caller = remoteEndpoint(ctx);
-			final RpcRequest[] requestHolder = new RpcRequest[1];
-			Serializer activeSerializer = resolveSerializer(msg.getSerializerType());
+			if (executor == null) {
+				handleRequest(ctx, msg, sample);
+				return;
+			}
+			// 业务逻辑交给业务线程池执行，消息体在任务结束后释放
+			msg.retain();
 			try {
-				// 打印请求字节开头用于调试
-				log.debug("Server Request content start: {}",
-					bytesToHex(requestBytes, 0, Math.min(20, requestBytes.length)));
+				executor.execute(() -> {
+					try {
+						handleRequest(ctx, msg, sample);
+					} finally {
+						msg.release();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				msg.release();
+				replyOverloaded(ctx, msg, sample);
+			}
+		} else if (msg.getType() == RpcConstants.TYPE_BATCH_REQUEST) {
+			handleBatch(ctx, msg);
+		} else if (msg.getType() == RpcConstants.TYPE_STREAM_REQUEST) {
+			handleStreamRequest(ctx, msg);
+		} else if (msg.getType() == RpcConstants.TYPE_STREAM_CHUNK) {
+			handleInboundChunk(ctx, msg);
+		} else if (msg.getType() == RpcConstants.TYPE_STREAM_CREDIT) {
+			handleStreamCredit(msg);
+		} else {
+			log.error("Server Channel[{}] Unknown message type: {} (hex: 0x{})",
+				ctx.channel().id().asShortText(), msg.getType(),
+				Integer.toHexString(msg.getType() & 0xFF));
+		}
+	}
 
-				RpcRequest request = activeSerializer.deserialize(requestBytes, RpcRequest.class);
-				requestHolder[0] = request;
-				log.debug("Server Channel[{}] Deserialized request: {}, method: {}",
-					ctx.channel().id().asShortText(), request.getRequestId(), request.getMethodName());
-
-				Long deadlineAt = request.getDeadlineAtMillis();
-				if (deadlineAt != null && System.currentTimeMillis() > deadlineAt) {
-					TimeoutException timeoutException = new TimeoutException(
-						"Request deadline exceeded before execution");
-					RpcResponse timeoutResponse = RpcResponse.error(request.getRequestId(), timeoutException);
-					byte[] timeoutBytes = activeSerializer.serialize(timeoutResponse);
-					metricsRecorder.recordServer(sample, request.getServiceKey(), request.getMethodName(),
-						caller,
-						false, timeoutException, requestBytesLength, timeoutBytes.length);
-					ProtocolMsg timeoutMsg = ProtocolMsg.responseFromBytes(timeoutBytes,
-						activeSerializer.getCode());
-					log.warn("Server Channel[{}] Dropping request {} due to exceeded deadline {} < now {}",
-						ctx.channel().id().asShortText(), request.getRequestId(), deadlineAt,
-						System.currentTimeMillis());
-					ctx.writeAndFlush(timeoutMsg).addListener(future -> {
-						if (!future.isSuccess()) {
-							log.error("Server Channel[{}] Failed to send timeout response for request: {}",
-								ctx.channel().id().asShortText(), request.getRequestId(), future.cause());
-						}
-					});
-					return;
+	/**
+	 * 带流式参数的请求：先在I/O线程上登记接收流，使随后到达的数据块有处可放，再交给业务线程池执行；
+	 * 服务方法会阻塞等待数据块，因此不能在I/O线程上执行
+	 */
+	private void handleStreamRequest(ChannelHandlerContext ctx, ProtocolMsg msg) {
+		Timer.Sample sample = metricsRecorder.startServerSample();
+		if (executor == null) {
+			ProtocolMsg response = errorResponse(ctx, msg, resolveSerializer(msg.getSerializerType()),
+				null, new RpcException("Streaming parameters require the business executor"));
+			if (response != null) {
+				ctx.writeAndFlush(response);
+			}
+			return;
+		}
+		long requestId = msg.getRequestId();
+		RpcRequest header = peekHeader(msg);
+		// 每个数据块的等待时间取调用方设置的超时，携带截止时间时解码请求后再收紧为剩余时间
+		int chunkTimeout = header != null && header.getTimeout() > 0
+			? (int) Math.min(Integer.MAX_VALUE, header.getTimeout()) : RpcConstants.DEFAULT_TIMEOUT;
+		InboundStream<?>[] holder = new InboundStream<?>[1];
+		holder[0] = new InboundStream<>(ctx.channel(), requestId,
+			header != null ? header.getMethodId() : null, chunkTimeout,
+			() -> inboundStreams.remove(requestId, holder[0]));
+		inboundStreams.put(requestId, holder[0]);
+		msg.retain();
+		try {
+			executor.execute(() -> {
+				try {
+					handleRequest(ctx, msg, sample, holder[0]);
+				} finally {
+					msg.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			msg.release();
+			closeInbound(requestId);
+			replyOverloaded(ctx, msg, sample);
+		}
+	}
+
+	/**
+	 * 数据块可能先于业务线程解码请求到达，因此在I/O线程上预读路由头取得方法编号与超时，不移动请求的读索引；
+	 * 路由头无法解码时返回null，错误由随后的请求处理回复
+	 */
+	private RpcRequest peekHeader(ProtocolMsg msg) {
+		try {
+			return resolveSerializer(msg.getSerializerType())
+				.deserializeRequestHeader(msg.contentBuf().duplicate());
+		} catch (Exception e) {
+			log.debug("Failed to peek header of stream request {}: {}", msg.getRequestId(),
+				e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * 流式参数的数据块；结果为空或错误的数据块表示客户端发送结束，无人接收的数据块通知客户端停止发送
+	 */
+	private void handleInboundChunk(ChannelHandlerContext ctx, ProtocolMsg msg) {
+		long requestId = msg.getRequestId();
+		InboundStream<?> stream = inboundStreams.get(requestId);
+		if (stream == null) {
+			ctx.writeAndFlush(ProtocolMsg.streamCredit(requestId, 0));
+			return;
+		}
+		try {
+			RpcResponse chunk = resolveSerializer(msg.getSerializerType())
+				.deserializeParameterChunk(msg.contentBuf(), stream.getMethodId());
+			if (chunk.getResult() == null || Boolean.TRUE.equals(chunk.getError())) {
+				inboundStreams.remove(requestId, stream);
+				stream.onEnd(chunk);
+			} else {
+				stream.onChunk((List<?>) chunk.getResult());
+			}
+		} catch (Exception e) {
+			log.error("Server Channel[{}] Failed to decode stream chunk: {}",
+				ctx.channel().id().asShortText(), requestId, e);
+			inboundStreams.remove(requestId, stream);
+			stream.fail(e);
+			ctx.writeAndFlush(ProtocolMsg.streamCredit(requestId, 0));
+		}
+	}
+
+	/**
+	 * 调用结束后关闭流式参数，客户端仍在发送时通知其停止
+	 */
+	private void closeInbound(long requestId) {
+		InboundStream<?> stream = inboundStreams.remove(requestId);
+		if (stream != null) {
+			stream.close();
+		}
+	}
+
+	/**
+	 * 客户端消费数据块后授予额度，非正数额度表示客户端已放弃该流
+	 */
+	private void handleStreamCredit(ProtocolMsg msg) {
+		ByteBuf content = msg.contentBuf();
+		if (content.readableBytes() < 4) {
+			return;
+		}
+		int credits = content.readInt();
+		if (credits <= 0) {
+			ResponseStream stream = streams.remove(msg.getRequestId());
+			if (stream != null) {
+				stream.cancel();
+			}
+			return;
+		}
+		ResponseStream stream = streams.get(msg.getRequestId());
+		if (stream != null) {
+			stream.grant(credits);
+		}
+	}
+
+	/**
+	 * 批量请求拆分后每条请求作为独立任务提交到业务线程池，各自计时，互不阻塞；
+	 * 已完成的响应在IO线程上成组合并为批量响应帧写回，快的条目不等待慢的条目，被线程池拒绝的条目返回过载响应
+	 */
+	private void handleBatch(ChannelHandlerContext ctx, ProtocolMsg batch) {
+		List<ProtocolMsg> requests;
+		try {
+			requests = BatchFrames.split(batch, RpcConstants.TYPE_REQUEST);
+		} catch (RpcException e) {
+			log.error("Server Channel[{}] Malformed batch request: {}",
+				ctx.channel().id().asShortText(), e.getMessage());
+			ctx.close();
+			return;
+		}
+		log.debug("Server Channel[{}] Received batch of {} requests",
+			ctx.channel().id().asShortText(), requests.size());
+		byte flags = (byte) (batch.getFlags() & RpcConstants.FLAG_ACCEPT_COMPRESS_MASK);
+		BatchResponses responses = new BatchResponses(ctx, flags);
+		for (ProtocolMsg request : requests) {
+			Timer.Sample sample = metricsRecorder.startServerSample();
+			if (executor == null) {
+				processEntry(ctx, request, sample, responses);
+				continue;
+			}
+			try {
+				executor.execute(() -> processEntry(ctx, request, sample, responses));
+			} catch (RejectedExecutionException e) {
+				log.warn("Server Channel[{}] Business executor saturated, rejecting batched request: {}",
+					ctx.channel().id().asShortText(), request.getRequestId());
+				ProtocolMsg response = null;
+				try {
+					response = overloadedResponse(ctx, request, sample);
+				} finally {
+					request.release();
+					responses.complete(response);
 				}
+			}
+		}
+	}
 
-				RpcResponse response = defaultServerInvocation.handleRequest(request);
+	private void processEntry(ChannelHandlerContext ctx, ProtocolMsg request, Timer.Sample sample,
+		BatchResponses responses) {
+		ProtocolMsg response = null;
+		try {
+			response = process(ctx, request, sample);
+		} finally {
+			request.release();
+			responses.complete(response);
+		}
+	}
 
-				log.debug("Server Channel[{}] Processed request: {}, created response {}",
-					ctx.channel().id().asShortText(), request.getRequestId(), response);
+	private void writeBatch(ChannelHandlerContext ctx, List<ProtocolMsg> responses, byte flags) {
+		if (responses.isEmpty()) {
+			return;
+		}
+		ProtocolMsg batchResponse = BatchFrames.join(ctx.alloc(), responses,
+			RpcConstants.TYPE_BATCH_RESPONSE, flags);
+		ctx.writeAndFlush(batchResponse).addListener(future -> {
+			if (!future.isSuccess()) {
+				log.error("Server Channel[{}] Failed to send batch response of {} entries",
+					ctx.channel().id().asShortText(), responses.size(), future.cause());
+			}
+		});
+	}
 
-				byte[] responseBytes = activeSerializer.serialize(response);
-				log.debug(
-					"Server Channel[{}] Serialized response for request: {}, bytes length: {}, start: {}",
-					ctx.channel().id().asShortText(), request.getRequestId(), responseBytes.length,
-					bytesToHex(responseBytes, 0, Math.min(20, responseBytes.length)));
+	private void handleRequest(ChannelHandlerContext ctx, ProtocolMsg msg, Timer.Sample sample) {
+		handleRequest(ctx, msg, sample, null);
+	}
+
+	private void handleRequest(ChannelHandlerContext ctx, ProtocolMsg msg, Timer.Sample sample,
+		InboundStream<?> inbound) {
+		ProtocolMsg responseMsg = process(ctx, msg, sample, inbound);
+		if (responseMsg == null) {
+			return;
+		}
+		final long requestIdForLog = msg.getRequestId();
+		if (log.isDebugEnabled()) {
+			log.debug("Server Channel[{}] Sending response to client, request_id: {}, time: {}",
+				ctx.channel().id().asShortText(), requestIdForLog, System.currentTimeMillis());
+		}
+
+		// 添加Listener来确认是否成功发送
+		ctx.writeAndFlush(responseMsg).addListener(future -> {
+			if (future.isSuccess()) {
+				if (log.isDebugEnabled()) {
+					log.debug("Server Channel[{}] Successfully sent response for request: {}, time: {}",
+						ctx.channel().id().asShortText(), requestIdForLog, System.currentTimeMillis());
+				}
+			} else {
+				log.error("Server Channel[{}] Failed to send response for request: {}, error: {}",
+					ctx.channel().id().asShortText(), requestIdForLog, future.cause().getMessage(),
+					future.cause());
+			}
+		});
+	}
+
+	/**
+	 * 处理单条请求并返回待写出的响应，无法回包时返回null
+	 */
+	private ProtocolMsg process(ChannelHandlerContext ctx, ProtocolMsg msg, Timer.Sample sample) {
+		return process(ctx, msg, sample, null);
+	}
+
+	/**
+	 * @param inbound 请求登记的流式参数；客户端可能在请求被执行前就发完全部数据块并结束该流，
+	 * 因此直接传入而不是从在途流表中查找
+	 */
+	private ProtocolMsg process(ChannelHandlerContext ctx, ProtocolMsg msg, Timer.Sample sample,
+		InboundStream<?> inbound) {
+		boolean streaming = false;
+		int requestBytesLength = msg.getContentLength();
+		String caller = remoteEndpoint(ctx);
+		final RpcRequest[] requestHolder = new RpcRequest[1];
+		Serializer activeSerializer = resolveSerializer(msg.getSerializerType());
+		try {
+			// 直接从解码得到的帧切片反序列化；先只解码路由头，参数在请求被接纳执行后才解码
+			ByteBuf content = msg.contentBuf();
+			RpcRequest request = activeSerializer.deserializeRequestHeader(content);
+			requestHolder[0] = request;
+			if (log.isDebugEnabled()) {
+				log.debug("Server Channel[{}] Deserialized request: {}, method: {}",
+					ctx.channel().id().asShortText(), msg.getRequestId(), request.getMethodName());
+			}
+
+			Long deadlineAt = request.getDeadlineAtMillis();
+			if (inbound != null) {
+				request.setParameterStream(inbound);
+				if (deadlineAt != null) {
+					// 等待每个数据块的时间不超过调用的剩余时间
+					inbound.setTimeout((int) Math.max(1, deadlineAt - System.currentTimeMillis()));
+				}
+			}
+			if (deadlineAt != null && System.currentTimeMillis() > deadlineAt) {
+				TimeoutException timeoutException = new TimeoutException(
+					"Request deadline exceeded before execution");
+				RpcResponse timeoutResponse = RpcResponse.error(request.getRequestId(),
+					timeoutException);
+				ProtocolMsg timeoutMsg = encodeResponse(ctx, msg, activeSerializer, timeoutResponse);
 				metricsRecorder.recordServer(sample, request.getServiceKey(), request.getMethodName(),
 					caller,
-					true, null, requestBytesLength, responseBytes.length);
+					false, timeoutException, requestBytesLength, timeoutMsg.getContentLength());
+				log.warn("Server Channel[{}] Dropping request {} due to exceeded deadline {} < now {}",
+					ctx.channel().id().asShortText(), msg.getRequestId(), deadlineAt,
+					System.currentTimeMillis());
+				return timeoutMsg;
+			}
 
-				// 使用新的便捷方法创建响应消息
-				ProtocolMsg responseMsg = ProtocolMsg.responseFromBytes(responseBytes,
-					activeSerializer.getCode());
+			RpcResponse response = defaultServerInvocation.handleRequest(request,
+				() -> activeSerializer.deserializeParameters(content, request));
+
+			if (log.isDebugEnabled()) {
+				log.debug("Server Channel[{}] Processed request: {}, created response {}",
+					ctx.channel().id().asShortText(), msg.getRequestId(), response);
+			}
+
+			if (response.getResult() instanceof Iterator) {
+				if (msg.getVersion() != RpcConstants.PROTOCOL_VERSION_V1) {
+					// 双向流的结果通常边读参数边产生，参数在结果流结束时才关闭
+					startStream(ctx, msg, activeSerializer, (Iterator<?>) response.getResult());
+					streaming = true;
+					metricsRecorder.recordServer(sample, request.getServiceKey(), request.getMethodName(),
+						caller, true, null, requestBytesLength, -1);
+					return null;
+				}
+				// v1协议无法关联多条响应，退化为一次性返回全部元素
+				response.setResult(drain((Iterator<?>) response.getResult()));
+			}
+
+			// 响应直接序列化到连接分配器提供的缓冲区，由编码器与头部组合发送
+			ProtocolMsg responseMsg = encodeResponse(ctx, msg, activeSerializer, response,
+				sizePredictor.estimate(request.getServiceKey(), request.getMethodName()));
+			if (log.isDebugEnabled()) {
 				log.debug(
 					"Server Channel[{}] Created response message, type: {} (hex: 0x{}), contentLength: {}",
 					ctx.channel().id().asShortText(), responseMsg.getType(),
 					Integer.toHexString(responseMsg.getType() & 0xFF), responseMsg.getContentLength());
+			}
+			metricsRecorder.recordServer(sample, request.getServiceKey(), request.getMethodName(),
+				caller,
+				true, null, requestBytesLength, responseMsg.getContentLength());
+			return responseMsg;
+		} catch (Exception e) {
+			log.error("Server Channel[{}] Error processing request: {}",
+				ctx.channel().id().asShortText(), e.getMessage(), e);
+			RpcRequest failedRequest = requestHolder[0];
+			metricsRecorder.recordServer(sample,
+				failedRequest != null ? failedRequest.getServiceKey() : null,
+				failedRequest != null ? failedRequest.getMethodName() : null,
+				caller, false, e, requestBytesLength, -1);
+			return errorResponse(ctx, msg, activeSerializer, failedRequest, e);
+		} finally {
+			if (!streaming && msg.getType() == RpcConstants.TYPE_STREAM_REQUEST) {
+				closeInbound(msg.getRequestId());
+			}
+		}
+	}
 
-				log.debug("Server Channel[{}] Sending response to client, request_id: {}, time: {}",
-					ctx.channel().id().asShortText(), request.getRequestId(), System.currentTimeMillis());
-				final String requestIdForLog = request.getRequestId();
-
-				// 添加Listener来确认是否成功发送
-				ctx.writeAndFlush(responseMsg).addListener(future -> {
-					if (future.isSuccess()) {
-						log.debug("Server Channel[{}] Successfully sent response for request: {}, time: {}",
-							ctx.channel().id().asShortText(), requestIdForLog, System.currentTimeMillis());
-					} else {
-						log.error("Server Channel[{}] Failed to send response for request: {}, error: {}",
-							ctx.channel().id().asShortText(), requestIdForLog, future.cause().getMessage(),
-							future.cause());
-					}
-				});
-			} catch (Exception e) {
-				log.error("Server Channel[{}] Error processing request: {}",
-					ctx.channel().id().asShortText(), e.getMessage(), e);
-				RpcRequest failedRequest = requestHolder[0];
-				metricsRecorder.recordServer(sample,
-					failedRequest != null ? failedRequest.getServiceKey() : null,
-					failedRequest != null ? failedRequest.getMethodName() : null,
-					caller, false, e, requestBytesLength, -1);
+	/**
+	 * 服务方法返回迭代器时按额度逐块发送，迭代器在流结束、被取消或连接断开时关闭
+	 */
+	private void startStream(ChannelHandlerContext ctx, ProtocolMsg msg, Serializer activeSerializer,
+		Iterator<?> source) {
+		long requestId = msg.getRequestId();
+		ResponseStream[] holder = new ResponseStream[1];
+		ResponseStream stream = new ResponseStream(ctx, msg, activeSerializer, source, streamChunkSize,
+			executor != null ? executor : ctx.executor(), () -> {
+				streams.remove(requestId, holder[0]);
+				closeInbound(requestId);
+			});
+		holder[0] = stream;
+		streams.put(requestId, stream);
+		log.debug("Server Channel[{}] Streaming response for request: {}",
+			ctx.channel().id().asShortText(), requestId);
+		stream.start();
+	}
+
+	private static List<Object> drain(Iterator<?> source) {
+		List<Object> elements = new ArrayList<>();
+		try {
+			source.forEachRemaining(elements::add);
+		} finally {
+			if (source instanceof AutoCloseable) {
+				try {
+					((AutoCloseable) source).close();
+				} catch (Exception e) {
+					log.debug("Failed to close drained stream source", e);
+				}
 			}
-		} else {
-			log.error("Server Channel[{}] Unknown message type: {} (hex: 0x{})",
-				ctx.channel().id().asShortText(), msg.getType(),
-				Integer.toHexString(msg.getType() & 0xFF));
+		}
+		return elements;
+	}
+
+	/**
+	 * 业务线程池已满时在I/O线程上直接返回过载响应，v2协议仅凭消息头即可回包，无需反序列化请求；
+	 * v1协议只解码请求的路由头以取得请求ID
+	 */
+	private void replyOverloaded(ChannelHandlerContext ctx, ProtocolMsg msg, Timer.Sample sample) {
+		log.warn("Server Channel[{}] Business executor saturated, rejecting request: {}",
+			ctx.channel().id().asShortText(), msg.getRequestId());
+		ProtocolMsg response = overloadedResponse(ctx, msg, sample);
+		if (response != null) {
+			ctx.writeAndFlush(response);
+		}
+	}
+
+	private ProtocolMsg overloadedResponse(ChannelHandlerContext ctx, ProtocolMsg msg,
+		Timer.Sample sample) {
+		Serializer activeSerializer = resolveSerializer(msg.getSerializerType());
+		RpcRequest request = null;
+		try {
+			if (msg.getVersion() == RpcConstants.PROTOCOL_VERSION_V1) {
+				request = activeSerializer.deserializeRequestHeader(msg.contentBuf());
+			}
+		} catch (Exception e) {
+			log.debug("Server Channel[{}] Failed to decode rejected v1 request",
+				ctx.channel().id().asShortText(), e);
+		}
+		RpcException overloaded = new RpcException(503, "Server is overloaded");
+		metricsRecorder.recordServer(sample, request != null ? request.getServiceKey() : null,
+			request != null ? request.getMethodName() : null, remoteEndpoint(ctx), false, overloaded,
+			msg.getContentLength(), -1);
+		return errorResponse(ctx, msg, activeSerializer, request, overloaded);
+	}
+
+	private ProtocolMsg encodeResponse(ChannelHandlerContext ctx, ProtocolMsg request,
+		Serializer activeSerializer, RpcResponse response) {
+		return encodeResponse(ctx, request, activeSerializer, response, null);
+	}
+
+	/**
+	 * 将响应序列化到池化缓冲区并构造响应消息，序列化失败时释放缓冲区；
+	 * 正常响应按方法的预估大小申请缓冲区，错误响应较小，不计入预估
+	 */
+	private ProtocolMsg encodeResponse(ChannelHandlerContext ctx, ProtocolMsg request,
+		Serializer activeSerializer, RpcResponse response, SizeEstimate estimate) {
+		ByteBuf body = estimate != null ? ctx.alloc().ioBuffer(estimate.nextSize())
+			: ctx.alloc().ioBuffer();
+		try {
+			activeSerializer.serialize(response, body);
+			if (estimate != null) {
+				estimate.record(body.readableBytes());
+			}
+			return ProtocolMsg.responseFor(request, body, activeSerializer.getCode());
+		} catch (RuntimeException e) {
+			body.release();
+			throw e;
 		}
 	}
 
 	/**
-	 * 将字节数组转换为十六进制字符串
+	 * 请求处理失败时构造错误响应。v2协议的请求ID在消息头中，即使请求体无法反序列化也能让客户端立即失败而不是等待超时；
+	 * 无法回包时返回null
 	 */
-	private String bytesToHex(byte[] bytes, int offset, int length) {
-		StringBuilder sb = new StringBuilder();
-		for (int i = offset; i < offset + length && i < bytes.length; i++) {
-			sb.append(String.format("%02X ", bytes[i] & 0xFF));
+	private ProtocolMsg errorResponse(ChannelHandlerContext ctx, ProtocolMsg msg,
+		Serializer activeSerializer, RpcRequest failedRequest, Exception cause) {
+		if (failedRequest == null && msg.getVersion() == RpcConstants.PROTOCOL_VERSION_V1) {
+			return null;
+		}
+		try {
+			RpcResponse errorResponse = RpcResponse.error(
+				failedRequest != null ? failedRequest.getRequestId() : null, cause);
+			return encodeResponse(ctx, msg, activeSerializer, errorResponse);
+		} catch (Exception e) {
+			log.error("Server Channel[{}] Failed to encode error response for request: {}",
+				ctx.channel().id().asShortText(), msg.getRequestId(), e);
+			return null;
 		}
-		return sb.toString();
 	}
 
 	@Override
 	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+		if (cause instanceof DecompressException && replyDecompressFailure(ctx,
+			((DecompressException) cause).getHeader(), (DecompressException) cause)) {
+			return;
+		}
 		log.error("Server Channel[{}] RpcServerHandler exception", ctx.channel().id().asShortText(),
 			cause);
 		ctx.close();
 	}
 
+	/**
+	 * 消息体解压失败时只失败对应的请求或流；批量请求无法得知其中的请求ID，返回false由调用方关闭连接，
+	 * 使客户端立即失败该连接上的请求
+	 */
+	private boolean replyDecompressFailure(ChannelHandlerContext ctx, ProtocolMsg header,
+		DecompressException cause) {
+		long requestId = header.getRequestId();
+		switch (header.getType()) {
+			case RpcConstants.TYPE_REQUEST:
+			case RpcConstants.TYPE_STREAM_REQUEST:
+				ProtocolMsg response = errorResponse(ctx, header,
+					resolveSerializer(header.getSerializerType()), null, cause);
+				if (response != null) {
+					ctx.writeAndFlush(response);
+				}
+				return true;
+			case RpcConstants.TYPE_STREAM_CHUNK:
+				InboundStream<?> stream = inboundStreams.remove(requestId);
+				if (stream != null) {
+					stream.fail(cause);
+				}
+				ctx.writeAndFlush(ProtocolMsg.streamCredit(requestId, 0));
+				return true;
+			default:
+				return false;
+		}
+	}
+
 	public Serializer getSerializer() {
 		return this.serializer;
 	}
@@ -199,6 +661,18 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 		return this.metricsRecorder;
 	}
 
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	public MessageSizePredictor getSizePredictor() {
+		return this.sizePredictor;
+	}
+
+	public int getStreamChunkSize() {
+		return this.streamChunkSize;
+	}
+
 	private Serializer resolveSerializer(byte serializerType) {
 		if (serializerFactory == null) {
 			return serializer;
@@ -223,4 +697,45 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<ProtocolMsg> {
 		}
 		return address != null ? address.toString() : "unknown";
 	}
+
+	/**
+	 * 收集同一批量请求中已完成的响应：首个待写响应到达时向IO线程提交一次写出，
+	 * 写出前陆续完成的响应合入同一批量帧，之后完成的响应在下一次写出中返回
+	 */
+	private final class BatchResponses {
+
+		private final ChannelHandlerContext ctx;
+
+		private final Queue<ProtocolMsg> ready = new ConcurrentLinkedQueue<>();
+
+		private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+		private final byte flags;
+
+		BatchResponses(ChannelHandlerContext ctx, byte flags) {
+			this.ctx = ctx;
+			this.flags = flags;
+		}
+
+		void complete(ProtocolMsg response) {
+			if (response == null) {
+				return;
+			}
+			ready.add(response);
+			if (flushScheduled.compareAndSet(false, true)) {
+				ctx.executor().execute(this::flush);
+			}
+		}
+
+		private void flush() {
+			// 先清除标记再取出响应，取出之后到达的响应会重新提交写出
+			flushScheduled.set(false);
+			List<ProtocolMsg> batch = new ArrayList<>();
+			ProtocolMsg response;
+			while ((response = ready.poll()) != null) {
+				batch.add(response);
+			}
+			writeBatch(ctx, batch, flags);
+		}
+	}
 }
\ No newline at end of file
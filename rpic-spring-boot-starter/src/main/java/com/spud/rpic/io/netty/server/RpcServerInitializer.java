@@ -1,6 +1,9 @@
 package com.spud.rpic.io.netty.server;
 
+import com.spud.rpic.io.netty.CompressionCodec;
+import com.spud.rpic.io.netty.FlushBatchHandler;
 import com.spud.rpic.io.netty.LoggingChannelHandler;
+import com.spud.rpic.io.netty.MessageSizePredictor;
 import com.spud.rpic.io.netty.ProtocolDecoder;
 import com.spud.rpic.io.netty.ProtocolEncoder;
 import com.spud.rpic.io.netty.server.invocation.DefaultServerInvocation;
@@ -10,6 +13,7 @@ import com.spud.rpic.metrics.RpcMetricsRecorder;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 
@@ -25,6 +29,13 @@ public class RpcServerInitializer extends ChannelInitializer<SocketChannel> {
 	private final SerializerFactory serializerFactory;
 	private final DefaultServerInvocation defaultServerInvocation;
 	private final RpcMetricsRecorder metricsRecorder;
+	private final Executor executor;
+	private final MessageSizePredictor sizePredictor;
+	private final int streamChunkSize;
+	// 消息体压缩层，为null时不加入管道
+	private final CompressionCodec compressionCodec;
+	// flush合并次数上限，0表示每条消息单独flush
+	private final int flushConsolidationLimit;
 	// 处理器计数器，用于生成唯一名称
 	private final AtomicInteger handlerCounter = new AtomicInteger(0);
 	// 是否启用调试模式
@@ -35,11 +46,26 @@ public class RpcServerInitializer extends ChannelInitializer<SocketChannel> {
 	}
 
 	public RpcServerInitializer(RpcServerHandler sharedHandler, boolean debugMode) {
+		this(sharedHandler, debugMode, null);
+	}
+
+	public RpcServerInitializer(RpcServerHandler sharedHandler, boolean debugMode,
+		CompressionCodec compressionCodec) {
+		this(sharedHandler, debugMode, compressionCodec, 0);
+	}
+
+	public RpcServerInitializer(RpcServerHandler sharedHandler, boolean debugMode,
+		CompressionCodec compressionCodec, int flushConsolidationLimit) {
 		this.serializer = sharedHandler.getSerializer();
 		this.serializerFactory = sharedHandler.getSerializerFactory();
 		this.defaultServerInvocation = sharedHandler.getDefaultServerInvocation();
 		this.metricsRecorder = sharedHandler.getMetricsRecorder();
+		this.executor = sharedHandler.getExecutor();
+		this.sizePredictor = sharedHandler.getSizePredictor();
+		this.streamChunkSize = sharedHandler.getStreamChunkSize();
 		this.debugMode = debugMode;
+		this.compressionCodec = compressionCodec;
+		this.flushConsolidationLimit = flushConsolidationLimit;
 	}
 
 	@Override
@@ -56,6 +82,9 @@ public class RpcServerInitializer extends ChannelInitializer<SocketChannel> {
 		// 添加编解码器
 		pipeline.addLast("decoder", new ProtocolDecoder());
 		pipeline.addLast("encoder", new ProtocolEncoder());
+		if (compressionCodec != null) {
+			pipeline.addLast("compression", compressionCodec);
+		}
 
 		// 添加日志处理器（解码前后）
 		if (debugMode) {
@@ -65,9 +94,13 @@ public class RpcServerInitializer extends ChannelInitializer<SocketChannel> {
 		// 为每个Channel创建独立的RpcServerHandler实例
 		String handlerName = "handler-" + handlerCounter.incrementAndGet();
 		RpcServerHandler channelHandler = new RpcServerHandler(
-			serializer, serializerFactory, defaultServerInvocation, metricsRecorder);
+			serializer, serializerFactory, defaultServerInvocation, metricsRecorder, executor,
+			sizePredictor, streamChunkSize);
 		pipeline.addLast(handlerName, channelHandler);
 
+		// 合并flush（位于管道最前端）
+		FlushBatchHandler.install(pipeline, flushConsolidationLimit, metricsRecorder, "server");
+
 		log.debug("Server channel pipeline initialized for channel: {}, handler: {}", ch, handlerName);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.spud.rpic.io.netty.server;
+
+import com.spud.rpic.property.RpcServerProperties;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 服务端传输层选择：io_uring（需引入netty-incubator-transport-io_uring）> epoll > NIO。
+ * <p>
+ * io_uring通过反射加载，未引入依赖或内核不支持时自动回退。
+ */
+@Slf4j
+final class ServerTransport {
+
+	private static final String IO_URING_PACKAGE = "io.netty.incubator.channel.uring.";
+
+	private final String name;
+
+	private final Class<? extends ServerChannel> serverChannelClass;
+
+	private final Constructor<? extends EventLoopGroup> groupConstructor;
+
+	private final ChannelOption<Boolean> reusePortOption;
+
+	private ServerTransport(String name, Class<? extends ServerChannel> serverChannelClass,
+		Class<? extends EventLoopGroup> groupClass, ChannelOption<Boolean> reusePortOption)
+		throws NoSuchMethodException {
+		this.name = name;
+		this.serverChannelClass = serverChannelClass;
+		this.groupConstructor = groupClass.getConstructor(int.class, ThreadFactory.class);
+		this.reusePortOption = reusePortOption;
+	}
+
+	static ServerTransport select(RpcServerProperties properties) {
+		if (properties.isUseIoUring()) {
+			ServerTransport ioUring = ioUring();
+			if (ioUring != null) {
+				return ioUring;
+			}
+		}
+		try {
+			if (properties.isUseEpoll() && Epoll.isAvailable()) {
+				return new ServerTransport("epoll", EpollServerSocketChannel.class,
+					EpollEventLoopGroup.class, EpollChannelOption.SO_REUSEPORT);
+			}
+			return new ServerTransport("nio", NioServerSocketChannel.class, NioEventLoopGroup.class,
+				null);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException("Unsupported Netty transport", e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ServerTransport ioUring() {
+		try {
+			Class<?> ioUring = Class.forName(IO_URING_PACKAGE + "IOUring");
+			if (!(Boolean) ioUring.getMethod("isAvailable").invoke(null)) {
+				log.warn("io_uring is not available on this system, falling back",
+					(Throwable) ioUring.getMethod("unavailabilityCause").invoke(null));
+				return null;
+			}
+			Class<?> optionClass = Class.forName(IO_URING_PACKAGE + "IOUringChannelOption");
+			return new ServerTransport("io_uring",
+				(Class<? extends ServerChannel>) Class.forName(
+					IO_URING_PACKAGE + "IOUringServerSocketChannel"),
+				(Class<? extends EventLoopGroup>) Class.forName(
+					IO_URING_PACKAGE + "IOUringEventLoopGroup"),
+				(ChannelOption<Boolean>) optionClass.getField("SO_REUSEPORT").get(null));
+		} catch (ClassNotFoundException e) {
+			log.warn("io_uring requested but netty-incubator-transport-io_uring is not on the classpath");
+			return null;
+		} catch (ReflectiveOperationException | LinkageError e) {
+			log.warn("Failed to load io_uring transport, falling back", e);
+			return null;
+		}
+	}
+
+	EventLoopGroup newGroup(int threads, String poolName) {
+		try {
+			return groupConstructor.newInstance(threads, new DefaultThreadFactory(poolName));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Failed to create " + name + " event loop group", e);
+		}
+	}
+
+	String getName() {
+		return name;
+	}
+
+	Class<? extends ServerChannel> getServerChannelClass() {
+		return serverChannelClass;
+	}
+
+	/**
+	 * 是否支持SO_REUSEPORT，支持时可在同一端口上绑定多个acceptor
+	 */
+	boolean supportsReusePort() {
+		return reusePortOption != null;
+	}
+
+	ChannelOption<Boolean> getReusePortOption() {
+		return reusePortOption;
+	}
+}
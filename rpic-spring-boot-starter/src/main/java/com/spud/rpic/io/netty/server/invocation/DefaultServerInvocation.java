@@ -2,13 +2,14 @@ package com.spud.rpic.io.netty.server.invocation;
 
 import com.spud.rpic.common.domain.RpcRequest;
 import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.domain.RpcStream;
 import com.spud.rpic.common.exception.RpcException;
+import com.spud.rpic.io.netty.server.invocation.ServiceInvokerRegistry.ServiceInvokers;
 import com.spud.rpic.property.RpcServerProperties;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Iterator;
 import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
@@ -24,13 +25,19 @@ public class DefaultServerInvocation implements ServerInvocation, ApplicationCon
 
 	private ApplicationContext applicationContext;
 
-	private final Map<String, Method> methodCache = new ConcurrentHashMap<>();
+	private final ServiceInvokerRegistry invokerRegistry;
 
   private final Semaphore semaphore;
 
 	public DefaultServerInvocation(RpcServerProperties serverProperties) {
+		this(serverProperties, new ServiceInvokerRegistry());
+	}
+
+	public DefaultServerInvocation(RpcServerProperties serverProperties,
+		ServiceInvokerRegistry invokerRegistry) {
 		int maxConcurrentRequests = serverProperties.getMaxConcurrentRequests();
 		this.semaphore = new java.util.concurrent.Semaphore(maxConcurrentRequests);
+		this.invokerRegistry = invokerRegistry;
 	}
 
 	/*
@@ -39,6 +46,7 @@ public class DefaultServerInvocation implements ServerInvocation, ApplicationCon
 	 */
 	DefaultServerInvocation(RpcServerProperties serverProperties, java.util.concurrent.Semaphore testSemaphore) {
 		this.semaphore = testSemaphore == null ? new java.util.concurrent.Semaphore(serverProperties.getMaxConcurrentRequests()) : testSemaphore;
+		this.invokerRegistry = new ServiceInvokerRegistry();
 	}
 
 	@Override
@@ -48,6 +56,14 @@ public class DefaultServerInvocation implements ServerInvocation, ApplicationCon
 
 	@Override
 	public RpcResponse handleRequest(RpcRequest request) {
+		return handleRequest(request, request::getParameters);
+	}
+
+	/**
+	 * 取得并发许可后才解码参数，过载时直接返回错误响应，不承担参数解码的开销
+	 */
+	@Override
+	public RpcResponse handleRequest(RpcRequest request, Supplier<Object[]> parameterDecoder) {
 		RpcResponse response = new RpcResponse();
 		response.setRequestId(request.getRequestId());
 
@@ -58,6 +74,7 @@ public class DefaultServerInvocation implements ServerInvocation, ApplicationCon
 		}
 
 		try {
+			request.setParameters(parameterDecoder.get());
 			return doHandleRequest(request);
 		} finally {
 			semaphore.release();
@@ -71,35 +88,19 @@ public class DefaultServerInvocation implements ServerInvocation, ApplicationCon
 		validateRequest(request);
 
 		try {
-			Class<?> interfaceClass = request.getInterfaceClass();
-			Object serviceBean = applicationContext.getBean(interfaceClass);
-			String methodKey = request.getServiceKey();
-			Method method = methodCache.get(methodKey);
-			if (method == null) {
-				try {
-					method = serviceBean.getClass().getMethod(
-						request.getMethodName(),
-						request.getParameterTypes()
-					);
-					Method existing = methodCache.putIfAbsent(methodKey, method);
-					if (existing != null) {
-						method = existing;
-					}
-				} catch (NoSuchMethodException e) {
-					throw new RpcException("Method not found: " + methodKey, e);
-				}
-			}
-			Object result = method.invoke(serviceBean, request.getParameters());
+			MethodInvoker invoker = resolveInvoker(request);
+			bindParameterStream(invoker, request);
+			Object result = invoker.invoke(request.getParameters());
 			response.setResult(result);
 			response.setError(false); // 只有成功时才设置为 false
-		} catch (IllegalAccessException e) {
-			response.setError(true);
-			response.setErrorMsg("Method access error: " + e.getMessage());
-			log.error("Method access error", e);
 		} catch (InvocationTargetException e) {
 			response.setError(true);
 			response.setErrorMsg("Method invocation error: " + e.getTargetException().getMessage());
 			log.error("Method invocation error", e.getTargetException());
+		} catch (IllegalArgumentException e) {
+			response.setError(true);
+			response.setErrorMsg("Bad request: " + e.getMessage());
+			log.warn("Bad request for method {}: {}", request.getMethodName(), e.getMessage());
 		} catch (BeansException e) {
 			response.setError(true);
 			response.setErrorMsg("Service not found: " + e.getMessage());
@@ -112,7 +113,63 @@ public class DefaultServerInvocation implements ServerInvocation, ApplicationCon
 		return response;
 	}
 
+	/**
+	 * 紧凑请求按方法编号定位调用器；完整请求优先使用启动时构建的调用器表，未预先注册的服务（如未标注@RpcService的Bean）在首次调用时按接口类型
+	 * 查找Bean并补充到调用器表中
+	 */
+	private MethodInvoker resolveInvoker(RpcRequest request) {
+		if (request.isCompact()) {
+			MethodInvoker invoker = invokerRegistry.getInvoker(request.getMethodId());
+			if (invoker == null) {
+				throw new RpcException("Unknown method id: " + request.getMethodId());
+			}
+			// 回填服务标识与方法名，供日志与指标使用
+			request.setServiceKey(invoker.getServiceKey());
+			request.setMethodName(invoker.getMethod().getName());
+			return invoker;
+		}
+		String serviceKey = request.getServiceKey();
+		ServiceInvokers service = invokerRegistry.getService(serviceKey);
+		if (service == null) {
+			Class<?> interfaceClass = request.getInterfaceClass();
+			service = invokerRegistry.register(serviceKey, interfaceClass,
+				applicationContext.getBean(interfaceClass));
+		}
+		MethodInvoker invoker = service.getInvoker(request.getMethodName(),
+			request.getParameterTypes());
+		if (invoker == null) {
+			throw new RpcException("Method not found: " + request.getInvokeKey());
+		}
+		return invoker;
+	}
+
+	/**
+	 * 带流式参数的请求中该参数位置为空，由接收中的流填入方法声明的第一个Iterator或RpcStream参数
+	 */
+	private void bindParameterStream(MethodInvoker invoker, RpcRequest request) {
+		Iterator<?> stream = request.getParameterStream();
+		if (stream == null) {
+			return;
+		}
+		Class<?>[] types = invoker.getMethod().getParameterTypes();
+		Object[] parameters = request.getParameters();
+		if (parameters == null || parameters.length != types.length) {
+			parameters = new Object[types.length];
+			request.setParameters(parameters);
+		}
+		for (int i = 0; i < types.length; i++) {
+			if (parameters[i] == null && (types[i] == Iterator.class || types[i] == RpcStream.class)) {
+				parameters[i] = stream;
+				return;
+			}
+		}
+		throw new RpcException("Method has no stream parameter: " + invoker.getMethod().getName());
+	}
+
 	private void validateRequest(RpcRequest request) {
+		if (request.isCompact()) {
+			return;
+		}
 		if (request.getInterfaceClass() == null) {
 			throw new IllegalArgumentException("Service interface cannot be null");
 		}
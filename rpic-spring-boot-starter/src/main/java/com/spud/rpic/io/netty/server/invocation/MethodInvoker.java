@@ -0,0 +1,121 @@
+package com.spud.rpic.io.netty.server.invocation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * 绑定了服务实例的方法调用器，启动时预先解析为MethodHandle，调用时无需反射查找与访问检查
+ */
+@Getter
+public final class MethodInvoker {
+
+	private static final Object[] NO_ARGS = new Object[0];
+
+	/**
+	 * 紧凑方法编号，见MethodIds
+	 */
+	private final int methodId;
+
+	private final String serviceKey;
+
+	private final Object bean;
+
+	private final Method method;
+
+	/**
+	 * 签名统一为(Object, Object[])Object
+	 */
+	private final MethodHandle handle;
+
+	@Getter(AccessLevel.NONE)
+	private final Class<?>[] parameterTypes;
+
+	/**
+	 * 参数类型，基本类型已替换为包装类型，用于调用前校验实参
+	 */
+	@Getter(AccessLevel.NONE)
+	private final Class<?>[] argumentTypes;
+
+	MethodInvoker(int methodId, String serviceKey, Object bean, Method method) {
+		this.methodId = methodId;
+		this.serviceKey = serviceKey;
+		this.bean = bean;
+		this.method = method;
+		method.setAccessible(true);
+		this.handle = toHandle(method);
+		this.parameterTypes = method.getParameterTypes();
+		this.argumentTypes = new Class<?>[parameterTypes.length];
+		for (int i = 0; i < parameterTypes.length; i++) {
+			argumentTypes[i] = MethodType.methodType(parameterTypes[i]).wrap().returnType();
+		}
+	}
+
+	private static MethodHandle toHandle(Method method) {
+		try {
+			MethodHandle handle = MethodHandles.lookup().unreflect(method);
+			return handle.asType(handle.type().generic())
+				.asSpreader(Object[].class, method.getParameterCount());
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new IllegalStateException("Cannot create invoker for method: " + method, e);
+		}
+	}
+
+	/**
+	 * 调用服务方法
+	 *
+	 * @throws IllegalArgumentException 实参个数或类型与方法签名不符
+	 * @throws InvocationTargetException 服务方法抛出异常
+	 */
+	public Object invoke(Object[] args) throws InvocationTargetException {
+		// invokeExact按实参的静态类型匹配签名，不能直接传入条件表达式
+		Object[] arguments = args == null ? NO_ARGS : args;
+		// 先校验实参，调用中抛出的异常因此都来自服务方法本身
+		checkArguments(arguments);
+		try {
+			return (Object) handle.invokeExact(bean, arguments);
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	private void checkArguments(Object[] arguments) {
+		if (arguments.length != argumentTypes.length) {
+			throw new IllegalArgumentException("Method " + method.getName() + " expects "
+				+ argumentTypes.length + " arguments but got " + arguments.length);
+		}
+		for (int i = 0; i < arguments.length; i++) {
+			Object argument = arguments[i];
+			if (argument == null ? parameterTypes[i].isPrimitive() : !argumentTypes[i].isInstance(argument)) {
+				throw new IllegalArgumentException("Argument " + i + " of method " + method.getName()
+					+ " expects " + argumentTypes[i].getName() + " but got "
+					+ (argument == null ? "null" : argument.getClass().getName()));
+			}
+		}
+	}
+
+	/**
+	 * 参数类型是否与方法签名一致
+	 */
+	boolean matches(Class<?>[] parameterTypes) {
+		Class<?>[] types = this.parameterTypes;
+		if (parameterTypes == null) {
+			return types.length == 0;
+		}
+		if (types.length != parameterTypes.length) {
+			return false;
+		}
+		for (int i = 0; i < types.length; i++) {
+			if (types[i] != parameterTypes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
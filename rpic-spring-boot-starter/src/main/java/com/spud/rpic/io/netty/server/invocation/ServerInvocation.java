@@ -2,6 +2,7 @@ package com.spud.rpic.io.netty.server.invocation;
 
 import com.spud.rpic.common.domain.RpcRequest;
 import com.spud.rpic.common.domain.RpcResponse;
+import java.util.function.Supplier;
 
 /**
  * 服务端调用接口
@@ -15,4 +16,13 @@ public interface ServerInvocation {
 	 * 处理RPC请求
 	 */
 	RpcResponse handleRequest(RpcRequest request);
+
+	/**
+	 * 处理参数尚未解码的请求，请求被接纳执行后才通过parameterDecoder解码参数，被拒绝的请求不解码参数；
+	 * 默认实现先解码参数再处理
+	 */
+	default RpcResponse handleRequest(RpcRequest request, Supplier<Object[]> parameterDecoder) {
+		request.setParameters(parameterDecoder.get());
+		return handleRequest(request);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package com.spud.rpic.io.netty.server.invocation;
+
+import com.spud.rpic.util.MethodIds;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 服务端调用器表，在启动时按@RpcService服务构建，请求按服务标识与方法签名或紧凑方法编号直接定位调用器。
+ */
+@Slf4j
+public class ServiceInvokerRegistry {
+
+	/**
+	 * 服务标识（与RpcRequest#getServiceKey一致） -> 服务的方法表
+	 */
+	private final Map<String, ServiceInvokers> services = new ConcurrentHashMap<>();
+
+	/**
+	 * 紧凑方法编号 -> 调用器，编号冲突的方法不收录，只能以完整请求调用
+	 */
+	private final Map<Integer, MethodInvoker> invokersById = new ConcurrentHashMap<>();
+
+	private final AtomicInteger invokerCount = new AtomicInteger();
+
+	/**
+	 * 注册服务，同一服务标识重复注册时保留已有的方法表
+	 *
+	 * @param interfaceClass 对外暴露的服务接口，只有其公共方法可被远程调用
+	 */
+	public ServiceInvokers register(String serviceKey, Class<?> interfaceClass, Object bean) {
+		return services.computeIfAbsent(serviceKey,
+			key -> createServiceInvokers(key, interfaceClass, bean));
+	}
+
+	public ServiceInvokers getService(String serviceKey) {
+		return services.get(serviceKey);
+	}
+
+	/**
+	 * 按服务标识、方法名与参数类型查找调用器，未注册时返回null
+	 */
+	public MethodInvoker getInvoker(String serviceKey, String methodName,
+		Class<?>[] parameterTypes) {
+		ServiceInvokers service = services.get(serviceKey);
+		return service != null ? service.getInvoker(methodName, parameterTypes) : null;
+	}
+
+	/**
+	 * 按紧凑方法编号查找调用器，未注册时返回null
+	 */
+	public MethodInvoker getInvoker(int methodId) {
+		return invokersById.get(methodId);
+	}
+
+	/**
+	 * 服务中可按紧凑编号调用的方法编号，用于在注册中心公布
+	 */
+	public List<Integer> getAdvertisedMethodIds(String serviceKey) {
+		ServiceInvokers service = services.get(serviceKey);
+		if (service == null) {
+			return Collections.emptyList();
+		}
+		List<Integer> ids = new ArrayList<>();
+		for (MethodInvoker invoker : service.getInvokers()) {
+			if (invokersById.get(invoker.getMethodId()) == invoker) {
+				ids.add(invoker.getMethodId());
+			}
+		}
+		return ids;
+	}
+
+	public int size() {
+		return invokerCount.get();
+	}
+
+	private ServiceInvokers createServiceInvokers(String serviceKey,
+		Class<?> interfaceClass, Object bean) {
+		Class<?> type = interfaceClass != null ? interfaceClass : bean.getClass();
+		Method[] methods = type.getMethods();
+
+		Map<String, List<MethodInvoker>> byName = new HashMap<>();
+		int count = 0;
+		for (Method method : methods) {
+			if (method.getDeclaringClass() == Object.class || Modifier.isStatic(method.getModifiers())) {
+				continue;
+			}
+			MethodInvoker invoker = new MethodInvoker(MethodIds.of(serviceKey, method), serviceKey,
+				bean, method);
+			MethodInvoker existing = invokersById.putIfAbsent(invoker.getMethodId(), invoker);
+			if (existing != null) {
+				log.warn("Method id {} of {} collides with {}, it can only be called by full request",
+					invoker.getMethodId(), method, existing.getMethod());
+			}
+			byName.computeIfAbsent(method.getName(), name -> new ArrayList<>(1)).add(invoker);
+			count++;
+		}
+		invokerCount.addAndGet(count);
+		log.info("Registered {} method invokers for service {}", count, serviceKey);
+		return new ServiceInvokers(serviceKey, byName);
+	}
+
+	/**
+	 * 单个服务的方法表，按方法名分组以支持重载
+	 */
+	public static final class ServiceInvokers {
+
+		private final String serviceKey;
+
+		private final Map<String, MethodInvoker[]> invokers = new HashMap<>();
+
+		ServiceInvokers(String serviceKey, Map<String, List<MethodInvoker>> byName) {
+			this.serviceKey = serviceKey;
+			byName.forEach((name, list) -> invokers.put(name, list.toArray(new MethodInvoker[0])));
+		}
+
+		public String getServiceKey() {
+			return serviceKey;
+		}
+
+		public MethodInvoker getInvoker(String methodName, Class<?>[] parameterTypes) {
+			MethodInvoker[] candidates = invokers.get(methodName);
+			if (candidates == null) {
+				return null;
+			}
+			for (MethodInvoker candidate : candidates) {
+				if (candidate.matches(parameterTypes)) {
+					return candidate;
+				}
+			}
+			return null;
+		}
+
+		public List<MethodInvoker> getInvokers() {
+			List<MethodInvoker> all = new ArrayList<>();
+			invokers.values().forEach(candidates -> all.addAll(Arrays.asList(candidates)));
+			all.sort(Comparator.comparing(invoker -> invoker.getMethod().toGenericString()));
+			return Collections.unmodifiableList(all);
+		}
+	}
+}
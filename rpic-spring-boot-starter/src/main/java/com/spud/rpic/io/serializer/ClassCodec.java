@@ -0,0 +1,367 @@
+package com.spud.rpic.io.serializer;
+
+import com.spud.rpic.common.exception.SerializeException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.objenesis.ObjenesisStd;
+import org.objenesis.instantiator.ObjectInstantiator;
+
+/**
+ * 单个业务类型的读写代码，首次使用时按类生成。
+ * <p>
+ * 字段按名称排序后依次写出，不写字段名与标签；基本类型、String与int/long/double数组字段
+ * 使用按类型特化的读写方法，其余字段按值标签写出。每个字段的读写由字段的getter/setter句柄与
+ * 对应的读写方法组合而成，再将全部字段组合为一个方法句柄，JIT会将其编译为该类专用的代码，
+ * 字段访问与读写方法均被内联，没有逐字段的反射或虚调用。
+ * <p>
+ * 可指定一个排在最后的字段，此时另生成不含该字段的读句柄，可只读入该字段之前的部分。
+ */
+final class ClassCodec {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private static final ObjenesisStd OBJENESIS = new ObjenesisStd(true);
+
+	/**
+	 * 写句柄类型：(CompiledOutput out, Object value)void
+	 */
+	private static final MethodType WRITER_TYPE = MethodType.methodType(void.class, CompiledOutput.class,
+		Object.class);
+
+	/**
+	 * 读句柄类型：(Object target, CompiledInput in)void
+	 */
+	private static final MethodType READER_TYPE = MethodType.methodType(void.class, Object.class,
+		CompiledInput.class);
+
+	private final Class<?> type;
+
+	/**
+	 * 类型登记编号，未登记时为0，按类名写出
+	 */
+	private final int classId;
+
+	/**
+	 * 是否为已登记的业务类型，未登记的类型只能写出不能读入
+	 */
+	private final boolean registered;
+
+	private final MethodHandle writer;
+
+	private final MethodHandle reader;
+
+	/**
+	 * 不含末尾字段的读句柄，未指定末尾字段时为null
+	 */
+	private final MethodHandle headerReader;
+
+	private final MethodHandle constructor;
+
+	private final ObjectInstantiator<?> instantiator;
+
+	private ClassCodec(Class<?> type, int classId, boolean registered, MethodHandle writer,
+		MethodHandle reader, MethodHandle headerReader, MethodHandle constructor,
+		ObjectInstantiator<?> instantiator) {
+		this.type = type;
+		this.classId = classId;
+		this.registered = registered;
+		this.writer = writer;
+		this.reader = reader;
+		this.headerReader = headerReader;
+		this.constructor = constructor;
+		this.instantiator = instantiator;
+	}
+
+	/**
+	 * @param trailingField 排在最后的字段名，为null时所有字段按名称排序
+	 */
+	static ClassCodec build(CompiledSerializer serializer, Class<?> type, int classId,
+		boolean registered, String trailingField) {
+		List<Field> declared = new ArrayList<>();
+		for (Class<?> current = type; current != null && current != Object.class;
+			current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+					declared.add(field);
+				}
+			}
+		}
+		declared.sort(Comparator.comparing((Field field) -> field.getName().equals(trailingField))
+			.thenComparing(Field::getName)
+			.thenComparing(field -> field.getDeclaringClass().getName()));
+		boolean hasTrailing = !declared.isEmpty()
+			&& declared.get(declared.size() - 1).getName().equals(trailingField);
+
+		List<MethodHandle> writers = new ArrayList<>(declared.size());
+		List<MethodHandle> readers = new ArrayList<>(declared.size());
+		try {
+			MethodHandle writeValue = LOOKUP.findVirtual(CompiledSerializer.class, "writeValue",
+				WRITER_TYPE).bindTo(serializer);
+			MethodHandle readValue = LOOKUP.findVirtual(CompiledSerializer.class, "readValue",
+				MethodType.methodType(Object.class, CompiledInput.class)).bindTo(serializer);
+			for (Field field : declared) {
+				field.setAccessible(true);
+				MethodHandle getter = LOOKUP.unreflectGetter(field);
+				MethodHandle setter = LOOKUP.unreflectSetter(field);
+				Class<?> valueType = field.getType();
+				MethodHandle write = fieldWriter(valueType);
+				MethodHandle read = fieldReader(valueType);
+				if (write == null) {
+					// float/short/byte/char与引用类型按值标签写出，基本类型由句柄自动装箱拆箱
+					valueType = Object.class;
+					write = writeValue;
+					read = readValue;
+				}
+				writers.add(MethodHandles.filterArguments(write, 1,
+					getter.asType(MethodType.methodType(valueType, Object.class))));
+				readers.add(MethodHandles.filterArguments(
+					setter.asType(MethodType.methodType(void.class, Object.class, valueType)), 1, read));
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new SerializeException("Cannot access fields of " + type.getName(), e);
+		}
+
+		MethodHandle constructor = null;
+		ObjectInstantiator<?> instantiator = null;
+		try {
+			Constructor<?> noArg = type.getDeclaredConstructor();
+			noArg.setAccessible(true);
+			constructor = LOOKUP.unreflectConstructor(noArg)
+				.asType(MethodType.methodType(Object.class));
+		} catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+			instantiator = OBJENESIS.getInstantiatorOf(type);
+		}
+		MethodHandle headerReader = hasTrailing
+			? combine(readers.subList(0, readers.size() - 1), READER_TYPE) : null;
+		return new ClassCodec(type, classId, registered, combine(writers, WRITER_TYPE),
+			combine(readers, READER_TYPE), headerReader, constructor, instantiator);
+	}
+
+	Class<?> getType() {
+		return type;
+	}
+
+	int getClassId() {
+		return classId;
+	}
+
+	boolean isRegistered() {
+		return registered;
+	}
+
+	void write(CompiledOutput out, Object value) {
+		try {
+			writer.invokeExact(out, value);
+		} catch (SerializeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new SerializeException("Failed to write " + type.getName(), e);
+		}
+	}
+
+	Object read(CompiledInput in) {
+		return read(in, reader);
+	}
+
+	/**
+	 * 只读入末尾字段之前的部分，末尾字段保持默认值，由调用方随后读取
+	 */
+	Object readHeader(CompiledInput in) {
+		if (headerReader == null) {
+			throw new SerializeException(type.getName() + " has no trailing field");
+		}
+		return read(in, headerReader);
+	}
+
+	private Object read(CompiledInput in, MethodHandle fieldsReader) {
+		try {
+			Object value = constructor != null ? (Object) constructor.invokeExact()
+				: instantiator.newInstance();
+			fieldsReader.invokeExact(value, in);
+			return value;
+		} catch (SerializeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new SerializeException("Failed to read " + type.getName(), e);
+		}
+	}
+
+	/**
+	 * 按字段顺序串联各字段的读写句柄；二分组合使调用深度随字段数对数增长，不超出JIT内联深度
+	 */
+	private static MethodHandle combine(List<MethodHandle> steps, MethodType type) {
+		if (steps.isEmpty()) {
+			try {
+				return LOOKUP.findStatic(ClassCodec.class, "noop",
+					MethodType.methodType(void.class, Object.class, Object.class)).asType(type);
+			} catch (ReflectiveOperationException e) {
+				throw new SerializeException("Cannot create empty codec", e);
+			}
+		}
+		return combine(steps, 0, steps.size());
+	}
+
+	private static MethodHandle combine(List<MethodHandle> steps, int from, int to) {
+		if (to - from == 1) {
+			return steps.get(from);
+		}
+		int middle = (from + to) >>> 1;
+		// foldArguments先调用第二个参数给出的句柄，再以相同参数调用第一个
+		return MethodHandles.foldArguments(combine(steps, middle, to), combine(steps, from, middle));
+	}
+
+	private static MethodHandle fieldWriter(Class<?> valueType)
+		throws ReflectiveOperationException {
+		String suffix = specializedSuffix(valueType);
+		return suffix == null ? null : LOOKUP.findStatic(ClassCodec.class, "write" + suffix,
+			MethodType.methodType(void.class, CompiledOutput.class, valueType));
+	}
+
+	private static MethodHandle fieldReader(Class<?> valueType)
+		throws ReflectiveOperationException {
+		String suffix = specializedSuffix(valueType);
+		return suffix == null ? null : LOOKUP.findStatic(ClassCodec.class, "read" + suffix,
+			MethodType.methodType(valueType, CompiledInput.class));
+	}
+
+	/**
+	 * 有特化读写方法的字段类型对应的方法名后缀，其余类型返回null
+	 */
+	private static String specializedSuffix(Class<?> valueType) {
+		if (valueType == int.class) {
+			return "Int";
+		}
+		if (valueType == long.class) {
+			return "Long";
+		}
+		if (valueType == double.class) {
+			return "Double";
+		}
+		if (valueType == boolean.class) {
+			return "Boolean";
+		}
+		if (valueType == String.class) {
+			return "String";
+		}
+		if (valueType == int[].class) {
+			return "IntArray";
+		}
+		if (valueType == long[].class) {
+			return "LongArray";
+		}
+		if (valueType == double[].class) {
+			return "DoubleArray";
+		}
+		return null;
+	}
+
+	private static void noop(Object first, Object second) {
+	}
+
+	private static void writeInt(CompiledOutput out, int value) {
+		out.writeZigZagInt(value);
+	}
+
+	private static int readInt(CompiledInput in) {
+		return in.readZigZagInt();
+	}
+
+	private static void writeLong(CompiledOutput out, long value) {
+		out.writeZigZagLong(value);
+	}
+
+	private static long readLong(CompiledInput in) {
+		return in.readZigZagLong();
+	}
+
+	private static void writeDouble(CompiledOutput out, double value) {
+		out.writeDouble(value);
+	}
+
+	private static double readDouble(CompiledInput in) {
+		return in.readDouble();
+	}
+
+	private static void writeBoolean(CompiledOutput out, boolean value) {
+		out.writeBoolean(value);
+	}
+
+	private static boolean readBoolean(CompiledInput in) {
+		return in.readBoolean();
+	}
+
+	/**
+	 * 可为null的字符串先写UTF-8字节数+1，0表示null
+	 */
+	private static void writeString(CompiledOutput out, String value) {
+		if (value == null) {
+			out.writeByte(0);
+			return;
+		}
+		out.writeString(value, 1);
+	}
+
+	private static String readString(CompiledInput in) {
+		return in.readString(1);
+	}
+
+	/**
+	 * 数组字段先写长度+1，0表示null
+	 */
+	private static void writeIntArray(CompiledOutput out, int[] array) {
+		if (array == null) {
+			out.writeByte(0);
+			return;
+		}
+		out.writeVarInt(array.length + 1);
+		out.writeIntArray(array);
+	}
+
+	private static int[] readIntArray(CompiledInput in) {
+		int length = in.readVarInt() - 1;
+		return length < 0 ? null : in.readIntArray(checkLength(in, length, 1));
+	}
+
+	private static void writeLongArray(CompiledOutput out, long[] array) {
+		if (array == null) {
+			out.writeByte(0);
+			return;
+		}
+		out.writeVarInt(array.length + 1);
+		out.writeLongArray(array);
+	}
+
+	private static long[] readLongArray(CompiledInput in) {
+		int length = in.readVarInt() - 1;
+		return length < 0 ? null : in.readLongArray(checkLength(in, length, 1));
+	}
+
+	private static void writeDoubleArray(CompiledOutput out, double[] array) {
+		if (array == null) {
+			out.writeByte(0);
+			return;
+		}
+		out.writeVarInt(array.length + 1);
+		out.writeDoubleArray(array);
+	}
+
+	private static double[] readDoubleArray(CompiledInput in) {
+		int length = in.readVarInt() - 1;
+		return length < 0 ? null : in.readDoubleArray(checkLength(in, length, Double.BYTES));
+	}
+
+	private static int checkLength(CompiledInput in, int length, int minBytesPerElement) {
+		if ((long) length * minBytesPerElement > in.remaining()) {
+			throw new SerializeException("Invalid length: " + length);
+		}
+		return length;
+	}
+}
@@ -0,0 +1,86 @@
+package com.spud.rpic.io.serializer;
+
+import java.util.Arrays;
+
+/**
+ * 类名前缀字典树，构建后只读，匹配时沿类名逐字符下行，遇到任一前缀的终止节点即命中
+ */
+final class ClassNamePrefixTrie {
+
+	private final Node root = new Node();
+
+	private final boolean empty;
+
+	private ClassNamePrefixTrie(String[] prefixes) {
+		boolean added = false;
+		for (String prefix : prefixes) {
+			String trimmed = prefix.trim();
+			if (trimmed.isEmpty()) {
+				continue;
+			}
+			Node node = root;
+			for (int i = 0; i < trimmed.length(); i++) {
+				node = node.childOrCreate(trimmed.charAt(i));
+			}
+			node.terminal = true;
+			added = true;
+		}
+		this.empty = !added;
+	}
+
+	/**
+	 * 解析逗号分隔的前缀列表
+	 */
+	static ClassNamePrefixTrie compile(String commaSeparatedPrefixes) {
+		return new ClassNamePrefixTrie(commaSeparatedPrefixes == null ? new String[0]
+			: commaSeparatedPrefixes.split(","));
+	}
+
+	boolean isEmpty() {
+		return empty;
+	}
+
+	boolean matches(String className) {
+		Node node = root;
+		for (int i = 0; i < className.length(); i++) {
+			node = node.child(className.charAt(i));
+			if (node == null) {
+				return false;
+			}
+			if (node.terminal) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static final class Node {
+
+		private char[] keys = new char[0];
+
+		private Node[] children = new Node[0];
+
+		private boolean terminal;
+
+		private Node child(char c) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		private Node childOrCreate(char c) {
+			Node child = child(c);
+			if (child == null) {
+				child = new Node();
+				keys = Arrays.copyOf(keys, keys.length + 1);
+				children = Arrays.copyOf(children, children.length + 1);
+				keys[keys.length - 1] = c;
+				children[children.length - 1] = child;
+			}
+			return child;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package com.spud.rpic.io.serializer;
+
+import com.spud.rpic.common.exception.SerializeException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 编译型序列化的输入，直接读取字节数组的指定区间，编码格式见{@link CompiledOutput}
+ */
+final class CompiledInput {
+
+	private final byte[] buffer;
+
+	private int position;
+
+	private final int limit;
+
+	CompiledInput(byte[] buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	int remaining() {
+		return limit - position;
+	}
+
+	byte peekByte() {
+		require(1);
+		return buffer[position];
+	}
+
+	void skip(int bytes) {
+		require(bytes);
+		position += bytes;
+	}
+
+	private void require(int bytes) {
+		if (limit - position < bytes) {
+			throw new SerializeException("Truncated compiled payload");
+		}
+	}
+
+	byte readByte() {
+		require(1);
+		return buffer[position++];
+	}
+
+	boolean readBoolean() {
+		return readByte() != 0;
+	}
+
+	byte[] readBytes(int length) {
+		require(length);
+		byte[] bytes = new byte[length];
+		System.arraycopy(buffer, position, bytes, 0, length);
+		position += length;
+		return bytes;
+	}
+
+	int readVarInt() {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = readByte();
+			result |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return result;
+			}
+		}
+		throw new SerializeException("Malformed varint");
+	}
+
+	long readVarLong() {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return result;
+			}
+		}
+		throw new SerializeException("Malformed varint");
+	}
+
+	int readZigZagInt() {
+		int value = readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	long readZigZagLong() {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	short readShort() {
+		require(2);
+		byte[] buf = buffer;
+		int p = position;
+		position = p + 2;
+		return (short) ((buf[p] & 0xFF) << 8 | (buf[p + 1] & 0xFF));
+	}
+
+	int readInt() {
+		require(4);
+		byte[] buf = buffer;
+		int p = position;
+		position = p + 4;
+		return (buf[p] & 0xFF) << 24 | (buf[p + 1] & 0xFF) << 16 | (buf[p + 2] & 0xFF) << 8
+			| (buf[p + 3] & 0xFF);
+	}
+
+	long readLong() {
+		require(8);
+		byte[] buf = buffer;
+		int p = position;
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = value << 8 | (buf[p + i] & 0xFF);
+		}
+		position = p + 8;
+		return value;
+	}
+
+	float readFloat() {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	double readDouble() {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	int[] readIntArray(int length) {
+		int[] array = new int[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = readZigZagInt();
+		}
+		return array;
+	}
+
+	long[] readLongArray(int length) {
+		long[] array = new long[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = readZigZagLong();
+		}
+		return array;
+	}
+
+	double[] readDoubleArray(int length) {
+		double[] array = new double[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = readDouble();
+		}
+		return array;
+	}
+
+	/**
+	 * 读取长度前缀为UTF-8字节数+lengthOffset的字符串，前缀小于lengthOffset时返回null
+	 */
+	String readString(int lengthOffset) {
+		int length = readVarInt() - lengthOffset;
+		if (length < 0) {
+			return null;
+		}
+		require(length);
+		String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return value;
+	}
+
+	/**
+	 * 校验元素数不超过剩余字节可容纳的数量，避免按伪造的长度分配大数组
+	 */
+	int readLength(int minBytesPerElement) {
+		int length = readVarInt();
+		if (length < 0 || (long) length * minBytesPerElement > remaining()) {
+			throw new SerializeException("Invalid length: " + length);
+		}
+		return length;
+	}
+}
@@ -0,0 +1,209 @@
+package com.spud.rpic.io.serializer;
+
+import java.util.Arrays;
+
+/**
+ * 编译型序列化的输出缓冲，直接写入可复用的字节数组，按需扩容。
+ * <p>
+ * 整数使用zigzag变长编码，浮点数与定长整数按大端写出，字符串写UTF-8字节数后跟字节内容。
+ */
+final class CompiledOutput {
+
+	private byte[] buffer;
+
+	private int position;
+
+	CompiledOutput(int capacity) {
+		this.buffer = new byte[capacity];
+	}
+
+	byte[] getBuffer() {
+		return buffer;
+	}
+
+	int position() {
+		return position;
+	}
+
+	void reset() {
+		position = 0;
+	}
+
+	private void require(int bytes) {
+		if (position + bytes > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+		}
+	}
+
+	void writeByte(int value) {
+		require(1);
+		buffer[position++] = (byte) value;
+	}
+
+	void writeBoolean(boolean value) {
+		writeByte(value ? 1 : 0);
+	}
+
+	void writeBytes(byte[] bytes) {
+		require(bytes.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	void writeVarInt(int value) {
+		require(5);
+		byte[] buf = buffer;
+		int p = position;
+		while ((value & ~0x7F) != 0) {
+			buf[p++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buf[p++] = (byte) value;
+		position = p;
+	}
+
+	void writeVarLong(long value) {
+		require(10);
+		byte[] buf = buffer;
+		int p = position;
+		while ((value & ~0x7FL) != 0) {
+			buf[p++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buf[p++] = (byte) value;
+		position = p;
+	}
+
+	void writeZigZagInt(int value) {
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	void writeZigZagLong(long value) {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	void writeShort(int value) {
+		require(2);
+		buffer[position++] = (byte) (value >>> 8);
+		buffer[position++] = (byte) value;
+	}
+
+	void writeInt(int value) {
+		require(4);
+		byte[] buf = buffer;
+		int p = position;
+		buf[p] = (byte) (value >>> 24);
+		buf[p + 1] = (byte) (value >>> 16);
+		buf[p + 2] = (byte) (value >>> 8);
+		buf[p + 3] = (byte) value;
+		position = p + 4;
+	}
+
+	void writeLong(long value) {
+		require(8);
+		byte[] buf = buffer;
+		int p = position;
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			buf[p++] = (byte) (value >>> shift);
+		}
+		position = p;
+	}
+
+	void writeFloat(float value) {
+		writeInt(Float.floatToRawIntBits(value));
+	}
+
+	void writeDouble(double value) {
+		writeLong(Double.doubleToRawLongBits(value));
+	}
+
+	void writeIntArray(int[] array) {
+		for (int value : array) {
+			writeZigZagInt(value);
+		}
+	}
+
+	void writeLongArray(long[] array) {
+		for (long value : array) {
+			writeZigZagLong(value);
+		}
+	}
+
+	void writeDoubleArray(double[] array) {
+		require(array.length * Double.BYTES);
+		for (double value : array) {
+			writeDouble(value);
+		}
+	}
+
+	/**
+	 * 写出UTF-8字节数+lengthOffset与字节内容；长度能用1字节表示时先占位再回填，只遍历一次字符
+	 */
+	void writeString(String value, int lengthOffset) {
+		int chars = value.length();
+		if (chars * 3 + lengthOffset < 0x80) {
+			require(1 + chars * 3);
+			int lengthIndex = position;
+			int end = encodeUtf8(value, lengthIndex + 1);
+			buffer[lengthIndex] = (byte) (end - lengthIndex - 1 + lengthOffset);
+			position = end;
+			return;
+		}
+		int length = utf8Length(value);
+		writeVarInt(length + lengthOffset);
+		require(length);
+		position = encodeUtf8(value, position);
+	}
+
+	private int encodeUtf8(String value, int start) {
+		byte[] buf = buffer;
+		int p = start;
+		int chars = value.length();
+		for (int i = 0; i < chars; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				buf[p++] = (byte) c;
+			} else if (c < 0x800) {
+				buf[p++] = (byte) (0xC0 | (c >> 6));
+				buf[p++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < chars
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, value.charAt(++i));
+					buf[p++] = (byte) (0xF0 | (codePoint >> 18));
+					buf[p++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+					buf[p++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+					buf[p++] = (byte) (0x80 | (codePoint & 0x3F));
+				} else {
+					// 与String#getBytes一致，不成对的代理字符写为'?'
+					buf[p++] = '?';
+				}
+			} else {
+				buf[p++] = (byte) (0xE0 | (c >> 12));
+				buf[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buf[p++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return p;
+	}
+
+	private static int utf8Length(String value) {
+		int chars = value.length();
+		int length = chars;
+		for (int i = 0; i < chars; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x800) {
+				if (Character.isHighSurrogate(c) && i + 1 < chars
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+					length += 2;
+					i++;
+				} else if (!Character.isSurrogate(c)) {
+					length += 2;
+				}
+			} else if (c >= 0x80) {
+				length++;
+			}
+		}
+		return length;
+	}
+}
@@ -0,0 +1,706 @@
+package com.spud.rpic.io.serializer;
+
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按类生成读写代码的二进制序列化实现。
+ * <p>
+ * 每个业务类型在首次使用时生成{@link ClassCodec}：字段顺序固定、不写字段名，基本类型、String与
+ * 基本类型数组字段走特化路径，字段读写通过MethodHandle完成，不经过通用的反射序列化器。
+ * 其余值以1字节标签开头；类型引用优先写登记编号（协议对象与常用JDK类型为固定编号，
+ * 服务接口中的业务类型按类名哈希，其后跟一个类名校验字节），未登记或编号冲突的类型写类名。
+ * <p>
+ * 请求的参数字段排在其余字段之后，服务端可只解码路由头，待请求被接纳后再解码参数。
+ * <p>
+ * 反序列化只会实例化已登记的业务类型与java.util中的集合类型，调用双方需登记同一服务接口，
+ * 且字段定义一致。不跟踪对象引用，共享引用会被写出多份，循环引用会导致序列化失败。
+ */
+@Slf4j
+public class CompiledSerializer implements Serializer {
+
+	static final byte NULL = 0;
+	static final byte TRUE = 1;
+	static final byte FALSE = 2;
+	static final byte INT = 3;
+	static final byte LONG = 4;
+	static final byte DOUBLE = 5;
+	static final byte FLOAT = 6;
+	static final byte SHORT = 7;
+	static final byte BYTE = 8;
+	static final byte CHAR = 9;
+	static final byte STRING = 10;
+	static final byte BYTES = 11;
+	static final byte INT_ARRAY = 12;
+	static final byte LONG_ARRAY = 13;
+	static final byte DOUBLE_ARRAY = 14;
+	static final byte ARRAY = 15;
+	static final byte COLLECTION = 16;
+	static final byte MAP = 17;
+	static final byte ENUM = 18;
+	static final byte CLASS = 19;
+	static final byte BIG_DECIMAL = 20;
+	static final byte BIG_INTEGER = 21;
+	static final byte DATE = 22;
+	static final byte OBJECT = 23;
+
+	/**
+	 * 请求中排在最后的参数字段，其之前的字段为可单独解码的路由头
+	 */
+	private static final String REQUEST_PARAMETERS = "parameters";
+
+	private static final int DYNAMIC_ID_BASE = 64;
+
+	private static final int DYNAMIC_ID_MASK = 0x0FFFFFFF;
+
+	/**
+	 * 固定编号的类型，编号为数组下标+1，只能在末尾追加
+	 */
+	private static final Class<?>[] FIXED_TYPES = {RpcRequest.class, RpcResponse.class,
+		Object.class, Class.class, String.class, Integer.class, Long.class, Double.class,
+		Boolean.class, int.class, long.class, double.class, boolean.class, float.class, short.class,
+		byte.class, char.class, void.class, List.class, Set.class, Map.class, Collection.class,
+		ArrayList.class, LinkedList.class, HashSet.class, LinkedHashSet.class, TreeSet.class,
+		HashMap.class, LinkedHashMap.class, TreeMap.class, ConcurrentHashMap.class};
+
+	private static final int INITIAL_BUFFER_SIZE = 256;
+
+	/**
+	 * 归还时超过该大小的输出缓冲不再复用
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final int POOL_CAPACITY = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+
+	private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+	static {
+		for (Class<?> type : new Class<?>[]{boolean.class, byte.class, char.class, short.class,
+			int.class, long.class, float.class, double.class, void.class}) {
+			PRIMITIVES.put(type.getName(), type);
+		}
+	}
+
+	/**
+	 * 编号 -> 类型，登记时整体替换，读取时无锁且不装箱
+	 */
+	private volatile IntObjectMap<Class<?>> classesById;
+
+	private final Map<Class<?>, Integer> idsByClass = new ConcurrentHashMap<>();
+
+	/**
+	 * 发生过冲突的编号，不再分配给任何类型
+	 */
+	private final Set<Integer> collidedIds = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * 已登记的业务类型，反序列化只实例化这些类型
+	 */
+	private final Set<Class<?>> registeredTypes = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * 业务类型 -> 读写代码，JDK类型、数组、枚举与集合类型为null；登记新类型时整体替换
+	 */
+	private volatile ClassValue<ClassCodec> codecs = newCodecCache();
+
+	private final Map<String, Class<?>> classesByName = new ConcurrentHashMap<>();
+
+	private final Map<Class<?>, MethodHandle> containerConstructors = new ConcurrentHashMap<>();
+
+	private final BlockingQueue<CompiledOutput> outputs = new ArrayBlockingQueue<>(POOL_CAPACITY);
+
+	public CompiledSerializer() {
+		IntObjectMap<Class<?>> fixed = new IntObjectHashMap<>();
+		for (int i = 0; i < FIXED_TYPES.length; i++) {
+			fixed.put(i + 1, FIXED_TYPES[i]);
+			idsByClass.put(FIXED_TYPES[i], i + 1);
+		}
+		classesById = fixed;
+		registeredTypes.add(RpcRequest.class);
+		registeredTypes.add(RpcResponse.class);
+	}
+
+	@Override
+	public void registerService(String serviceKey, Class<?> interfaceClass) {
+		registerTypes(ServiceTypes.collect(interfaceClass));
+	}
+
+	/**
+	 * 按类名哈希登记类型编号，并允许反序列化时实例化这些类型。编号冲突时冲突双方都按类名写出：
+	 * 是否冲突只取决于本端登记了哪些类型，若只让先登记的类型保留编号，未登记另一类型的对端会以同一编号写出不同的类型
+	 */
+	public synchronized void registerTypes(Collection<Class<?>> types) {
+		IntObjectMap<Class<?>> updated = new IntObjectHashMap<>(classesById.size() + types.size());
+		updated.putAll(classesById);
+		for (Class<?> type : types) {
+			if (type.isArray()) {
+				continue;
+			}
+			registeredTypes.add(type);
+			int id = dynamicId(type);
+			if (collidedIds.contains(id)) {
+				continue;
+			}
+			Class<?> existing = updated.get(id);
+			if (existing == null) {
+				updated.put(id, type);
+				idsByClass.put(type, id);
+			} else if (existing != type) {
+				log.warn("Compiled serializer id of {} collides with {}, both will be written by class name",
+					type.getName(), existing.getName());
+				collidedIds.add(id);
+				updated.remove(id);
+				idsByClass.remove(existing);
+			}
+		}
+		classesById = updated;
+		// 已生成的读写代码缓存了编号与登记状态，登记后重新生成
+		codecs = newCodecCache();
+	}
+
+	static int dynamicId(Class<?> type) {
+		return DYNAMIC_ID_BASE + (type.getName().hashCode() & DYNAMIC_ID_MASK);
+	}
+
+	@Override
+	public <T> byte[] serialize(T obj) throws SerializeException {
+		CompiledOutput output = obtainOutput();
+		try {
+			write(output, obj);
+			return Arrays.copyOf(output.getBuffer(), output.position());
+		} finally {
+			releaseOutput(output);
+		}
+	}
+
+	@Override
+	public <T> T deserialize(byte[] data, Class<T> clz) throws SerializeException {
+		return read(new CompiledInput(data, 0, data.length), clz);
+	}
+
+	/**
+	 * 先写入可复用的字节数组，再一次性拷贝到ByteBuf，避免逐字节的ByteBuf边界检查
+	 */
+	@Override
+	public <T> void serialize(T obj, ByteBuf out) throws SerializeException {
+		CompiledOutput output = obtainOutput();
+		try {
+			write(output, obj);
+			out.writeBytes(output.getBuffer(), 0, output.position());
+		} finally {
+			releaseOutput(output);
+		}
+	}
+
+	/**
+	 * 读取后跳过已消费的字节
+	 */
+	@Override
+	public <T> T deserialize(ByteBuf in, Class<T> clz) throws SerializeException {
+		CompiledInput input = inputOf(in);
+		T value = read(input, clz);
+		in.skipBytes(in.readableBytes() - input.remaining());
+		return value;
+	}
+
+	/**
+	 * 请求的参数字段排在最后，只读入其之前的路由头字段
+	 */
+	@Override
+	public RpcRequest deserializeRequestHeader(ByteBuf in) throws SerializeException {
+		CompiledInput input = inputOf(in);
+		if (input.readByte() != OBJECT || readClassRef(input) != RpcRequest.class) {
+			throw new SerializeException("Payload is not a compiled RpcRequest");
+		}
+		RpcRequest header = (RpcRequest) codecs.get(RpcRequest.class).readHeader(input);
+		in.skipBytes(in.readableBytes() - input.remaining());
+		return header;
+	}
+
+	@Override
+	public Object[] deserializeParameters(ByteBuf in, RpcRequest header)
+		throws SerializeException {
+		CompiledInput input = inputOf(in);
+		Object parameters = readValue(input);
+		if (parameters != null && !(parameters instanceof Object[])) {
+			throw new SerializeException("Expected parameter array but got "
+				+ parameters.getClass().getName());
+		}
+		in.skipBytes(in.readableBytes() - input.remaining());
+		return (Object[]) parameters;
+	}
+
+	/**
+	 * 堆内ByteBuf直接读取底层数组，其余拷贝可读字节后读取
+	 */
+	private static CompiledInput inputOf(ByteBuf in) {
+		int length = in.readableBytes();
+		return in.hasArray()
+			? new CompiledInput(in.array(), in.arrayOffset() + in.readerIndex(), length)
+			: new CompiledInput(ByteBufUtil.getBytes(in), 0, length);
+	}
+
+	private void write(CompiledOutput output, Object obj) {
+		try {
+			writeValue(output, obj);
+		} catch (StackOverflowError e) {
+			throw new SerializeException("Object graph is cyclic or too deeply nested", e);
+		}
+	}
+
+	private <T> T read(CompiledInput input, Class<T> clz) {
+		Object value = readValue(input);
+		if (value != null && !clz.isInstance(value)) {
+			throw new SerializeException("Expected " + clz.getName() + " but got "
+				+ value.getClass().getName());
+		}
+		return clz.cast(value);
+	}
+
+	private CompiledOutput obtainOutput() {
+		CompiledOutput output = outputs.poll();
+		return output != null ? output : new CompiledOutput(INITIAL_BUFFER_SIZE);
+	}
+
+	private void releaseOutput(CompiledOutput output) {
+		if (output.getBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+			return;
+		}
+		output.reset();
+		outputs.offer(output);
+	}
+
+	@Override
+	public String getType() {
+		return SerializerType.COMPILED.getType();
+	}
+
+	void writeValue(CompiledOutput out, Object value) {
+		writeElement(out, value, null);
+	}
+
+	/**
+	 * 写出一个值并返回其业务类型的读写代码，非业务类型返回previous；
+	 * 集合与数组元素传入上一个元素的读写代码，连续相同类型的元素不再查找
+	 */
+	private ClassCodec writeElement(CompiledOutput out, Object value, ClassCodec previous) {
+		if (value == null) {
+			out.writeByte(NULL);
+			return previous;
+		}
+		Class<?> type = value.getClass();
+		ClassCodec codec = previous != null && previous.getType() == type ? previous
+			: codecs.get(type);
+		if (codec != null) {
+			out.writeByte(OBJECT);
+			writeClassRef(out, codec);
+			codec.write(out, value);
+			return codec;
+		}
+		if (type == String.class) {
+			out.writeByte(STRING);
+			out.writeString((String) value, 0);
+		} else if (type == Integer.class) {
+			out.writeByte(INT);
+			out.writeZigZagInt(((Integer) value));
+		} else if (type == Long.class) {
+			out.writeByte(LONG);
+			out.writeZigZagLong(((Long) value));
+		} else if (type == Boolean.class) {
+			out.writeByte((Boolean) value ? TRUE : FALSE);
+		} else if (type == Double.class) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (type == Float.class) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (type == Short.class) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if (type == Byte.class) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+		} else if (type == Character.class) {
+			out.writeByte(CHAR);
+			out.writeShort((Character) value);
+		} else if (type.isArray()) {
+			writeArray(out, type, value);
+		} else if (value instanceof Collection) {
+			writeCollection(out, (Collection<?>) value);
+		} else if (value instanceof Map) {
+			writeMap(out, (Map<?, ?>) value);
+		} else if (value instanceof Enum) {
+			out.writeByte(ENUM);
+			writeClassRef(out, ((Enum<?>) value).getDeclaringClass());
+			out.writeVarInt(((Enum<?>) value).ordinal());
+		} else if (type == Class.class) {
+			out.writeByte(CLASS);
+			writeClassRef(out, (Class<?>) value);
+		} else if (type == BigDecimal.class) {
+			out.writeByte(BIG_DECIMAL);
+			out.writeString(value.toString(), 0);
+		} else if (type == BigInteger.class) {
+			out.writeByte(BIG_INTEGER);
+			out.writeString(value.toString(), 0);
+		} else if (type == Date.class) {
+			out.writeByte(DATE);
+			out.writeZigZagLong((((Date) value).getTime()));
+		} else {
+			throw new SerializeException(
+				"Unsupported type for compiled serializer: " + type.getName());
+		}
+		return previous;
+	}
+
+	Object readValue(CompiledInput in) {
+		byte tag = in.readByte();
+		switch (tag) {
+			case NULL:
+				return null;
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case INT:
+				return in.readZigZagInt();
+			case LONG:
+				return in.readZigZagLong();
+			case DOUBLE:
+				return in.readDouble();
+			case FLOAT:
+				return in.readFloat();
+			case SHORT:
+				return in.readShort();
+			case BYTE:
+				return in.readByte();
+			case CHAR:
+				return (char) in.readShort();
+			case STRING:
+				return in.readString(0);
+			case BYTES:
+				return in.readBytes(in.readLength(1));
+			case INT_ARRAY:
+				return in.readIntArray(in.readLength(1));
+			case LONG_ARRAY:
+				return in.readLongArray(in.readLength(1));
+			case DOUBLE_ARRAY:
+				return in.readDoubleArray(in.readLength(Double.BYTES));
+			case ARRAY:
+				return readArray(in);
+			case COLLECTION:
+				return readCollection(in);
+			case MAP:
+				return readMap(in);
+			case ENUM:
+				return readEnum(in);
+			case CLASS:
+				return readClassRef(in);
+			case BIG_DECIMAL:
+				return new BigDecimal(in.readString(0));
+			case BIG_INTEGER:
+				return new BigInteger(in.readString(0));
+			case DATE:
+				return new Date(in.readZigZagLong());
+			case OBJECT:
+				return registeredCodec(readClassRef(in)).read(in);
+			default:
+				throw new SerializeException("Unknown value tag: " + tag);
+		}
+	}
+
+	private ClassCodec registeredCodec(Class<?> type) {
+		ClassCodec codec = codecs.get(type);
+		if (codec == null || !codec.isRegistered()) {
+			throw new SerializeException("Type is not registered for compiled serializer: "
+				+ type.getName());
+		}
+		return codec;
+	}
+
+	/**
+	 * 读取集合或数组元素，连续相同类型的业务对象复用上一个元素的读写代码
+	 */
+	private Object readElement(CompiledInput in, ClassCodec[] previous) {
+		if (in.peekByte() != OBJECT) {
+			return readValue(in);
+		}
+		in.skip(1);
+		Class<?> type = readClassRef(in);
+		ClassCodec codec = previous[0];
+		if (codec == null || codec.getType() != type) {
+			codec = registeredCodec(type);
+			previous[0] = codec;
+		}
+		return codec.read(in);
+	}
+
+	private ClassValue<ClassCodec> newCodecCache() {
+		return new ClassValue<ClassCodec>() {
+			@Override
+			protected ClassCodec computeValue(Class<?> type) {
+				if (type.isArray() || type.isInterface() || isJdkType(type)
+					|| Enum.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)
+					|| Map.class.isAssignableFrom(type)) {
+					return null;
+				}
+				return ClassCodec.build(CompiledSerializer.this, type, idsByClass.getOrDefault(type, 0),
+					registeredTypes.contains(type), type == RpcRequest.class ? REQUEST_PARAMETERS : null);
+			}
+		};
+	}
+
+	private void writeArray(CompiledOutput out, Class<?> type, Object array) {
+		if (type == byte[].class) {
+			byte[] bytes = (byte[]) array;
+			out.writeByte(BYTES);
+			out.writeVarInt(bytes.length);
+			out.writeBytes(bytes);
+		} else if (type == int[].class) {
+			out.writeByte(INT_ARRAY);
+			out.writeVarInt(((int[]) array).length);
+			out.writeIntArray((int[]) array);
+		} else if (type == long[].class) {
+			out.writeByte(LONG_ARRAY);
+			out.writeVarInt(((long[]) array).length);
+			out.writeLongArray((long[]) array);
+		} else if (type == double[].class) {
+			out.writeByte(DOUBLE_ARRAY);
+			out.writeVarInt(((double[]) array).length);
+			out.writeDoubleArray((double[]) array);
+		} else if (type.getComponentType().isPrimitive()) {
+			int length = Array.getLength(array);
+			out.writeByte(ARRAY);
+			writeClassRef(out, type.getComponentType());
+			out.writeVarInt(length);
+			for (int i = 0; i < length; i++) {
+				writeValue(out, Array.get(array, i));
+			}
+		} else {
+			Object[] values = (Object[]) array;
+			out.writeByte(ARRAY);
+			writeClassRef(out, type.getComponentType());
+			out.writeVarInt(values.length);
+			ClassCodec previous = null;
+			for (Object value : values) {
+				previous = writeElement(out, value, previous);
+			}
+		}
+	}
+
+	private Object readArray(CompiledInput in) {
+		Class<?> componentType = readClassRef(in);
+		int length = in.readLength(1);
+		Object array = Array.newInstance(componentType, length);
+		if (componentType.isPrimitive()) {
+			for (int i = 0; i < length; i++) {
+				Array.set(array, i, readValue(in));
+			}
+			return array;
+		}
+		Object[] values = (Object[]) array;
+		ClassCodec[] previous = new ClassCodec[1];
+		for (int i = 0; i < length; i++) {
+			values[i] = readElement(in, previous);
+		}
+		return values;
+	}
+
+	private void writeCollection(CompiledOutput out, Collection<?> collection) {
+		out.writeByte(COLLECTION);
+		Class<?> type = collection.getClass();
+		if (!isInstantiableContainer(type)) {
+			type = collection instanceof Set ? LinkedHashSet.class : ArrayList.class;
+		}
+		writeClassRef(out, type);
+		out.writeVarInt(collection.size());
+		ClassCodec previous = null;
+		for (Object value : collection) {
+			previous = writeElement(out, value, previous);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object readCollection(CompiledInput in) {
+		Class<?> type = readClassRef(in);
+		int size = in.readLength(1);
+		Collection<Object> collection = (Collection<Object>) newContainer(type, Collection.class);
+		ClassCodec[] previous = new ClassCodec[1];
+		for (int i = 0; i < size; i++) {
+			collection.add(readElement(in, previous));
+		}
+		return collection;
+	}
+
+	private void writeMap(CompiledOutput out, Map<?, ?> map) {
+		out.writeByte(MAP);
+		Class<?> type = map.getClass();
+		writeClassRef(out, isInstantiableContainer(type) ? type : LinkedHashMap.class);
+		out.writeVarInt(map.size());
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			writeValue(out, entry.getKey());
+			writeValue(out, entry.getValue());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object readMap(CompiledInput in) {
+		Class<?> type = readClassRef(in);
+		int size = in.readLength(2);
+		Map<Object, Object> map = (Map<Object, Object>) newContainer(type, Map.class);
+		for (int i = 0; i < size; i++) {
+			map.put(readValue(in), readValue(in));
+		}
+		return map;
+	}
+
+	private Object readEnum(CompiledInput in) {
+		Class<?> type = readClassRef(in);
+		if (!type.isEnum() || !isJdkType(type) && !registeredTypes.contains(type)) {
+			throw new SerializeException("Type is not registered for compiled serializer: "
+				+ type.getName());
+		}
+		Object[] constants = type.getEnumConstants();
+		int ordinal = in.readVarInt();
+		if (ordinal < 0 || ordinal >= constants.length) {
+			throw new SerializeException("Invalid ordinal " + ordinal + " for " + type.getName());
+		}
+		return constants[ordinal];
+	}
+
+	/**
+	 * java.util中带公共无参构造器的集合类型按原类型还原，其余（不可变集合、视图等）按List/Set/Map默认实现还原
+	 */
+	private static boolean isInstantiableContainer(Class<?> type) {
+		if (!type.getName().startsWith("java.util.") || !Modifier.isPublic(type.getModifiers())) {
+			return false;
+		}
+		try {
+			type.getConstructor();
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private Object newContainer(Class<?> type, Class<?> expected) {
+		if (!expected.isAssignableFrom(type) || !isInstantiableContainer(type)) {
+			throw new SerializeException("Unsupported container type: " + type.getName());
+		}
+		try {
+			MethodHandle constructor = containerConstructors.computeIfAbsent(type, key -> {
+				try {
+					return LOOKUP.findConstructor(key, MethodType.methodType(void.class))
+						.asType(MethodType.methodType(Object.class));
+				} catch (ReflectiveOperationException e) {
+					throw new SerializeException("Cannot instantiate " + key.getName(), e);
+				}
+			});
+			return (Object) constructor.invokeExact();
+		} catch (SerializeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new SerializeException("Cannot instantiate " + type.getName(), e);
+		}
+	}
+
+	private void writeClassRef(CompiledOutput out, Class<?> type) {
+		Integer id = idsByClass.get(type);
+		if (id != null) {
+			out.writeVarInt(id);
+			if (id >= DYNAMIC_ID_BASE) {
+				out.writeByte(ServiceTypes.nameCheck(type));
+			}
+		} else {
+			out.writeByte(0);
+			out.writeString(type.getName(), 0);
+		}
+	}
+
+	private void writeClassRef(CompiledOutput out, ClassCodec codec) {
+		if (codec.getClassId() != 0) {
+			out.writeVarInt(codec.getClassId());
+			if (codec.getClassId() >= DYNAMIC_ID_BASE) {
+				out.writeByte(ServiceTypes.nameCheck(codec.getType()));
+			}
+		} else {
+			out.writeByte(0);
+			out.writeString(codec.getType().getName(), 0);
+		}
+	}
+
+	/**
+	 * 哈希编号之后紧跟类名校验字节，与本端以该编号登记的类型比对
+	 */
+	private Class<?> readClassRef(CompiledInput in) {
+		int id = in.readVarInt();
+		if (id != 0) {
+			Class<?> type = classesById.get(id);
+			if (type == null) {
+				throw new SerializeException("Unknown type id: " + id);
+			}
+			if (id >= DYNAMIC_ID_BASE && in.readByte() != ServiceTypes.nameCheck(type)) {
+				throw new SerializeException("Type id " + id + " refers to a different class than "
+					+ type.getName() + " on the peer");
+			}
+			return type;
+		}
+		return resolveClass(in.readString(0));
+	}
+
+	/**
+	 * 按类名加载但不初始化，实例化前另有登记检查
+	 */
+	private Class<?> resolveClass(String name) {
+		Class<?> primitive = PRIMITIVES.get(name);
+		if (primitive != null) {
+			return primitive;
+		}
+		return classesByName.computeIfAbsent(name, className -> {
+			ClassLoader loader = Thread.currentThread().getContextClassLoader();
+			try {
+				return Class.forName(className, false,
+					loader != null ? loader : CompiledSerializer.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				throw new SerializeException("Class not found: " + className, e);
+			}
+		});
+	}
+
+	private static boolean isJdkType(Class<?> type) {
+		String name = type.getName();
+		return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+			|| name.startsWith("sun.");
+	}
+}
@@ -1,59 +1,188 @@
 package com.spud.rpic.io.serializer;
 
-import com.caucho.hessian.io.HessianInput;
-import com.caucho.hessian.io.HessianOutput;
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
 import com.spud.rpic.common.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
+ * 基于Hessian2的序列化实现，便于跨语言调用方接入。
+ * <p>
+ * 所有读写共享同一个Hessian序列化器工厂以复用其类型缓存；写出器连同输出缓冲放入有界池中复用。
+ * 反序列化结果的类名须匹配白名单前缀，白名单在构造时编译为前缀字典树。
+ *
  * @author Spud
  * @date 2025/2/19
  */
 public class HessianSerializer implements Serializer {
 
+	public static final String WHITELIST_PROPERTY = "rpic.hessian.whitelist";
+
+	public static final String DEFAULT_WHITELIST = "java.,javax.,com.spud.rpic.";
+
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+
+	/**
+	 * 归还时超过该大小的输出缓冲不再复用
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final int POOL_CAPACITY = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+
+	private final com.caucho.hessian.io.SerializerFactory hessianFactory =
+		new com.caucho.hessian.io.SerializerFactory();
+
+	private final BlockingQueue<Writer> writers = new ArrayBlockingQueue<>(POOL_CAPACITY);
+
+	private final ClassNamePrefixTrie whitelist;
+
+	/**
+	 * 白名单取系统属性{@value #WHITELIST_PROPERTY}，未设置时使用默认值
+	 */
+	public HessianSerializer() {
+		this(System.getProperty(WHITELIST_PROPERTY, DEFAULT_WHITELIST));
+	}
+
+	/**
+	 * @param whitelist 逗号分隔的类名前缀，为空时使用默认值
+	 */
+	public HessianSerializer(String whitelist) {
+		ClassNamePrefixTrie trie = ClassNamePrefixTrie.compile(whitelist);
+		this.whitelist = trie.isEmpty() ? ClassNamePrefixTrie.compile(DEFAULT_WHITELIST) : trie;
+	}
+
 	@Override
 	public <T> byte[] serialize(T obj) throws SerializeException {
-		try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-			HessianOutput hessianOutput = new HessianOutput(bos);
-			hessianOutput.writeObject(obj);
-			return bos.toByteArray();
+		Writer writer = obtainWriter();
+		try {
+			writer.write(obj, writer.bytes);
+			return writer.bytes.toByteArray();
 		} catch (Exception e) {
 			throw new SerializeException("Error serializing object", e);
+		} finally {
+			releaseWriter(writer);
+		}
+	}
+
+	@Override
+	public <T> void serialize(T obj, ByteBuf out) throws SerializeException {
+		Writer writer = obtainWriter();
+		try {
+			writer.target.buf = out;
+			writer.write(obj, writer.target);
+		} catch (Exception e) {
+			throw new SerializeException("Error serializing object", e);
+		} finally {
+			releaseWriter(writer);
 		}
 	}
 
 	@Override
 	public <T> T deserialize(byte[] data, Class<T> clz) throws SerializeException {
-		try (ByteArrayInputStream bis = new ByteArrayInputStream(data)) {
-			HessianInput hessianInput = new HessianInput(bis);
-			Object obj = hessianInput.readObject();
-			if (obj == null) {
-				return null;
-			}
-			// Basic allowlist: allow classes from java.*, javax.*, and project packages by default.
-			String allowedPrefixes = System.getProperty("rpic.hessian.whitelist", "java.,javax.,com.spud.rpic.");
-			boolean allowed = false;
-			String actualClass = obj.getClass().getName();
-			for (String prefix : allowedPrefixes.split(",")) {
-				if (actualClass.startsWith(prefix.trim())) {
-					allowed = true;
-					break;
-				}
-			}
-			if (!allowed) {
-				throw new SerializeException("Deserialized class '" + actualClass + "' is not allowed by whitelist");
-			}
-			return clz.cast(obj);
+		try {
+			return readObject(new ByteArrayInputStream(data), clz);
+		} catch (SerializeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SerializeException("Error deserializing object", e);
+		}
+	}
+
+	@Override
+	public <T> T deserialize(ByteBuf in, Class<T> clz) throws SerializeException {
+		try {
+			T result = readObject(new ByteBufInputStream(in), clz);
+			in.skipBytes(in.readableBytes());
+			return result;
 		} catch (SerializeException e) {
-			throw e; // rethrow our own exceptions
+			throw e;
 		} catch (Exception e) {
 			throw new SerializeException("Error deserializing object", e);
 		}
 	}
 
+	private <T> T readObject(InputStream is, Class<T> clz) throws Exception {
+		Hessian2Input input = new Hessian2Input(is);
+		input.setSerializerFactory(hessianFactory);
+		Object obj = input.readObject();
+		if (obj == null) {
+			return null;
+		}
+		String actualClass = obj.getClass().getName();
+		if (!whitelist.matches(actualClass)) {
+			throw new SerializeException("Deserialized class '" + actualClass + "' is not allowed by whitelist");
+		}
+		return clz.cast(obj);
+	}
+
 	@Override
 	public String getType() {
 		return SerializerType.HESSIAN.getType();
 	}
-}
\ No newline at end of file
+
+	private Writer obtainWriter() {
+		Writer writer = writers.poll();
+		return writer != null ? writer : new Writer(hessianFactory);
+	}
+
+	private void releaseWriter(Writer writer) {
+		writer.target.buf = null;
+		if (writer.bytes.size() > MAX_POOLED_BUFFER_SIZE) {
+			return;
+		}
+		writer.bytes.reset();
+		writers.offer(writer);
+	}
+
+	/**
+	 * 可复用的写出器，init时重置引用表与类定义表，每条消息都是独立的Hessian2流
+	 */
+	private static final class Writer {
+
+		private final Hessian2Output output = new Hessian2Output();
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+
+		private final ByteBufTarget target = new ByteBufTarget();
+
+		private Writer(com.caucho.hessian.io.SerializerFactory hessianFactory) {
+			output.setSerializerFactory(hessianFactory);
+		}
+
+		private void write(Object obj, OutputStream os) throws IOException {
+			output.init(os);
+			try {
+				output.writeObject(obj);
+				output.flushBuffer();
+			} finally {
+				output.init(null);
+			}
+		}
+	}
+
+	/**
+	 * 写入目标ByteBuf的输出流，随写出器一起复用
+	 */
+	private static final class ByteBufTarget extends OutputStream {
+
+		private ByteBuf buf;
+
+		@Override
+		public void write(int b) {
+			buf.writeByte(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			buf.writeBytes(b, off, len);
+		}
+	}
+}
@@ -1,28 +1,117 @@
 package com.spud.rpic.io.serializer;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.domain.RpcStream;
 import com.spud.rpic.common.exception.SerializeException;
+import com.spud.rpic.util.MethodIds;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 /**
+ * JSON序列化，协议对象使用流式API直接读写ByteBuf。
+ * <p>
+ * 请求的接口、方法与参数类型写在参数之前，解码参数时据此找到方法签名，按声明的泛型类型还原参数；
+ * 响应结果按请求方法的返回类型还原（异步方法取Future的类型参数）。每个方法的参数与返回值
+ * 读写器在登记服务时预先构建，未登记的方法按参数类型反射解析后缓存，仍无法确定类型时退化为Map/List。
+ *
  * @author Spud
  * @date 2025/2/18
  */
 public class JsonSerializer implements Serializer {
 
+	private static final String REQUEST_ID = "requestId";
+	private static final String INTERFACE_NAME = "interfaceName";
+	private static final String METHOD_NAME = "methodName";
+	private static final String VERSION = "version";
+	private static final String GROUP = "group";
+	private static final String PARAMETER_TYPES = "parameterTypes";
+	private static final String METHOD_ID = "methodId";
+	private static final String ONE_WAY = "oneWay";
+	private static final String TIMEOUT = "timeout";
+	private static final String DEADLINE_AT_MILLIS = "deadlineAtMillis";
+	private static final String ATTEMPT = "attempt";
+	private static final String PARAMETERS = "parameters";
+
+	private static final String ERROR = "error";
+	private static final String ERROR_MSG = "errorMsg";
+	private static final String ERROR_CLASS = "errorClass";
+	private static final String PROCESS_TIME = "processTime";
+	private static final String RESULT = "result";
+
 	private final ObjectMapper objectMapper;
 
+	private final JsonFactory jsonFactory;
+
+	/**
+	 * 类型未知时使用的读写器
+	 */
+	private final ObjectReader untypedReader;
+
+	private final ObjectWriter untypedWriter;
+
+	/**
+	 * 已登记服务的方法编号 -> 方法编解码器
+	 */
+	private final Map<Integer, MethodCodec> codecsById = new ConcurrentHashMap<>();
+
+	private final Map<Method, MethodCodec> codecsByMethod = new ConcurrentHashMap<>();
+
+	private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+
 	public JsonSerializer() {
 		objectMapper = new ObjectMapper();
 		objectMapper.configure(JsonGenerator.Feature.IGNORE_UNKNOWN, true);
 		objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		jsonFactory = objectMapper.getFactory();
+		untypedReader = objectMapper.readerFor(Object.class);
+		untypedWriter = objectMapper.writer();
+	}
+
+	@Override
+	public void registerService(String serviceKey, Class<?> interfaceClass) {
+		for (Method method : interfaceClass.getMethods()) {
+			if (method.getDeclaringClass() == Object.class || Modifier.isStatic(method.getModifiers())) {
+				continue;
+			}
+			codecsById.putIfAbsent(MethodIds.of(serviceKey, method), codecFor(method));
+		}
 	}
 
 	@Override
 	public <T> byte[] serialize(T obj) throws SerializeException {
+		if (obj instanceof RpcRequest || obj instanceof RpcResponse) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+			writeMessage(obj, out);
+			return out.toByteArray();
+		}
 		try {
 			return objectMapper.writeValueAsBytes(obj);
 		} catch (JsonProcessingException e) {
@@ -33,14 +122,462 @@ public class JsonSerializer implements Serializer {
 	@Override
 	public <T> T deserialize(byte[] data, Class<T> clz) throws SerializeException {
 		try {
+			if (clz == RpcRequest.class || clz == RpcResponse.class) {
+				return clz.cast(readMessage(jsonFactory.createParser(data), clz, null));
+			}
 			return objectMapper.readValue(data, clz);
 		} catch (IOException e) {
 			throw new SerializeException("Error deserializing object", e);
 		}
 	}
 
+	@Override
+	public <T> void serialize(T obj, ByteBuf out) throws SerializeException {
+		OutputStream os = new ByteBufOutputStream(out);
+		if (obj instanceof RpcRequest || obj instanceof RpcResponse) {
+			writeMessage(obj, os);
+			return;
+		}
+		try {
+			objectMapper.writeValue(os, obj);
+		} catch (IOException e) {
+			throw new SerializeException("Error serializing object", e);
+		}
+	}
+
+	@Override
+	public <T> T deserialize(ByteBuf in, Class<T> clz) throws SerializeException {
+		if (clz == RpcRequest.class || clz == RpcResponse.class) {
+			return clz.cast(readMessage(in, clz, null));
+		}
+		try {
+			if (in.hasArray()) {
+				int length = in.readableBytes();
+				T result = objectMapper.readValue(in.array(), in.arrayOffset() + in.readerIndex(), length,
+					clz);
+				in.skipBytes(length);
+				return result;
+			}
+			return objectMapper.readValue((InputStream) new ByteBufInputStream(in), clz);
+		} catch (IOException e) {
+			throw new SerializeException("Error deserializing object", e);
+		}
+	}
+
+	@Override
+	public RpcResponse deserializeResponse(ByteBuf in, Integer methodId)
+		throws SerializeException {
+		MethodCodec codec = methodId != null ? codecsById.get(methodId) : null;
+		return (RpcResponse) readMessage(in, RpcResponse.class,
+			codec != null ? codec.resultReader : null);
+	}
+
+	/**
+	 * 数据块的结果按方法流式参数的元素类型还原为列表
+	 */
+	@Override
+	public RpcResponse deserializeParameterChunk(ByteBuf in, Integer methodId)
+		throws SerializeException {
+		MethodCodec codec = methodId != null ? codecsById.get(methodId) : null;
+		return (RpcResponse) readMessage(in, RpcResponse.class,
+			codec != null ? codec.parameterChunkReader : null);
+	}
+
 	@Override
 	public String getType() {
 		return SerializerType.JSON.getType();
 	}
+
+	/**
+	 * 请求的参数数组写在路由头字段之后，解码到参数字段即停止，读索引移到参数数组起始处
+	 */
+	@Override
+	public RpcRequest deserializeRequestHeader(ByteBuf in) throws SerializeException {
+		try (JsonParser p = parserOf(in)) {
+			if (p.nextToken() != JsonToken.START_OBJECT) {
+				throw new SerializeException("Expected JSON object for RpcRequest");
+			}
+			RpcRequest header = readRequest(p, false);
+			in.skipBytes(p.currentToken() == JsonToken.START_ARRAY
+				? (int) p.getTokenLocation().getByteOffset() : in.readableBytes());
+			return header;
+		} catch (IOException e) {
+			throw new SerializeException("Error deserializing request header", e);
+		}
+	}
+
+	/**
+	 * 从参数数组起始处解码参数，参数数组之后的字段不再读取（本实现写出的请求参数总在最后）
+	 */
+	@Override
+	public Object[] deserializeParameters(ByteBuf in, RpcRequest header)
+		throws SerializeException {
+		if (!in.isReadable()) {
+			return null;
+		}
+		try (JsonParser p = parserOf(in)) {
+			Object[] parameters = readParameters(p, p.nextToken(), header);
+			in.skipBytes(in.readableBytes());
+			return parameters;
+		} catch (IOException e) {
+			throw new SerializeException("Error deserializing request parameters", e);
+		}
+	}
+
+	private JsonParser parserOf(ByteBuf in) throws IOException {
+		return in.hasArray()
+			? jsonFactory.createParser(in.array(), in.arrayOffset() + in.readerIndex(),
+			in.readableBytes())
+			: jsonFactory.createParser((InputStream) new ByteBufInputStream(in.duplicate()));
+	}
+
+	private Object readMessage(ByteBuf in, Class<?> clz, ObjectReader resultReader) {
+		try {
+			Object message = readMessage(parserOf(in), clz, resultReader);
+			in.skipBytes(in.readableBytes());
+			return message;
+		} catch (IOException e) {
+			throw new SerializeException("Error deserializing object", e);
+		}
+	}
+
+	private Object readMessage(JsonParser parser, Class<?> clz, ObjectReader resultReader)
+		throws IOException {
+		try (JsonParser p = parser) {
+			if (p.nextToken() != JsonToken.START_OBJECT) {
+				throw new SerializeException("Expected JSON object for " + clz.getSimpleName());
+			}
+			return clz == RpcRequest.class ? readRequest(p, true) : readResponse(p, resultReader);
+		}
+	}
+
+	private void writeMessage(Object message, OutputStream out) {
+		try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+			if (message instanceof RpcRequest) {
+				writeRequest((RpcRequest) message, generator);
+			} else {
+				writeResponse((RpcResponse) message, generator);
+			}
+		} catch (IOException e) {
+			throw new SerializeException("Error serializing object", e);
+		}
+	}
+
+	private void writeRequest(RpcRequest request, JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		writeStringField(gen, REQUEST_ID, request.getRequestId());
+		writeStringField(gen, INTERFACE_NAME, request.getInterfaceName());
+		writeStringField(gen, METHOD_NAME, request.getMethodName());
+		writeStringField(gen, VERSION, request.getVersion());
+		writeStringField(gen, GROUP, request.getGroup());
+		Class<?>[] parameterTypes = request.getParameterTypes();
+		if (parameterTypes != null) {
+			gen.writeArrayFieldStart(PARAMETER_TYPES);
+			for (Class<?> type : parameterTypes) {
+				gen.writeString(type.getName());
+			}
+			gen.writeEndArray();
+		}
+		if (request.getMethodId() != null) {
+			gen.writeNumberField(METHOD_ID, request.getMethodId());
+		}
+		if (request.isOneWay()) {
+			gen.writeBooleanField(ONE_WAY, true);
+		}
+		gen.writeNumberField(TIMEOUT, request.getTimeout());
+		if (request.getDeadlineAtMillis() != null) {
+			gen.writeNumberField(DEADLINE_AT_MILLIS, request.getDeadlineAtMillis());
+		}
+		if (request.getAttempt() != null) {
+			gen.writeNumberField(ATTEMPT, request.getAttempt());
+		}
+
+		Object[] parameters = request.getParameters();
+		if (parameters != null) {
+			MethodCodec codec = codecOf(request);
+			gen.writeArrayFieldStart(PARAMETERS);
+			for (int i = 0; i < parameters.length; i++) {
+				writeValue(gen, codec != null ? codec.parameterWriter(i) : null, parameters[i]);
+			}
+			gen.writeEndArray();
+		}
+		gen.writeEndObject();
+	}
+
+	/**
+	 * @param withParameters 为false时读到参数数组起始处即返回，此时当前标记为START_ARRAY
+	 */
+	private RpcRequest readRequest(JsonParser p, boolean withParameters) throws IOException {
+		RpcRequest request = new RpcRequest();
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.getCurrentName();
+			JsonToken token = p.nextToken();
+			switch (field) {
+				case REQUEST_ID:
+					request.setRequestId(p.getValueAsString());
+					break;
+				case INTERFACE_NAME:
+					request.setInterfaceName(p.getValueAsString());
+					if (request.getInterfaceName() != null) {
+						request.setInterfaceClass(resolveClass(request.getInterfaceName()));
+					}
+					break;
+				case METHOD_NAME:
+					request.setMethodName(p.getValueAsString());
+					break;
+				case VERSION:
+					request.setVersion(p.getValueAsString());
+					break;
+				case GROUP:
+					request.setGroup(p.getValueAsString());
+					break;
+				case PARAMETER_TYPES:
+					request.setParameterTypes(readParameterTypes(p, token));
+					break;
+				case METHOD_ID:
+					request.setMethodId(token == JsonToken.VALUE_NULL ? null : p.getIntValue());
+					break;
+				case ONE_WAY:
+					request.setOneWay(p.getValueAsBoolean());
+					break;
+				case TIMEOUT:
+					request.setTimeout(p.getValueAsLong());
+					break;
+				case DEADLINE_AT_MILLIS:
+					request.setDeadlineAtMillis(token == JsonToken.VALUE_NULL ? null : p.getLongValue());
+					break;
+				case ATTEMPT:
+					request.setAttempt(token == JsonToken.VALUE_NULL ? null : p.getIntValue());
+					break;
+				case PARAMETERS:
+					if (!withParameters && token == JsonToken.START_ARRAY) {
+						return request;
+					}
+					request.setParameters(readParameters(p, token, request));
+					break;
+				default:
+					p.skipChildren();
+			}
+		}
+		return request;
+	}
+
+	private Class<?>[] readParameterTypes(JsonParser p, JsonToken token) throws IOException {
+		if (token != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<Class<?>> types = new ArrayList<>();
+		while (p.nextToken() != JsonToken.END_ARRAY) {
+			types.add(resolveClass(p.getValueAsString()));
+		}
+		return types.toArray(new Class<?>[0]);
+	}
+
+	/**
+	 * 参数位于请求头字段之后，此时已可确定方法签名
+	 */
+	private Object[] readParameters(JsonParser p, JsonToken token, RpcRequest request)
+		throws IOException {
+		if (token != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		MethodCodec codec = codecOf(request);
+		Class<?>[] parameterTypes = request.getParameterTypes();
+		List<Object> parameters = new ArrayList<>();
+		JsonToken next;
+		while ((next = p.nextToken()) != JsonToken.END_ARRAY) {
+			int index = parameters.size();
+			if (next == JsonToken.VALUE_NULL) {
+				parameters.add(null);
+				continue;
+			}
+			ObjectReader reader = codec != null ? codec.parameterReader(index) : null;
+			if (reader == null) {
+				reader = parameterTypes != null && index < parameterTypes.length
+					? objectMapper.readerFor(parameterTypes[index]) : untypedReader;
+			}
+			parameters.add(reader.readValue(p));
+		}
+		return parameters.toArray();
+	}
+
+	private void writeResponse(RpcResponse response, JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		writeStringField(gen, REQUEST_ID, response.getRequestId());
+		if (response.getError() != null) {
+			gen.writeBooleanField(ERROR, response.getError());
+		}
+		writeStringField(gen, ERROR_MSG, response.getErrorMsg());
+		writeStringField(gen, ERROR_CLASS, response.getErrorClass());
+		gen.writeNumberField(PROCESS_TIME, response.getProcessTime());
+		if (response.getResult() != null) {
+			gen.writeFieldName(RESULT);
+			untypedWriter.writeValue(gen, response.getResult());
+		}
+		gen.writeEndObject();
+	}
+
+	private RpcResponse readResponse(JsonParser p, ObjectReader resultReader) throws IOException {
+		RpcResponse.RpcResponseBuilder response = RpcResponse.builder();
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.getCurrentName();
+			JsonToken token = p.nextToken();
+			switch (field) {
+				case REQUEST_ID:
+					response.requestId(p.getValueAsString());
+					break;
+				case ERROR:
+					response.error(token == JsonToken.VALUE_NULL ? null : p.getValueAsBoolean());
+					break;
+				case ERROR_MSG:
+					response.errorMsg(p.getValueAsString());
+					break;
+				case ERROR_CLASS:
+					response.errorClass(p.getValueAsString());
+					break;
+				case PROCESS_TIME:
+					response.processTime(p.getValueAsLong());
+					break;
+				case RESULT:
+					if (token != JsonToken.VALUE_NULL) {
+						response.result((resultReader != null ? resultReader : untypedReader).readValue(p));
+					}
+					break;
+				default:
+					p.skipChildren();
+			}
+		}
+		return response.build();
+	}
+
+	private void writeValue(JsonGenerator gen, ObjectWriter writer, Object value)
+		throws IOException {
+		if (value == null) {
+			gen.writeNull();
+			return;
+		}
+		(writer != null ? writer : untypedWriter).writeValue(gen, value);
+	}
+
+	private static void writeStringField(JsonGenerator gen, String name, String value)
+		throws IOException {
+		if (value != null) {
+			gen.writeStringField(name, value);
+		}
+	}
+
+	/**
+	 * 按方法编号查找已登记的编解码器，未登记时按接口、方法名与参数类型反射解析
+	 */
+	private MethodCodec codecOf(RpcRequest request) {
+		if (request.getMethodId() != null) {
+			MethodCodec codec = codecsById.get(request.getMethodId());
+			if (codec != null) {
+				return codec;
+			}
+		}
+		Class<?> interfaceClass = request.getInterfaceClass();
+		if (interfaceClass == null || request.getMethodName() == null
+			|| request.getParameterTypes() == null) {
+			return null;
+		}
+		try {
+			return codecFor(interfaceClass.getMethod(request.getMethodName(),
+				request.getParameterTypes()));
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private MethodCodec codecFor(Method method) {
+		return codecsByMethod.computeIfAbsent(method, m -> new MethodCodec(objectMapper, m));
+	}
+
+	private Class<?> resolveClass(String name) {
+		return classes.computeIfAbsent(name, className -> {
+			try {
+				return objectMapper.getTypeFactory().findClass(className);
+			} catch (ClassNotFoundException e) {
+				throw new SerializeException("Class not found: " + className, e);
+			}
+		});
+	}
+
+	/**
+	 * 单个方法的参数与返回值读写器；声明类型为final时参数写入器按声明类型预先绑定，
+	 * 否则按运行时类型写出，以免丢失子类字段。流式返回值与流式参数以元素列表为单位传输，按元素类型读取
+	 */
+	private static final class MethodCodec {
+
+		private final ObjectReader[] parameterReaders;
+
+		private final ObjectWriter[] parameterWriters;
+
+		private final ObjectReader resultReader;
+
+		/**
+		 * 流式参数数据块的读取器，方法没有流式参数时为null
+		 */
+		private final ObjectReader parameterChunkReader;
+
+		MethodCodec(ObjectMapper objectMapper, Method method) {
+			TypeFactory typeFactory = objectMapper.getTypeFactory();
+			Type[] parameterTypes = method.getGenericParameterTypes();
+			this.parameterReaders = new ObjectReader[parameterTypes.length];
+			this.parameterWriters = new ObjectWriter[parameterTypes.length];
+			ObjectReader chunkReader = null;
+			for (int i = 0; i < parameterTypes.length; i++) {
+				JavaType type = typeFactory.constructType(parameterTypes[i]);
+				if (chunkReader == null && isStreamType(type.getRawClass())) {
+					chunkReader = objectMapper.readerFor(chunkType(typeFactory, type));
+				}
+				parameterReaders[i] = objectMapper.readerFor(type);
+				if (type.isFinal() || type.isPrimitive()) {
+					parameterWriters[i] = objectMapper.writerFor(type);
+				}
+			}
+			this.resultReader = objectMapper.readerFor(resultType(typeFactory, method));
+			this.parameterChunkReader = chunkReader;
+		}
+
+		ObjectReader parameterReader(int index) {
+			return index < parameterReaders.length ? parameterReaders[index] : null;
+		}
+
+		ObjectWriter parameterWriter(int index) {
+			return index < parameterWriters.length ? parameterWriters[index] : null;
+		}
+
+		private static JavaType resultType(TypeFactory typeFactory, Method method) {
+			if (method.getReturnType() == void.class) {
+				return typeFactory.constructType(Object.class);
+			}
+			JavaType type = typeFactory.constructType(method.getGenericReturnType());
+			if (isStreamType(type.getRawClass())) {
+				return chunkType(typeFactory, type);
+			}
+			Class<?> async = type.isTypeOrSubTypeOf(CompletionStage.class) ? CompletionStage.class
+				: type.isTypeOrSubTypeOf(Future.class) ? Future.class : null;
+			if (async != null) {
+				JavaType[] params = type.findTypeParameters(async);
+				return params.length == 1 ? params[0] : typeFactory.constructType(Object.class);
+			}
+			return type;
+		}
+
+		/**
+		 * 流（Iterator或RpcStream）的数据块为元素列表
+		 */
+		private static JavaType chunkType(TypeFactory typeFactory, JavaType streamType) {
+			JavaType[] params = streamType.findTypeParameters(Iterator.class);
+			return typeFactory.constructCollectionType(List.class,
+				params.length == 1 ? params[0] : typeFactory.constructType(Object.class));
+		}
+
+		private static boolean isStreamType(Class<?> type) {
+			return type == Iterator.class || type == RpcStream.class;
+		}
+	}
 }
@@ -1,40 +1,228 @@
 package com.spud.rpic.io.serializer;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.Pool;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
 import com.spud.rpic.common.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import lombok.extern.slf4j.Slf4j;
 
 /**
+ * 基于对象池的Kryo序列化实现。
+ * <p>
+ * Kryo实例与输出缓冲均从{@link Pool}借还，不与线程绑定，虚拟线程下不会随线程数增长。
+ * 协议对象与常用集合使用固定注册编号，服务接口中的业务类型在启动时通过{@link #registerService}
+ * 按类名哈希得到编号，调用双方无需约定注册顺序即可得到一致的编号；未注册的类型仍按类名写出。
+ * 哈希编号之后另写一个由类名计算的校验字节，对端以同一编号登记了其他类型时解码失败而不是读成错误的类型；
+ * 本端登记的类型之间编号冲突时，冲突的编号对所有类型弃用，对端以该编号写出的对象同样解码失败。
+ * <p>
+ * 请求先写除参数外的路由头字段，最后写参数，服务端可只解码路由头，待请求被接纳后再解码参数。
+ *
  * @author Spud
  * @date 2025/2/27
  */
+@Slf4j
 public class KryoSerializer implements Serializer {
 
-	private static final ThreadLocal<Kryo> kryoThreadLocal = ThreadLocal.withInitial(() -> {
-		Kryo kryo = new Kryo();
-		kryo.setRegistrationRequired(false);
-		return kryo;
-	});
+	/**
+	 * 固定注册编号的起始值，之前的编号为Kryo内置的基本类型注册
+	 */
+	private static final int FIXED_ID_BASE = 16;
+
+	/**
+	 * 业务类型注册编号的起始值
+	 */
+	private static final int DYNAMIC_ID_BASE = 64;
+
+	private static final int DYNAMIC_ID_MASK = 0x0FFFFFFF;
+
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+
+	private static final byte[] EMPTY_BYTES = new byte[0];
+
+	/**
+	 * 归还时超过该大小的输出缓冲不再复用，避免偶发的大消息长期占用内存
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final int POOL_CAPACITY = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+
+	private static final Class<?>[] FIXED_REGISTRATIONS = {
+		RpcRequest.class, RpcResponse.class, Class.class, Class[].class, Object[].class,
+		ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, TreeMap.class,
+		HashSet.class, LinkedHashSet.class, Date.class, BigDecimal.class, BigInteger.class,
+		byte[].class, int[].class, long[].class, String[].class
+	};
+
+	/**
+	 * 已登记的业务类型，按登记顺序追加；池中实例借出时补齐尚未注册的部分
+	 */
+	private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+	private final Map<Integer, Class<?>> registeredIds = new ConcurrentHashMap<>();
+
+	/**
+	 * 发生过冲突的编号，不再分配给任何类型
+	 */
+	private final Set<Integer> collidedIds = ConcurrentHashMap.newKeySet();
+
+	private final Pool<PooledKryo> kryoPool = new Pool<PooledKryo>(true, false, POOL_CAPACITY) {
+		@Override
+		protected PooledKryo create() {
+			return new PooledKryo();
+		}
+	};
+
+	private final Pool<Output> outputPool = new Pool<Output>(true, false, POOL_CAPACITY) {
+		@Override
+		protected Output create() {
+			return new Output(INITIAL_BUFFER_SIZE, -1);
+		}
+	};
+
+	@Override
+	public void registerService(String serviceKey, Class<?> interfaceClass) {
+		registerTypes(ServiceTypes.collect(interfaceClass));
+	}
+
+	/**
+	 * 按类名哈希登记类型编号。编号冲突时冲突双方都按类名写出：是否冲突只取决于本端登记了哪些类型，
+	 * 若只让先登记的类型保留编号，未登记另一类型的对端会以同一编号写出不同的类型
+	 */
+	public synchronized void registerTypes(Collection<Class<?>> types) {
+		for (Class<?> type : types) {
+			int id = dynamicId(type);
+			if (collidedIds.contains(id)) {
+				continue;
+			}
+			Class<?> existing = registeredIds.putIfAbsent(id, type);
+			if (existing == null) {
+				registrations.add(new Registration(type, id));
+			} else if (existing != type) {
+				log.warn("Kryo registration id of {} collides with {}, both will be written by class name",
+					type.getName(), existing.getName());
+				collidedIds.add(id);
+				registeredIds.remove(id);
+				// 已借出过的实例在下次借出时撤销该编号
+				registrations.add(new Registration(null, id));
+			}
+		}
+	}
+
+	static int dynamicId(Class<?> type) {
+		return DYNAMIC_ID_BASE + (type.getName().hashCode() & DYNAMIC_ID_MASK);
+	}
 
 	@Override
 	public <T> byte[] serialize(T obj) throws SerializeException {
-		try (Output output = new Output(1024, -1)) {
-			Kryo kryo = kryoThreadLocal.get();
+		PooledKryo kryo = obtainKryo();
+		Output output = outputPool.obtain();
+		try {
 			kryo.writeObject(output, obj);
 			return output.toBytes();
 		} catch (Exception e) {
 			throw new SerializeException("Error serializing object", e);
+		} finally {
+			freeOutput(output);
+			kryoPool.free(kryo);
 		}
 	}
 
 	@Override
 	public <T> T deserialize(byte[] data, Class<T> clz) throws SerializeException {
-		try (Input input = new Input(data)) {
-			Kryo kryo = kryoThreadLocal.get();
-			return kryo.readObject(input, clz);
+		PooledKryo kryo = obtainKryo();
+		try {
+			return kryo.readObject(kryo.inputOf(data), clz);
+		} catch (Exception e) {
+			throw new SerializeException("Error deserializing object", e);
+		} finally {
+			freeKryo(kryo);
+		}
+	}
+
+	@Override
+	public <T> void serialize(T obj, ByteBuf out) throws SerializeException {
+		PooledKryo kryo = obtainKryo();
+		Output output = outputPool.obtain();
+		try {
+			kryo.writeObject(output, obj);
+			out.writeBytes(output.getBuffer(), 0, output.position());
+		} catch (Exception e) {
+			throw new SerializeException("Error serializing object", e);
+		} finally {
+			freeOutput(output);
+			kryoPool.free(kryo);
+		}
+	}
+
+	@Override
+	public <T> T deserialize(ByteBuf in, Class<T> clz) throws SerializeException {
+		PooledKryo kryo = obtainKryo();
+		Input input = kryo.inputOf(in);
+		try {
+			T result = kryo.readObject(input, clz);
+			in.skipBytes(in.readableBytes());
+			return result;
 		} catch (Exception e) {
 			throw new SerializeException("Error deserializing object", e);
+		} finally {
+			freeKryo(kryo);
+		}
+	}
+
+	@Override
+	public RpcRequest deserializeRequestHeader(ByteBuf in) throws SerializeException {
+		PooledKryo kryo = obtainKryo();
+		Input input = kryo.inputOf(in);
+		int start = input.position();
+		try {
+			RpcRequest header = kryo.readObject(input, RpcRequest.class, kryo.requestSerializer.header);
+			in.skipBytes(input.position() - start);
+			return header;
+		} catch (Exception e) {
+			throw new SerializeException("Error deserializing request header", e);
+		} finally {
+			freeKryo(kryo);
+		}
+	}
+
+	@Override
+	public Object[] deserializeParameters(ByteBuf in, RpcRequest header)
+		throws SerializeException {
+		PooledKryo kryo = obtainKryo();
+		Input input = kryo.inputOf(in);
+		try {
+			Object[] parameters = kryo.readObjectOrNull(input, Object[].class);
+			in.skipBytes(in.readableBytes());
+			return parameters;
+		} catch (Exception e) {
+			throw new SerializeException("Error deserializing request parameters", e);
+		} finally {
+			freeKryo(kryo);
 		}
 	}
 
@@ -42,4 +230,173 @@ public class KryoSerializer implements Serializer {
 	public String getType() {
 		return SerializerType.KRYO.getType();
 	}
-}
\ No newline at end of file
+
+	private PooledKryo obtainKryo() {
+		PooledKryo kryo = kryoPool.obtain();
+		kryo.sync(registrations);
+		return kryo;
+	}
+
+	/**
+	 * 归还前解除输入对消息缓冲区的引用
+	 */
+	private void freeKryo(PooledKryo kryo) {
+		kryo.clearInputs();
+		kryoPool.free(kryo);
+	}
+
+	private void freeOutput(Output output) {
+		if (output.getBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+			output.setBuffer(new byte[INITIAL_BUFFER_SIZE], -1);
+		} else {
+			output.reset();
+		}
+		outputPool.free(output);
+	}
+
+	/**
+	 * 类型为null表示撤销该编号
+	 */
+	private static final class Registration {
+
+		private final Class<?> type;
+
+		private final int id;
+
+		private Registration(Class<?> type, int id) {
+			this.type = type;
+			this.id = id;
+		}
+	}
+
+	/**
+	 * 请求的编码：除参数外的字段（即路由头）在前，参数数组在后，两部分可分别解码
+	 */
+	private static final class RequestSerializer
+		extends com.esotericsoftware.kryo.Serializer<RpcRequest> {
+
+		private final FieldSerializer<RpcRequest> header;
+
+		private RequestSerializer(Kryo kryo) {
+			this.header = new FieldSerializer<>(kryo, RpcRequest.class);
+			this.header.removeField("parameters");
+		}
+
+		@Override
+		public void write(Kryo kryo, Output output, RpcRequest request) {
+			header.write(kryo, output, request);
+			// 参数按独立的对象图写出，类名缓存不跨越路由头，使参数可单独解码
+			kryo.getClassResolver().reset();
+			kryo.writeObjectOrNull(output, request.getParameters(), Object[].class);
+		}
+
+		@Override
+		public RpcRequest read(Kryo kryo, Input input, Class<? extends RpcRequest> type) {
+			RpcRequest request = header.read(kryo, input, type);
+			kryo.getClassResolver().reset();
+			request.setParameters(kryo.readObjectOrNull(input, Object[].class));
+			return request;
+		}
+	}
+
+	/**
+	 * 记录已应用的业务类型数量，同一实例同一时刻只会被一个调用方持有
+	 */
+	private static final class PooledKryo extends Kryo {
+
+		private final RequestSerializer requestSerializer = new RequestSerializer(this);
+
+		private int synced;
+
+		// 读取用的输入随实例复用，不再每次反序列化分配输入对象及其字符缓冲
+		private final Input arrayInput = new Input();
+
+		private final ByteBufferInput bufferInput = new ByteBufferInput();
+
+		private final ByteBuffer emptyBuffer = ByteBuffer.allocate(0);
+
+		private PooledKryo() {
+			super(new CheckedClassResolver(), null);
+			setRegistrationRequired(false);
+			int id = FIXED_ID_BASE;
+			for (Class<?> type : FIXED_REGISTRATIONS) {
+				register(type, id++);
+			}
+			register(RpcRequest.class, requestSerializer, FIXED_ID_BASE);
+		}
+
+		private Input inputOf(byte[] data) {
+			arrayInput.setBuffer(data);
+			return arrayInput;
+		}
+
+		/**
+		 * 堆缓冲区直接引用底层数组，直接内存缓冲区通过NIO视图读取，均不复制
+		 */
+		private Input inputOf(ByteBuf in) {
+			int length = in.readableBytes();
+			if (in.hasArray()) {
+				arrayInput.setBuffer(in.array(), in.arrayOffset() + in.readerIndex(), length);
+				return arrayInput;
+			}
+			bufferInput.setBuffer(in.nioBuffer(in.readerIndex(), length));
+			return bufferInput;
+		}
+
+		private void clearInputs() {
+			arrayInput.setBuffer(EMPTY_BYTES);
+			bufferInput.setBuffer(emptyBuffer);
+		}
+
+		private void sync(List<Registration> registrations) {
+			int size = registrations.size();
+			for (; synced < size; synced++) {
+				Registration registration = registrations.get(synced);
+				if (registration.type == null) {
+					getClassResolver().unregister(registration.id);
+				} else {
+					register(registration.type, registration.id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 哈希编号之后写一个由类名计算的校验字节，读取时与本端以该编号登记的类型比对
+	 */
+	private static final class CheckedClassResolver extends DefaultClassResolver {
+
+		@Override
+		public com.esotericsoftware.kryo.Registration writeClass(Output output, Class type) {
+			com.esotericsoftware.kryo.Registration registration = super.writeClass(output, type);
+			if (registration != null && registration.getId() >= DYNAMIC_ID_BASE) {
+				output.writeByte(ServiceTypes.nameCheck(registration.getType()));
+			}
+			return registration;
+		}
+
+		/**
+		 * 当前类型是否按类名读出，按类名写出的类型没有校验字节
+		 */
+		private boolean readByName;
+
+		@Override
+		public com.esotericsoftware.kryo.Registration readClass(Input input) {
+			readByName = false;
+			com.esotericsoftware.kryo.Registration registration = super.readClass(input);
+			if (registration != null && !readByName && registration.getId() >= DYNAMIC_ID_BASE
+				&& input.readByte() != ServiceTypes.nameCheck(registration.getType())) {
+				throw new KryoException("Kryo registration id " + registration.getId()
+					+ " refers to a different class than " + registration.getType().getName()
+					+ " on the peer");
+			}
+			return registration;
+		}
+
+		@Override
+		protected com.esotericsoftware.kryo.Registration readName(Input input) {
+			readByName = true;
+			return super.readName(input);
+		}
+	}
+}
@@ -0,0 +1,453 @@
+package com.spud.rpic.io.serializer;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.google.protobuf.WireFormat;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.exception.SerializeException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RpcRequest/RpcResponse的protobuf编解码，字段定义见proto/rpic_envelope.proto。
+ * <p>
+ * 参数与返回值为生成的消息类型时以长度前缀的消息字节写出，解析器按类缓存；
+ * 字符串、int、long、float、double、boolean与字节数组以标量写出，其他类型不支持。
+ */
+final class ProtobufEnvelope {
+
+	private static final int VALUE_MESSAGE_TYPE = 1;
+	private static final int VALUE_MESSAGE = 2;
+	private static final int VALUE_STRING = 3;
+	private static final int VALUE_INT32 = 4;
+	private static final int VALUE_INT64 = 5;
+	private static final int VALUE_FLOAT = 6;
+	private static final int VALUE_DOUBLE = 7;
+	private static final int VALUE_BOOL = 8;
+	private static final int VALUE_BYTES = 9;
+
+	private static final int REQUEST_ID = 1;
+	private static final int REQUEST_INTERFACE_NAME = 2;
+	private static final int REQUEST_METHOD_NAME = 3;
+	private static final int REQUEST_VERSION = 4;
+	private static final int REQUEST_GROUP = 5;
+	private static final int REQUEST_PARAMETER_TYPES = 6;
+	private static final int REQUEST_METHOD_ID = 7;
+	private static final int REQUEST_PARAMETERS = 8;
+	private static final int REQUEST_ONE_WAY = 9;
+	private static final int REQUEST_TIMEOUT = 10;
+	private static final int REQUEST_DEADLINE = 11;
+	private static final int REQUEST_ATTEMPT = 12;
+
+	private static final int RESPONSE_REQUEST_ID = 1;
+	private static final int RESPONSE_RESULT = 2;
+	private static final int RESPONSE_ERROR = 3;
+	private static final int RESPONSE_ERROR_MSG = 4;
+	private static final int RESPONSE_ERROR_CLASS = 5;
+	private static final int RESPONSE_PROCESS_TIME = 6;
+
+	private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+
+	static {
+		for (Class<?> type : new Class<?>[]{boolean.class, byte.class, char.class, short.class,
+			int.class, long.class, float.class, double.class, void.class}) {
+			PRIMITIVES.put(type.getName(), type);
+		}
+	}
+
+	private final Map<Class<?>, Parser<?>> parsers = new ConcurrentHashMap<>();
+
+	private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+
+	int requestSize(RpcRequest request) {
+		int size = stringSize(REQUEST_ID, request.getRequestId())
+			+ stringSize(REQUEST_INTERFACE_NAME, request.getInterfaceName())
+			+ stringSize(REQUEST_METHOD_NAME, request.getMethodName())
+			+ stringSize(REQUEST_VERSION, request.getVersion())
+			+ stringSize(REQUEST_GROUP, request.getGroup());
+		if (request.getParameterTypes() != null) {
+			for (Class<?> type : request.getParameterTypes()) {
+				size += CodedOutputStream.computeStringSize(REQUEST_PARAMETER_TYPES, type.getName());
+			}
+		}
+		if (request.getMethodId() != null) {
+			size += CodedOutputStream.computeSInt32Size(REQUEST_METHOD_ID, request.getMethodId());
+		}
+		if (request.getParameters() != null) {
+			for (Object parameter : request.getParameters()) {
+				size += embeddedValueSize(REQUEST_PARAMETERS, parameter);
+			}
+		}
+		if (request.isOneWay()) {
+			size += CodedOutputStream.computeBoolSize(REQUEST_ONE_WAY, true);
+		}
+		if (request.getTimeout() != 0) {
+			size += CodedOutputStream.computeInt64Size(REQUEST_TIMEOUT, request.getTimeout());
+		}
+		if (request.getDeadlineAtMillis() != null) {
+			size += CodedOutputStream.computeInt64Size(REQUEST_DEADLINE, request.getDeadlineAtMillis());
+		}
+		if (request.getAttempt() != null) {
+			size += CodedOutputStream.computeInt32Size(REQUEST_ATTEMPT, request.getAttempt());
+		}
+		return size;
+	}
+
+	void writeRequest(CodedOutputStream out, RpcRequest request) throws IOException {
+		writeString(out, REQUEST_ID, request.getRequestId());
+		writeString(out, REQUEST_INTERFACE_NAME, request.getInterfaceName());
+		writeString(out, REQUEST_METHOD_NAME, request.getMethodName());
+		writeString(out, REQUEST_VERSION, request.getVersion());
+		writeString(out, REQUEST_GROUP, request.getGroup());
+		if (request.getParameterTypes() != null) {
+			for (Class<?> type : request.getParameterTypes()) {
+				out.writeString(REQUEST_PARAMETER_TYPES, type.getName());
+			}
+		}
+		if (request.getMethodId() != null) {
+			out.writeSInt32(REQUEST_METHOD_ID, request.getMethodId());
+		}
+		if (request.isOneWay()) {
+			out.writeBool(REQUEST_ONE_WAY, true);
+		}
+		if (request.getTimeout() != 0) {
+			out.writeInt64(REQUEST_TIMEOUT, request.getTimeout());
+		}
+		if (request.getDeadlineAtMillis() != null) {
+			out.writeInt64(REQUEST_DEADLINE, request.getDeadlineAtMillis());
+		}
+		if (request.getAttempt() != null) {
+			out.writeInt32(REQUEST_ATTEMPT, request.getAttempt());
+		}
+		// 参数写在路由头字段之后
+		if (request.getParameters() != null) {
+			for (Object parameter : request.getParameters()) {
+				writeEmbeddedValue(out, REQUEST_PARAMETERS, parameter);
+			}
+		}
+	}
+
+	/**
+	 * @param withParameters 为false时跳过参数字段，只解码路由头，返回请求的参数为null
+	 */
+	RpcRequest readRequest(CodedInputStream in, boolean withParameters) throws IOException {
+		RpcRequest request = new RpcRequest();
+		List<Class<?>> parameterTypes = new ArrayList<>();
+		List<Object> parameters = new ArrayList<>();
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+				case REQUEST_ID:
+					request.setRequestId(in.readString());
+					break;
+				case REQUEST_INTERFACE_NAME:
+					String interfaceName = in.readString();
+					request.setInterfaceName(interfaceName);
+					request.setInterfaceClass(resolveClass(interfaceName));
+					break;
+				case REQUEST_METHOD_NAME:
+					request.setMethodName(in.readString());
+					break;
+				case REQUEST_VERSION:
+					request.setVersion(in.readString());
+					break;
+				case REQUEST_GROUP:
+					request.setGroup(in.readString());
+					break;
+				case REQUEST_PARAMETER_TYPES:
+					parameterTypes.add(resolveClass(in.readString()));
+					break;
+				case REQUEST_METHOD_ID:
+					request.setMethodId(in.readSInt32());
+					break;
+				case REQUEST_PARAMETERS:
+					if (withParameters) {
+						parameters.add(readEmbeddedValue(in));
+					} else {
+						in.skipField(tag);
+					}
+					break;
+				case REQUEST_ONE_WAY:
+					request.setOneWay(in.readBool());
+					break;
+				case REQUEST_TIMEOUT:
+					request.setTimeout(in.readInt64());
+					break;
+				case REQUEST_DEADLINE:
+					request.setDeadlineAtMillis(in.readInt64());
+					break;
+				case REQUEST_ATTEMPT:
+					request.setAttempt(in.readInt32());
+					break;
+				default:
+					in.skipField(tag);
+			}
+		}
+		if (!request.isCompact()) {
+			request.setParameterTypes(parameterTypes.toArray(new Class<?>[0]));
+		}
+		if (withParameters) {
+			request.setParameters(parameters.toArray());
+		}
+		return request;
+	}
+
+	/**
+	 * 只解码请求的参数字段，其余字段跳过
+	 */
+	Object[] readParameters(CodedInputStream in) throws IOException {
+		List<Object> parameters = new ArrayList<>();
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			if (WireFormat.getTagFieldNumber(tag) == REQUEST_PARAMETERS) {
+				parameters.add(readEmbeddedValue(in));
+			} else {
+				in.skipField(tag);
+			}
+		}
+		return parameters.toArray();
+	}
+
+	int responseSize(RpcResponse response) {
+		int size = stringSize(RESPONSE_REQUEST_ID, response.getRequestId());
+		if (response.getResult() != null) {
+			size += embeddedValueSize(RESPONSE_RESULT, response.getResult());
+		}
+		if (response.getError() != null) {
+			size += CodedOutputStream.computeBoolSize(RESPONSE_ERROR, response.getError());
+		}
+		size += stringSize(RESPONSE_ERROR_MSG, response.getErrorMsg())
+			+ stringSize(RESPONSE_ERROR_CLASS, response.getErrorClass());
+		if (response.getProcessTime() != 0) {
+			size += CodedOutputStream.computeInt64Size(RESPONSE_PROCESS_TIME, response.getProcessTime());
+		}
+		return size;
+	}
+
+	void writeResponse(CodedOutputStream out, RpcResponse response) throws IOException {
+		writeString(out, RESPONSE_REQUEST_ID, response.getRequestId());
+		if (response.getResult() != null) {
+			writeEmbeddedValue(out, RESPONSE_RESULT, response.getResult());
+		}
+		if (response.getError() != null) {
+			out.writeBool(RESPONSE_ERROR, response.getError());
+		}
+		writeString(out, RESPONSE_ERROR_MSG, response.getErrorMsg());
+		writeString(out, RESPONSE_ERROR_CLASS, response.getErrorClass());
+		if (response.getProcessTime() != 0) {
+			out.writeInt64(RESPONSE_PROCESS_TIME, response.getProcessTime());
+		}
+	}
+
+	RpcResponse readResponse(CodedInputStream in) throws IOException {
+		// setProcessTime按起始时间计算耗时，处理时间只能经由构建器原样设置
+		RpcResponse.RpcResponseBuilder response = RpcResponse.builder();
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+				case RESPONSE_REQUEST_ID:
+					response.requestId(in.readString());
+					break;
+				case RESPONSE_RESULT:
+					response.result(readEmbeddedValue(in));
+					break;
+				case RESPONSE_ERROR:
+					response.error(in.readBool());
+					break;
+				case RESPONSE_ERROR_MSG:
+					response.errorMsg(in.readString());
+					break;
+				case RESPONSE_ERROR_CLASS:
+					response.errorClass(in.readString());
+					break;
+				case RESPONSE_PROCESS_TIME:
+					response.processTime(in.readInt64());
+					break;
+				default:
+					in.skipField(tag);
+			}
+		}
+		return response.build();
+	}
+
+	/**
+	 * 获取生成消息类型的解析器，首次访问时通过getDefaultInstance取得并缓存
+	 */
+	@SuppressWarnings("unchecked")
+	<T> Parser<T> parser(Class<T> messageClass) {
+		return (Parser<T>) parsers.computeIfAbsent(messageClass, type -> {
+			try {
+				return ((MessageLite) type.getMethod("getDefaultInstance").invoke(null))
+					.getParserForType();
+			} catch (ReflectiveOperationException | ClassCastException e) {
+				throw new SerializeException("Not a generated protobuf message: " + type.getName(), e);
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private Parser<MessageLite> parser(String messageType) {
+		Class<?> type = resolveClass(messageType);
+		if (!MessageLite.class.isAssignableFrom(type)) {
+			throw new SerializeException("Not a protobuf message type: " + messageType);
+		}
+		return (Parser<MessageLite>) parser(type);
+	}
+
+	private Class<?> resolveClass(String name) {
+		Class<?> primitive = PRIMITIVES.get(name);
+		if (primitive != null) {
+			return primitive;
+		}
+		return classes.computeIfAbsent(name, className -> {
+			ClassLoader loader = Thread.currentThread().getContextClassLoader();
+			try {
+				return Class.forName(className, false,
+					loader != null ? loader : ProtobufEnvelope.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				throw new SerializeException("Class not found: " + className, e);
+			}
+		});
+	}
+
+	private static int embeddedValueSize(int fieldNumber, Object value) {
+		int size = valueSize(value);
+		return CodedOutputStream.computeTagSize(fieldNumber)
+			+ CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+	}
+
+	private static int valueSize(Object value) {
+		if (value == null) {
+			return 0;
+		}
+		if (value instanceof MessageLite) {
+			return CodedOutputStream.computeStringSize(VALUE_MESSAGE_TYPE, value.getClass().getName())
+				+ CodedOutputStream.computeMessageSize(VALUE_MESSAGE, (MessageLite) value);
+		}
+		if (value instanceof String) {
+			return CodedOutputStream.computeStringSize(VALUE_STRING, (String) value);
+		}
+		if (value instanceof Integer) {
+			return CodedOutputStream.computeSInt32Size(VALUE_INT32, (Integer) value);
+		}
+		if (value instanceof Long) {
+			return CodedOutputStream.computeSInt64Size(VALUE_INT64, (Long) value);
+		}
+		if (value instanceof Float) {
+			return CodedOutputStream.computeFloatSize(VALUE_FLOAT, (Float) value);
+		}
+		if (value instanceof Double) {
+			return CodedOutputStream.computeDoubleSize(VALUE_DOUBLE, (Double) value);
+		}
+		if (value instanceof Boolean) {
+			return CodedOutputStream.computeBoolSize(VALUE_BOOL, (Boolean) value);
+		}
+		if (value instanceof byte[]) {
+			return CodedOutputStream.computeByteArraySize(VALUE_BYTES, (byte[]) value);
+		}
+		throw new SerializeException("Protobuf serializer does not support " + value.getClass().getName()
+			+ ", use generated messages, strings, numbers, booleans or byte arrays");
+	}
+
+	private static void writeEmbeddedValue(CodedOutputStream out, int fieldNumber, Object value)
+		throws IOException {
+		out.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeUInt32NoTag(valueSize(value));
+		if (value == null) {
+			return;
+		}
+		if (value instanceof MessageLite) {
+			out.writeString(VALUE_MESSAGE_TYPE, value.getClass().getName());
+			out.writeMessage(VALUE_MESSAGE, (MessageLite) value);
+		} else if (value instanceof String) {
+			out.writeString(VALUE_STRING, (String) value);
+		} else if (value instanceof Integer) {
+			out.writeSInt32(VALUE_INT32, (Integer) value);
+		} else if (value instanceof Long) {
+			out.writeSInt64(VALUE_INT64, (Long) value);
+		} else if (value instanceof Float) {
+			out.writeFloat(VALUE_FLOAT, (Float) value);
+		} else if (value instanceof Double) {
+			out.writeDouble(VALUE_DOUBLE, (Double) value);
+		} else if (value instanceof Boolean) {
+			out.writeBool(VALUE_BOOL, (Boolean) value);
+		} else {
+			out.writeByteArray(VALUE_BYTES, (byte[]) value);
+		}
+	}
+
+	private Object readEmbeddedValue(CodedInputStream in) throws IOException {
+		int oldLimit = in.pushLimit(in.readRawVarint32());
+		Object value = null;
+		String messageType = null;
+		ByteString pendingMessage = null;
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+				case VALUE_MESSAGE_TYPE:
+					messageType = in.readString();
+					break;
+				case VALUE_MESSAGE:
+					if (messageType != null) {
+						value = in.readMessage(parser(messageType),
+							ExtensionRegistryLite.getEmptyRegistry());
+					} else {
+						// 类型名出现在消息之后，先保留字节待读完再解析
+						pendingMessage = in.readBytes();
+					}
+					break;
+				case VALUE_STRING:
+					value = in.readString();
+					break;
+				case VALUE_INT32:
+					value = in.readSInt32();
+					break;
+				case VALUE_INT64:
+					value = in.readSInt64();
+					break;
+				case VALUE_FLOAT:
+					value = in.readFloat();
+					break;
+				case VALUE_DOUBLE:
+					value = in.readDouble();
+					break;
+				case VALUE_BOOL:
+					value = in.readBool();
+					break;
+				case VALUE_BYTES:
+					value = in.readByteArray();
+					break;
+				default:
+					in.skipField(tag);
+			}
+		}
+		in.popLimit(oldLimit);
+		if (pendingMessage != null) {
+			if (messageType == null) {
+				throw new SerializeException("Protobuf value carries a message without message_type");
+			}
+			value = parser(messageType).parseFrom(pendingMessage);
+		}
+		return value;
+	}
+
+	private static int stringSize(int fieldNumber, String value) {
+		return value == null ? 0 : CodedOutputStream.computeStringSize(fieldNumber, value);
+	}
+
+	private static void writeString(CodedOutputStream out, int fieldNumber, String value)
+		throws IOException {
+		if (value != null) {
+			out.writeString(fieldNumber, value);
+		}
+	}
+}
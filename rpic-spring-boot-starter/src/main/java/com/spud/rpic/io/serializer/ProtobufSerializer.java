@@ -1,48 +1,161 @@
 package com.spud.rpic.io.serializer;
 
-import com.alibaba.nacos.shaded.com.google.protobuf.MessageLite;
-import com.alibaba.nacos.shaded.com.google.protobuf.Parser;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
 import com.spud.rpic.common.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
 
 /**
+ * protobuf序列化：RpcRequest/RpcResponse按{@link ProtobufEnvelope}定义的信封结构编码，
+ * 生成的消息类型直接以消息字节编码。
+ * <p>
+ * 编码前先计算长度，直接写入目标缓冲区，不经过中间字节数组。
+ *
  * @author Spud
  * @date 2025/2/9
  */
 public class ProtobufSerializer implements Serializer {
 
+	private final ProtobufEnvelope envelope = new ProtobufEnvelope();
+
 	@Override
 	public <T> byte[] serialize(T obj) throws SerializeException {
 		try {
-			if (!(obj instanceof MessageLite)) {
-				throw new SerializeException("Object must be an instance of MessageLite");
+			byte[] bytes = new byte[sizeOf(obj)];
+			CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+			write(obj, output);
+			output.checkNoSpaceLeft();
+			return bytes;
+		} catch (SerializeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SerializeException("Error serializing object", e);
+		}
+	}
+
+	@Override
+	public <T> void serialize(T obj, ByteBuf out) throws SerializeException {
+		try {
+			int size = sizeOf(obj);
+			out.ensureWritable(size);
+			if (out.nioBufferCount() != 1) {
+				out.writeBytes(serialize(obj));
+				return;
 			}
-			return ((MessageLite) obj).toByteArray();
+			int writerIndex = out.writerIndex();
+			CodedOutputStream output = CodedOutputStream.newInstance(out.nioBuffer(writerIndex, size));
+			write(obj, output);
+			output.flush();
+			out.writerIndex(writerIndex + size);
+		} catch (SerializeException e) {
+			throw e;
 		} catch (Exception e) {
 			throw new SerializeException("Error serializing object", e);
 		}
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	public <T> T deserialize(byte[] data, Class<T> clz) throws SerializeException {
 		try {
-			if (!MessageLite.class.isAssignableFrom(clz)) {
-				throw new SerializeException("Class must be a subclass of MessageLite");
-			}
-			MessageLite.Builder builder = getBuilder(clz);
-			Parser<?> parser = builder.getDefaultInstanceForType().getParserForType();
-			return (T) parser.parseFrom(data);
+			return read(CodedInputStream.newInstance(data), clz);
+		} catch (SerializeException e) {
+			throw e;
 		} catch (Exception e) {
 			throw new SerializeException("Error deserializing object", e);
 		}
 	}
 
-	private MessageLite.Builder getBuilder(Class<?> clz) throws Exception {
-		return (MessageLite.Builder) clz.getMethod("newBuilder").invoke(null);
+	@Override
+	public <T> T deserialize(ByteBuf in, Class<T> clz) throws SerializeException {
+		try {
+			T result = read(inputOf(in), clz);
+			in.skipBytes(in.readableBytes());
+			return result;
+		} catch (SerializeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SerializeException("Error deserializing object", e);
+		}
+	}
+
+	/**
+	 * 跳过参数字段只解码路由头，不移动读索引，参数字段由{@link #deserializeParameters}再次扫描解码
+	 */
+	@Override
+	public RpcRequest deserializeRequestHeader(ByteBuf in) throws SerializeException {
+		try {
+			return envelope.readRequest(inputOf(in), false);
+		} catch (SerializeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SerializeException("Error deserializing request header", e);
+		}
+	}
+
+	@Override
+	public Object[] deserializeParameters(ByteBuf in, RpcRequest header)
+		throws SerializeException {
+		try {
+			Object[] parameters = envelope.readParameters(inputOf(in));
+			in.skipBytes(in.readableBytes());
+			return parameters;
+		} catch (SerializeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SerializeException("Error deserializing request parameters", e);
+		}
+	}
+
+	private static CodedInputStream inputOf(ByteBuf in) {
+		int length = in.readableBytes();
+		return in.hasArray()
+			? CodedInputStream.newInstance(in.array(), in.arrayOffset() + in.readerIndex(), length)
+			: CodedInputStream.newInstance(in.nioBuffer(in.readerIndex(), length));
+	}
+
+	private int sizeOf(Object obj) {
+		if (obj instanceof RpcRequest) {
+			return envelope.requestSize((RpcRequest) obj);
+		}
+		if (obj instanceof RpcResponse) {
+			return envelope.responseSize((RpcResponse) obj);
+		}
+		if (obj instanceof MessageLite) {
+			return ((MessageLite) obj).getSerializedSize();
+		}
+		throw new SerializeException("Protobuf serializer cannot serialize "
+			+ (obj == null ? "null" : obj.getClass().getName()));
+	}
+
+	private void write(Object obj, CodedOutputStream output) throws IOException {
+		if (obj instanceof RpcRequest) {
+			envelope.writeRequest(output, (RpcRequest) obj);
+		} else if (obj instanceof RpcResponse) {
+			envelope.writeResponse(output, (RpcResponse) obj);
+		} else {
+			((MessageLite) obj).writeTo(output);
+		}
+	}
+
+	private <T> T read(CodedInputStream input, Class<T> clz) throws IOException {
+		if (clz == RpcRequest.class) {
+			return clz.cast(envelope.readRequest(input, true));
+		}
+		if (clz == RpcResponse.class) {
+			return clz.cast(envelope.readResponse(input));
+		}
+		if (MessageLite.class.isAssignableFrom(clz)) {
+			return envelope.parser(clz).parseFrom(input);
+		}
+		throw new SerializeException("Protobuf serializer cannot deserialize " + clz.getName());
 	}
 
 	@Override
 	public String getType() {
 		return SerializerType.PROTOBUF.getType();
 	}
-}
\ No newline at end of file
+}
@@ -1,6 +1,10 @@
 package com.spud.rpic.io.serializer;
 
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
 import com.spud.rpic.common.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * @author Spud
@@ -18,6 +22,71 @@ public interface Serializer {
 	 */
 	<T> T deserialize(byte[] data, Class<T> clz) throws SerializeException;
 
+	/**
+	 * 序列化并直接写入ByteBuf，避免中间byte[]；默认实现退化为先序列化为byte[]再写入
+	 */
+	default <T> void serialize(T obj, ByteBuf out) throws SerializeException {
+		out.writeBytes(serialize(obj));
+	}
+
+	/**
+	 * 从ByteBuf的可读区间反序列化，并消费全部可读字节；默认实现仅在无法直接引用底层数组时复制
+	 */
+	default <T> T deserialize(ByteBuf in, Class<T> clz) throws SerializeException {
+		byte[] data = ByteBufUtil.getBytes(in, in.readerIndex(), in.readableBytes(), false);
+		in.skipBytes(in.readableBytes());
+		return deserialize(data, clz);
+	}
+
+	/**
+	 * 按响应对应请求的方法编号反序列化响应，可据方法签名还原结果的声明类型；默认按通用方式反序列化
+	 *
+	 * @param methodId 请求的方法编号，未知时为null
+	 */
+	default RpcResponse deserializeResponse(ByteBuf in, Integer methodId)
+		throws SerializeException {
+		return deserialize(in, RpcResponse.class);
+	}
+
+	/**
+	 * 解码流式参数的数据块，结果为一批元素组成的列表，可据方法签名还原流式参数元素的声明类型；默认按通用方式反序列化。
+	 * 流式返回值的数据块与普通响应一样由{@link #deserializeResponse}解码
+	 *
+	 * @param methodId 流所属请求的方法编号，未知时为null
+	 */
+	default RpcResponse deserializeParameterChunk(ByteBuf in, Integer methodId)
+		throws SerializeException {
+		return deserialize(in, RpcResponse.class);
+	}
+
+	/**
+	 * 两阶段解码请求的第一阶段：只解码路由头（请求ID、服务与方法、截止时间、尝试序号），返回请求的参数为null，
+	 * 服务端可在解码参数前完成超时与过载判断。参数由{@link #deserializeParameters}从同一个ByteBuf解码，
+	 * 两次调用之间in不得被释放或移动读索引。默认实现一次性解码完整请求
+	 */
+	default RpcRequest deserializeRequestHeader(ByteBuf in) throws SerializeException {
+		return deserialize(in, RpcRequest.class);
+	}
+
+	/**
+	 * 两阶段解码请求的第二阶段：解码{@link #deserializeRequestHeader}之后的请求参数并消费剩余字节；
+	 * 默认实现返回第一阶段已解码的参数
+	 *
+	 * @param header 第一阶段返回的请求，可据其方法签名还原参数的声明类型
+	 */
+	default Object[] deserializeParameters(ByteBuf in, RpcRequest header)
+		throws SerializeException {
+		return header.getParameters();
+	}
+
+	/**
+	 * 登记服务接口，需要类型注册或方法签名的实现可据此缩短编码或还原声明类型；默认忽略
+	 *
+	 * @param serviceKey 与RpcRequest#getServiceKey一致的服务标识
+	 */
+	default void registerService(String serviceKey, Class<?> interfaceClass) {
+	}
+
 	/**
 	 * 获取序列化类型
 	 */
@@ -13,10 +13,22 @@ public class SerializerFactory {
 	private final Map<Byte, Serializer> serializerCodeMap = new HashMap<>();
 
 	public SerializerFactory() {
+		this(new HessianSerializer());
+	}
+
+	/**
+	 * @param hessianWhitelist Hessian反序列化白名单，逗号分隔的类名前缀
+	 */
+	public SerializerFactory(String hessianWhitelist) {
+		this(new HessianSerializer(hessianWhitelist));
+	}
+
+	private SerializerFactory(HessianSerializer hessianSerializer) {
 		addSerializer(new JsonSerializer());
 		addSerializer(new ProtobufSerializer());
-		addSerializer(new HessianSerializer());
+		addSerializer(hessianSerializer);
 		addSerializer(new KryoSerializer());
+		addSerializer(new CompiledSerializer());
 	}
 
 	public void addSerializer(Serializer serializer) {
@@ -24,6 +36,24 @@ public class SerializerFactory {
 		serializerCodeMap.put(serializer.getCode(), serializer);
 	}
 
+	/**
+	 * 将服务接口登记到各序列化实现，调用双方需在收发请求前对同一服务调用
+	 *
+	 * @param serviceKey 与RpcRequest#getServiceKey一致的服务标识
+	 */
+	public void registerService(String serviceKey, Class<?> interfaceClass) {
+		for (Serializer serializer : serializerMap.values()) {
+			serializer.registerService(serviceKey, interfaceClass);
+		}
+	}
+
+	/**
+	 * 是否支持指定的序列化类型
+	 */
+	public boolean hasSerializer(String type) {
+		return type != null && serializerMap.containsKey(type.toUpperCase());
+	}
+
 	public Serializer getSerializer(String type) {
 		if (type == null || type.isEmpty()) {
 			throw new IllegalArgumentException("Type cannot be null or empty");
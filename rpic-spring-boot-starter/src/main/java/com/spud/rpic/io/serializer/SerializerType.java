@@ -11,7 +11,8 @@ public enum SerializerType {
 	JSON("JSON", (byte) 1),
 	PROTOBUF("PROTOBUF", (byte) 2),
 	HESSIAN("HESSIAN", (byte) 3),
-	KRYO("KRYO", (byte) 4);
+	KRYO("KRYO", (byte) 4),
+	COMPILED("COMPILED", (byte) 5);
 
 	private final String type;
 	private final byte code;
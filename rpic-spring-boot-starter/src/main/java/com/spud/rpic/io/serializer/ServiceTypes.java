@@ -0,0 +1,122 @@
+package com.spud.rpic.io.serializer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 从服务接口的方法签名中收集参数与返回值涉及的具体类型，
+ * 包括泛型参数、数组元素以及业务类型字段中递归引用的类型。
+ * <p>
+ * JDK自身的类型、接口与抽象类不在结果中，前者由序列化实现统一处理，后者不会作为运行时类型出现。
+ */
+final class ServiceTypes {
+
+	private static final ClassValue<Byte> NAME_CHECKS = new ClassValue<Byte>() {
+		@Override
+		protected Byte computeValue(Class<?> type) {
+			// FNV-1a，与哈希编号使用的String.hashCode相互独立
+			int hash = 0x811C9DC5;
+			String name = type.getName();
+			for (int i = 0; i < name.length(); i++) {
+				hash = (hash ^ name.charAt(i)) * 0x01000193;
+			}
+			return (byte) (hash ^ hash >>> 8 ^ hash >>> 16 ^ hash >>> 24);
+		}
+	};
+
+	private ServiceTypes() {
+	}
+
+	/**
+	 * 由类名计算的校验字节，写在按类名哈希的类型编号之后，读取端据此发现两端同一编号对应不同类型
+	 */
+	static byte nameCheck(Class<?> type) {
+		return NAME_CHECKS.get(type);
+	}
+
+	static Set<Class<?>> collect(Class<?> interfaceClass) {
+		Set<Class<?>> visited = new LinkedHashSet<>();
+		Set<Class<?>> types = new LinkedHashSet<>();
+		for (Method method : interfaceClass.getMethods()) {
+			if (method.getDeclaringClass() == Object.class) {
+				continue;
+			}
+			visit(method.getGenericReturnType(), visited, types);
+			for (Type parameterType : method.getGenericParameterTypes()) {
+				visit(parameterType, visited, types);
+			}
+		}
+		return types;
+	}
+
+	private static void visit(Type type, Set<Class<?>> visited, Set<Class<?>> types) {
+		if (type instanceof ParameterizedType) {
+			visit(((ParameterizedType) type).getRawType(), visited, types);
+			for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+				visit(argument, visited, types);
+			}
+		} else if (type instanceof GenericArrayType) {
+			visit(((GenericArrayType) type).getGenericComponentType(), visited, types);
+		} else if (type instanceof WildcardType) {
+			for (Type bound : ((WildcardType) type).getUpperBounds()) {
+				visit(bound, visited, types);
+			}
+		} else if (type instanceof TypeVariable) {
+			for (Type bound : ((TypeVariable<?>) type).getBounds()) {
+				visit(bound, visited, types);
+			}
+		} else if (type instanceof Class) {
+			visitClass((Class<?>) type, visited, types);
+		}
+	}
+
+	private static void visitClass(Class<?> clazz, Set<Class<?>> visited, Set<Class<?>> types) {
+		if (clazz.isPrimitive() || !visited.add(clazz)) {
+			return;
+		}
+		if (clazz.isArray()) {
+			visit(clazz.getComponentType(), visited, types);
+			if (!isJdkType(baseComponent(clazz))) {
+				types.add(clazz);
+			}
+			return;
+		}
+		if (isJdkType(clazz)) {
+			return;
+		}
+		if (clazz.isEnum() || !clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers())) {
+			types.add(clazz);
+		}
+		for (Class<?> current = clazz; current != null && !isJdkType(current);
+			current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+					visit(field.getGenericType(), visited, types);
+				}
+			}
+		}
+	}
+
+	private static Class<?> baseComponent(Class<?> arrayClass) {
+		Class<?> component = arrayClass;
+		while (component.isArray()) {
+			component = component.getComponentType();
+		}
+		return component;
+	}
+
+	private static boolean isJdkType(Class<?> clazz) {
+		String name = clazz.getName();
+		return clazz.isPrimitive() || name.startsWith("java.") || name.startsWith("javax.")
+			|| name.startsWith("jdk.") || name.startsWith("sun.");
+	}
+}
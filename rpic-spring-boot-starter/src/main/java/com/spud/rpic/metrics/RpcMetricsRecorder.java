@@ -41,6 +41,9 @@ public final class RpcMetricsRecorder {
 
 	private final Counter.Builder poolAcquireCounterBuilder;
 	private final Counter.Builder poolAcquireErrorCounterBuilder;
+	private final DistributionSummary.Builder flushBatchBuilder;
+	private final Counter.Builder hedgeFiredCounterBuilder;
+	private final Counter.Builder hedgeWonCounterBuilder;
 	private final ConcurrentMap<String, Boolean> activeGaugeCache = new ConcurrentHashMap<>();
 
 	private RpcMetricsRecorder() {
@@ -59,6 +62,9 @@ public final class RpcMetricsRecorder {
 		this.serverResponseBytesBuilder = null;
 		this.poolAcquireCounterBuilder = null;
 		this.poolAcquireErrorCounterBuilder = null;
+		this.flushBatchBuilder = null;
+		this.hedgeFiredCounterBuilder = null;
+		this.hedgeWonCounterBuilder = null;
 	}
 
 	private RpcMetricsRecorder(MeterRegistry registry, RpcProperties.MetricsProperties properties) {
@@ -79,6 +85,9 @@ public final class RpcMetricsRecorder {
 			this.serverResponseBytesBuilder = null;
 			this.poolAcquireCounterBuilder = null;
 			this.poolAcquireErrorCounterBuilder = null;
+			this.flushBatchBuilder = null;
+			this.hedgeFiredCounterBuilder = null;
+			this.hedgeWonCounterBuilder = null;
 			return;
 		}
 
@@ -120,6 +129,13 @@ public final class RpcMetricsRecorder {
 			.description("Successful RPC client pool acquires");
 		this.poolAcquireErrorCounterBuilder = Counter.builder("rpic.client.pool.acquire.errors")
 			.description("Failed RPC client pool acquires");
+		this.flushBatchBuilder = DistributionSummary.builder("rpic.flush.batch.size")
+			.description("Messages written per socket flush")
+			.baseUnit("messages");
+		this.hedgeFiredCounterBuilder = Counter.builder("rpic.client.hedge.fired")
+			.description("Hedged requests sent after the hedge delay elapsed");
+		this.hedgeWonCounterBuilder = Counter.builder("rpic.client.hedge.won")
+			.description("Hedged requests that answered before the original request");
 	}
 
 	private Timer.Builder configureTimer(Timer.Builder builder, double[] percentiles,
@@ -216,6 +232,28 @@ public final class RpcMetricsRecorder {
 		builder.tags(Tags.of("endpoint", safeEndpoint(endpoint))).register(registry).increment();
 	}
 
+	/**
+	 * 记录一次实际flush写出的消息数，side为client或server
+	 */
+	public void recordFlushBatch(String side, int messages) {
+		if (!enabled) {
+			return;
+		}
+		flushBatchBuilder.tags(Tags.of("side", side)).register(registry).record(messages);
+	}
+
+	/**
+	 * 记录一次对冲：fired为发出的对冲请求，won为先于原请求返回的对冲请求
+	 */
+	public void recordHedge(String service, String method, boolean won) {
+		if (!enabled) {
+			return;
+		}
+		Counter.Builder builder = won ? hedgeWonCounterBuilder : hedgeFiredCounterBuilder;
+		builder.tags(Tags.of("service", safeService(service), "method", methodTag(method)))
+			.register(registry).increment();
+	}
+
 	public void registerActiveConnectionsGauge(String endpoint, Supplier<Number> supplier) {
 		if (!enabled) {
 			return;
@@ -234,6 +272,22 @@ public final class RpcMetricsRecorder {
 		});
 	}
 
+	/**
+	 * 登记方法消息体大小预估的指标，side为client（请求）或server（响应）
+	 */
+	public void registerBufferEstimateGauge(String side, String service, String method,
+		Supplier<Number> supplier) {
+		if (!enabled) {
+			return;
+		}
+		// 未开启高基数标签时同一服务的各方法共用一个指标，取最先登记的方法
+		Gauge.builder("rpic.buffer.estimate", supplier)
+			.description("Predicted message body size per method")
+			.baseUnit("bytes")
+			.tags(Tags.of("side", side, "service", safeService(service), "method", methodTag(method)))
+			.register(registry);
+	}
+
 	private void recordBytes(DistributionSummary.Builder builder, Iterable<Tag> tags, long bytes) {
 		if (bytes < 0) {
 			return;
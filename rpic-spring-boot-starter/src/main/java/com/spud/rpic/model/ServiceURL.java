@@ -1,10 +1,14 @@
 package com.spud.rpic.model;
 
+import com.spud.rpic.cluster.Endpoint;
 import java.io.Serializable;
 import java.net.InetSocketAddress;
 import java.util.HashMap;
 import java.util.Map;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
 /**
  * @author Spud
@@ -27,6 +31,19 @@ public class ServiceURL implements Serializable {
 
 	private transient String serviceKey;
 
+	/**
+	 * host:port，每次调用都会用到，首次获取时生成
+	 */
+	@Setter(AccessLevel.NONE)
+	private transient String address;
+
+	/**
+	 * 客户端绑定的端点句柄，随发现结果一同缓存
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private transient Endpoint endpoint;
+
 	/**
 	 * 接口名称
 	 */
@@ -77,7 +94,35 @@ public class ServiceURL implements Serializable {
 	 * 获取服务地址
 	 */
 	public String getAddress() {
-		return host + ":" + port;
+		String value = address;
+		if (value == null) {
+			value = host + ":" + port;
+			address = value;
+		}
+		return value;
+	}
+
+	public void setHost(String host) {
+		this.host = host;
+		this.address = null;
+		this.endpoint = null;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+		this.address = null;
+		this.endpoint = null;
+	}
+
+	/**
+	 * 已绑定的端点句柄，未绑定时为null
+	 */
+	public Endpoint endpoint() {
+		return endpoint;
+	}
+
+	public void bindEndpoint(Endpoint endpoint) {
+		this.endpoint = endpoint;
 	}
 
 	/**
@@ -76,9 +76,26 @@ public class RpcClientProperties {
 	@Positive(message = "Write buffer water mark high must be positive")
 	private int writeBufferWaterMarkHigh = 64 * 1024;
 
+	/**
+	 * 是否合并flush，高QPS小消息场景下减少写系统调用
+	 */
+	private boolean flushConsolidation = false;
+
+	/**
+	 * 两次实际flush之间最多合并的flush次数
+	 */
+	@Positive(message = "Flush consolidation limit must be positive")
+	private int flushConsolidationLimit = 256;
+
 	@Positive(message = "Idle ping seconds must be positive")
 	private int idlePingSeconds = 30;
 
+	/**
+	 * 发送流式参数的最大线程数，即同时发送中的流式参数上限，超出时调用立即失败
+	 */
+	@Positive(message = "Stream sender threads must be positive")
+	private int streamSenderThreads = 64;
+
 	@Valid
 	private ConnectionPoolProperties connectionPoolProperties = new ConnectionPoolProperties();
 
@@ -94,6 +111,18 @@ public class RpcClientProperties {
 	@Valid
 	private OutlierEjectionProperties outlier = new OutlierEjectionProperties();
 
+	/**
+	 * 对冲请求配置，是否对冲由{@code @RpcReference#hedgeDelayMs}按引用开启
+	 */
+	@Valid
+	private HedgeProperties hedge = new HedgeProperties();
+
+	/**
+	 * 请求批量发送配置，仅在多路复用连接上生效
+	 */
+	@Valid
+	private BatchProperties batch = new BatchProperties();
+
 	@Data
 	public static class ConnectionPoolProperties {
 
@@ -132,6 +161,17 @@ public class RpcClientProperties {
 		@Positive(message = "Health check interval must be positive")
 		private int healthCheckInterval = 60;
 
+		/**
+		 * 是否启用多路复用模式：每个地址仅维护少量长连接，并发请求共享连接，响应按请求ID关联
+		 */
+		private boolean multiplexed = false;
+
+		/**
+		 * 多路复用模式下每个地址的长连接数
+		 */
+		@Positive(message = "Multiplex connections per address must be positive")
+		private int multiplexConnectionsPerAddress = 2;
+
 	}
 
 	@Data
@@ -225,6 +265,62 @@ public class RpcClientProperties {
 		private long probeIntervalMs = 5_000L;
 	}
 
+	@Data
+	public static class HedgeProperties {
+
+		/**
+		 * 对冲预算：每个请求积累的对冲额度，0.1表示对冲请求最多占请求总数的10%
+		 */
+		@Min(0)
+		@Max(1)
+		private double budgetRatio = 0.1d;
+
+		/**
+		 * 对冲额度上限，限制空闲后突发的对冲数量
+		 */
+		@Positive(message = "Hedge budget burst must be positive")
+		private int budgetBurst = 10;
+
+		/**
+		 * 自适应延迟为首选节点EWMA延迟的倍数
+		 */
+		@Positive(message = "Hedge EWMA multiplier must be positive")
+		private double ewmaMultiplier = 2.0d;
+
+		/**
+		 * 自适应延迟的下限（毫秒）
+		 */
+		@PositiveOrZero(message = "Hedge min delay must be positive or zero")
+		private long minDelayMs = 5L;
+	}
+
+	@Data
+	public static class BatchProperties {
+
+		/**
+		 * 是否将同一连接上的小请求合并为批量帧发送
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * 单个批量帧最多包含的请求数，达到后立即发送
+		 */
+		@Positive(message = "Batch max requests must be positive")
+		private int maxRequests = 32;
+
+		/**
+		 * 批量窗口（微秒），首个请求入队后最多等待的时间
+		 */
+		@PositiveOrZero(message = "Batch window must be positive or zero")
+		private long windowMicros = 200L;
+
+		/**
+		 * 参与合并的请求消息体上限（字节），更大的请求直接发送，避免拖慢同批的小请求
+		 */
+		@Positive(message = "Batch max bytes must be positive")
+		private int maxBytes = 8192;
+	}
+
 	/**
 	 * Hessian deserialization whitelist (comma-separated prefixes). Default allows JDK and project packages.
 	 */
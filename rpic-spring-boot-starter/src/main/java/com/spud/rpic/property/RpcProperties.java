@@ -36,11 +36,23 @@ public class RpcProperties {
 	private String serializeType = "kryo";
 
 	/**
-	 * 压缩类型
+	 * 压缩类型(none, gzip, lz4, snappy)，同时决定请求的压缩方式与希望服务端对响应采用的压缩方式
 	 */
 	@NotBlank(message = "Compress type cannot be blank")
 	private String compressType = "none";
 
+	/**
+	 * 压缩阈值(字节)，消息体小于该长度时不压缩
+	 */
+	@PositiveOrZero(message = "Compress threshold must be positive or zero")
+	private int compressThreshold = 2048;
+
+	/**
+	 * 是否回收协议消息与代理请求两类信封对象，只减少这部分短命对象，响应与反序列化对象不在回收范围内；
+	 * 开启后不应在调用结束后继续持有请求对象
+	 */
+	private boolean recycleEnvelopes = false;
+
 	/**
 	 * 注册中心配置
 	 */
@@ -1,5 +1,8 @@
 package com.spud.rpic.property;
 
+import com.spud.rpic.common.constants.RpcConstants;
+import java.util.ArrayList;
+import java.util.List;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.Positive;
@@ -44,6 +47,17 @@ public class RpcServerProperties {
 	@PositiveOrZero(message = "Queue size must be positive or zero")
 	private int queueSize = 1000;
 
+	/**
+	 * 是否使用虚拟线程执行业务逻辑（需要JDK 21+，不可用时回退到平台线程池）
+	 */
+	private boolean virtualThreads = false;
+
+	/**
+	 * 在注册中心公布的可接受序列化类型，客户端按节点从中选择双方都支持的最快类型；
+	 * 为空时只公布rpc.serializeType，先在服务端加入新类型再升级客户端即可逐步切换
+	 */
+	private List<String> serializers = new ArrayList<>();
+
 	/**
 	 * 心跳间隔(秒)
 	 */
@@ -56,14 +70,30 @@ public class RpcServerProperties {
 	@Positive(message = "Max concurrent requests must be positive")
 	private int maxConcurrentRequests = 100;
 
+	/**
+	 * Boss线程数；开启reusePort时同时决定在同一端口上绑定的acceptor数量
+	 */
 	@PositiveOrZero(message = "Boss threads must be positive or zero")
 	private int bossThreads = 1;
 
+	/**
+	 * Worker线程数，0表示使用Netty默认值
+	 */
 	@PositiveOrZero(message = "Worker threads must be positive or zero")
 	private int workerThreads = 0;
 
 	private boolean useEpoll = true;
 
+	/**
+	 * 是否优先使用io_uring（需引入netty-incubator-transport-io_uring，不可用时回退到epoll/NIO）
+	 */
+	private boolean useIoUring = false;
+
+	/**
+	 * 是否开启SO_REUSEPORT，在同一端口上绑定多个acceptor由内核分摊新连接（仅epoll/io_uring）
+	 */
+	private boolean reusePort = false;
+
 	private boolean pooledAllocator = true;
 
 	private boolean tcpNoDelay = true;
@@ -84,4 +114,21 @@ public class RpcServerProperties {
 
 	@Positive(message = "Write buffer water mark high must be positive")
 	private int writeBufferWaterMarkHigh = 64 * 1024;
+
+	/**
+	 * 是否合并flush，高QPS小消息场景下减少写系统调用
+	 */
+	private boolean flushConsolidation = false;
+
+	/**
+	 * 两次实际flush之间最多合并的flush次数
+	 */
+	@Positive(message = "Flush consolidation limit must be positive")
+	private int flushConsolidationLimit = 256;
+
+	/**
+	 * 流式响应每个数据块包含的元素数，决定流式调用两端的内存占用
+	 */
+	@Positive(message = "Stream chunk size must be positive")
+	private int streamChunkSize = RpcConstants.DEFAULT_STREAM_CHUNK_SIZE;
 }
\ No newline at end of file
@@ -41,7 +41,10 @@ public class CglibProxyFactory implements ProxyFactory {
 			reference.interfaceName(),
 			reference.version(),
 			reference.group(),
-			reference.timeout());
+			reference.timeout(),
+			reference.serializer(),
+			reference.hedgeDelayMs(),
+			reference.hedgeMethods());
 	}
 
 }
\ No newline at end of file
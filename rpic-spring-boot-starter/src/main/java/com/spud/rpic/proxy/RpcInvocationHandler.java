@@ -1,12 +1,23 @@
 package com.spud.rpic.proxy;
 
+import com.spud.rpic.common.domain.RecyclableRequest;
 import com.spud.rpic.common.domain.RpcRequest;
 import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.domain.RpcStream;
 import com.spud.rpic.common.exception.RpcException;
 import com.spud.rpic.io.netty.client.invocation.ClientInvocation;
 import com.spud.rpic.model.ServiceMetadata;
+import com.spud.rpic.util.EnvelopeRecycling;
+import com.spud.rpic.util.MethodIds;
 import java.lang.reflect.Method;
-import java.util.UUID;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
@@ -24,15 +35,47 @@ public class RpcInvocationHandler implements MethodInterceptor {
 	private final String version;
 	private final String group;
 	private final int timeout;
+	/**
+	 * 引用指定的序列化类型，为空时按节点协商
+	 */
+	private final String serializer;
+	/**
+	 * 对冲延迟，负数表示不对冲
+	 */
+	private final long hedgeDelayMs;
+	/**
+	 * 允许对冲的方法名，为空表示全部方法
+	 */
+	private final Set<String> hedgeMethods;
+	private final String serviceKey;
+	/**
+	 * 引用的服务元数据，创建后不再修改，各次调用共享
+	 */
+	private final ServiceMetadata metadata;
+	/**
+	 * 方法 -> 请求中不随调用变化的部分
+	 */
+	private final Map<Method, MethodInfo> methods = new ConcurrentHashMap<>();
 
 	public RpcInvocationHandler(ClientInvocation clientInvocation, Class<?> interfaceClass,
-		String serviceName, String version, String group, int timeout) {
+		String serviceName, String version, String group, int timeout, String serializer,
+		long hedgeDelayMs, String[] hedgeMethods) {
 		this.clientInvocation = clientInvocation;
 		this.interfaceClass = interfaceClass;
 		this.serviceName = serviceName;
 		this.version = version;
 		this.group = group;
 		this.timeout = timeout;
+		this.serializer = serializer != null && !serializer.isEmpty() ? serializer : null;
+		this.hedgeDelayMs = hedgeDelayMs;
+		this.hedgeMethods = new HashSet<>(Arrays.asList(hedgeMethods));
+		this.serviceKey = RpcRequest.buildServiceKey(group, interfaceClass.getName(), version);
+		this.metadata = ServiceMetadata.builder()
+			.interfaceClass(interfaceClass)
+			.interfaceName(interfaceClass.getName())
+			.version(version)
+			.group(group)
+			.build();
 	}
 
 	@Override
@@ -42,19 +85,28 @@ public class RpcInvocationHandler implements MethodInterceptor {
 			return handleObjectMethod(obj, method, args);
 		}
 
-		// 2. 构建RPC请求
-		RpcRequest request = buildRequest(method, args);
-
-		// 3. 构建服务元数据
-		ServiceMetadata metadata = buildServiceMetadata();
+		// 2. 构建RPC请求，开启信封回收时请求取自对象池，调用结束后归还
+		MethodInfo info = methods.computeIfAbsent(method, MethodInfo::new);
+		RecyclableRequest pooled = EnvelopeRecycling.isEnabled() ? RecyclableRequest.obtain() : null;
+		RpcRequest request = pooled != null ? fill(pooled.request(), info, args)
+			: fill(new RpcRequest(), info, args);
 
 		try {
-			// 4. 检查返回类型是否为 CompletableFuture
-			if (method.getReturnType() == java.util.concurrent.CompletableFuture.class) {
-				return handleAsyncCall(metadata, request);
-			} else {
-				// 5. 同步调用
+			// 3. 检查返回类型是否为 CompletableFuture
+			if (info.async) {
+				CompletableFuture<Object> result = handleAsyncCall(metadata, request);
+				if (pooled != null) {
+					result.whenComplete((value, error) -> pooled.recycle());
+				}
+				return result;
+			}
+			// 4. 同步调用
+			try {
 				return handleSyncCall(metadata, request);
+			} finally {
+				if (pooled != null) {
+					pooled.recycle();
+				}
 			}
 		} catch (Exception e) {
 			log.error("Failed to invoke remote service: {}", metadata.getServiceId(), e);
@@ -71,7 +123,7 @@ public class RpcInvocationHandler implements MethodInterceptor {
 		return response.getResult();
 	}
 
-	private Object handleAsyncCall(ServiceMetadata metadata, RpcRequest request) {
+	private CompletableFuture<Object> handleAsyncCall(ServiceMetadata metadata, RpcRequest request) {
 		try {
 			return clientInvocation.invokeAsync(metadata, request, timeout)
 				.thenApply(response -> {
@@ -102,25 +154,67 @@ public class RpcInvocationHandler implements MethodInterceptor {
 		}
 	}
 
-	private RpcRequest buildRequest(Method method, Object[] args) {
-		return RpcRequest.builder()
-			.requestId(UUID.randomUUID().toString())
-			.interfaceName(interfaceClass.getName())
-			.interfaceClass(interfaceClass)
-			.methodName(method.getName())
-			.parameterTypes(method.getParameterTypes())
-			.parameters(args)
-			.group(group)
-			.version(version)
-			.build();
+	private RpcRequest fill(RpcRequest request, MethodInfo info, Object[] args) {
+		request.setInterfaceName(metadata.getInterfaceName());
+		request.setInterfaceClass(interfaceClass);
+		request.setMethodName(info.name);
+		request.setServiceKey(serviceKey);
+		request.setParameterTypes(info.parameterTypes);
+		request.setMethodId(info.methodId);
+		request.setParameters(args);
+		if (info.streamParameter >= 0) {
+			// 流式参数的元素随后以数据块发送，请求体中该位置为空
+			Object[] parameters = args.clone();
+			Iterator<?> elements = (Iterator<?>) parameters[info.streamParameter];
+			parameters[info.streamParameter] = null;
+			request.setParameters(parameters);
+			request.setParameterStream(elements != null ? elements : Collections.emptyIterator());
+		}
+		request.setGroup(group);
+		request.setVersion(version);
+		request.setPreferredSerializer(serializer);
+		request.setHedgeDelayMs(info.hedgeDelayMs);
+		request.setStream(info.stream);
+		return request;
 	}
 
-	private ServiceMetadata buildServiceMetadata() {
-		return ServiceMetadata.builder()
-			.interfaceClass(interfaceClass)
-			.interfaceName(interfaceClass.getName())
-			.version(version)
-			.group(group)
-			.build();
+	private static boolean isStreamType(Class<?> type) {
+		return type == Iterator.class || type == RpcStream.class;
+	}
+
+	/**
+	 * 方法的名称、参数类型与紧凑编号，首次调用时计算；参数类型数组由各次请求共享，不应修改
+	 */
+	private final class MethodInfo {
+
+		final String name;
+		final Class<?>[] parameterTypes;
+		final Integer methodId;
+		final boolean async;
+		final boolean stream;
+		/**
+		 * 流式参数（Iterator或RpcStream）的位置，-1表示没有
+		 */
+		final int streamParameter;
+		final Long hedgeDelayMs;
+
+		MethodInfo(Method method) {
+			this.name = method.getName();
+			this.parameterTypes = method.getParameterTypes();
+			this.methodId = MethodIds.of(serviceKey, method);
+			this.async = method.getReturnType() == CompletableFuture.class;
+			this.stream = isStreamType(method.getReturnType());
+			int index = -1;
+			for (int i = 0; i < parameterTypes.length && index < 0; i++) {
+				if (isStreamType(parameterTypes[i])) {
+					index = i;
+				}
+			}
+			this.streamParameter = index;
+			long delay = RpcInvocationHandler.this.hedgeDelayMs;
+			// 流一经发送或返回即被消费，无法在两份调用间择一，不参与对冲
+			this.hedgeDelayMs = !stream && streamParameter < 0 && delay >= 0
+				&& (hedgeMethods.isEmpty() || hedgeMethods.contains(name)) ? delay : null;
+		}
 	}
 }
\ No newline at end of file
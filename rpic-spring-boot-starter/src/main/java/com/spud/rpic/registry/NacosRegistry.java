@@ -9,6 +9,7 @@ import com.spud.rpic.model.ServiceMetadata;
 import com.spud.rpic.model.ServiceURL;
 import com.spud.rpic.property.RpcProperties;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -86,7 +87,7 @@ public class NacosRegistry extends Registry {
 		try {
 			List<Instance> instances = namingService.getAllInstances(metadata.getInterfaceName(), true);
 
-			return convertToServiceURLs(instances);
+			return convertToServiceURLs(metadata, instances);
 		} catch (Exception e) {
 			throw new RuntimeException("Failed to discover service", e);
 		}
@@ -184,17 +185,23 @@ public class NacosRegistry extends Registry {
 		}
 	}
 
-	private List<ServiceURL> convertToServiceURLs(List<Instance> instances) {
+	private List<ServiceURL> convertToServiceURLs(ServiceMetadata metadata,
+		List<Instance> instances) {
 		return instances.stream()
 			.filter(Instance::isHealthy)
-			.map(this::convertToServiceURL)
+			.map(instance -> convertToServiceURL(metadata, instance))
 			.collect(Collectors.toList());
 	}
 
-	private ServiceURL convertToServiceURL(Instance instance) {
-		String[] meta = instance.getServiceName().split("-");
-		ServiceURL serviceURL = new ServiceURL(instance.getIp(), instance.getPort(), meta[0], meta[1],
-			meta[2], "", (int) instance.getWeight(), null);
-		return serviceURL;
+	/**
+	 * 服务名只含接口名，服务标识取自订阅的元数据；实例元数据即注册时的参数，
+	 * 其中包含服务端公布的方法编号与编解码类型
+	 */
+	private ServiceURL convertToServiceURL(ServiceMetadata metadata, Instance instance) {
+		Map<String, String> parameters = instance.getMetadata() != null
+			? new HashMap<>(instance.getMetadata()) : null;
+		return new ServiceURL(instance.getIp(), instance.getPort(), metadata.getInterfaceName(),
+			"rpic", metadata.getGroup(), metadata.getVersion(), (int) instance.getWeight(),
+			parameters);
 	}
 }
\ No newline at end of file
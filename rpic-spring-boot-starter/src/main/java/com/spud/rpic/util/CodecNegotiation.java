@@ -0,0 +1,136 @@
+package com.spud.rpic.util;
+
+import com.spud.rpic.io.compress.CompressType;
+import com.spud.rpic.io.serializer.SerializerType;
+import com.spud.rpic.model.ServiceURL;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 按节点协商序列化与压缩类型。
+ * <p>
+ * 服务端注册服务时在元数据参数中公布可接受的序列化类型与压缩类型，客户端对每个节点从双方都支持的类型中
+ * 选择最快的一种；节点未公布时沿用本端配置，因此新旧版本可以混合部署，逐步切换到更快的编码。
+ */
+public final class CodecNegotiation {
+
+	/**
+	 * 服务元数据中公布序列化类型的参数名，值为逗号分隔的类型名
+	 */
+	public static final String SERIALIZERS_KEY = "serializers";
+
+	/**
+	 * 服务元数据中公布压缩类型的参数名，值为逗号分隔的类型名
+	 */
+	public static final String COMPRESSORS_KEY = "compressors";
+
+	/**
+	 * 序列化类型由快到慢的顺序；protobuf只支持生成的消息类型与标量，仅在没有其他共同类型时使用
+	 */
+	private static final SerializerType[] SERIALIZER_PREFERENCE = {SerializerType.COMPILED,
+		SerializerType.KRYO, SerializerType.HESSIAN, SerializerType.JSON, SerializerType.PROTOBUF};
+
+	/**
+	 * 压缩类型由快到慢的顺序
+	 */
+	private static final CompressType[] COMPRESSOR_PREFERENCE = {CompressType.LZ4,
+		CompressType.SNAPPY, CompressType.GZIP};
+
+	/**
+	 * 参数值 -> 解析后的类型集合（大写），同一服务版本的各节点共享同一份解析结果
+	 */
+	private static final Map<String, Set<String>> PARSED = new ConcurrentHashMap<>();
+
+	private CodecNegotiation() {
+	}
+
+	/**
+	 * 选择发往节点的序列化类型
+	 *
+	 * @param advertised 节点公布的参数值，未公布时为null
+	 * @param fallback   节点未公布或没有共同类型时使用的本端默认类型
+	 * @param available  本端是否支持该类型
+	 */
+	public static String selectSerializer(String advertised, String fallback,
+		Predicate<String> available) {
+		if (advertised == null || advertised.isEmpty()) {
+			return fallback;
+		}
+		Set<String> types = parse(advertised);
+		for (SerializerType type : SERIALIZER_PREFERENCE) {
+			if (types.contains(type.getType()) && available.test(type.getType())) {
+				return type.getType();
+			}
+		}
+		return fallback;
+	}
+
+	/**
+	 * 选择发往节点的请求压缩类型：本端未启用压缩时不压缩，节点支持本端配置的类型时使用该类型，
+	 * 否则使用双方都支持的最快类型，没有共同类型时不压缩
+	 *
+	 * @param advertised 节点公布的参数值，未公布时为null
+	 * @param configured 本端配置的压缩类型
+	 * @param available  本端是否支持该类型
+	 */
+	public static CompressType selectCompressor(String advertised, CompressType configured,
+		Predicate<String> available) {
+		if (configured == CompressType.NONE || advertised == null || advertised.isEmpty()) {
+			return configured;
+		}
+		Set<String> types = parse(advertised);
+		if (types.contains(configured.getType())) {
+			return configured;
+		}
+		for (CompressType type : COMPRESSOR_PREFERENCE) {
+			if (types.contains(type.getType()) && available.test(type.getType())) {
+				return type;
+			}
+		}
+		return CompressType.NONE;
+	}
+
+	/**
+	 * 节点公布的参数值
+	 */
+	public static String advertisedSerializers(ServiceURL serviceURL) {
+		return serviceURL != null ? serviceURL.getParameter(SERIALIZERS_KEY) : null;
+	}
+
+	/**
+	 * 节点公布的参数值
+	 */
+	public static String advertisedCompressors(ServiceURL serviceURL) {
+		return serviceURL != null ? serviceURL.getParameter(COMPRESSORS_KEY) : null;
+	}
+
+	/**
+	 * 生成公布用的参数值
+	 */
+	public static String format(Iterable<String> types) {
+		StringBuilder sb = new StringBuilder();
+		for (String type : types) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(type.toLowerCase());
+		}
+		return sb.toString();
+	}
+
+	private static Set<String> parse(String value) {
+		return PARSED.computeIfAbsent(value, key -> {
+			Set<String> types = new LinkedHashSet<>();
+			for (String type : key.split(",")) {
+				if (!type.trim().isEmpty()) {
+					types.add(type.trim().toUpperCase());
+				}
+			}
+			return Collections.unmodifiableSet(types);
+		});
+	}
+}
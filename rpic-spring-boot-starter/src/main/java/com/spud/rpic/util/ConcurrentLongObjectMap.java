@@ -0,0 +1,134 @@
+package com.spud.rpic.util;
+
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * 以long为键的分段并发Map，避免请求ID装箱及ConcurrentHashMap的节点分配。
+ * <p>
+ * 每个分段是一个Netty原生LongObjectHashMap并以自身加锁，适用于键连续递增、短生命周期的在途请求表。
+ */
+public class ConcurrentLongObjectMap<V> {
+
+	private static final int DEFAULT_SEGMENTS = 16;
+
+	private final LongObjectHashMap<V>[] segments;
+
+	private final int mask;
+
+	public ConcurrentLongObjectMap() {
+		this(DEFAULT_SEGMENTS);
+	}
+
+	@SuppressWarnings("unchecked")
+	public ConcurrentLongObjectMap(int concurrency) {
+		int size = 1;
+		while (size < concurrency) {
+			size <<= 1;
+		}
+		this.segments = (LongObjectHashMap<V>[]) new LongObjectHashMap<?>[size];
+		for (int i = 0; i < size; i++) {
+			segments[i] = new LongObjectHashMap<>();
+		}
+		this.mask = size - 1;
+	}
+
+	public V put(long key, V value) {
+		LongObjectHashMap<V> segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.put(key, value);
+		}
+	}
+
+	public V get(long key) {
+		LongObjectHashMap<V> segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.get(key);
+		}
+	}
+
+	public V remove(long key) {
+		LongObjectHashMap<V> segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.remove(key);
+		}
+	}
+
+	/**
+	 * 仅当键当前映射到指定值时才移除
+	 */
+	public boolean remove(long key, V value) {
+		LongObjectHashMap<V> segment = segmentFor(key);
+		synchronized (segment) {
+			if (segment.get(key) != value) {
+				return false;
+			}
+			segment.remove(key);
+			return true;
+		}
+	}
+
+	/**
+	 * 移除并返回所有满足条件的条目，条件在分段锁内求值，不应执行耗时操作
+	 */
+	public List<V> removeIf(BiPredicate<Long, V> predicate) {
+		List<V> removed = new ArrayList<>();
+		for (LongObjectHashMap<V> segment : segments) {
+			synchronized (segment) {
+				if (segment.isEmpty()) {
+					continue;
+				}
+				List<Long> keys = new ArrayList<>();
+				for (LongObjectMap.PrimitiveEntry<V> entry : segment.entries()) {
+					if (predicate.test(entry.key(), entry.value())) {
+						keys.add(entry.key());
+						removed.add(entry.value());
+					}
+				}
+				for (Long key : keys) {
+					segment.remove((long) key);
+				}
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * 返回所有满足条件的值的快照，不移除条目；条件在分段锁内求值，不应执行耗时操作
+	 */
+	public List<V> valuesIf(BiPredicate<Long, V> predicate) {
+		List<V> values = new ArrayList<>();
+		for (LongObjectHashMap<V> segment : segments) {
+			synchronized (segment) {
+				for (LongObjectMap.PrimitiveEntry<V> entry : segment.entries()) {
+					if (predicate.test(entry.key(), entry.value())) {
+						values.add(entry.value());
+					}
+				}
+			}
+		}
+		return values;
+	}
+
+	public int size() {
+		int size = 0;
+		for (LongObjectHashMap<V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	private LongObjectHashMap<V> segmentFor(long key) {
+		int hash = (int) (key ^ (key >>> 32));
+		return segments[(hash ^ (hash >>> 16)) & mask];
+	}
+}
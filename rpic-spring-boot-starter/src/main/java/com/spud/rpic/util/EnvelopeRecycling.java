@@ -0,0 +1,26 @@
+package com.spud.rpic.util;
+
+/**
+ * 协议信封对象的回收开关，由{@code rpc.recycleEnvelopes}配置。
+ * <p>
+ * 开启后{@link com.spud.rpic.io.common.ProtocolMsg}在消息体最后一次释放时归还对象池，
+ * 代理发出的请求在调用结束后归还对象池；关闭时按原方式创建，对象池不持有任何实例。
+ * <p>
+ * 只回收这两类对象，客户端解码得到的响应、调用的Future、Promise与监听器以及反序列化产生的对象
+ * 仍按调用分配，开启后每次调用的分配量只是小幅下降，并非接近零分配。
+ */
+public final class EnvelopeRecycling {
+
+	private static volatile boolean enabled;
+
+	private EnvelopeRecycling() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		EnvelopeRecycling.enabled = enabled;
+	}
+}
@@ -0,0 +1,92 @@
+package com.spud.rpic.util;
+
+import com.spud.rpic.model.ServiceURL;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 紧凑方法编号：由服务标识与方法签名计算出的32位编号，客户端与服务端各自独立计算得到相同结果。
+ * <p>
+ * 服务端注册服务时在元数据参数中公布其可按编号分发的方法，客户端只对公布了该编号的节点发送
+ * 仅包含方法编号与参数的紧凑请求，其余情况仍发送完整请求。签名不一致时编号不同，不会误调用其他方法。
+ */
+public final class MethodIds {
+
+	/**
+	 * 服务元数据中公布方法编号的参数名，值为逗号分隔的十进制编号
+	 */
+	public static final String PARAMETER_KEY = "methodIds";
+
+	/**
+	 * 参数值 -> 解析后的编号集合，同一服务版本的各节点共享同一份解析结果
+	 */
+	private static final Map<String, Set<Integer>> PARSED = new ConcurrentHashMap<>();
+
+	private MethodIds() {
+	}
+
+	/**
+	 * 计算方法编号，结果不为0
+	 *
+	 * @param serviceKey 与RpcRequest#getServiceKey一致的服务标识
+	 */
+	public static int of(String serviceKey, Method method) {
+		StringBuilder signature = new StringBuilder(serviceKey).append('#')
+			.append(method.getName()).append('(');
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				signature.append(',');
+			}
+			signature.append(parameterTypes[i].getName());
+		}
+		int hash = signature.append(')').toString().hashCode();
+		// 混合高低位，0保留为"无编号"
+		hash ^= (hash >>> 16);
+		return hash != 0 ? hash : 1;
+	}
+
+	/**
+	 * 节点是否公布了指定方法编号
+	 */
+	public static boolean isAdvertised(ServiceURL serviceURL, Integer methodId) {
+		if (methodId == null || serviceURL == null) {
+			return false;
+		}
+		String value = serviceURL.getParameter(PARAMETER_KEY);
+		if (value == null || value.isEmpty()) {
+			return false;
+		}
+		return PARSED.computeIfAbsent(value, MethodIds::parse).contains(methodId);
+	}
+
+	/**
+	 * 生成公布用的参数值
+	 */
+	public static String format(Iterable<Integer> methodIds) {
+		StringBuilder sb = new StringBuilder();
+		for (Integer methodId : methodIds) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(methodId);
+		}
+		return sb.toString();
+	}
+
+	private static Set<Integer> parse(String value) {
+		Set<Integer> ids = new HashSet<>();
+		for (String id : value.split(",")) {
+			try {
+				ids.add(Integer.parseInt(id.trim()));
+			} catch (NumberFormatException ignored) {
+				// 忽略无法识别的编号，对应方法回退为完整请求
+			}
+		}
+		return Collections.unmodifiableSet(ids);
+	}
+}
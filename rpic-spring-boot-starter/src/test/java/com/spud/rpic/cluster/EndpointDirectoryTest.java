@@ -0,0 +1,34 @@
+package com.spud.rpic.cluster;
+
+import com.spud.rpic.model.ServiceURL;
+import com.spud.rpic.property.RpcClientProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EndpointDirectoryTest {
+
+    @Test
+    public void testHandleSharedAcrossDiscoveryResults() {
+        RpcClientProperties properties = new RpcClientProperties();
+        EndpointStatsRegistry statsRegistry = new EndpointStatsRegistry(properties);
+        EndpointDirectory directory = new EndpointDirectory(statsRegistry,
+            new CircuitBreakerManager(properties));
+
+        ServiceURL first = new ServiceURL("127.0.0.1", 8080, "svc", "rpic", null, null, 1, null);
+        Endpoint endpoint = directory.resolve(first);
+        Assertions.assertSame(endpoint, first.endpoint());
+        Assertions.assertEquals("127.0.0.1:8080", endpoint.getAddress());
+        Assertions.assertEquals(8080, endpoint.getSocketAddress().getPort());
+
+        // 发现结果刷新后的新实例复用同一句柄，统计与字符串接口共用
+        ServiceURL refreshed = new ServiceURL("127.0.0.1", 8080, "svc", "rpic", null, null, 1, null);
+        Assertions.assertSame(endpoint, directory.resolve(refreshed));
+        statsRegistry.onSuccess(endpoint, 5);
+        Assertions.assertEquals(1, statsRegistry.getRequestCount("127.0.0.1:8080"));
+        Assertions.assertEquals(5.0, statsRegistry.getLatencyScore(refreshed));
+
+        refreshed.setPort(8081);
+        Assertions.assertNull(refreshed.endpoint());
+        Assertions.assertNotSame(endpoint, directory.resolve(refreshed));
+    }
+}
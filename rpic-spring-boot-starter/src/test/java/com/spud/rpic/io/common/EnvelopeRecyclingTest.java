@@ -0,0 +1,201 @@
+package com.spud.rpic.io.common;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.spud.rpic.common.domain.RecyclableRequest;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.io.netty.client.ConnectionPool;
+import com.spud.rpic.io.netty.client.NettyNetClient;
+import com.spud.rpic.io.netty.client.RpcClientHandler;
+import com.spud.rpic.io.netty.client.RpcClientInitializer;
+import com.spud.rpic.io.netty.server.RpcServerHandler;
+import com.spud.rpic.io.netty.server.invocation.DefaultServerInvocation;
+import com.spud.rpic.io.netty.server.invocation.ServiceInvokerRegistry;
+import com.spud.rpic.io.serializer.KryoSerializer;
+import com.spud.rpic.io.serializer.Serializer;
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.model.ServiceURL;
+import com.spud.rpic.property.RpcClientProperties;
+import com.spud.rpic.property.RpcServerProperties;
+import com.spud.rpic.test.MockService;
+import com.spud.rpic.test.MockServiceImpl;
+import com.spud.rpic.util.EnvelopeRecycling;
+import com.spud.rpic.util.MethodIds;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.junit.jupiter.api.AfterEach;
+import org.slf4j.LoggerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class EnvelopeRecyclingTest {
+
+    private static final Object[] ARGS = {"hello"};
+
+    /**
+     * 每次调用分配量的回归上限而非目标：回收只覆盖协议消息帧与代理请求，实测约2KB，较关闭时少约一成
+     */
+    private static final long CALL_BUDGET_BYTES = 2560;
+
+    @BeforeEach
+    public void enable() {
+        EnvelopeRecycling.setEnabled(true);
+    }
+
+    @AfterEach
+    public void disable() {
+        EnvelopeRecycling.setEnabled(false);
+    }
+
+    @Test
+    public void testEnvelopesClearedOnRecycle() {
+        ByteBuf body = PooledByteBufAllocator.DEFAULT.ioBuffer(16).writeLong(1L);
+        ProtocolMsg msg = ProtocolMsg.fromBuf(1L, body, (byte) 4);
+        msg.retain();
+        assertFalse(msg.release());
+        assertEquals(1L, msg.getRequestId());
+        assertTrue(msg.release());
+        assertNull(msg.getBody());
+
+        RecyclableRequest pooled = RecyclableRequest.obtain();
+        pooled.request().setParameters(ARGS);
+        pooled.recycle();
+        assertNull(pooled.request().getParameters());
+    }
+
+    @Test
+    public void testLoopbackCallAllocationBudget() throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        assumeTrue(allocationBean.isThreadAllocatedMemorySupported()
+            && allocationBean.isThreadAllocatedMemoryEnabled());
+
+        // 测试环境开启了DEBUG日志，其参数格式化的分配不属于调用本身
+        Logger logger = (Logger) LoggerFactory.getLogger("com.spud.rpic");
+        Level level = logger.getLevel();
+        logger.setLevel(Level.INFO);
+        Loopback loopback = new Loopback();
+        try {
+            long recycled = allocatedPerCall(loopback, allocationBean);
+            EnvelopeRecycling.setEnabled(false);
+            long plain = allocatedPerCall(loopback, allocationBean);
+
+            // 经过客户端发送、服务端解码调用编码与客户端解码的完整调用；剩余的分配来自Promise、定时任务、
+            // 监听器、反序列化得到的请求与响应及其字符串，这些对象不取自对象池
+            assertTrue(recycled < CALL_BUDGET_BYTES, "allocated " + recycled + " bytes per call");
+            assertTrue(recycled < plain, "recycling allocated " + recycled + " bytes, plain " + plain);
+        } finally {
+            loopback.close();
+            logger.setLevel(level);
+        }
+    }
+
+    private static long allocatedPerCall(Loopback loopback,
+        com.sun.management.ThreadMXBean allocationBean) throws Exception {
+        int iterations = 20_000;
+        loopback.calls(iterations);
+        long threadId = Thread.currentThread().getId();
+        long before = allocationBean.getThreadAllocatedBytes(threadId);
+        loopback.calls(iterations);
+        return (allocationBean.getThreadAllocatedBytes(threadId) - before) / iterations;
+    }
+
+    /**
+     * 客户端与服务端处理器通过内存直接相连，调用在当前线程上同步完成
+     */
+    private static final class Loopback {
+
+        private final Serializer serializer = new KryoSerializer();
+
+        private final RpcMetricsRecorder metricsRecorder = RpcMetricsRecorder.create(null, null);
+
+        private final EmbeddedChannel server;
+
+        private final EmbeddedChannel client;
+
+        private final ConnectionPool connectionPool;
+
+        private final NettyNetClient netClient;
+
+        private final ServiceURL serviceUrl = new ServiceURL("127.0.0.1", 9000,
+            MockService.class.getName(), "rpic", "", "1.0.0", 1, null);
+
+        private final String serviceKey = RpcRequest.buildServiceKey("", MockService.class.getName(), "1.0.0");
+
+        private final Integer methodId;
+
+        private final Class<?>[] parameterTypes = {String.class};
+
+        Loopback() throws Exception {
+            ServiceInvokerRegistry invokerRegistry = new ServiceInvokerRegistry();
+            invokerRegistry.register(serviceKey, MockService.class, new MockServiceImpl());
+            methodId = MethodIds.of(serviceKey, MockService.class.getMethod("sayHello", String.class));
+            server = new EmbeddedChannel(new RpcServerHandler(serializer, null,
+                new DefaultServerInvocation(new RpcServerProperties(), invokerRegistry), metricsRecorder, null));
+
+            RpcClientHandler clientHandler = new RpcClientHandler(serializer, null);
+            client = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+                @Override
+                public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                    server.writeInbound(msg);
+                    promise.setSuccess();
+                    Object response;
+                    while ((response = server.readOutbound()) != null) {
+                        ctx.fireChannelRead(response);
+                    }
+                }
+            }, clientHandler);
+            connectionPool = new ConnectionPool(new RpcClientProperties(),
+                new RpcClientInitializer(clientHandler, false), metricsRecorder) {
+                @Override
+                public Channel acquireChannel(ServiceURL url) {
+                    return client;
+                }
+
+                @Override
+                public void releaseChannel(ServiceURL url, Channel channel) {
+                }
+            };
+            netClient = new NettyNetClient(connectionPool, clientHandler, metricsRecorder);
+        }
+
+        void calls(int count) throws Exception {
+            for (int i = 0; i < count; i++) {
+                // 与代理一致：开启回收时请求取自对象池
+                RecyclableRequest pooled = EnvelopeRecycling.isEnabled() ? RecyclableRequest.obtain() : null;
+                RpcRequest request = pooled != null ? pooled.request() : new RpcRequest();
+                request.setInterfaceName(MockService.class.getName());
+                request.setInterfaceClass(MockService.class);
+                request.setServiceKey(serviceKey);
+                request.setMethodName("sayHello");
+                request.setParameterTypes(parameterTypes);
+                request.setMethodId(methodId);
+                request.setParameters(ARGS);
+                request.setVersion("1.0.0");
+                RpcResponse response = netClient.send(serviceUrl, request, 1000);
+                assertEquals("Hello, hello!", response.getResult());
+                if (pooled != null) {
+                    pooled.recycle();
+                }
+            }
+        }
+
+        void close() {
+            connectionPool.close();
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.spud.rpic.io.netty;
+
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.compress.CompressType;
+import com.spud.rpic.io.compress.CompressorFactory;
+import com.spud.rpic.io.netty.server.RpcServerHandler;
+import com.spud.rpic.io.netty.server.invocation.DefaultServerInvocation;
+import com.spud.rpic.io.serializer.KryoSerializer;
+import com.spud.rpic.io.serializer.Serializer;
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.property.RpcServerProperties;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressionCodecTest {
+
+    private final CompressorFactory compressorFactory = new CompressorFactory();
+
+    private EmbeddedChannel channel(String compressType) {
+        return new EmbeddedChannel(new ProtocolEncoder(), new ProtocolDecoder(),
+            new CompressionCodec(compressorFactory, compressType, 1024));
+    }
+
+    private static byte[] repetitiveBody(int size) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < size) {
+            sb.append("{\"id\":").append(sb.length() % 100).append(",\"name\":\"item\"},");
+        }
+        return sb.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"gzip", "lz4", "snappy"})
+    public void testLargeRequestCompressedAndRestored(String compressType) {
+        EmbeddedChannel channel = channel(compressType);
+        byte[] body = repetitiveBody(64 * 1024);
+
+        assertTrue(channel.writeOutbound(ProtocolMsg.fromBytes(3L, body, (byte) 4)));
+        ByteBuf encoded = channel.readOutbound();
+        byte code = CompressType.fromType(compressType).getCode();
+        assertEquals(code | code << RpcConstants.FLAG_ACCEPT_COMPRESS_SHIFT, encoded.getByte(4));
+        assertTrue(encoded.readableBytes() < body.length / 4);
+
+        assertTrue(channel.writeInbound(encoded));
+        ProtocolMsg decoded = channel.readInbound();
+        assertEquals(0, decoded.getFlags() & RpcConstants.FLAG_COMPRESS_MASK);
+        assertEquals(body.length, decoded.getContentLength());
+        assertArrayEquals(body, ByteBufUtil.getBytes(decoded.contentBuf()));
+        assertTrue(decoded.release());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testSmallPayloadSkipsCompressionButKeepsHint() {
+        EmbeddedChannel channel = channel("lz4");
+        byte[] body = repetitiveBody(512);
+
+        channel.writeOutbound(ProtocolMsg.fromBytes(4L, body, (byte) 4));
+        ByteBuf encoded = channel.readOutbound();
+        assertEquals(RpcConstants.HEADER_LENGTH + body.length, encoded.readableBytes());
+        assertEquals(CompressType.LZ4.getCode() << RpcConstants.FLAG_ACCEPT_COMPRESS_SHIFT,
+            encoded.getByte(4));
+        encoded.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testResponseUsesCodecRequestedByClient() {
+        // 服务端本身未配置压缩，仍按请求声明的类型压缩响应
+        EmbeddedChannel server = channel("none");
+        EmbeddedChannel client = channel("snappy");
+        byte[] body = repetitiveBody(16 * 1024);
+
+        client.writeOutbound(ProtocolMsg.fromBytes(5L, new byte[]{1}, (byte) 4));
+        server.writeInbound((Object) client.readOutbound());
+        ProtocolMsg request = server.readInbound();
+        request.release();
+
+        server.writeOutbound(ProtocolMsg.responseFor(request, body, (byte) 4));
+        ByteBuf encoded = server.readOutbound();
+        assertEquals(CompressType.SNAPPY.getCode(),
+            encoded.getByte(4) & RpcConstants.FLAG_COMPRESS_MASK);
+
+        client.writeInbound(encoded);
+        ProtocolMsg response = client.readInbound();
+        assertEquals(5L, response.getRequestId());
+        assertArrayEquals(body, ByteBufUtil.getBytes(response.contentBuf()));
+        response.release();
+        assertFalse(client.finish());
+        assertFalse(server.finish());
+    }
+
+    @Test
+    public void testRequestCompressionNegotiatedWithPeer() {
+        EmbeddedChannel channel = channel("gzip");
+        byte[] body = repetitiveBody(16 * 1024);
+
+        // 对端未公布本端配置的gzip时改用双方都支持的最快类型
+        channel.attr(CompressionCodec.PEER_COMPRESSORS).set("snappy,lz4");
+        channel.writeOutbound(ProtocolMsg.fromBytes(6L, body, (byte) 4));
+        ByteBuf encoded = channel.readOutbound();
+        assertEquals(CompressType.LZ4.getCode(), encoded.getByte(4) & RpcConstants.FLAG_COMPRESS_MASK);
+        encoded.release();
+
+        // 没有共同类型时不压缩，也不要求压缩响应
+        channel.attr(CompressionCodec.PEER_COMPRESSORS).set("zstd");
+        channel.writeOutbound(ProtocolMsg.fromBytes(7L, body, (byte) 4));
+        encoded = channel.readOutbound();
+        assertEquals(0, encoded.getByte(4));
+        encoded.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testCorruptedRequestGetsErrorResponse() {
+        Serializer serializer = new KryoSerializer();
+        EmbeddedChannel server = new EmbeddedChannel(new CompressionCodec(compressorFactory, "none", 1024),
+            new RpcServerHandler(serializer, null, new DefaultServerInvocation(new RpcServerProperties()),
+                RpcMetricsRecorder.create(null, null), null));
+        ProtocolMsg request = ProtocolMsg.fromBytes(8L, new byte[]{1, 2, 3, 4, 5}, serializer.getCode());
+        byte code = CompressType.LZ4.getCode();
+        request.setFlags((byte) (code | code << RpcConstants.FLAG_ACCEPT_COMPRESS_SHIFT));
+
+        // 解压失败只回复该请求的错误响应，连接保持可用
+        server.writeInbound(request);
+        ProtocolMsg response = server.readOutbound();
+        assertEquals(RpcConstants.TYPE_RESPONSE, response.getType());
+        assertEquals(8L, response.getRequestId());
+        RpcResponse rpcResponse = serializer.deserialize(response.contentBuf(), RpcResponse.class);
+        assertTrue(rpcResponse.getError());
+        response.release();
+        assertTrue(server.isActive());
+        assertFalse(server.finish());
+    }
+
+    @Test
+    public void testUnknownCodecGetsUncompressedErrorResponse() {
+        Serializer serializer = new KryoSerializer();
+        EmbeddedChannel server = new EmbeddedChannel(new CompressionCodec(compressorFactory, "none", 1024),
+            new RpcServerHandler(serializer, null, new DefaultServerInvocation(new RpcServerProperties()),
+                RpcMetricsRecorder.create(null, null), null));
+        ProtocolMsg request = ProtocolMsg.fromBytes(9L, new byte[]{1, 2, 3}, serializer.getCode());
+        // 本端不认识的压缩类型编码，同时要求以该类型压缩响应
+        byte code = 9;
+        request.setFlags((byte) (code | code << RpcConstants.FLAG_ACCEPT_COMPRESS_SHIFT));
+
+        server.writeInbound(request);
+        ProtocolMsg response = server.readOutbound();
+        assertEquals(9L, response.getRequestId());
+        assertEquals(0, response.getFlags());
+        RpcResponse rpcResponse = serializer.deserialize(response.contentBuf(), RpcResponse.class);
+        assertTrue(rpcResponse.getError());
+        response.release();
+        assertTrue(server.isActive());
+        assertFalse(server.finish());
+    }
+}
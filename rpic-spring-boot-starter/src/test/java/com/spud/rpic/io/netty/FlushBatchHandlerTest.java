@@ -0,0 +1,54 @@
+package com.spud.rpic.io.netty;
+
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.property.RpcProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlushBatchHandlerTest {
+
+    @Test
+    public void testFlushesAreMergedAndBatchSizeRecorded() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RpcMetricsRecorder recorder = RpcMetricsRecorder.create(registry,
+            new RpcProperties.MetricsProperties());
+        // 模拟按请求逐条writeAndFlush的业务处理器
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                ctx.writeAndFlush(msg);
+            }
+        });
+        FlushBatchHandler.install(channel.pipeline(), 256, recorder, "server");
+
+        // 同一次读循环内的flush在读完成时合并为一次
+        channel.writeInbound("a", "b", "c");
+        assertEquals("a", channel.readOutbound());
+        assertEquals("b", channel.readOutbound());
+        assertEquals("c", channel.readOutbound());
+
+        DistributionSummary summary = registry.get("rpic.flush.batch.size").tag("side", "server")
+            .summary();
+        assertEquals(1, summary.count());
+        assertEquals(3.0, summary.totalAmount());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDisabledWhenLimitIsZero() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        FlushBatchHandler.install(channel.pipeline(), 0, RpcMetricsRecorder.create(null, null),
+            "client");
+
+        channel.writeAndFlush("a");
+        assertEquals("a", channel.readOutbound());
+        assertNull(channel.pipeline().get("flushConsolidation"));
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,42 @@
+package com.spud.rpic.io.netty;
+
+import com.spud.rpic.io.netty.MessageSizePredictor.SizeEstimate;
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.property.RpcProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageSizePredictorTest {
+
+    @Test
+    public void testEstimateGrowsAtOnceAndShrinksSlowly() {
+        MessageSizePredictor predictor = new MessageSizePredictor(null, "server");
+        SizeEstimate estimate = predictor.estimate("svc", "list");
+        assertSame(estimate, predictor.estimate("svc", "list"));
+        assertEquals(256, estimate.nextSize());
+
+        estimate.record(300 * 1024);
+        assertTrue(estimate.nextSize() >= 300 * 1024);
+        int grown = estimate.nextSize();
+
+        // 单次偏小不调整，连续两次才降一档
+        estimate.record(100);
+        assertEquals(grown, estimate.nextSize());
+        estimate.record(100);
+        assertEquals(grown / 2, estimate.nextSize());
+    }
+
+    @Test
+    public void testEstimateExposedAsGauge() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RpcProperties.MetricsProperties properties = new RpcProperties.MetricsProperties();
+        properties.setEnabled(true);
+        MessageSizePredictor predictor = new MessageSizePredictor(
+            RpcMetricsRecorder.create(registry, properties), "client");
+
+        predictor.estimate("svc", "get").record(5000);
+        assertEquals(8192, registry.get("rpic.buffer.estimate").tag("side", "client").gauge().value());
+    }
+}
@@ -0,0 +1,101 @@
+package com.spud.rpic.io.netty;
+
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.io.common.ProtocolMsg;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProtocolCodecTest {
+
+    @Test
+    public void testV2RoundTripCarriesRequestId() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ProtocolEncoder(), new ProtocolDecoder());
+        byte[] body = new byte[]{1, 2, 3};
+        ProtocolMsg request = ProtocolMsg.fromBytes(Long.MAX_VALUE - 1, body, (byte) 4);
+
+        assertTrue(channel.writeOutbound(request));
+        ByteBuf encoded = channel.readOutbound();
+        assertEquals(RpcConstants.HEADER_LENGTH + body.length, encoded.readableBytes());
+
+        assertTrue(channel.writeInbound(encoded));
+        ProtocolMsg decoded = channel.readInbound();
+        assertEquals(RpcConstants.PROTOCOL_VERSION, decoded.getVersion());
+        assertEquals(Long.MAX_VALUE - 1, decoded.getRequestId());
+        assertEquals(RpcConstants.TYPE_REQUEST, decoded.getType());
+        assertArrayEquals(body, ByteBufUtil.getBytes(decoded.contentBuf()));
+        assertTrue(decoded.release());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testLargeBufBodyIsNotCopiedAndReleasedWithMessage() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ProtocolEncoder(), new ProtocolDecoder());
+        ByteBuf body = Unpooled.directBuffer(4096);
+        for (int i = 0; i < 4096; i++) {
+            body.writeByte(i);
+        }
+        ProtocolMsg request = ProtocolMsg.fromBuf(7L, body, (byte) 4);
+
+        String expected = ByteBufUtil.hexDump(body);
+
+        assertTrue(channel.writeOutbound(request));
+        // 编码完成后消息的引用被释放，只剩下组合帧持有的引用
+        assertEquals(1, body.refCnt());
+        ByteBuf encoded = channel.readOutbound();
+        assertEquals(RpcConstants.HEADER_LENGTH + 4096, encoded.readableBytes());
+
+        assertTrue(channel.writeInbound(encoded));
+        assertEquals(0, body.refCnt());
+        ProtocolMsg decoded = channel.readInbound();
+        assertEquals(4096, decoded.getContentLength());
+        assertEquals(expected, ByteBufUtil.hexDump(decoded.contentBuf()));
+        assertTrue(decoded.release());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testV1FrameDecodedAndAnsweredWithV1() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ProtocolEncoder(), new ProtocolDecoder());
+        ByteBuf v1 = Unpooled.buffer();
+        v1.writeByte(RpcConstants.PROTOCOL_MAGIC_NUMBER);
+        v1.writeByte(RpcConstants.PROTOCOL_VERSION_V1);
+        v1.writeByte(RpcConstants.TYPE_REQUEST);
+        v1.writeByte(4);
+        v1.writeInt(2);
+        v1.writeBytes(new byte[]{9, 8});
+
+        assertTrue(channel.writeInbound(v1));
+        ProtocolMsg decoded = channel.readInbound();
+        assertEquals(RpcConstants.PROTOCOL_VERSION_V1, decoded.getVersion());
+        assertEquals(0L, decoded.getRequestId());
+        decoded.release();
+
+        ProtocolMsg response = ProtocolMsg.responseFor(decoded, new byte[]{7}, (byte) 4);
+        assertTrue(channel.writeOutbound(response));
+        ByteBuf encoded = channel.readOutbound();
+        assertEquals(RpcConstants.HEADER_LENGTH_V1 + 1, encoded.readableBytes());
+        assertEquals(RpcConstants.PROTOCOL_VERSION_V1, encoded.getByte(1));
+        encoded.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPartialV2HeaderWaitsForMoreData() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ProtocolEncoder(), new ProtocolDecoder());
+        channel.writeOutbound(ProtocolMsg.fromBytes(42L, new byte[]{5}, (byte) 4));
+        ByteBuf encoded = channel.readOutbound();
+
+        // v2头部长于v1头部，只收到v1长度的数据时不能提前解码
+        assertFalse(channel.writeInbound(encoded.readRetainedSlice(RpcConstants.HEADER_LENGTH_V1 + 1)));
+        assertTrue(channel.writeInbound(encoded));
+        ProtocolMsg decoded = channel.readInbound();
+        assertEquals(42L, decoded.getRequestId());
+        decoded.release();
+        assertFalse(channel.finish());
+    }
+}
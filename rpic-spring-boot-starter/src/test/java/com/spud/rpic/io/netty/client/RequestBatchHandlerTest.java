@@ -0,0 +1,135 @@
+package com.spud.rpic.io.netty.client;
+
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.netty.server.RpcServerHandler;
+import com.spud.rpic.io.netty.server.invocation.DefaultServerInvocation;
+import com.spud.rpic.io.serializer.KryoSerializer;
+import com.spud.rpic.io.serializer.Serializer;
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.property.RpcServerProperties;
+import com.spud.rpic.test.TestUtils;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestBatchHandlerTest {
+
+    private final Serializer serializer = new KryoSerializer();
+
+    private ProtocolMsg request(long requestId) {
+        return ProtocolMsg.fromBuf(requestId,
+            Unpooled.wrappedBuffer(serializer.serialize(TestUtils.createTestRequest())),
+            serializer.getCode());
+    }
+
+    @Test
+    public void testBatchRoundTripThroughServer() {
+        EmbeddedChannel client = new EmbeddedChannel(new RequestBatchHandler(2, 1000, 8192));
+        EmbeddedChannel server = new EmbeddedChannel(new RpcServerHandler(serializer, null,
+            new DefaultServerInvocation(new RpcServerProperties()), RpcMetricsRecorder.create(null, null),
+            command -> {
+                throw new RejectedExecutionException("queue full");
+            }));
+
+        ChannelFuture first = client.write(request(21L));
+        assertNull(client.readOutbound(), "First request should wait for the batch window");
+        ChannelFuture second = client.write(request(22L));
+
+        // 达到上限后两条请求合并为一个批量帧
+        ProtocolMsg batch = client.readOutbound();
+        assertEquals(RpcConstants.TYPE_BATCH_REQUEST, batch.getType());
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertNull(client.readOutbound());
+
+        // 服务端整批返回过载响应，客户端拆分后按请求ID交付
+        server.writeInbound(batch);
+        ProtocolMsg batchResponse = server.readOutbound();
+        assertEquals(RpcConstants.TYPE_BATCH_RESPONSE, batchResponse.getType());
+        client.writeInbound(batchResponse);
+
+        for (long requestId : new long[]{21L, 22L}) {
+            ProtocolMsg response = client.readInbound();
+            assertEquals(RpcConstants.TYPE_RESPONSE, response.getType());
+            assertEquals(requestId, response.getRequestId());
+            RpcResponse rpcResponse = serializer.deserialize(response.contentBuf(), RpcResponse.class);
+            assertEquals("Server is overloaded", rpcResponse.getErrorMsg());
+            response.release();
+        }
+        assertEquals(0, batchResponse.refCnt());
+        assertFalse(client.finish());
+        assertFalse(server.finish());
+    }
+
+    @Test
+    public void testSingleRequestSentUnbatchedAfterWindow() throws Exception {
+        EmbeddedChannel client = new EmbeddedChannel(new RequestBatchHandler(8, 0, 8192));
+        ChannelFuture future = client.write(request(31L));
+
+        client.runPendingTasks();
+        ProtocolMsg sent = client.readOutbound();
+        assertEquals(RpcConstants.TYPE_REQUEST, sent.getType());
+        assertEquals(31L, sent.getRequestId());
+        assertTrue(future.isSuccess());
+        sent.release();
+        assertFalse(client.finish());
+    }
+
+    @Test
+    public void testBatchEntriesSubmittedIndividually() {
+        // 线程池只接纳第一条，其余条目各自返回过载响应，不影响已接纳的条目
+        AtomicInteger submitted = new AtomicInteger();
+        EmbeddedChannel server = new EmbeddedChannel(new RpcServerHandler(serializer, null,
+            new DefaultServerInvocation(new RpcServerProperties()), RpcMetricsRecorder.create(null, null),
+            command -> {
+                if (submitted.incrementAndGet() > 1) {
+                    throw new RejectedExecutionException("queue full");
+                }
+                command.run();
+            }));
+        EmbeddedChannel client = new EmbeddedChannel(new RequestBatchHandler(2, 1000, 8192));
+        client.write(request(41L));
+        client.write(request(42L));
+        server.writeInbound((ProtocolMsg) client.readOutbound());
+
+        ProtocolMsg batchResponse = server.readOutbound();
+        assertEquals(RpcConstants.TYPE_BATCH_RESPONSE, batchResponse.getType());
+        assertEquals(2, submitted.get());
+        client.writeInbound(batchResponse);
+
+        ProtocolMsg first = client.readInbound();
+        assertEquals(41L, first.getRequestId());
+        RpcResponse accepted = serializer.deserialize(first.contentBuf(), RpcResponse.class);
+        assertNotEquals("Server is overloaded", accepted.getErrorMsg());
+        first.release();
+        ProtocolMsg second = client.readInbound();
+        assertEquals(42L, second.getRequestId());
+        RpcResponse rejected = serializer.deserialize(second.contentBuf(), RpcResponse.class);
+        assertEquals("Server is overloaded", rejected.getErrorMsg());
+        second.release();
+        assertFalse(client.finish());
+        assertFalse(server.finish());
+    }
+
+    @Test
+    public void testLargeRequestBypassesBatch() {
+        ProtocolMsg large = request(51L);
+        EmbeddedChannel client = new EmbeddedChannel(
+            new RequestBatchHandler(8, 1000, large.getContentLength() - 1));
+        ChannelFuture future = client.writeAndFlush(large);
+
+        // 超过上限的请求不等待批量窗口
+        ProtocolMsg sent = client.readOutbound();
+        assertSame(large, sent);
+        assertTrue(future.isSuccess());
+        sent.release();
+        assertFalse(client.finish());
+    }
+}
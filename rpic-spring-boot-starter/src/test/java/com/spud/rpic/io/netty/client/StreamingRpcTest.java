@@ -0,0 +1,387 @@
+package com.spud.rpic.io.netty.client;
+
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.common.domain.RecyclableRequest;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.domain.RpcStream;
+import com.spud.rpic.common.exception.TimeoutException;
+import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.netty.MessageSizePredictor;
+import com.spud.rpic.io.netty.server.RpcServerHandler;
+import com.spud.rpic.io.netty.server.invocation.DefaultServerInvocation;
+import com.spud.rpic.io.serializer.JsonSerializer;
+import com.spud.rpic.io.serializer.KryoSerializer;
+import com.spud.rpic.io.serializer.Serializer;
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.model.ServiceURL;
+import com.spud.rpic.property.RpcClientProperties;
+import com.spud.rpic.property.RpcServerProperties;
+import com.spud.rpic.test.TestUtils;
+import com.spud.rpic.util.EnvelopeRecycling;
+import com.spud.rpic.util.MethodIds;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Promise;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingRpcTest {
+
+    private final Serializer serializer = new KryoSerializer();
+
+    @Test
+    public void testStreamFollowsCredits() {
+        RpcMetricsRecorder metricsRecorder = RpcMetricsRecorder.create(null, null);
+        DefaultServerInvocation invocation = new DefaultServerInvocation(new RpcServerProperties()) {
+            @Override
+            public RpcResponse handleRequest(RpcRequest request, Supplier<Object[]> parameterDecoder) {
+                return RpcResponse.success(null, IntStream.range(0, 10).boxed().iterator());
+            }
+        };
+        // 每块2个元素，初始额度4块，10个元素需要客户端追加一次额度
+        EmbeddedChannel server = new EmbeddedChannel(new RpcServerHandler(serializer, null, invocation,
+            metricsRecorder, null, new MessageSizePredictor(metricsRecorder, "server"), 2));
+        RpcClientHandler clientHandler = new RpcClientHandler(serializer, null);
+        EmbeddedChannel client = new EmbeddedChannel(clientHandler);
+
+        Promise<RpcResponse> promise = client.eventLoop().newPromise();
+        clientHandler.addPromise(7L, promise, client, 1000).streamTimeout = 1000;
+        server.writeInbound(ProtocolMsg.fromBuf(7L,
+            Unpooled.wrappedBuffer(serializer.serialize(TestUtils.createTestRequest())),
+            serializer.getCode()));
+
+        assertEquals(RpcConstants.STREAM_INITIAL_CREDIT, forward(server, client));
+        assertTrue(promise.isSuccess());
+        @SuppressWarnings("unchecked")
+        RpcStream<Integer> stream = (RpcStream<Integer>) promise.getNow().getResult();
+
+        List<Integer> received = new ArrayList<>();
+        for (int i = 0; i < 2 * RpcConstants.STREAM_INITIAL_CREDIT; i++) {
+            received.add(stream.next());
+        }
+        // 额度用尽前服务端不再发送
+        assertNull(server.readOutbound());
+        assertEquals(RpcConstants.STREAM_INITIAL_CREDIT, forward(client, server));
+        server.runPendingTasks();
+        // 最后一块与结束响应
+        assertEquals(2, forward(server, client));
+        stream.forEachRemaining(received::add);
+
+        assertEquals(10, received.size());
+        assertEquals(9, received.get(9));
+        assertFalse(stream.hasNext());
+        client.finishAndReleaseAll();
+        server.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testJsonStreamElementsKeepDeclaredType() throws Exception {
+        JsonSerializer json = new JsonSerializer();
+        json.registerService(POINT_SERVICE, PointService.class);
+        RpcMetricsRecorder metricsRecorder = RpcMetricsRecorder.create(null, null);
+        DefaultServerInvocation invocation = new DefaultServerInvocation(new RpcServerProperties()) {
+            @Override
+            public RpcResponse handleRequest(RpcRequest request, Supplier<Object[]> parameterDecoder) {
+                return RpcResponse.success(null, Arrays.asList(new Point(1), new Point(2)).iterator());
+            }
+        };
+        EmbeddedChannel server = new EmbeddedChannel(new RpcServerHandler(json, null, invocation,
+            metricsRecorder, null, new MessageSizePredictor(metricsRecorder, "server"), 1));
+        RpcClientHandler clientHandler = new RpcClientHandler(json, null);
+        EmbeddedChannel client = new EmbeddedChannel(clientHandler);
+
+        RpcRequest request = pointRequest("points");
+        Promise<RpcResponse> promise = client.eventLoop().newPromise();
+        RpcClientHandler.PendingRequest pending = clientHandler.addPromise(11L, promise, client, 1000);
+        pending.streamTimeout = 1000;
+        pending.methodId = request.getMethodId();
+        server.writeInbound(ProtocolMsg.fromBuf(11L, Unpooled.wrappedBuffer(json.serialize(request)),
+            json.getCode()));
+        forward(server, client);
+
+        @SuppressWarnings("unchecked")
+        RpcStream<Point> stream = (RpcStream<Point>) promise.getNow().getResult();
+        List<Point> received = new ArrayList<>();
+        stream.forEachRemaining(received::add);
+        // 元素按方法声明的RpcStream<Point>还原，而不是LinkedHashMap
+        assertEquals(2, received.size());
+        assertEquals(Point.class, received.get(1).getClass());
+        assertEquals(2, received.get(1).x);
+        client.finishAndReleaseAll();
+        server.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testJsonParameterStreamKeepsDeclaredType() throws Exception {
+        JsonSerializer json = new JsonSerializer();
+        json.registerService(POINT_SERVICE, PointService.class);
+        RpcMetricsRecorder metricsRecorder = RpcMetricsRecorder.create(null, null);
+        List<Object> uploaded = new ArrayList<>();
+        DefaultServerInvocation invocation = new DefaultServerInvocation(new RpcServerProperties()) {
+            @Override
+            public RpcResponse handleRequest(RpcRequest request, Supplier<Object[]> parameterDecoder) {
+                request.getParameterStream().forEachRemaining(uploaded::add);
+                return RpcResponse.success(null, uploaded.size());
+            }
+        };
+        // 业务任务在数据块全部到达后再执行，以免在同一线程上阻塞等待
+        List<Runnable> tasks = new ArrayList<>();
+        EmbeddedChannel server = new EmbeddedChannel(new RpcServerHandler(json, null, invocation,
+            metricsRecorder, tasks::add));
+
+        RpcRequest request = pointRequest("upload", Iterator.class);
+        server.writeInbound(ProtocolMsg.streamRequest(13L,
+            Unpooled.wrappedBuffer(json.serialize(request)), json.getCode()));
+        EmbeddedChannel sender = new EmbeddedChannel();
+        new OutboundStream(sender, 13L, Arrays.asList(new Point(3), new Point(4)).iterator(), json, 1,
+            () -> {
+            }).run();
+        forward(sender, server);
+        tasks.forEach(Runnable::run);
+
+        assertEquals(2, uploaded.size());
+        assertEquals(Point.class, uploaded.get(0).getClass());
+        assertEquals(4, ((Point) uploaded.get(1)).x);
+        server.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testParameterStreamWaitsForRequestTimeout() throws Exception {
+        JsonSerializer json = new JsonSerializer();
+        json.registerService(POINT_SERVICE, PointService.class);
+        List<Throwable> failures = new ArrayList<>();
+        DefaultServerInvocation invocation = new DefaultServerInvocation(new RpcServerProperties()) {
+            @Override
+            public RpcResponse handleRequest(RpcRequest request, Supplier<Object[]> parameterDecoder) {
+                try {
+                    request.getParameterStream().hasNext();
+                } catch (RuntimeException e) {
+                    failures.add(e);
+                }
+                return RpcResponse.success(null, null);
+            }
+        };
+        List<Runnable> tasks = new ArrayList<>();
+        EmbeddedChannel server = new EmbeddedChannel(new RpcServerHandler(json, null, invocation,
+            RpcMetricsRecorder.create(null, null), tasks::add));
+
+        // 客户端不发送任何数据块，服务端按请求携带的超时而非默认超时放弃等待
+        RpcRequest request = pointRequest("upload", Iterator.class);
+        request.setTimeout(50L);
+        server.writeInbound(ProtocolMsg.streamRequest(14L,
+            Unpooled.wrappedBuffer(json.serialize(request)), json.getCode()));
+        tasks.forEach(Runnable::run);
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof TimeoutException);
+        assertTrue(failures.get(0).getMessage().contains("within 50ms"), failures.get(0).getMessage());
+        server.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testBidirectionalStreamSurvivesRequestRecycling() throws Exception {
+        EnvelopeRecycling.setEnabled(true);
+        // 请求写出前先不完成写入，使结果流先于参数发送开始到达
+        Queue<ProtocolMsg> written = new ConcurrentLinkedQueue<>();
+        ChannelPromise[] requestWrite = new ChannelPromise[1];
+        RpcClientHandler clientHandler = new RpcClientHandler(serializer, null);
+        EmbeddedChannel client = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                written.add((ProtocolMsg) msg);
+                if (requestWrite[0] == null) {
+                    requestWrite[0] = promise;
+                } else {
+                    promise.setSuccess();
+                }
+            }
+        }, clientHandler);
+        RpcMetricsRecorder metricsRecorder = RpcMetricsRecorder.create(null, null);
+        ConnectionPool connectionPool = new ConnectionPool(new RpcClientProperties(),
+            new RpcClientInitializer(clientHandler, false), metricsRecorder) {
+            @Override
+            public CompletableFuture<Channel> acquireChannelAsync(ServiceURL url) {
+                return CompletableFuture.completedFuture(client);
+            }
+
+            @Override
+            public void releaseChannel(ServiceURL url, Channel channel) {
+            }
+        };
+        NettyNetClient netClient = new NettyNetClient(connectionPool, clientHandler, metricsRecorder);
+        CountDownLatch sourceClosed = new CountDownLatch(1);
+        try {
+            // 与代理一致：请求取自对象池，调用完成时立即归还
+            RecyclableRequest pooled = RecyclableRequest.obtain();
+            RpcRequest request = pooled.request();
+            request.setServiceKey(TestUtils.TEST_SERVICE);
+            request.setMethodName(TestUtils.TEST_METHOD);
+            request.setStream(true);
+            request.setParameterStream(new ClosingIterator(Arrays.asList(1, 2, 3), sourceClosed));
+            CompletableFuture<RpcResponse> future = netClient.sendAsync(TestUtils.createTestServiceURL(),
+                request, 1000);
+            future.whenComplete((response, error) -> pooled.recycle());
+
+            ProtocolMsg sent = written.poll();
+            assertEquals(RpcConstants.TYPE_STREAM_REQUEST, sent.getType());
+            long requestId = sent.getRequestId();
+            sent.release();
+            client.writeInbound(ProtocolMsg.streamChunk(requestId,
+                Unpooled.wrappedBuffer(serializer.serialize(RpcResponse.success(null, Arrays.asList(0)))),
+                serializer.getCode()));
+            assertTrue(future.isDone());
+            assertFalse(request.isStream(), "Request should have been recycled");
+
+            // 结果流仍在接收，参数流不应因请求已回收而被取消
+            requestWrite[0].setSuccess();
+            assertTrue(sourceClosed.await(5, TimeUnit.SECONDS));
+            List<Object> sentElements = new ArrayList<>();
+            ProtocolMsg chunk;
+            while ((chunk = written.poll()) != null) {
+                RpcResponse decoded = serializer.deserialize(chunk.contentBuf(), RpcResponse.class);
+                chunk.release();
+                if (decoded.getResult() != null) {
+                    sentElements.addAll((List<?>) decoded.getResult());
+                }
+            }
+            assertEquals(Arrays.asList(1, 2, 3), sentElements);
+        } finally {
+            EnvelopeRecycling.setEnabled(false);
+            netClient.destroy();
+            client.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * 数据源关闭时通知测试线程
+     */
+    private static final class ClosingIterator implements Iterator<Integer>, AutoCloseable {
+
+        private final Iterator<Integer> delegate;
+
+        private final CountDownLatch closed;
+
+        ClosingIterator(List<Integer> elements, CountDownLatch closed) {
+            this.delegate = elements.iterator();
+            this.closed = closed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public Integer next() {
+            return delegate.next();
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+
+    private static final String POINT_SERVICE = "point-service";
+
+    private static RpcRequest pointRequest(String methodName, Class<?>... parameterTypes)
+        throws NoSuchMethodException {
+        RpcRequest request = new RpcRequest();
+        request.setRequestId("stream");
+        request.setInterfaceClass(PointService.class);
+        request.setServiceKey(POINT_SERVICE);
+        request.setMethodName(methodName);
+        request.setParameterTypes(parameterTypes);
+        request.setParameters(new Object[parameterTypes.length]);
+        request.setMethodId(MethodIds.of(POINT_SERVICE,
+            PointService.class.getMethod(methodName, parameterTypes)));
+        return request;
+    }
+
+    public interface PointService {
+
+        RpcStream<Point> points();
+
+        int upload(Iterator<Point> points);
+    }
+
+    public static class Point {
+
+        public int x;
+
+        public Point() {
+        }
+
+        Point(int x) {
+            this.x = x;
+        }
+    }
+
+    private static int forward(EmbeddedChannel from, EmbeddedChannel to) {
+        int count = 0;
+        Object msg;
+        while ((msg = from.readOutbound()) != null) {
+            to.writeInbound(msg);
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testOutboundStreamSendsChunksThenEnd() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        boolean[] closed = new boolean[1];
+        // 5个元素每块2个，共3块，未超过初始额度
+        new OutboundStream(channel, 9L, IntStream.range(0, 5).boxed().iterator(), serializer, 2,
+            () -> closed[0] = true).run();
+
+        List<Integer> received = new ArrayList<>();
+        ProtocolMsg msg;
+        while ((msg = channel.readOutbound()) != null) {
+            assertEquals(RpcConstants.TYPE_STREAM_CHUNK, msg.getType());
+            assertEquals(9L, msg.getRequestId());
+            RpcResponse chunk = serializer.deserialize(msg.contentBuf(), RpcResponse.class);
+            msg.release();
+            if (chunk.getResult() == null) {
+                break;
+            }
+            for (Object element : (List<?>) chunk.getResult()) {
+                received.add((Integer) element);
+            }
+        }
+        assertNotNull(msg, "Stream should end with an empty chunk");
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), received);
+        assertTrue(closed[0]);
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testCancelledOutboundStreamSendsNothing() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        boolean[] closed = new boolean[1];
+        OutboundStream stream = new OutboundStream(channel, 9L, IntStream.range(0, 5).boxed().iterator(),
+            serializer, 2, () -> closed[0] = true);
+        stream.cancel();
+        stream.run();
+
+        assertNull(channel.readOutbound());
+        assertTrue(closed[0]);
+    }
+}
@@ -0,0 +1,268 @@
+package com.spud.rpic.io.netty.client.invocation;
+
+import com.spud.rpic.cluster.CircuitBreakerManager;
+import com.spud.rpic.cluster.Endpoint;
+import com.spud.rpic.cluster.EndpointStatsRegistry;
+import com.spud.rpic.cluster.RandomLoadBalancer;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.exception.TimeoutException;
+import com.spud.rpic.io.netty.NetClient;
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.model.ServiceMetadata;
+import com.spud.rpic.model.ServiceURL;
+import com.spud.rpic.property.RpcClientProperties;
+import com.spud.rpic.property.RpcProperties;
+import com.spud.rpic.registry.MockRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DefaultClientInvocationTest {
+
+    @Test
+    public void testAsyncInvocationRetriesAndRecordsStats() throws Exception {
+        RpcClientProperties properties = new RpcClientProperties();
+        properties.getRetry().setBaseDelayMs(1);
+        EndpointStatsRegistry statsRegistry = new EndpointStatsRegistry(properties);
+
+        ServiceMetadata metadata = ServiceMetadata.builder().interfaceName("svc").build();
+        MockRegistry registry = new MockRegistry();
+        registry.addTestService(metadata, new ServiceURL("127.0.0.1", 9001, "svc", "rpic", null, null, 1, null));
+        registry.addTestService(metadata, new ServiceURL("127.0.0.1", 9002, "svc", "rpic", null, null, 1, null));
+
+        // 首次尝试超时，换节点后成功
+        List<String> endpoints = new ArrayList<>();
+        NetClient netClient = new NetClient() {
+            @Override
+            public RpcResponse send(ServiceURL serviceUrl, RpcRequest request, int timeout) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<RpcResponse> sendAsync(ServiceURL serviceUrl, RpcRequest request,
+                int timeout) {
+                endpoints.add(serviceUrl.getAddress());
+                CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+                if (endpoints.size() == 1) {
+                    future.completeExceptionally(new TimeoutException("timeout"));
+                } else {
+                    future.complete(RpcResponse.success("1", "ok"));
+                }
+                return future;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        DefaultClientInvocation invocation = new DefaultClientInvocation(registry, new RandomLoadBalancer(),
+            netClient, properties, new CircuitBreakerManager(properties), statsRegistry);
+
+        RpcRequest request = new RpcRequest();
+        RpcResponse response = invocation.invokeAsync(metadata, request, 1000).get(5, TimeUnit.SECONDS);
+        assertEquals("ok", response.getResult());
+        assertEquals(2, endpoints.size());
+        assertNotEquals(endpoints.get(0), endpoints.get(1));
+        assertEquals(2, request.getAttempt());
+        assertEquals(1, statsRegistry.getFailureCount(endpoints.get(0)));
+        assertEquals(1, statsRegistry.getRequestCount(endpoints.get(1)));
+    }
+
+    @Test
+    public void testHedgeWinsWhenPrimaryStalls() throws Exception {
+        RpcClientProperties properties = new RpcClientProperties();
+        EndpointStatsRegistry statsRegistry = new EndpointStatsRegistry(properties);
+
+        ServiceMetadata metadata = ServiceMetadata.builder().interfaceName("svc").build();
+        MockRegistry registry = new MockRegistry();
+        registry.addTestService(metadata, new ServiceURL("127.0.0.1", 9001, "svc", "rpic", null, null, 1, null));
+        registry.addTestService(metadata, new ServiceURL("127.0.0.1", 9002, "svc", "rpic", null, null, 1, null));
+
+        // 首发请求一直不返回，对冲请求立即成功
+        List<CompletableFuture<RpcResponse>> sent = new ArrayList<>();
+        NetClient netClient = new NetClient() {
+            @Override
+            public RpcResponse send(ServiceURL serviceUrl, RpcRequest request, int timeout) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public synchronized CompletableFuture<RpcResponse> sendAsync(ServiceURL serviceUrl,
+                RpcRequest request, int timeout) {
+                CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+                sent.add(future);
+                if (sent.size() > 1) {
+                    future.complete(RpcResponse.success("1", "hedged"));
+                }
+                return future;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RpcProperties.MetricsProperties metricsProperties = new RpcProperties.MetricsProperties();
+        metricsProperties.setEnabled(true);
+        DefaultClientInvocation invocation = new DefaultClientInvocation(registry, new RandomLoadBalancer(),
+            netClient, properties, new CircuitBreakerManager(properties), statsRegistry,
+            RpcMetricsRecorder.create(meterRegistry, metricsProperties));
+
+        RpcRequest request = new RpcRequest();
+        request.setHedgeDelayMs(20L);
+        RpcResponse response = invocation.invokeAsync(metadata, request, 2000).get(5, TimeUnit.SECONDS);
+        assertEquals("hedged", response.getResult());
+        assertEquals(2, sent.size());
+        assertTrue(sent.get(0).isCancelled());
+        assertEquals(1.0, meterRegistry.get("rpic.client.hedge.fired").counter().count());
+        assertEquals(1.0, meterRegistry.get("rpic.client.hedge.won").counter().count());
+    }
+
+    @Test
+    public void testBlockedRetryDoesNotDelayOtherRetries() throws Exception {
+        RpcClientProperties properties = new RpcClientProperties();
+        properties.getRetry().setBaseDelayMs(1);
+        EndpointStatsRegistry statsRegistry = new EndpointStatsRegistry(properties);
+
+        ServiceMetadata metadata = ServiceMetadata.builder().interfaceName("svc").build();
+        MockRegistry registry = new MockRegistry();
+        registry.addTestService(metadata, new ServiceURL("127.0.0.1", 9001, "svc", "rpic", null, null, 1, null));
+        registry.addTestService(metadata, new ServiceURL("127.0.0.1", 9002, "svc", "rpic", null, null, 1, null));
+
+        // 两个调用首次都失败；"slow"调用的重试在发送时阻塞（模拟缓慢建连），不应推迟"fast"调用的重试
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slowRetryStarted = new CountDownLatch(1);
+        Map<Object, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        NetClient netClient = new NetClient() {
+            @Override
+            public RpcResponse send(ServiceURL serviceUrl, RpcRequest request, int timeout) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<RpcResponse> sendAsync(ServiceURL serviceUrl, RpcRequest request,
+                int timeout) {
+                int attempt = attempts.computeIfAbsent(request.getMethodName(), k -> new AtomicInteger())
+                    .incrementAndGet();
+                CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+                if (attempt == 1) {
+                    future.completeExceptionally(new TimeoutException("timeout"));
+                    return future;
+                }
+                if ("slow".equals(request.getMethodName())) {
+                    slowRetryStarted.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                future.complete(RpcResponse.success("1", request.getMethodName()));
+                return future;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        DefaultClientInvocation invocation = new DefaultClientInvocation(registry, new RandomLoadBalancer(),
+            netClient, properties, new CircuitBreakerManager(properties), statsRegistry);
+
+        try {
+            RpcRequest slow = new RpcRequest();
+            slow.setMethodName("slow");
+            CompletableFuture<RpcResponse> slowFuture = invocation.invokeAsync(metadata, slow, 5000);
+            assertTrue(slowRetryStarted.await(5, TimeUnit.SECONDS));
+
+            RpcRequest fast = new RpcRequest();
+            fast.setMethodName("fast");
+            RpcResponse response = invocation.invokeAsync(metadata, fast, 5000).get(2, TimeUnit.SECONDS);
+            assertEquals("fast", response.getResult());
+            assertFalse(slowFuture.isDone());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testBreakerDeniedHedgeKeepsBudget() throws Exception {
+        RpcClientProperties properties = new RpcClientProperties();
+        // 额度不再积累，只有一次对冲机会
+        properties.getHedge().setBudgetRatio(0d);
+        properties.getHedge().setBudgetBurst(1);
+        EndpointStatsRegistry statsRegistry = new EndpointStatsRegistry(properties);
+
+        ServiceMetadata metadata = ServiceMetadata.builder().interfaceName("svc").build();
+        MockRegistry registry = new MockRegistry();
+        registry.addTestService(metadata, new ServiceURL("127.0.0.1", 9001, "svc", "rpic", null, null, 1, null));
+        registry.addTestService(metadata, new ServiceURL("127.0.0.1", 9002, "svc", "rpic", null, null, 1, null));
+
+        // 第一次调用的首发请求在对冲延迟之后才返回；第二次调用的首发请求一直不返回，只能靠对冲成功
+        AtomicInteger sends = new AtomicInteger();
+        NetClient netClient = new NetClient() {
+            @Override
+            public RpcResponse send(ServiceURL serviceUrl, RpcRequest request, int timeout) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<RpcResponse> sendAsync(ServiceURL serviceUrl, RpcRequest request,
+                int timeout) {
+                CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+                int send = sends.incrementAndGet();
+                if (send == 1) {
+                    new Thread(() -> {
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        future.complete(RpcResponse.success("1", "primary"));
+                    }).start();
+                } else if (send > 2) {
+                    future.complete(RpcResponse.success("1", "hedged"));
+                }
+                return future;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        // 熔断器拒绝第一次调用的对冲请求（第2次许可申请），其余放行
+        AtomicInteger permits = new AtomicInteger();
+        CircuitBreakerManager breakers = new CircuitBreakerManager(properties) {
+            @Override
+            public boolean tryAcquirePermission(Endpoint endpoint) {
+                return permits.incrementAndGet() != 2 && super.tryAcquirePermission(endpoint);
+            }
+        };
+        DefaultClientInvocation invocation = new DefaultClientInvocation(registry, new RandomLoadBalancer(),
+            netClient, properties, breakers, statsRegistry);
+
+        RpcRequest denied = new RpcRequest();
+        denied.setHedgeDelayMs(20L);
+        RpcResponse first = invocation.invokeAsync(metadata, denied, 2000).get(5, TimeUnit.SECONDS);
+        assertEquals("primary", first.getResult());
+        assertEquals(2, permits.get());
+
+        RpcRequest request = new RpcRequest();
+        request.setHedgeDelayMs(20L);
+        RpcResponse response = invocation.invokeAsync(metadata, request, 2000).get(1, TimeUnit.SECONDS);
+        assertEquals("hedged", response.getResult());
+    }
+}
@@ -0,0 +1,115 @@
+package com.spud.rpic.io.netty.server;
+
+import com.spud.rpic.common.constants.RpcConstants;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.io.common.ProtocolMsg;
+import com.spud.rpic.io.netty.BatchFrames;
+import com.spud.rpic.io.netty.server.invocation.DefaultServerInvocation;
+import com.spud.rpic.io.serializer.KryoSerializer;
+import com.spud.rpic.io.serializer.Serializer;
+import com.spud.rpic.metrics.RpcMetricsRecorder;
+import com.spud.rpic.property.RpcServerProperties;
+import com.spud.rpic.test.TestUtils;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RpcServerHandlerTest {
+
+    private final Serializer serializer = new KryoSerializer();
+
+    private RpcServerHandler handler(Executor executor) {
+        return new RpcServerHandler(serializer, null,
+            new DefaultServerInvocation(new RpcServerProperties()),
+            RpcMetricsRecorder.create(null, null), executor);
+    }
+
+    private ProtocolMsg request(long requestId) {
+        RpcRequest request = TestUtils.createTestRequest();
+        return ProtocolMsg.fromBuf(requestId, Unpooled.wrappedBuffer(serializer.serialize(request)),
+            serializer.getCode());
+    }
+
+    @Test
+    public void testRejectedRequestGetsImmediateOverloadResponse() {
+        EmbeddedChannel channel = new EmbeddedChannel(handler(command -> {
+            throw new RejectedExecutionException("queue full");
+        }));
+        ProtocolMsg request = request(11L);
+
+        channel.writeInbound(request);
+
+        ProtocolMsg response = channel.readOutbound();
+        assertNotNull(response, "Overload response should be written without waiting for a worker");
+        assertEquals(11L, response.getRequestId());
+        RpcResponse rpcResponse = serializer.deserialize(response.contentBuf(), RpcResponse.class);
+        assertTrue(rpcResponse.getError());
+        assertEquals("Server is overloaded", rpcResponse.getErrorMsg());
+        assertEquals(0, request.refCnt());
+        response.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testAcceptedRequestRetainsBodyUntilTaskRuns() {
+        List<Runnable> queued = new ArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel(handler(queued::add));
+        ProtocolMsg request = request(12L);
+
+        channel.writeInbound(request);
+
+        // 任务尚未执行，消息体仍由业务任务持有
+        assertEquals(1, queued.size());
+        assertEquals(1, request.refCnt());
+        assertNull(channel.readOutbound());
+        channel.finishAndReleaseAll();
+        queued.get(0).run();
+        assertEquals(0, request.refCnt());
+    }
+
+    @Test
+    public void testFastBatchEntryIsNotGatedOnSlowEntry() {
+        List<Runnable> queued = new ArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel(handler(queued::add));
+        ProtocolMsg batch = BatchFrames.join(channel.alloc(), Arrays.asList(request(21L), request(22L)),
+            RpcConstants.TYPE_BATCH_REQUEST, (byte) 0);
+
+        channel.writeInbound(batch);
+        assertEquals(2, queued.size());
+
+        // 第二条请求迟迟未执行，第一条的响应仍立即写回
+        queued.get(0).run();
+        channel.runPendingTasks();
+        assertEquals(Collections.singletonList(21L), readBatchResponse(channel));
+
+        queued.get(1).run();
+        channel.runPendingTasks();
+        assertEquals(Collections.singletonList(22L), readBatchResponse(channel));
+        assertFalse(channel.finish());
+    }
+
+    private List<Long> readBatchResponse(EmbeddedChannel channel) {
+        ProtocolMsg batchResponse = channel.readOutbound();
+        assertNotNull(batchResponse);
+        assertEquals(RpcConstants.TYPE_BATCH_RESPONSE, batchResponse.getType());
+        List<Long> requestIds = new ArrayList<>();
+        try {
+            for (ProtocolMsg response : BatchFrames.split(batchResponse, RpcConstants.TYPE_RESPONSE)) {
+                requestIds.add(response.getRequestId());
+                response.release();
+            }
+        } finally {
+            batchResponse.release();
+        }
+        return requestIds;
+    }
+}
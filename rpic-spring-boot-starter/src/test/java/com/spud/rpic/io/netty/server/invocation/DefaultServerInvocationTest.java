@@ -2,9 +2,11 @@ package com.spud.rpic.io.netty.server.invocation;
 
 import com.spud.rpic.common.domain.RpcRequest;
 import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.io.serializer.KryoSerializer;
 import com.spud.rpic.property.RpcServerProperties;
 import com.spud.rpic.test.MockService;
 import com.spud.rpic.test.MockServiceImpl;
+import com.spud.rpic.util.MethodIds;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -79,6 +81,23 @@ class DefaultServerInvocationTest {
         assertEquals(request.getRequestId(), response.getRequestId());
     }
 
+    @Test
+    @DisplayName("测试过载时不解码请求参数")
+    void testHandleRequest_OverloadSkipsParameterDecoding() {
+        RpcServerProperties serverProperties = new RpcServerProperties();
+        serverInvocation = new DefaultServerInvocation(serverProperties,
+            new java.util.concurrent.Semaphore(0));
+        RpcRequest header = createMockRequest(MockService.class, "sayHello", new Class[]{String.class});
+        header.setParameters(null);
+
+        RpcResponse response = serverInvocation.handleRequest(header, () -> {
+            throw new AssertionError("parameters must not be decoded for a rejected request");
+        });
+
+        assertTrue(response.getError());
+        assertTrue(response.getErrorMsg().contains("Server is overloaded"));
+    }
+
     @Test
     @DisplayName("测试服务端过载")
     void testHandleRequest_ServerOverload() throws InterruptedException {
@@ -153,6 +172,21 @@ class DefaultServerInvocationTest {
         assertTrue(response.getErrorMsg().contains("Method not found"));
     }
 
+    @Test
+    @DisplayName("测试参数类型不匹配")
+    void testHandleRequest_ArgumentMismatch() {
+        when(mockApplicationContext.getBean(MockService.class)).thenReturn(mockService);
+
+        // 参数类型不符应作为错误请求返回，而不是当作服务方法抛出的异常
+        RpcRequest request = createMockRequest(MockService.class, "add", new Class[]{int.class, int.class}, "1", 2);
+        RpcResponse response = serverInvocation.handleRequest(request);
+        assertTrue(response.getError());
+        assertTrue(response.getErrorMsg().startsWith("Bad request"));
+
+        RpcRequest missing = createMockRequest(MockService.class, "add", new Class[]{int.class, int.class}, null, 2);
+        assertTrue(serverInvocation.handleRequest(missing).getErrorMsg().startsWith("Bad request"));
+    }
+
     @Test
     @DisplayName("测试服务未找到")
     void testHandleRequest_ServiceNotFound() {
@@ -214,6 +248,40 @@ class DefaultServerInvocationTest {
         }
     }
 
+    @Test
+    @DisplayName("测试紧凑请求按方法编号分发")
+    void testHandleRequest_CompactMethodId() throws Exception {
+        ServiceInvokerRegistry invokerRegistry = new ServiceInvokerRegistry();
+        String serviceKey = RpcRequest.buildServiceKey("", MockService.class.getName(), "1.0.0");
+        invokerRegistry.register(serviceKey, MockService.class, mockService);
+        serverInvocation = new DefaultServerInvocation(new RpcServerProperties(), invokerRegistry);
+
+        RpcRequest full = RpcRequest.builder()
+            .interfaceName(MockService.class.getName())
+            .interfaceClass(MockService.class)
+            .methodName("add")
+            .parameterTypes(new Class[]{int.class, int.class})
+            .methodId(MethodIds.of(serviceKey, MockService.class.getMethod("add", int.class, int.class)))
+            .parameters(new Object[]{1, 2})
+            .version("1.0.0")
+            .build();
+        RpcRequest compact = full.toCompactRequest();
+        assertTrue(compact.isCompact());
+
+        // 紧凑请求不携带类名与方法名，序列化后不到完整请求的一半
+        KryoSerializer serializer = new KryoSerializer();
+        assertTrue(serializer.serialize(compact).length * 2 < serializer.serialize(full).length);
+
+        RpcResponse response = serverInvocation.handleRequest(
+            serializer.deserialize(serializer.serialize(compact), RpcRequest.class));
+        assertFalse(response.getError());
+        assertEquals(3, response.getResult());
+
+        compact.setMethodId(compact.getMethodId() + 1);
+        RpcResponse unknown = serverInvocation.handleRequest(compact);
+        assertTrue(unknown.getError());
+    }
+
     /**
      * 创建模拟的 RPC 请求
      */
@@ -0,0 +1,39 @@
+package com.spud.rpic.io.netty.server.invocation;
+
+import com.spud.rpic.test.MockService;
+import com.spud.rpic.test.MockServiceImpl;
+import java.lang.reflect.InvocationTargetException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceInvokerRegistryTest {
+
+    @Test
+    void testInvokersResolvedBySignatureAndId() throws Exception {
+        ServiceInvokerRegistry registry = new ServiceInvokerRegistry();
+        registry.register("g/MockService:1.0.0", MockService.class, new MockServiceImpl());
+
+        MethodInvoker add = registry.getInvoker("g/MockService:1.0.0", "add",
+            new Class[]{int.class, int.class});
+        assertNotNull(add);
+        assertEquals(5, add.invoke(new Object[]{2, 3}));
+        assertSame(add, registry.getInvoker(add.getMethodId()));
+
+        // 参数类型不匹配或服务未注册时不返回调用器
+        assertNull(registry.getInvoker("g/MockService:1.0.0", "add", new Class[]{long.class}));
+        assertNull(registry.getInvoker("MockService:2.0.0", "add", new Class[]{int.class, int.class}));
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    void testTargetExceptionIsWrapped() {
+        ServiceInvokerRegistry registry = new ServiceInvokerRegistry();
+        registry.register("MockService", MockService.class, new MockServiceImpl());
+
+        MethodInvoker invoker = registry.getInvoker("MockService", "throwException", null);
+        InvocationTargetException e = assertThrows(InvocationTargetException.class,
+            () -> invoker.invoke(null));
+        assertNotNull(e.getTargetException());
+    }
+}
@@ -0,0 +1,151 @@
+package com.spud.rpic.io.serializer;
+
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledSerializerTest {
+
+    public enum Status {
+        NEW, SHIPPED
+    }
+
+    public static class Line {
+        private String sku;
+        private int quantity;
+        private double price;
+
+        public Line() {
+        }
+
+        Line(String sku, int quantity, double price) {
+            this.sku = sku;
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+
+    public static class Order {
+        private final long id;
+        private Status status;
+        private List<Line> lines;
+        private long[] tags;
+        private Map<String, BigDecimal> totals;
+        private String note;
+        private float discount;
+
+        Order(long id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 类名哈希相同的两个类型
+     */
+    public static class Aa {
+        private String value;
+    }
+
+    public static class BB {
+        private String value;
+    }
+
+    public interface OrderService {
+        Order place(Order order, int[] warehouses);
+    }
+
+    private static CompiledSerializer registered() {
+        CompiledSerializer serializer = new CompiledSerializer();
+        serializer.registerService("OrderService", OrderService.class);
+        return serializer;
+    }
+
+    @Test
+    public void testRequestRoundTripWithNestedTypes() {
+        CompiledSerializer serializer = registered();
+        Order order = new Order(-42L);
+        order.status = Status.SHIPPED;
+        order.lines = Arrays.asList(new Line("a", 2, 1.5), new Line("b", -1, 0));
+        order.tags = new long[]{1L, Long.MIN_VALUE};
+        order.totals = new TreeMap<>(Collections.singletonMap("eur", new BigDecimal("3.00")));
+        order.discount = 0.25F;
+        RpcRequest request = RpcRequest.builder()
+            .interfaceName(OrderService.class.getName())
+            .interfaceClass(OrderService.class)
+            .methodName("place")
+            .parameterTypes(new Class<?>[]{Order.class, int[].class})
+            .methodId(7)
+            .parameters(new Object[]{order, new int[]{3, 9}})
+            .timeout(1000)
+            .build();
+
+        ByteBuf buf = Unpooled.buffer();
+        serializer.serialize(request, buf);
+        RpcRequest decoded = registered().deserialize(buf, RpcRequest.class);
+
+        assertEquals(0, buf.readableBytes());
+        assertEquals(OrderService.class, decoded.getInterfaceClass());
+        assertArrayEquals(request.getParameterTypes(), decoded.getParameterTypes());
+        Order copy = (Order) decoded.getParameters()[0];
+        assertEquals(-42L, copy.id);
+        assertEquals(Status.SHIPPED, copy.status);
+        assertEquals(-1, copy.lines.get(1).quantity);
+        assertEquals(1.5, copy.lines.get(0).price);
+        assertArrayEquals(order.tags, copy.tags);
+        assertTrue(copy.totals instanceof TreeMap);
+        assertEquals(new BigDecimal("3.00"), copy.totals.get("eur"));
+        assertNull(copy.note);
+        assertEquals(0.25F, copy.discount);
+        assertArrayEquals(new int[]{3, 9}, (int[]) decoded.getParameters()[1]);
+    }
+
+    @Test
+    public void testUnregisteredTypeIsRejected() {
+        RpcResponse response = RpcResponse.builder()
+            .result(new Line("a", 1, 1))
+            .error(false)
+            .processTime(5)
+            .build();
+        byte[] bytes = registered().serialize(response);
+
+        assertEquals(5, registered().deserialize(bytes, RpcResponse.class).getProcessTime());
+        assertThrows(SerializeException.class,
+            () -> new CompiledSerializer().deserialize(bytes, RpcResponse.class));
+    }
+
+    @Test
+    public void testCollidingIdsNeverDecodeAsAnotherType() {
+        assertEquals(CompiledSerializer.dynamicId(Aa.class), CompiledSerializer.dynamicId(BB.class));
+        Aa value = new Aa();
+        value.value = "a";
+        RpcResponse response = RpcResponse.builder().requestId("1").result(value).build();
+
+        // 只登记了Aa的一端以哈希编号写出，另一端该编号已因冲突弃用，解码失败而不是读成BB
+        CompiledSerializer sender = new CompiledSerializer();
+        sender.registerTypes(Arrays.asList(Aa.class));
+        CompiledSerializer both = new CompiledSerializer();
+        both.registerTypes(Arrays.asList(BB.class, Aa.class));
+        byte[] bytes = sender.serialize(response);
+        assertThrows(SerializeException.class, () -> both.deserialize(bytes, RpcResponse.class));
+
+        // 以同一编号只登记了BB的一端由校验字节发现类型不符
+        CompiledSerializer other = new CompiledSerializer();
+        other.registerTypes(Arrays.asList(BB.class));
+        assertThrows(SerializeException.class, () -> other.deserialize(bytes, RpcResponse.class));
+
+        // 冲突的一端按类名写出，对端无论是否登记都能解码
+        Object decoded = sender.deserialize(both.serialize(response), RpcResponse.class).getResult();
+        assertEquals("a", ((Aa) decoded).value);
+    }
+}
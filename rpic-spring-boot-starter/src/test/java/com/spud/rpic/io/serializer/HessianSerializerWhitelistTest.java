@@ -1,6 +1,8 @@
 package com.spud.rpic.io.serializer;
 
 import com.spud.rpic.common.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,13 +23,10 @@ public class HessianSerializerWhitelistTest {
 
     @Test
     public void testDeserializeRejectedByWhitelist() throws Exception {
-        HessianSerializer serializer = new HessianSerializer();
-        TestBean bean = new TestBean("alice");
-        byte[] data = serializer.serialize(bean);
-
-        // Temporarily set whitelist to exclude test package
-        System.setProperty("rpic.hessian.whitelist", "java.,javax.");
+        byte[] data = new HessianSerializer().serialize(new TestBean("alice"));
 
+        // 白名单在构造时编译，排除测试所在的包
+        HessianSerializer serializer = new HessianSerializer("java.,javax.");
         try {
             Object result = serializer.deserialize(data, TestBean.class);
             // If deserialization did not throw, ensure the returned object is NOT an instance of TestBean
@@ -35,27 +34,34 @@ public class HessianSerializerWhitelistTest {
             assertFalse(result instanceof TestBean, "Deserialized into TestBean while whitelist excludes it");
         } catch (SerializeException e) {
             // acceptable: serializer refuses to deserialize unwhitelisted class
-        } finally {
-            // restore default
-            System.clearProperty("rpic.hessian.whitelist");
         }
     }
 
     @Test
     public void testDeserializeAllowedWhenWhitelisted() throws Exception {
-        HessianSerializer serializer = new HessianSerializer();
-        TestBean bean = new TestBean("bob");
-        byte[] data = serializer.serialize(bean);
+        HessianSerializer serializer = new HessianSerializer("java.,javax.,com.spud.rpic.io.serializer.");
+        byte[] data = serializer.serialize(new TestBean("bob"));
 
-        // Allow the test package explicitly
-        System.setProperty("rpic.hessian.whitelist", "java.,javax.,com.spud.rpic.io.serializer.");
+        TestBean result = serializer.deserialize(data, TestBean.class);
+        assertNotNull(result);
+        assertEquals("bob", result.getName());
 
-        try {
-            TestBean result = serializer.deserialize(data, TestBean.class);
-            assertNotNull(result);
-            assertEquals("bob", result.getName());
-        } finally {
-            System.clearProperty("rpic.hessian.whitelist");
-        }
+        // 复用的写出器每次写出独立的流，后续消息可被新的读取方单独解析
+        ByteBuf buf = Unpooled.buffer();
+        serializer.serialize(new TestBean("carol"), buf);
+        assertEquals("carol", serializer.deserialize(buf, TestBean.class).getName());
+        assertEquals(0, buf.readableBytes());
+    }
+
+    @Test
+    public void testPrefixTrieMatching() {
+        ClassNamePrefixTrie trie = ClassNamePrefixTrie.compile(" java., com.spud.rpic. ,,com.acme.Dto");
+
+        assertTrue(trie.matches("java.util.ArrayList"));
+        assertTrue(trie.matches("com.spud.rpic.common.domain.RpcResponse"));
+        assertTrue(trie.matches("com.acme.DtoList"));
+        assertFalse(trie.matches("com.acme.Other"));
+        assertFalse(trie.matches("javax.naming.Reference"));
+        assertTrue(ClassNamePrefixTrie.compile(" , ").isEmpty());
     }
 }
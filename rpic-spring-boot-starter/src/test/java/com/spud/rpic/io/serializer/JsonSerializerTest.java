@@ -0,0 +1,111 @@
+package com.spud.rpic.io.serializer;
+
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.util.MethodIds;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonSerializerTest {
+
+    private static final String SERVICE_KEY = RpcRequest.buildServiceKey(null,
+        CatalogService.class.getName(), "1.0.0");
+
+    public static class Item {
+        public String name;
+        public int quantity;
+
+        public Item() {
+        }
+
+        Item(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+
+    public interface CatalogService {
+        Map<String, List<Item>> group(List<Item> items, long revision);
+
+        CompletableFuture<List<Item>> findAsync(String keyword);
+    }
+
+    private static RpcRequest request(Method method, Object... args) {
+        return RpcRequest.builder()
+            .interfaceName(CatalogService.class.getName())
+            .interfaceClass(CatalogService.class)
+            .methodName(method.getName())
+            .parameterTypes(method.getParameterTypes())
+            .methodId(MethodIds.of(SERVICE_KEY, method))
+            .parameters(args)
+            .version("1.0.0")
+            .timeout(3000)
+            .build();
+    }
+
+    @Test
+    public void testRequestParametersUseDeclaredGenericTypes() throws Exception {
+        JsonSerializer serializer = new JsonSerializer();
+        Method method = CatalogService.class.getMethod("group", List.class, long.class);
+        RpcRequest request = request(method, Arrays.asList(new Item("a", 1), new Item("b", 2)), 7L);
+
+        ByteBuf buf = Unpooled.buffer();
+        serializer.serialize(request, buf);
+        // 服务端未登记接口时按接口名、方法名与参数类型解析签名
+        RpcRequest decoded = serializer.deserialize(buf, RpcRequest.class);
+
+        assertEquals(0, buf.readableBytes());
+        assertEquals(CatalogService.class, decoded.getInterfaceClass());
+        assertArrayEquals(method.getParameterTypes(), decoded.getParameterTypes());
+        assertEquals(request.getMethodId(), decoded.getMethodId());
+        List<?> items = (List<?>) decoded.getParameters()[0];
+        assertEquals("b", ((Item) items.get(1)).name);
+        assertEquals(7L, decoded.getParameters()[1]);
+    }
+
+    @Test
+    public void testCompactRequestResolvedByRegisteredMethodId() throws Exception {
+        JsonSerializer serializer = new JsonSerializer();
+        serializer.registerService(SERVICE_KEY, CatalogService.class);
+        Method method = CatalogService.class.getMethod("group", List.class, long.class);
+        RpcRequest compact = request(method, Collections.singletonList(new Item("a", 3)), 1L)
+            .toCompactRequest();
+
+        RpcRequest decoded = serializer.deserialize(serializer.serialize(compact), RpcRequest.class);
+
+        assertTrue(decoded.isCompact());
+        assertEquals(3, ((Item) ((List<?>) decoded.getParameters()[0]).get(0)).quantity);
+    }
+
+    @Test
+    public void testResponseResultUsesAsyncReturnType() throws Exception {
+        JsonSerializer serializer = new JsonSerializer();
+        serializer.registerService(SERVICE_KEY, CatalogService.class);
+        int methodId = MethodIds.of(SERVICE_KEY,
+            CatalogService.class.getMethod("findAsync", String.class));
+        RpcResponse response = RpcResponse.builder()
+            .result(Collections.singletonList(new Item("c", 5)))
+            .error(false)
+            .processTime(12)
+            .build();
+
+        ByteBuf buf = Unpooled.wrappedBuffer(serializer.serialize(response));
+        RpcResponse typed = serializer.deserializeResponse(buf, methodId);
+        RpcResponse untyped = serializer.deserialize(serializer.serialize(response),
+            RpcResponse.class);
+
+        assertEquals("c", ((Item) ((List<?>) typed.getResult()).get(0)).name);
+        assertEquals(12, typed.getProcessTime());
+        assertFalse(typed.getError());
+        assertTrue(((List<?>) untyped.getResult()).get(0) instanceof Map);
+    }
+}
@@ -0,0 +1,118 @@
+package com.spud.rpic.io.serializer;
+
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KryoSerializerTest {
+
+    public static class Address {
+        private String city;
+    }
+
+    public static class Order {
+        private long id;
+        private Address address;
+        private Map<String, Item[]> items;
+    }
+
+    public static class Item {
+        private String name;
+
+        public Item() {
+        }
+
+        Item(String name) {
+            this.name = name;
+        }
+    }
+
+    // 两个类名的hashCode相同，登记编号冲突
+    public static class Aa {
+        private String value;
+    }
+
+    public static class BB {
+        private String value;
+    }
+
+    public interface OrderService {
+        List<Order> findOrders(String customer, Set<Long> ids);
+
+        Item firstItem(Order order);
+    }
+
+    @Test
+    public void testCollectsNestedTypesFromInterface() {
+        Set<Class<?>> types = ServiceTypes.collect(OrderService.class);
+
+        assertTrue(types.containsAll(Arrays.asList(Order.class, Address.class, Item.class,
+            Item[].class)));
+        assertFalse(types.contains(String.class));
+        assertFalse(types.contains(List.class));
+    }
+
+    @Test
+    public void testRegisteredTypesShrinkPayloadAndRoundTrip() {
+        KryoSerializer plain = new KryoSerializer();
+        KryoSerializer registered = new KryoSerializer();
+        registered.registerTypes(ServiceTypes.collect(OrderService.class));
+
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            items.add(new Item("item-" + i));
+        }
+        RpcResponse response = RpcResponse.builder().requestId("1").result(items).build();
+
+        byte[] plainBytes = plain.serialize(response);
+        byte[] registeredBytes = registered.serialize(response);
+        assertTrue(registeredBytes.length < plainBytes.length);
+
+        // 另一端以不同顺序登记相同类型，编号仍然一致
+        KryoSerializer peer = new KryoSerializer();
+        peer.registerTypes(Arrays.asList(Item.class, Address.class, Order.class, Item[].class));
+        RpcResponse decoded = peer.deserialize(registeredBytes, RpcResponse.class);
+        assertEquals("item-9", ((List<?>) decoded.getResult()).stream()
+            .map(item -> ((Item) item).name).reduce((a, b) -> b).orElse(null));
+
+        ByteBuf buf = Unpooled.buffer();
+        registered.serialize(response, buf);
+        assertEquals(registeredBytes.length, buf.readableBytes());
+        assertEquals("1", peer.deserialize(buf, RpcResponse.class).getRequestId());
+        assertEquals(0, buf.readableBytes());
+    }
+
+    @Test
+    public void testCollidingIdsNeverDecodeAsAnotherType() {
+        assertEquals(KryoSerializer.dynamicId(Aa.class), KryoSerializer.dynamicId(BB.class));
+        Aa value = new Aa();
+        value.value = "a";
+        RpcResponse response = RpcResponse.builder().requestId("1").result(value).build();
+
+        // 只登记了Aa的一端以哈希编号写出，另一端该编号已因冲突弃用，解码失败而不是读成BB
+        KryoSerializer sender = new KryoSerializer();
+        sender.registerTypes(Arrays.asList(Aa.class));
+        KryoSerializer both = new KryoSerializer();
+        both.registerTypes(Arrays.asList(BB.class, Aa.class));
+        byte[] bytes = sender.serialize(response);
+        assertThrows(SerializeException.class, () -> both.deserialize(bytes, RpcResponse.class));
+
+        // 以同一编号只登记了BB的一端由校验字节发现类型不符
+        KryoSerializer other = new KryoSerializer();
+        other.registerTypes(Arrays.asList(BB.class));
+        assertThrows(SerializeException.class, () -> other.deserialize(bytes, RpcResponse.class));
+
+        // 冲突的一端按类名写出，对端无论是否登记都能解码
+        Object decoded = sender.deserialize(both.serialize(response), RpcResponse.class).getResult();
+        assertEquals("a", ((Aa) decoded).value);
+    }
+}
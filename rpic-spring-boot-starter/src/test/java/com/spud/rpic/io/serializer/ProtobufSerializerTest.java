@@ -0,0 +1,93 @@
+package com.spud.rpic.io.serializer;
+
+import com.google.protobuf.StringValue;
+import com.google.protobuf.Timestamp;
+import com.spud.rpic.common.domain.RpcRequest;
+import com.spud.rpic.common.domain.RpcResponse;
+import com.spud.rpic.common.exception.SerializeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProtobufSerializerTest {
+
+    public interface ClockService {
+        Timestamp shift(Timestamp base, String zone, int hours, long nanos, byte[] tag, Object extra);
+    }
+
+    private final ProtobufSerializer serializer = new ProtobufSerializer();
+
+    @Test
+    public void testRequestRoundTripThroughDirectBuffer() {
+        Timestamp base = Timestamp.newBuilder().setSeconds(1_700_000_000L).setNanos(5).build();
+        RpcRequest request = RpcRequest.builder()
+            .requestId("42")
+            .interfaceName(ClockService.class.getName())
+            .interfaceClass(ClockService.class)
+            .methodName("shift")
+            .parameterTypes(new Class<?>[]{Timestamp.class, String.class, int.class, long.class,
+                byte[].class, Object.class})
+            .parameters(new Object[]{base, "UTC", -3, 7L, new byte[]{1, 2}, null})
+            .version("1.0.0")
+            .timeout(3000)
+            .attempt(2)
+            .build();
+
+        ByteBuf buf = Unpooled.directBuffer();
+        serializer.serialize(request, buf);
+        assertEquals(serializer.serialize(request).length, buf.readableBytes());
+        RpcRequest decoded = serializer.deserialize(buf, RpcRequest.class);
+        buf.release();
+
+        assertEquals(ClockService.class, decoded.getInterfaceClass());
+        assertEquals("shift", decoded.getMethodName());
+        assertArrayEquals(request.getParameterTypes(), decoded.getParameterTypes());
+        assertEquals(base, decoded.getParameters()[0]);
+        assertEquals("UTC", decoded.getParameters()[1]);
+        assertEquals(-3, decoded.getParameters()[2]);
+        assertEquals(7L, decoded.getParameters()[3]);
+        assertArrayEquals(new byte[]{1, 2}, (byte[]) decoded.getParameters()[4]);
+        assertNull(decoded.getParameters()[5]);
+        assertEquals(3000, decoded.getTimeout());
+        assertEquals(2, decoded.getAttempt());
+        assertNull(decoded.getDeadlineAtMillis());
+    }
+
+    @Test
+    public void testCompactRequestStaysCompact() {
+        RpcRequest request = RpcRequest.builder().methodId(-123456).parameters(new Object[]{"x"})
+            .build().toCompactRequest();
+
+        RpcRequest decoded = serializer.deserialize(serializer.serialize(request), RpcRequest.class);
+
+        assertTrue(decoded.isCompact());
+        assertEquals(-123456, decoded.getMethodId());
+        assertArrayEquals(new Object[]{"x"}, decoded.getParameters());
+    }
+
+    @Test
+    public void testResponseAndGeneratedMessage() {
+        RpcResponse response = RpcResponse.builder().requestId("7")
+            .result(StringValue.of("done")).error(false).processTime(12).build();
+
+        RpcResponse decoded = serializer.deserialize(serializer.serialize(response), RpcResponse.class);
+        assertEquals("7", decoded.getRequestId());
+        assertEquals(StringValue.of("done"), decoded.getResult());
+        assertFalse(decoded.getError());
+        assertEquals(12, decoded.getProcessTime());
+
+        Timestamp timestamp = Timestamp.newBuilder().setSeconds(9).build();
+        assertEquals(timestamp, serializer.deserialize(serializer.serialize(timestamp), Timestamp.class));
+    }
+
+    @Test
+    public void testUnsupportedValueRejected() {
+        RpcResponse response = RpcResponse.builder().requestId("8")
+            .result(Collections.singletonList("a")).build();
+
+        assertThrows(SerializeException.class, () -> serializer.serialize(response));
+    }
+}
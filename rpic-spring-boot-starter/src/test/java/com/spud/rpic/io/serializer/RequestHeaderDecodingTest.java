@@ -0,0 +1,64 @@
+package com.spud.rpic.io.serializer;
+
+import com.spud.rpic.common.domain.RpcRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestHeaderDecodingTest {
+
+    public static class Item {
+        public String name;
+
+        public Item() {
+        }
+
+        Item(String name) {
+            this.name = name;
+        }
+    }
+
+    public interface ItemService {
+        String save(List<Item> items, int count);
+    }
+
+    @Test
+    public void testHeaderDecodesWithoutParameters() {
+        String serviceKey = RpcRequest.buildServiceKey(null, ItemService.class.getName(), "1.0.0");
+        RpcRequest request = RpcRequest.builder()
+            .interfaceName(ItemService.class.getName())
+            .interfaceClass(ItemService.class)
+            .version("1.0.0")
+            .methodName("save")
+            .parameterTypes(new Class<?>[]{List.class, int.class})
+            .parameters(new Object[]{Arrays.asList(new Item("a"), new Item("b")), 2})
+            .timeout(1000)
+            .deadlineAtMillis(123456789L)
+            .attempt(2)
+            .build();
+
+        for (Serializer serializer : Arrays.asList(new KryoSerializer(), new CompiledSerializer(),
+            new JsonSerializer())) {
+            serializer.registerService(serviceKey, ItemService.class);
+            // 与服务端收到的帧切片一样，消息体不从缓冲区起始处开始
+            ByteBuf buf = Unpooled.buffer().writeZero(7).skipBytes(7);
+            serializer.serialize(request, buf);
+
+            RpcRequest header = serializer.deserializeRequestHeader(buf);
+            assertNull(header.getParameters(), serializer.getType());
+            assertEquals("save", header.getMethodName());
+            assertEquals(123456789L, header.getDeadlineAtMillis());
+            assertEquals(2, header.getAttempt());
+
+            Object[] parameters = serializer.deserializeParameters(buf, header);
+            assertEquals(0, buf.readableBytes(), serializer.getType());
+            assertEquals(2, parameters[1]);
+            assertEquals("b", ((List<?>) parameters[0]).stream()
+                .map(item -> ((Item) item).name).reduce((a, b) -> b).orElse(null));
+        }
+    }
+}